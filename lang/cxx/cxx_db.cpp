@@ -667,6 +667,10 @@ DB_METHOD(get_blob_threshold, (u_int32_t *bytes),
     (db, bytes), DB_RETOK_STD)
 DB_METHOD(set_bt_compare, (bt_compare_fcn_type func),
     (db, func), DB_RETOK_STD)
+DB_METHOD(get_bt_fillpct, (u_int32_t *bt_fillpctp),
+    (db, bt_fillpctp), DB_RETOK_STD)
+DB_METHOD(set_bt_fillpct, (u_int32_t bt_fillpct),
+    (db, bt_fillpct), DB_RETOK_STD)
 DB_METHOD(get_bt_minkey, (u_int32_t *bt_minkeyp),
     (db, bt_minkeyp), DB_RETOK_STD)
 DB_METHOD(set_bt_minkey, (u_int32_t bt_minkey),
@@ -254,6 +254,12 @@ struct Db
 		return ret;
 	}
 
+	u_int32_t get_bt_fillpct() {
+		u_int32_t ret = 0;
+		errno = self->get_bt_fillpct(self, &ret);
+		return ret;
+	}
+
 	u_int32_t get_bt_minkey() {
 		u_int32_t ret = 0;
 		errno = self->get_bt_minkey(self, &ret);
@@ -418,6 +424,10 @@ struct Db
 		return self->set_bt_compare(self, bt_compare_fcn);
 	}
 
+	db_ret_t set_bt_fillpct(u_int32_t bt_fillpct) {
+		return self->set_bt_fillpct(self, bt_fillpct);
+	}
+
 	db_ret_t set_bt_minkey(u_int32_t bt_minkey) {
 		return self->set_bt_minkey(self, bt_minkey);
 	}
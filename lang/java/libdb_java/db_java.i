@@ -310,6 +310,10 @@ import java.util.Comparator;
 		    offset, count);
 	}
 
+	public void stat_counters(long[] counters) throws DatabaseException {
+		db_javaJNI.DbEnv_stat_counters(swigCPtr, this, counters);
+	}
+
 	public synchronized void remove(String db_home, int flags)
 	    throws DatabaseException, java.io.FileNotFoundException {
 		try {
@@ -378,7 +382,7 @@ import java.util.Comparator;
 		 * Offset in buf is always 0.  We include it anyways to match
 		 * the OutputStream.write() signature.
 		 */
-		long file_pos = file_pos_gbytes * GIGABYTE + file_pos_bytes;
+		long file_pos = (long)file_pos_gbytes * GIGABYTE + file_pos_bytes;
 		return backup_open_handler.write(file_pos, buf, 0, len);
 	}
 %}
@@ -399,6 +403,7 @@ import java.util.Comparator;
 	private Comparator bt_compare_handler;
 	private BtreeCompressor bt_compress_handler;
 	private BtreeCompressor bt_decompress_handler;
+	private boolean bt_compress_default;
 	private BtreePrefixCalculator bt_prefix_handler;
 	private Comparator dup_compare_handler;
 	private FeedbackHandler db_feedback_handler;
@@ -455,6 +460,54 @@ import java.util.Comparator;
 		return append_recno_handler;
 	}
 
+	/*
+	 * Callbacks done in the library without calling into Java, see
+	 * com.sleepycat.db.NativeComparator, NativePrefixCalculator and
+	 * NativeKeyCreator.  The layout of the specs must match
+	 * java_callbacks.i.
+	 */
+	public static final int BT_COMPARE_SPEC = 0;
+	public static final int DUP_COMPARE_SPEC = 1;
+	public static final int H_COMPARE_SPEC = 2;
+	public static final int BT_PREFIX_SPEC = 3;
+	public static final int COMPARE_SPEC_SIZE = 64;
+	public static final int SECKEY_SPEC_SIZE = 256;
+	private static final int SECKEY_SPEC_OFFSET = 4 * COMPARE_SPEC_SIZE;
+	private java.nio.ByteBuffer callback_specs;
+
+	public void set_compare_spec(int which, byte[] spec)
+	    throws DatabaseException {
+		if (spec != null && spec.length > COMPARE_SPEC_SIZE)
+			throw new IllegalArgumentException(
+			    "comparison spec is too long");
+		set_callback_spec(which * COMPARE_SPEC_SIZE, spec);
+	}
+
+	public void set_seckey_spec(byte[] spec)
+	    throws DatabaseException {
+		if (spec != null && spec.length > SECKEY_SPEC_SIZE)
+			throw new IllegalArgumentException(
+			    "secondary key spec is too long");
+		set_callback_spec(SECKEY_SPEC_OFFSET, spec);
+	}
+
+	private void set_callback_spec(int offset, byte[] spec)
+	    throws DatabaseException {
+		if (callback_specs == null) {
+			if (spec == null)
+				return;
+			callback_specs = java.nio.ByteBuffer.allocateDirect(
+			    SECKEY_SPEC_OFFSET + SECKEY_SPEC_SIZE);
+			db_javaJNI.Db_set_callback_specs(swigCPtr, this,
+			    callback_specs);
+		}
+		callback_specs.position(offset);
+		if (spec == null)
+			callback_specs.put((byte)0);
+		else
+			callback_specs.put(spec);
+	}
+
 	private final int handle_bt_compare(byte[] arr1, byte[] arr2) {
 		return bt_compare_handler.compare(arr1, arr2);
 	}
@@ -485,6 +538,19 @@ import java.util.Comparator;
 		return bt_decompress_handler;
 	}
 
+	/*
+	 * With no callbacks, the library uses its own prefix compression.
+	 */
+	public void set_bt_compress_default()
+	    throws com.sleepycat.db.DatabaseException {
+		set_bt_compress(null, null);
+		bt_compress_default = true;
+	}
+
+	public boolean get_bt_compress_default() {
+		return bt_compress_default;
+	}
+
 	private final int handle_bt_prefix(DatabaseEntry dbt1,
 					   DatabaseEntry dbt2) {
 		return bt_prefix_handler.prefix(wrapper, dbt1, dbt2);
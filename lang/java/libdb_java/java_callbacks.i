@@ -409,11 +409,157 @@ err:	if (key->app_data == NULL) {
 	return ret;
 }
 
+/*
+ * Callbacks described by com.sleepycat.db.NativeComparator,
+ * NativePrefixCalculator and NativeKeyCreator are done here, without calling
+ * into Java.  Db.set_callback_specs points the handle's app_private at a
+ * buffer holding one spec for each comparison and prefix function followed
+ * by the secondary key spec.  A spec whose first byte is zero is not set.  The layout must
+ * match Db.set_compare_spec and Db.set_seckey_spec.
+ */
+#define	DBJ_COMPARE_SPEC_SIZE	64
+#define	DBJ_BT_COMPARE_SPEC	0
+#define	DBJ_DUP_COMPARE_SPEC	1
+#define	DBJ_H_COMPARE_SPEC	2
+#define	DBJ_BT_PREFIX_SPEC	3
+#define	DBJ_SECKEY_SPEC_OFFSET	(4 * DBJ_COMPARE_SPEC_SIZE)
+
+/*
+ * A secondary key spec is a count of fields, then for each field the part
+ * of the record it is read from, a count of items and the items.  An item
+ * is a kind, followed for DBJ_ITEM_FIXED by a four byte big-endian width.
+ * Every item of a field but the last is skipped, and the fields are
+ * concatenated to make the secondary key.  A record too short to hold a
+ * field is not indexed.  The layout must match NativeKeyCreator.
+ */
+#define	DBJ_SECKEY_MAX_FIELDS	16
+#define	DBJ_SECKEY_KEY		0
+#define	DBJ_SECKEY_DATA		1
+#define	DBJ_ITEM_FIXED		1
+#define	DBJ_ITEM_REST		2
+#define	DBJ_ITEM_STRING		3
+#define	DBJ_ITEM_PACKED		4
+#define	DBJ_ITEM_SORTED_PACKED	5
+
+static const u_int8_t *__dbj_seckey_spec(DB *db)
+{
+	const u_int8_t *spec;
+
+	if (db->app_private == NULL)
+		return (NULL);
+	spec = (const u_int8_t *)db->app_private + DBJ_SECKEY_SPEC_OFFSET;
+	return (spec[0] == 0 ? NULL : spec);
+}
+
+/*
+ * Find the length of the item described at *specp that starts at p, and
+ * advance *specp past the item.
+ */
+static int __dbj_seckey_item(const u_int8_t **specp,
+    const u_int8_t *p, u_int32_t len, u_int32_t *itemlenp)
+{
+	const u_int8_t *end, *spec;
+	u_int32_t n;
+	int b1;
+
+	spec = *specp;
+	switch (*spec++) {
+	case DBJ_ITEM_FIXED:
+		n = ((u_int32_t)spec[0] << 24) | ((u_int32_t)spec[1] << 16) |
+		    ((u_int32_t)spec[2] << 8) | (u_int32_t)spec[3];
+		spec += 4;
+		break;
+	case DBJ_ITEM_REST:
+		n = len;
+		break;
+	case DBJ_ITEM_STRING:
+		/* Strings, including null strings, end with a zero byte. */
+		if (len == 0 || (end = memchr(p, 0, len)) == NULL)
+			return (DB_DONOTINDEX);
+		n = (u_int32_t)(end - p) + 1;
+		break;
+	case DBJ_ITEM_PACKED:
+		/* See PackedInteger.getReadIntLength. */
+		if (len == 0)
+			return (DB_DONOTINDEX);
+		b1 = (signed char)p[0];
+		n = (b1 < -119) ? (u_int32_t)(-b1 - 118) :
+		    (b1 > 119) ? (u_int32_t)(b1 - 118) : 1;
+		break;
+	case DBJ_ITEM_SORTED_PACKED:
+		/* See PackedInteger.getReadSortedIntLength. */
+		if (len == 0)
+			return (DB_DONOTINDEX);
+		b1 = p[0];
+		n = (b1 < 0x08) ? (u_int32_t)(0x09 - b1) :
+		    (b1 > 0xf7) ? (u_int32_t)(b1 - 0xf6) : 1;
+		break;
+	default:
+		return (EINVAL);
+	}
+	if (n > len)
+		return (DB_DONOTINDEX);
+	*specp = spec;
+	*itemlenp = n;
+	return (0);
+}
+
+static int __dbj_spec_seckey(DB *db, const u_int8_t *spec,
+    const DBT *key, const DBT *data, DBT *result)
+{
+	const u_int8_t *fieldp[DBJ_SECKEY_MAX_FIELDS], *p;
+	u_int32_t fieldlen[DBJ_SECKEY_MAX_FIELDS], len, n, total;
+	u_int8_t *buf;
+	int field, item, nfields, nitems, ret;
+
+	if ((nfields = *spec++) > DBJ_SECKEY_MAX_FIELDS)
+		return (EINVAL);
+	for (total = 0, field = 0; field < nfields; field++) {
+		if (*spec++ == DBJ_SECKEY_KEY) {
+			p = (const u_int8_t *)key->data;
+			len = key->size;
+		} else {
+			p = (const u_int8_t *)data->data;
+			len = data->size;
+		}
+		for (n = 0, nitems = *spec++, item = 0; item < nitems; item++) {
+			if (item > 0) {
+				p += n;
+				len -= n;
+			}
+			if ((ret = __dbj_seckey_item(&spec, p, len, &n)) != 0)
+				return (ret);
+		}
+		fieldp[field] = p;
+		fieldlen[field] = n;
+		total += n;
+	}
+
+	memset(result, 0, sizeof (DBT));
+	if (nfields == 1) {
+		/* The secondary key points into the primary record. */
+		result->data = (void *)fieldp[0];
+		result->size = fieldlen[0];
+		return (0);
+	}
+	if ((ret = __os_umalloc(db->env, total, &buf)) != 0)
+		return (ret);
+	result->data = buf;
+	result->size = total;
+	F_SET(result, DB_DBT_APPMALLOC);
+	for (field = 0; field < nfields; field++) {
+		if (fieldlen[field] != 0)
+			memcpy(buf, fieldp[field], fieldlen[field]);
+		buf += fieldlen[field];
+	}
+	return (0);
+}
+
 static int __dbj_seckey_create(DB *db,
     const DBT *key, const DBT *data, DBT *result)
 {
 	int detach;
-	JNIEnv *jenv = __dbj_get_jnienv(&detach);
+	JNIEnv *jenv;
 	jobject jdb = (jobject)DB_INTERNAL(db);
 	jobject jkey, jdata, jresult;
 	jobjectArray jskeys;
@@ -421,8 +567,13 @@ static int __dbj_seckey_create(DB *db,
 	jbyteArray jkeyarr, jdataarr;
 	DBT_LOCKED lresult;
 	DBT *tresult;
+	const u_int8_t *spec;
 	int ret;
 
+	if ((spec = __dbj_seckey_spec(db)) != NULL)
+		return (__dbj_spec_seckey(db, spec, key, data, result));
+
+	jenv = __dbj_get_jnienv(&detach);
 	if (jdb == NULL) {
 		ret = EINVAL;
 		goto err;
@@ -592,7 +743,94 @@ err:	(*jenv)->DeleteLocalRef(jenv, jdbtarr);
 }
 
 /*
- * Shared by __dbj_bt_compare and __dbj_h_compare
+ * A comparison spec is a count of fields followed by two bytes per field,
+ * its flags and its width; a width of zero covers the rest of the key.  The
+ * layout must match com.sleepycat.db.NativeComparator.
+ */
+#define	DBJ_FIELD_SIGNED	0x01
+#define	DBJ_FIELD_DESCENDING	0x02
+
+static const u_int8_t *__dbj_compare_spec(DB *db, int which)
+{
+	const u_int8_t *spec;
+
+	if (db->app_private == NULL)
+		return (NULL);
+	spec = (const u_int8_t *)db->app_private +
+	    which * DBJ_COMPARE_SPEC_SIZE;
+	return (spec[0] == 0 ? NULL : spec);
+}
+
+static int __dbj_spec_compare(const u_int8_t *spec,
+    const DBT *dbt1, const DBT *dbt2)
+{
+	const u_int8_t *p1, *p2;
+	u_int32_t i, len1, len2, n, n1, n2, width;
+	int b1, b2, cmp, field, flags, nfields;
+
+	p1 = (const u_int8_t *)dbt1->data;
+	p2 = (const u_int8_t *)dbt2->data;
+	len1 = dbt1->size;
+	len2 = dbt2->size;
+	nfields = spec[0];
+
+	/*
+	 * Any bytes after the last field are compared as if by a final,
+	 * ascending field covering the rest of the key.
+	 */
+	for (field = 0; field <= nfields; field++) {
+		if (field < nfields) {
+			flags = spec[1 + 2 * field];
+			width = spec[2 + 2 * field];
+		} else {
+			flags = 0;
+			width = 0;
+		}
+		n1 = (width == 0 || width > len1) ? len1 : width;
+		n2 = (width == 0 || width > len2) ? len2 : width;
+		n = (n1 < n2) ? n1 : n2;
+
+		/*
+		 * Fields are compared as unsigned big-endian bytes; flipping
+		 * the sign bit of the first byte orders two's complement
+		 * integers.  If a key ends within the field, the shorter key
+		 * sorts first.
+		 */
+		for (cmp = 0, i = 0; cmp == 0 && i < n; i++) {
+			b1 = p1[i];
+			b2 = p2[i];
+			if (i == 0 && (flags & DBJ_FIELD_SIGNED)) {
+				b1 ^= 0x80;
+				b2 ^= 0x80;
+			}
+			cmp = b1 - b2;
+		}
+		if (cmp == 0 && n1 != n2)
+			cmp = (n1 < n2) ? -1 : 1;
+		if (cmp != 0)
+			return ((flags & DBJ_FIELD_DESCENDING) ? -cmp : cmp);
+
+		p1 += n1;
+		p2 += n2;
+		len1 -= n1;
+		len2 -= n2;
+	}
+	return (0);
+}
+
+/*
+ * The array of a DatabaseEntry passed in from Java can be handed to the
+ * comparator only if it holds exactly the bytes of the DBT; otherwise the
+ * bytes are copied into a new array.
+ */
+#define	DBT_ARRAY_REUSABLE(dbt)						\
+	((dbt)->app_data != NULL &&					\
+	((DBT_LOCKED *)(dbt)->app_data)->jarr != NULL &&		\
+	((DBT_LOCKED *)(dbt)->app_data)->offset == 0 &&			\
+	((DBT_LOCKED *)(dbt)->app_data)->array_len == (jsize)(dbt)->size)
+
+/*
+ * Shared by __dbj_bt_compare, __dbj_dup_compare and __dbj_h_compare
  */
 static int __dbj_am_compare(DB *db, const DBT *dbt1, const DBT *dbt2,
     jmethodID compare_method)
@@ -601,14 +839,18 @@ static int __dbj_am_compare(DB *db, const DBT *dbt1, const DBT *dbt2,
 	JNIEnv *jenv = __dbj_get_jnienv(&detach);
 	jobject jdb = (jobject)DB_INTERNAL(db);
 	jbyteArray jdbtarr1, jdbtarr2;
-	int ret;
+	int reuse1, reuse2, ret;
+
+	jdbtarr1 = jdbtarr2 = NULL;
+	reuse1 = DBT_ARRAY_REUSABLE(dbt1);
+	reuse2 = DBT_ARRAY_REUSABLE(dbt2);
 
 	if (jdb == NULL) {
 		ret = EINVAL;
 		goto err;
 	}
 
-	if (dbt1->app_data != NULL)
+	if (reuse1)
 		jdbtarr1 = ((DBT_LOCKED *)dbt1->app_data)->jarr;
 	else {
 		jdbtarr1 = (*jenv)->NewByteArray(jenv, (jsize)dbt1->size);
@@ -620,7 +862,7 @@ static int __dbj_am_compare(DB *db, const DBT *dbt1, const DBT *dbt2,
 		    (jsize)dbt1->size, (jbyte *)dbt1->data);
 	}
 
-	if (dbt2->app_data != NULL)
+	if (reuse2)
 		jdbtarr2 = ((DBT_LOCKED *)dbt2->app_data)->jarr;
 	else {
 		jdbtarr2 = (*jenv)->NewByteArray(jenv, (jsize)dbt2->size);
@@ -640,9 +882,9 @@ static int __dbj_am_compare(DB *db, const DBT *dbt1, const DBT *dbt2,
 		ret = EINVAL;
 	}
 
-err:	if (dbt1->app_data == NULL)
+err:	if (!reuse1 && jdbtarr1 != NULL)
 		(*jenv)->DeleteLocalRef(jenv, jdbtarr1);
-	if (dbt2->app_data == NULL)
+	if (!reuse2 && jdbtarr2 != NULL)
 		(*jenv)->DeleteLocalRef(jenv, jdbtarr2);
 
 	if (detach)
@@ -653,8 +895,12 @@ err:	if (dbt1->app_data == NULL)
 static int __dbj_bt_compare(DB *db,
     const DBT *dbt1, const DBT *dbt2, size_t *locp)
 {
+	const u_int8_t *spec;
+
 	if (locp != NULL)
 		locp = NULL;
+	if ((spec = __dbj_compare_spec(db, DBJ_BT_COMPARE_SPEC)) != NULL)
+		return (__dbj_spec_compare(spec, dbt1, dbt2));
 	return __dbj_am_compare(db, dbt1, dbt2, bt_compare_method);
 }
 
@@ -799,15 +1045,78 @@ err:	DBT_COPIED_FREE(1);
 	return (ret);
 }
 
+/*
+ * Return the length of the shortest prefix of dbt2 that sorts after dbt1 and
+ * not after dbt2 in the order described by a comparison spec.  The prefix
+ * ends just after the first byte that differs, unless that byte is in a
+ * descending field: a key cut short within a descending field sorts after
+ * the longer key, so the prefix must then keep the whole field and any
+ * descending fields that follow it.
+ */
+static size_t __dbj_spec_prefix(const u_int8_t *spec,
+    const DBT *dbt1, const DBT *dbt2)
+{
+	const u_int8_t *p1, *p2;
+	u_int32_t i, len1, len2, n, n1, n2, off, width;
+	int field, flags, nfields;
+
+	p1 = (const u_int8_t *)dbt1->data;
+	p2 = (const u_int8_t *)dbt2->data;
+	len1 = dbt1->size;
+	len2 = dbt2->size;
+	nfields = spec[0];
+
+	for (off = 0, field = 0; field <= nfields; field++) {
+		if (field < nfields) {
+			flags = spec[1 + 2 * field];
+			width = spec[2 + 2 * field];
+		} else {
+			flags = 0;
+			width = 0;
+		}
+		n1 = (width == 0 || width > len1) ? len1 : width;
+		n2 = (width == 0 || width > len2) ? len2 : width;
+		n = (n1 < n2) ? n1 : n2;
+		for (i = 0; i < n && p1[i] == p2[i]; i++)
+			continue;
+
+		if (i == n && n1 == n2) {
+			p1 += n1;
+			p2 += n2;
+			len1 -= n1;
+			len2 -= n2;
+			off += n2;
+			continue;
+		}
+		if (!(flags & DBJ_FIELD_DESCENDING))
+			return (off + i + 1);
+		for (;;) {
+			off += n2;
+			len2 -= n2;
+			if (++field >= nfields ||
+			    !(spec[1 + 2 * field] & DBJ_FIELD_DESCENDING))
+				return (off);
+			width = spec[2 + 2 * field];
+			n2 = (width == 0 || width > len2) ? len2 : width;
+		}
+	}
+	return (dbt2->size);
+}
+
 static size_t __dbj_bt_prefix(DB *db, const DBT *dbt1, const DBT *dbt2)
 {
 	int detach;
-	JNIEnv *jenv = __dbj_get_jnienv(&detach);
+	JNIEnv *jenv;
 	jobject jdb = (jobject)DB_INTERNAL(db);
 	jobject jdbt1, jdbt2;
 	jbyteArray jdbtarr1, jdbtarr2;
+	const u_int8_t *spec;
 	int ret;
 
+	if ((spec = __dbj_compare_spec(db, DBJ_BT_PREFIX_SPEC)) != NULL)
+		return (__dbj_spec_prefix(spec, dbt1, dbt2));
+
+	jenv = __dbj_get_jnienv(&detach);
 	if (jdb == NULL) {
 		ret = EINVAL;
 		goto err;
@@ -863,43 +1172,13 @@ err:	if (dbt1->app_data == NULL) {
 static int __dbj_dup_compare(DB *db,
     const DBT *dbt1, const DBT *dbt2, size_t *locp)
 {
-	int detach;
-	JNIEnv *jenv = __dbj_get_jnienv(&detach);
-	jobject jdb = (jobject)DB_INTERNAL(db);
-	jbyteArray jdbtarr1, jdbtarr2;
-	int ret;
+	const u_int8_t *spec;
 
 	if (locp != NULL)
 		locp = NULL;
-	if (jdb == NULL)
-		return (EINVAL);
-
-	jdbtarr1 = (*jenv)->NewByteArray(jenv, (jsize)dbt1->size);
-	if (jdbtarr1 == NULL)
-		return (ENOMEM);
-	(*jenv)->SetByteArrayRegion(jenv, jdbtarr1, 0, (jsize)dbt1->size,
-	    (jbyte *)dbt1->data);
-
-	jdbtarr2 = (*jenv)->NewByteArray(jenv, (jsize)dbt2->size);
-	if (jdbtarr2 == NULL)
-		return (ENOMEM);
-	(*jenv)->SetByteArrayRegion(jenv, jdbtarr2, 0, (jsize)dbt2->size,
-	    (jbyte *)dbt2->data);
-
-	ret = (int)(*jenv)->CallNonvirtualIntMethod(jenv, jdb, db_class,
-	    dup_compare_method, jdbtarr1, jdbtarr2);
-
-	if ((*jenv)->ExceptionOccurred(jenv)) {
-		/* The exception will be thrown, so this could be any error. */
-		ret = EINVAL;
-	}
-
-	(*jenv)->DeleteLocalRef(jenv, jdbtarr2);
-	(*jenv)->DeleteLocalRef(jenv, jdbtarr1);
-
-	if (detach)
-		__dbj_detach();
-	return (ret);
+	if ((spec = __dbj_compare_spec(db, DBJ_DUP_COMPARE_SPEC)) != NULL)
+		return (__dbj_spec_compare(spec, dbt1, dbt2));
+	return __dbj_am_compare(db, dbt1, dbt2, dup_compare_method);
 }
 
 static void __dbj_db_feedback(DB *db, int opcode, int percent)
@@ -919,8 +1198,12 @@ static void __dbj_db_feedback(DB *db, int opcode, int percent)
 static int __dbj_h_compare(DB *db,
     const DBT *dbt1, const DBT *dbt2, size_t *locp)
 {
+	const u_int8_t *spec;
+
 	if (locp != NULL)
 		locp = NULL;
+	if ((spec = __dbj_compare_spec(db, DBJ_H_COMPARE_SPEC)) != NULL)
+		return (__dbj_spec_compare(spec, dbt1, dbt2));
 	return __dbj_am_compare(db, dbt1, dbt2, h_compare_method);
 }
 
@@ -1166,3 +1449,27 @@ JAVA_CALLBACK(u_int32_t (*h_hash_fcn)(DB *, const void *, u_int32_t),
     com.sleepycat.db.Hasher, h_hash)
 JAVA_CALLBACK(int (*rep_view_fcn)(DB_ENV *, const char *, int *, u_int32_t),
     com.sleepycat.db.ReplicationViewHandler, rep_view);
+
+%native(Db_set_callback_specs) void Db_set_callback_specs(DB *db,
+    jobject specs);
+%{
+SWIGEXPORT void JNICALL
+Java_com_sleepycat_db_internal_db_1javaJNI_Db_1set_1callback_1specs(
+    JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jobject jspecs) {
+	DB *self = *(DB **)(void *)&jarg1;
+	COMPQUIET(jcls, NULL);
+	COMPQUIET(jarg1_, NULL);
+
+	if (self == NULL) {
+		__dbj_throw(jenv, EINVAL, "call on closed handle", NULL, NULL);
+		return;
+	}
+
+	/*
+	 * The Java Db object holds a reference to the buffer for as long as
+	 * the handle can use it.
+	 */
+	self->app_private = (jspecs == NULL) ? NULL :
+	    (*jenv)->GetDirectBufferAddress(jenv, jspecs);
+}
+%}
@@ -196,3 +196,173 @@ JAVA_TYPEMAP(DB_TXN_STAT *, com.sleepycat.db.TransactionStats, jobject)
 	}
 %}
 
+
+/*
+ * DbEnv.stat_counters samples the counters of every configured subsystem in
+ * a single call, without building the statistics objects.  The indexes below
+ * must match the constants in com.sleepycat.db.MetricsSnapshot.
+ */
+%{
+#define	DBJ_STAT_MPOOL		0x01
+#define	DBJ_STAT_LOCK		0x02
+#define	DBJ_STAT_LOG		0x04
+#define	DBJ_STAT_TXN		0x08
+#define	DBJ_STAT_MUTEX		0x10
+#define	DBJ_STAT_REP		0x20
+
+enum {
+	DBJ_CTR_SUBSYSTEMS,
+	DBJ_CTR_CACHE_HIT,
+	DBJ_CTR_CACHE_MISS,
+	DBJ_CTR_PAGE_IN,
+	DBJ_CTR_PAGE_OUT,
+	DBJ_CTR_RO_EVICT,
+	DBJ_CTR_RW_EVICT,
+	DBJ_CTR_PAGES,
+	DBJ_CTR_PAGE_DIRTY,
+	DBJ_CTR_LOCK_REQUESTS,
+	DBJ_CTR_LOCK_WAIT,
+	DBJ_CTR_LOCK_NOWAIT,
+	DBJ_CTR_DEADLOCKS,
+	DBJ_CTR_LOCK_TIMEOUTS,
+	DBJ_CTR_TXN_TIMEOUTS,
+	DBJ_CTR_LOCKS,
+	DBJ_CTR_LOG_BYTES,
+	DBJ_CTR_LOG_WRITES,
+	DBJ_CTR_LOG_SYNCS,
+	DBJ_CTR_LOG_RECORDS,
+	DBJ_CTR_TXN_BEGINS,
+	DBJ_CTR_TXN_COMMITS,
+	DBJ_CTR_TXN_ABORTS,
+	DBJ_CTR_TXN_ACTIVE,
+	DBJ_CTR_MUTEX_INUSE,
+	DBJ_CTR_MUTEX_REGION_WAIT,
+	DBJ_CTR_REP_STATUS,
+	DBJ_CTR_REP_LOG_QUEUED,
+	DBJ_CTR_REP_MSGS_PROCESSED,
+	DBJ_CTR_REP_MSGS_SENT,
+	DBJ_CTR_REP_SEND_FAILURES,
+	DBJ_NCOUNTERS
+};
+%}
+
+%native(DbEnv_stat_counters) void DbEnv_stat_counters(DB_ENV *dbenv,
+    jlongArray counters);
+%{
+SWIGEXPORT void JNICALL
+Java_com_sleepycat_db_internal_db_1javaJNI_DbEnv_1stat_1counters(JNIEnv *jenv,
+    jclass jcls, jlong jdbenvp, jobject jdbenv, jlongArray counters) {
+	DB_ENV *dbenv;
+	DB_LOCK_STAT *lsp;
+	DB_LOG_STAT *lgsp;
+	DB_MPOOL_STAT *msp;
+	DB_MUTEX_STAT *mtsp;
+	DB_REP_STAT *rsp;
+	DB_TXN_STAT *tsp;
+	ENV *env;
+	jlong c[DBJ_NCOUNTERS];
+	int ret;
+
+	COMPQUIET(jcls, NULL);
+	COMPQUIET(jdbenv, NULL);
+	dbenv = *(DB_ENV **)(void *)&jdbenvp;
+
+	if (dbenv == NULL) {
+		__dbj_throw(jenv, EINVAL, "call on closed handle", NULL, NULL);
+		return;
+	}
+	env = dbenv->env;
+
+	if (counters == NULL ||
+	    (*jenv)->GetArrayLength(jenv, counters) < DBJ_NCOUNTERS) {
+		__dbj_throw(jenv, EINVAL,
+		    "DbEnv.stat_counters array not large enough", NULL,
+		    (jobject)DB_ENV_INTERNAL(dbenv));
+		return;
+	}
+	memset(c, 0, sizeof(c));
+
+	/*
+	 * Subsystems that were not configured when the environment was opened
+	 * are skipped and their counters left at zero.
+	 */
+	if (MPOOL_ON(env)) {
+		if ((ret = dbenv->memp_stat(dbenv, &msp, NULL, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_CACHE_HIT] = (jlong)msp->st_cache_hit;
+		c[DBJ_CTR_CACHE_MISS] = (jlong)msp->st_cache_miss;
+		c[DBJ_CTR_PAGE_IN] = (jlong)msp->st_page_in;
+		c[DBJ_CTR_PAGE_OUT] = (jlong)msp->st_page_out;
+		c[DBJ_CTR_RO_EVICT] = (jlong)msp->st_ro_evict;
+		c[DBJ_CTR_RW_EVICT] = (jlong)msp->st_rw_evict;
+		c[DBJ_CTR_PAGES] = (jlong)msp->st_pages;
+		c[DBJ_CTR_PAGE_DIRTY] = (jlong)msp->st_page_dirty;
+		__os_ufree(NULL, msp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_MPOOL;
+	}
+
+	if (LOCKING_ON(env)) {
+		if ((ret = dbenv->lock_stat(dbenv, &lsp, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_LOCK_REQUESTS] = (jlong)lsp->st_nrequests;
+		c[DBJ_CTR_LOCK_WAIT] = (jlong)lsp->st_lock_wait;
+		c[DBJ_CTR_LOCK_NOWAIT] = (jlong)lsp->st_lock_nowait;
+		c[DBJ_CTR_DEADLOCKS] = (jlong)lsp->st_ndeadlocks;
+		c[DBJ_CTR_LOCK_TIMEOUTS] = (jlong)lsp->st_nlocktimeouts;
+		c[DBJ_CTR_TXN_TIMEOUTS] = (jlong)lsp->st_ntxntimeouts;
+		c[DBJ_CTR_LOCKS] = (jlong)lsp->st_nlocks;
+		__os_ufree(NULL, lsp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_LOCK;
+	}
+
+	if (LOGGING_ON(env)) {
+		if ((ret = dbenv->log_stat(dbenv, &lgsp, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_LOG_BYTES] =
+		    (jlong)lgsp->st_w_mbytes * MEGABYTE + lgsp->st_w_bytes;
+		c[DBJ_CTR_LOG_WRITES] = (jlong)lgsp->st_wcount;
+		c[DBJ_CTR_LOG_SYNCS] = (jlong)lgsp->st_scount;
+		c[DBJ_CTR_LOG_RECORDS] = (jlong)lgsp->st_record;
+		__os_ufree(NULL, lgsp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_LOG;
+	}
+
+	if (TXN_ON(env)) {
+		if ((ret = dbenv->txn_stat(dbenv, &tsp, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_TXN_BEGINS] = (jlong)tsp->st_nbegins;
+		c[DBJ_CTR_TXN_COMMITS] = (jlong)tsp->st_ncommits;
+		c[DBJ_CTR_TXN_ABORTS] = (jlong)tsp->st_naborts;
+		c[DBJ_CTR_TXN_ACTIVE] = (jlong)tsp->st_nactive;
+		__os_ufree(NULL, tsp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_TXN;
+	}
+
+	if (MUTEX_ON(env)) {
+		if ((ret = dbenv->mutex_stat(dbenv, &mtsp, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_MUTEX_INUSE] = (jlong)mtsp->st_mutex_inuse;
+		c[DBJ_CTR_MUTEX_REGION_WAIT] = (jlong)mtsp->st_region_wait;
+		__os_ufree(NULL, mtsp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_MUTEX;
+	}
+
+	if (REP_ON(env)) {
+		if ((ret = dbenv->rep_stat(dbenv, &rsp, 0)) != 0)
+			goto err;
+		c[DBJ_CTR_REP_STATUS] = (jlong)rsp->st_status;
+		c[DBJ_CTR_REP_LOG_QUEUED] = (jlong)rsp->st_log_queued;
+		c[DBJ_CTR_REP_MSGS_PROCESSED] = (jlong)rsp->st_msgs_processed;
+		c[DBJ_CTR_REP_MSGS_SENT] = (jlong)rsp->st_msgs_sent;
+		c[DBJ_CTR_REP_SEND_FAILURES] =
+		    (jlong)rsp->st_msgs_send_failures;
+		__os_ufree(NULL, rsp);
+		c[DBJ_CTR_SUBSYSTEMS] |= DBJ_STAT_REP;
+	}
+
+	(*jenv)->SetLongArrayRegion(jenv, counters, 0, DBJ_NCOUNTERS, c);
+	return;
+
+err:	__dbj_throw(jenv, ret, NULL, NULL, (jobject)DB_ENV_INTERNAL(dbenv));
+}
+%}
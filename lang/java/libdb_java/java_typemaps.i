@@ -286,6 +286,13 @@ static void __dbj_dbt_release(
 	if (dbt->size != ldbt->orig_size)
 		(*jenv)->SetIntField(jenv, jdbt, dbt_size_fid, (jint)dbt->size);
 
+	/*
+	 * Bulk puts and deletes return the number of items processed in doff,
+	 * which is otherwise unused because bulk DBTs may not be partial.
+	 */
+	if (F_ISSET(dbt, DB_DBT_BULK))
+		(*jenv)->SetIntField(jenv, jdbt, dbt_doff_fid, (jint)dbt->doff);
+
 	if (F_ISSET(dbt, DB_DBT_USERMEM)) {
 		if (ldbt->jarr != NULL)
 			(*jenv)->ReleaseByteArrayElements(jenv, ldbt->jarr,
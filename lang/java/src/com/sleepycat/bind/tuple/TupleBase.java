@@ -8,6 +8,7 @@
 package com.sleepycat.bind.tuple;
 
 import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.util.BufferSizeHint;
 
 /**
  * A base class for tuple bindings and tuple key creators that provides control
@@ -19,19 +20,22 @@ import com.sleepycat.db.DatabaseEntry;
  * full.  The reallocation of this buffer can be a performance factor for
  * some applications using large objects.  To manage this issue, the {@link
  * #setTupleBufferSize} method may be used to control the initial size of the
- * buffer, and the {@link #getTupleOutput} method may be overridden by
- * subclasses to take over creation of the TupleOutput object.</p>
+ * buffer, the {@link #setTupleBufferReuse} method may be used to reuse one
+ * buffer per thread, and the {@link #getTupleOutput} method may be overridden
+ * by subclasses to take over creation of the TupleOutput object.</p>
  */
 public class TupleBase<E> {
 
     private int outputBufferSize;
+    private final BufferSizeHint sizeHint = new BufferSizeHint();
+    private ThreadLocal<TupleOutput> threadOutput;
 
     /**
      * Initializes the initial output buffer size to zero.
      *
-     * <p>Unless {@link #setTupleBufferSize} is called, the default {@link
-     * com.sleepycat.util.FastOutputStream#DEFAULT_INIT_SIZE} size will be
-     * used.</p>
+     * <p>Unless {@link #setTupleBufferSize} is called, the buffer size is
+     * learned from the size of the records recently written by this
+     * binding.</p>
      */
     public TupleBase() {
         outputBufferSize = 0;
@@ -41,11 +45,14 @@ public class TupleBase<E> {
      * Sets the initial byte size of the output buffer that is allocated by the
      * default implementation of {@link #getTupleOutput}.
      *
-     * <p>If this property is zero (the default), the default {@link
-     * com.sleepycat.util.FastOutputStream#DEFAULT_INIT_SIZE} size is used.</p>
+     * <p>If this property is zero (the default), the size is learned from
+     * the records recently written by {@link TupleBinding#objectToEntry}, so
+     * that the buffer seldom has to grow.  Before any record is written, the
+     * default {@link com.sleepycat.util.FastOutputStream#DEFAULT_INIT_SIZE}
+     * size is used.</p>
      *
      * @param byteSize the initial byte size of the output buffer, or zero to
-     * use the default size.
+     * use a learned size.
      */
     public void setTupleBufferSize(int byteSize) {
         outputBufferSize = byteSize;
@@ -62,13 +69,45 @@ public class TupleBase<E> {
         return outputBufferSize;
     }
 
+    /**
+     * Sets whether the default implementation of {@link #getTupleOutput}
+     * reuses one output buffer for each thread.
+     *
+     * <p>When true, no buffer is allocated for each record written.  The
+     * entry passed to {@link TupleBinding#objectToEntry} then refers to the
+     * thread's buffer, and its contents are only valid until the same thread
+     * writes another record with this binding.  Reuse is therefore only safe
+     * when each entry is passed to a database operation, and is no longer
+     * needed, before the next record is written.  Buffers that have grown
+     * larger than {@link BufferSizeHint#MAX_SIZE} are not kept.</p>
+     *
+     * <p>This property is false by default.</p>
+     *
+     * @param reuse whether to reuse one output buffer for each thread.
+     */
+    public void setTupleBufferReuse(boolean reuse) {
+        threadOutput = reuse ? (new ThreadLocal<TupleOutput>()) : null;
+    }
+
+    /**
+     * Returns whether one output buffer is reused for each thread.
+     *
+     * @return whether one output buffer is reused for each thread.
+     *
+     * @see #setTupleBufferReuse
+     */
+    public boolean getTupleBufferReuse() {
+        return threadOutput != null;
+    }
+
     /**
      * Returns an empty TupleOutput instance that will be used by the tuple
      * binding or key creator.
      *
      * <p>The default implementation of this method creates a new TupleOutput
      * with an initial buffer size that can be changed using the {@link
-     * #setTupleBufferSize} method.</p>
+     * #setTupleBufferSize} method, or returns the reset output of the current
+     * thread if {@link #setTupleBufferReuse} is true.</p>
      *
      * <p>This method may be overridden to return a TupleOutput instance.  For
      * example, an instance per thread could be created and returned by this
@@ -84,11 +123,36 @@ public class TupleBase<E> {
      * @see #setTupleBufferSize
      */
     protected TupleOutput getTupleOutput(E object) {
+        ThreadLocal<TupleOutput> reused = threadOutput;
+        if (reused != null) {
+            TupleOutput output = reused.get();
+            if (output != null) {
+                output.reset();
+                return output;
+            }
+        }
         int byteSize = getTupleBufferSize();
-        if (byteSize != 0) {
-            return new TupleOutput(new byte[byteSize]);
-        } else {
-            return new TupleOutput();
+        if (byteSize == 0) {
+            byteSize = sizeHint.getSize();
+        }
+        TupleOutput output = new TupleOutput(new byte[byteSize]);
+        if (reused != null) {
+            reused.set(output);
+        }
+        return output;
+    }
+
+    /**
+     * Learns the size of a record written to an output, and drops a reused
+     * output whose buffer has grown too large to keep.
+     */
+    void tupleOutputWritten(TupleOutput output) {
+        sizeHint.update(output.getBufferLength());
+        ThreadLocal<TupleOutput> reused = threadOutput;
+        if (reused != null &&
+            output.getBufferBytes().length > BufferSizeHint.MAX_SIZE &&
+            reused.get() == output) {
+            reused.remove();
         }
     }
 
@@ -72,6 +72,7 @@ public abstract class TupleBinding<E>
         TupleOutput output = getTupleOutput(object);
         objectToEntry(object, output);
         outputToEntry(output, entry);
+        tupleOutputWritten(output);
     }
 
     /**
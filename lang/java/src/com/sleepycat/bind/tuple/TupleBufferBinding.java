@@ -0,0 +1,163 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.bind.tuple;
+
+import java.nio.ByteBuffer;
+
+import com.sleepycat.bind.EntryBinding;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DirectBufferPool;
+
+/**
+ * An abstract <code>EntryBinding</code> that treats a key or data entry as a
+ * tuple held in a {@link ByteBuffer}.
+ *
+ * <p>This class is the counterpart of {@link TupleBinding} for entries that
+ * use {@link DatabaseEntry#setDataNIO}.  Objects are written with a {@link
+ * TupleBufferOutput} straight into a direct buffer, which is passed to the
+ * native library without being copied into a byte array first, and entries
+ * are read in place with a {@link TupleBufferInput}.  The tuple format is the
+ * same as that of <code>TupleBinding</code>.  Its two abstract methods must
+ * be implemented by a concrete subclass to convert between tuples and key or
+ * data objects.</p>
+ * <ul>
+ * <li> {@link #entryToObject(TupleBufferInput)} </li>
+ * <li> {@link #objectToEntry(Object,TupleBufferOutput)} </li>
+ * </ul>
+ *
+ * <p>When an object is written, a buffer the entry borrowed from a {@link
+ * DirectBufferPool} is reused from its start.  Any other direct, writable
+ * buffer held by the entry is written in place only within the entry's
+ * offset and size, so that the rest of a shared or bulk buffer is never
+ * overwritten; if the tuple does not fit, a new buffer is used instead.
+ * Otherwise a buffer is borrowed from the pool given by {@link
+ * #setBufferPool} or, if none is given, from a pool kept by the binding, so
+ * that an entry reused for many objects keeps the same buffer.  A borrowed
+ * buffer should be handed back with {@link DatabaseEntry#releaseDataNIO} when
+ * the entry is no longer needed.</p>
+ *
+ * @see <a href="package-summary.html#formats">Tuple Formats</a>
+ */
+public abstract class TupleBufferBinding<E> implements EntryBinding<E> {
+
+    private int bufSize;
+    private DirectBufferPool pool;
+    private DirectBufferPool ownPool;
+
+    /**
+     * Creates a tuple buffer binding.
+     */
+    public TupleBufferBinding() {
+    }
+
+    /**
+     * Sets the initial size of the buffer allocated when an entry does not
+     * already hold a direct buffer.  If zero, the size returned by {@link
+     * #getTupleBufferSize} is used.
+     *
+     * @param byteSize the initial buffer size in bytes.
+     */
+    public void setTupleBufferSize(int byteSize) {
+
+        bufSize = byteSize;
+    }
+
+    /**
+     * Returns the initial size of the buffer allocated when an entry does
+     * not already hold a direct buffer.
+     *
+     * @return the initial buffer size in bytes.
+     */
+    public int getTupleBufferSize() {
+
+        return (bufSize != 0) ? bufSize : DirectBufferPool.MIN_BUFFER_SIZE;
+    }
+
+    /**
+     * Sets the pool from which buffers are borrowed when an entry does not
+     * already hold a direct buffer.
+     *
+     * @param pool the pool, or null to borrow from a pool kept by the
+     * binding.
+     */
+    public void setBufferPool(DirectBufferPool pool) {
+
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool from which buffers are borrowed.
+     *
+     * @return the pool, or null if buffers are borrowed from a pool kept by
+     * the binding.
+     */
+    public DirectBufferPool getBufferPool() {
+
+        return pool;
+    }
+
+    // javadoc is inherited
+    public E entryToObject(DatabaseEntry entry) {
+
+        return entryToObject(TupleBufferInput.entryToInput(entry));
+    }
+
+    // javadoc is inherited
+    public void objectToEntry(E object, DatabaseEntry entry) {
+
+        ByteBuffer buf = entry.getDataNIO();
+        if (buf != null && entry.getDataNIOPool() != null) {
+            /* The entry owns the whole buffer. */
+        } else if (buf != null && buf.isDirect() && !buf.isReadOnly()) {
+            /* Only the entry's own bytes may be overwritten. */
+            ByteBuffer dup = buf.duplicate();
+            dup.limit(entry.getOffset() + entry.getSize());
+            dup.position(entry.getOffset());
+            buf = dup.slice();
+        } else {
+            entry.borrowDataNIO(getPool(), getTupleBufferSize());
+            buf = entry.getDataNIO();
+        }
+        TupleBufferOutput output = new TupleBufferOutput(buf, 0);
+        objectToEntry(object, output);
+        output.toEntry(entry);
+    }
+
+    private DirectBufferPool getPool() {
+
+        DirectBufferPool p = pool;
+        if (p != null) {
+            return p;
+        }
+        synchronized (this) {
+            if (ownPool == null) {
+                ownPool = new DirectBufferPool();
+            }
+            return ownPool;
+        }
+    }
+
+    /**
+     * Constructs a key or data object from a {@link TupleBufferInput} entry.
+     *
+     * @param input is the tuple key or data entry.
+     *
+     * @return the key or data object constructed from the entry.
+     */
+    public abstract E entryToObject(TupleBufferInput input);
+
+    /**
+     * Converts a key or data object to a tuple entry.
+     *
+     * @param object is the key or data object.
+     *
+     * @param output is the tuple entry to which the key or data should be
+     * written.
+     */
+    public abstract void objectToEntry(E object, TupleBufferOutput output);
+}
@@ -0,0 +1,489 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.bind.tuple;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.util.PackedInteger;
+import com.sleepycat.util.UtfOps;
+
+/**
+ * Reads tuple fields directly from a {@link ByteBuffer}, which may be a
+ * direct or a heap buffer.  It is used by {@link TupleBufferBinding}.
+ *
+ * <p>This class reads the format written by {@link TupleOutput} and {@link
+ * TupleBufferOutput}, and its methods have the same names and behavior as
+ * those of {@link TupleInput}.  The bytes are read in place; when the entry
+ * holds a direct buffer filled by the native library, they are not copied
+ * into a byte array first.</p>
+ *
+ * <p>Bytes are read at absolute positions; the position, limit and byte
+ * order of the buffer are not used or changed.  The <code>BigDecimal</code>
+ * methods of <code>TupleInput</code> are not provided.</p>
+ *
+ * @see <a href="package-summary.html#formats">Tuple Formats</a>
+ */
+public class TupleBufferInput {
+
+    private final ByteBuffer buf;
+    private int pos;
+    private final int end;
+    private byte[] scratch = new byte[PackedInteger.MAX_LONG_LENGTH];
+
+    /**
+     * Creates a tuple input object for reading the bytes between the
+     * position and the limit of the given buffer.
+     *
+     * @param buffer the buffer to read from.
+     */
+    public TupleBufferInput(ByteBuffer buffer) {
+
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * Creates a tuple input object for reading the given region of a buffer.
+     *
+     * @param buffer the buffer to read from.
+     *
+     * @param offset the offset of the first byte of the tuple.
+     *
+     * @param length the length of the tuple in bytes.
+     */
+    public TupleBufferInput(ByteBuffer buffer, int offset, int length) {
+
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+        buf = buffer;
+        pos = offset;
+        end = offset + length;
+    }
+
+    /**
+     * Creates a tuple input object for reading the data of an entry.  If the
+     * entry holds a buffer set with {@link DatabaseEntry#setDataNIO}, it is
+     * read in place; otherwise its byte array is wrapped.
+     *
+     * @param entry the entry to read.
+     *
+     * @return the tuple input object.
+     */
+    public static TupleBufferInput entryToInput(DatabaseEntry entry) {
+
+        ByteBuffer nio = entry.getDataNIO();
+        if (nio != null) {
+            return new TupleBufferInput(nio, entry.getOffset(),
+                                        entry.getSize());
+        }
+        byte[] data = entry.getData();
+        if (data == null) {
+            return new TupleBufferInput(ByteBuffer.allocate(0), 0, 0);
+        }
+        return new TupleBufferInput(ByteBuffer.wrap(data), entry.getOffset(),
+                                    entry.getSize());
+    }
+
+    /**
+     * Returns the number of bytes that may be read without reaching the end
+     * of the tuple.
+     *
+     * @return the number of bytes available.
+     */
+    public final int available() {
+
+        return end - pos;
+    }
+
+    /**
+     * Skips over the given number of bytes, or to the end of the tuple.
+     *
+     * @param count the number of bytes to skip.
+     *
+     * @return the number of bytes skipped.
+     */
+    public final int skip(int count) {
+
+        int n = Math.max(0, Math.min(count, end - pos));
+        pos += n;
+        return n;
+    }
+
+    /**
+     * Returns the offset in the buffer of the next byte to be read.
+     *
+     * @return the offset.
+     */
+    public final int getBufferOffset() {
+
+        return pos;
+    }
+
+    /**
+     * Reads a null-terminated UTF string from the data buffer and converts
+     * the data from UTF to Unicode.
+     * Reads values that were written using {@link
+     * TupleBufferOutput#writeString(String)}.
+     *
+     * @return the converted string.
+     *
+     * @throws IndexOutOfBoundsException if no null terminating byte is found
+     * in the buffer.
+     *
+     * @throws IllegalArgumentException malformed UTF data is encountered.
+     *
+     * @see TupleInput#readString()
+     */
+    public final String readString()
+        throws IndexOutOfBoundsException, IllegalArgumentException {
+
+        if (available() >= 2 &&
+            buf.get(pos) == TupleOutput.NULL_STRING_UTF_VALUE &&
+            buf.get(pos + 1) == 0) {
+            pos += 2;
+            return null;
+        }
+        int len = 0;
+        while (true) {
+            if (pos + len >= end) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (buf.get(pos + len) == 0) {
+                break;
+            }
+            len += 1;
+        }
+        String s;
+        if (buf.hasArray()) {
+            s = UtfOps.bytesToString(buf.array(), buf.arrayOffset() + pos,
+                                     len);
+        } else {
+            s = UtfOps.bytesToString(copy(len), 0, len);
+        }
+        pos += len + 1;
+        return s;
+    }
+
+    /**
+     * Reads a char (two byte) unsigned value from the buffer.
+     *
+     * @see TupleInput#readChar
+     */
+    public final char readChar()
+        throws IndexOutOfBoundsException {
+
+        return (char) readUnsignedShort();
+    }
+
+    /**
+     * Reads a boolean (one byte) unsigned value from the buffer and returns
+     * true if it is non-zero and false if it is zero.
+     *
+     * @see TupleInput#readBoolean
+     */
+    public final boolean readBoolean()
+        throws IndexOutOfBoundsException {
+
+        return readUnsignedByte() != 0;
+    }
+
+    /**
+     * Reads a signed byte (one byte) value from the buffer.
+     *
+     * @see TupleInput#readByte
+     */
+    public final byte readByte()
+        throws IndexOutOfBoundsException {
+
+        return (byte) (readUnsignedByte() ^ 0x80);
+    }
+
+    /**
+     * Reads a signed short (two byte) value from the buffer.
+     *
+     * @see TupleInput#readShort
+     */
+    public final short readShort()
+        throws IndexOutOfBoundsException {
+
+        return (short) (readUnsignedShort() ^ 0x8000);
+    }
+
+    /**
+     * Reads a signed int (four byte) value from the buffer.
+     *
+     * @see TupleInput#readInt
+     */
+    public final int readInt()
+        throws IndexOutOfBoundsException {
+
+        return (int) (readUnsignedInt() ^ 0x80000000);
+    }
+
+    /**
+     * Reads a signed long (eight byte) value from the buffer.
+     *
+     * @see TupleInput#readLong
+     */
+    public final long readLong()
+        throws IndexOutOfBoundsException {
+
+        return readUnsignedLong() ^ 0x8000000000000000L;
+    }
+
+    /**
+     * Reads an unsorted float (four byte) value from the buffer.
+     *
+     * @see TupleInput#readFloat
+     */
+    public final float readFloat()
+        throws IndexOutOfBoundsException {
+
+        return Float.intBitsToFloat((int) readUnsignedInt());
+    }
+
+    /**
+     * Reads an unsorted double (eight byte) value from the buffer.
+     *
+     * @see TupleInput#readDouble
+     */
+    public final double readDouble()
+        throws IndexOutOfBoundsException {
+
+        return Double.longBitsToDouble(readUnsignedLong());
+    }
+
+    /**
+     * Reads a sorted float (four byte) value from the buffer.
+     *
+     * @see TupleInput#readSortedFloat
+     */
+    public final float readSortedFloat()
+        throws IndexOutOfBoundsException {
+
+        int val = (int) readUnsignedInt();
+        val ^= (val < 0) ? 0x80000000 : 0xffffffff;
+        return Float.intBitsToFloat(val);
+    }
+
+    /**
+     * Reads a sorted double (eight byte) value from the buffer.
+     *
+     * @see TupleInput#readSortedDouble
+     */
+    public final double readSortedDouble()
+        throws IndexOutOfBoundsException {
+
+        long val = readUnsignedLong();
+        val ^= (val < 0) ? 0x8000000000000000L : 0xffffffffffffffffL;
+        return Double.longBitsToDouble(val);
+    }
+
+    /**
+     * Reads an unsigned byte (one byte) value from the buffer.
+     *
+     * @see TupleInput#readUnsignedByte
+     */
+    public final int readUnsignedByte()
+        throws IndexOutOfBoundsException {
+
+        checkAvailable(1);
+        return buf.get(pos++) & 0xff;
+    }
+
+    /**
+     * Reads an unsigned short (two byte) value from the buffer.
+     *
+     * @see TupleInput#readUnsignedShort
+     */
+    public final int readUnsignedShort()
+        throws IndexOutOfBoundsException {
+
+        checkAvailable(2);
+        int c1 = buf.get(pos++) & 0xff;
+        int c2 = buf.get(pos++) & 0xff;
+        return ((c1 << 8) | c2);
+    }
+
+    /**
+     * Reads an unsigned int (four byte) value from the buffer.
+     *
+     * @see TupleInput#readUnsignedInt
+     */
+    public final long readUnsignedInt()
+        throws IndexOutOfBoundsException {
+
+        checkAvailable(4);
+        long c1 = buf.get(pos++) & 0xff;
+        long c2 = buf.get(pos++) & 0xff;
+        long c3 = buf.get(pos++) & 0xff;
+        long c4 = buf.get(pos++) & 0xff;
+        return ((c1 << 24) | (c2 << 16) | (c3 << 8) | c4);
+    }
+
+    private long readUnsignedLong()
+        throws IndexOutOfBoundsException {
+
+        long hi = readUnsignedInt();
+        long lo = readUnsignedInt();
+        return (hi << 32) | lo;
+    }
+
+    /**
+     * Reads the specified number of bytes from the buffer, converting each
+     * unsigned byte value to a character of the resulting string.
+     *
+     * @param length is the number of bytes to be read.
+     *
+     * @return the value read from the buffer.
+     *
+     * @see TupleInput#readBytes
+     */
+    public final String readBytes(int length)
+        throws IndexOutOfBoundsException {
+
+        checkAvailable(length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            chars[i] = (char) (buf.get(pos++) & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads an unsorted packed integer.
+     *
+     * @see TupleInput#readPackedInt
+     */
+    public final int readPackedInt() {
+
+        checkAvailable(1);
+        scratch[0] = buf.get(pos);
+        int len = PackedInteger.getReadIntLength(scratch, 0);
+        copy(len);
+        pos += len;
+        return PackedInteger.readInt(scratch, 0);
+    }
+
+    /**
+     * Reads an unsorted packed long integer.
+     *
+     * @see TupleInput#readPackedLong
+     */
+    public final long readPackedLong() {
+
+        checkAvailable(1);
+        scratch[0] = buf.get(pos);
+        int len = PackedInteger.getReadLongLength(scratch, 0);
+        copy(len);
+        pos += len;
+        return PackedInteger.readLong(scratch, 0);
+    }
+
+    /**
+     * Reads a sorted packed integer.
+     *
+     * @see TupleInput#readSortedPackedInt
+     */
+    public final int readSortedPackedInt() {
+
+        checkAvailable(1);
+        scratch[0] = buf.get(pos);
+        int len = PackedInteger.getReadSortedIntLength(scratch, 0);
+        copy(len);
+        pos += len;
+        return PackedInteger.readSortedInt(scratch, 0);
+    }
+
+    /**
+     * Reads a sorted packed long integer.
+     *
+     * @see TupleInput#readSortedPackedLong
+     */
+    public final long readSortedPackedLong() {
+
+        checkAvailable(1);
+        scratch[0] = buf.get(pos);
+        int len = PackedInteger.getReadSortedLongLength(scratch, 0);
+        copy(len);
+        pos += len;
+        return PackedInteger.readSortedLong(scratch, 0);
+    }
+
+    /**
+     * Reads a {@code BigInteger}.
+     *
+     * @see TupleInput#readBigInteger
+     */
+    public final BigInteger readBigInteger() {
+
+        int len = readShort();
+        if (len < 0) {
+            len = (- len);
+        }
+        byte[] a = new byte[len];
+        a[0] = readByte();
+        readFast(a, 1, a.length - 1);
+        return new BigInteger(a);
+    }
+
+    /**
+     * Reads the given number of bytes into an array without any conversion.
+     *
+     * @param toBuf the array to read into.
+     *
+     * @param offset the offset in the array of the first byte.
+     *
+     * @param length the number of bytes to read.
+     */
+    public final void readFast(byte[] toBuf, int offset, int length)
+        throws IndexOutOfBoundsException {
+
+        checkAvailable(length);
+        if (buf.hasArray()) {
+            System.arraycopy(buf.array(), buf.arrayOffset() + pos,
+                             toBuf, offset, length);
+        } else if (length <= PackedInteger.MAX_LONG_LENGTH) {
+            for (int i = 0; i < length; i += 1) {
+                toBuf[offset + i] = buf.get(pos + i);
+            }
+        } else {
+            ByteBuffer src = buf.duplicate();
+            src.clear();
+            src.position(pos);
+            src.get(toBuf, offset, length);
+        }
+        pos += length;
+    }
+
+    private void checkAvailable(int length)
+        throws IndexOutOfBoundsException {
+
+        if (length < 0 || length > end - pos) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /*
+     * Copies bytes at the current position into the scratch array, growing
+     * it if needed, without advancing the position.
+     */
+    private byte[] copy(int length) {
+
+        checkAvailable(length);
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int save = pos;
+        readFast(scratch, 0, length);
+        pos = save;
+        return scratch;
+    }
+}
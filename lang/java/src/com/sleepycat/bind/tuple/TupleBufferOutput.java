@@ -0,0 +1,469 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.bind.tuple;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.util.PackedInteger;
+
+/**
+ * Writes tuple fields directly into a {@link ByteBuffer}, which may be a
+ * direct or a heap buffer.  It is used by {@link TupleBufferBinding}.
+ *
+ * <p>The bytes written are identical to those written by the methods of the
+ * same name in {@link TupleOutput}, so data written by either class may be
+ * read by either {@link TupleInput} or {@link TupleBufferInput}, and keys
+ * sort the same way.  Unlike <code>TupleOutput</code>, this class does not
+ * keep its own byte array: when the buffer is direct, the bytes are written
+ * straight into memory that can be passed to the native library by a
+ * {@link DatabaseEntry} without being copied.</p>
+ *
+ * <p>Bytes are written at absolute positions starting at the offset given
+ * to the constructor; the position, limit and byte order of the buffer are
+ * not used or changed.  If the buffer is too small it is replaced by a
+ * larger buffer of the same kind, so {@link #getBuffer} should be called
+ * after writing.  The <code>BigDecimal</code> methods of
+ * <code>TupleOutput</code> are not provided.</p>
+ *
+ * @see <a href="package-summary.html#formats">Tuple Formats</a>
+ */
+public class TupleBufferOutput {
+
+    private ByteBuffer buf;
+    private final int start;
+    private int pos;
+    private final byte[] packed = new byte[PackedInteger.MAX_LONG_LENGTH];
+
+    /**
+     * Creates a tuple output object that writes to a new direct buffer.
+     *
+     * @param initialSize the initial capacity of the buffer.
+     */
+    public TupleBufferOutput(int initialSize) {
+
+        this(ByteBuffer.allocateDirect(initialSize), 0);
+    }
+
+    /**
+     * Creates a tuple output object that writes to the given buffer,
+     * starting at the given offset.  A new buffer will be allocated only if
+     * the number of bytes needed is greater than the capacity of this buffer.
+     *
+     * @param buffer the buffer to write to.
+     *
+     * @param offset the offset in the buffer at which to start writing.
+     */
+    public TupleBufferOutput(ByteBuffer buffer, int offset) {
+
+        if (offset < 0 || offset > buffer.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+        buf = buffer;
+        start = offset;
+        pos = offset;
+    }
+
+    /**
+     * Returns the buffer holding the tuple.  This is the buffer passed to
+     * the constructor unless it had to be grown.
+     *
+     * @return the buffer.
+     */
+    public final ByteBuffer getBuffer() {
+
+        return buf;
+    }
+
+    /**
+     * Returns the offset of the first byte of the tuple in the buffer.
+     *
+     * @return the offset.
+     */
+    public final int getBufferOffset() {
+
+        return start;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the length of the tuple in bytes.
+     */
+    public final int getBufferLength() {
+
+        return pos - start;
+    }
+
+    /**
+     * Discards the bytes written so far, so the buffer can be reused for
+     * another tuple.
+     */
+    public final void reset() {
+
+        pos = start;
+    }
+
+    /**
+     * Sets the given entry to refer to the bytes written, without copying
+     * them.
+     *
+     * @param entry the entry to set.
+     */
+    public final void toEntry(DatabaseEntry entry) {
+
+        entry.setDataNIO(buf, start, pos - start);
+    }
+
+    /**
+     * Writes the specified bytes to the buffer, converting each character to
+     * an unsigned byte value.
+     * Writes values that can be read using {@link TupleBufferInput#readBytes}.
+     *
+     * @throws NullPointerException if the val parameter is null.
+     *
+     * @see TupleOutput#writeBytes(String)
+     */
+    public final TupleBufferOutput writeBytes(String val) {
+
+        int len = val.length();
+        makeSpace(len);
+        for (int i = 0; i < len; i += 1) {
+            buf.put(pos++, (byte) val.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the specified characters to the buffer, converting each
+     * character to UTF format, and adding a null terminator byte.
+     * Writes values that can be read using {@link
+     * TupleBufferInput#readString()}.
+     *
+     * @param val is the string containing the characters to be written, or
+     * null.
+     *
+     * @see TupleOutput#writeString(String)
+     */
+    public final TupleBufferOutput writeString(String val) {
+
+        if (val != null) {
+            int len = val.length();
+            int utfLength = 0;
+            for (int i = 0; i < len; i += 1) {
+                int c = val.charAt(i);
+                if ((c >= 0x0001) && (c <= 0x007F)) {
+                    utfLength += 1;
+                } else if (c > 0x07FF) {
+                    utfLength += 3;
+                } else {
+                    utfLength += 2;
+                }
+            }
+            makeSpace(utfLength + 1);
+            for (int i = 0; i < len; i += 1) {
+                int c = val.charAt(i);
+                if ((c >= 0x0001) && (c <= 0x007F)) {
+                    buf.put(pos++, (byte) c);
+                } else if (c > 0x07FF) {
+                    buf.put(pos++, (byte) (0xE0 | ((c >> 12) & 0x0F)));
+                    buf.put(pos++, (byte) (0x80 | ((c >>  6) & 0x3F)));
+                    buf.put(pos++, (byte) (0x80 | ((c >>  0) & 0x3F)));
+                } else {
+                    buf.put(pos++, (byte) (0xC0 | ((c >>  6) & 0x1F)));
+                    buf.put(pos++, (byte) (0x80 | ((c >>  0) & 0x3F)));
+                }
+            }
+        } else {
+            makeSpace(2);
+            buf.put(pos++, (byte) TupleOutput.NULL_STRING_UTF_VALUE);
+        }
+        buf.put(pos++, (byte) 0);
+        return this;
+    }
+
+    /**
+     * Writes a char (two byte) unsigned value to the buffer.
+     *
+     * @see TupleOutput#writeChar
+     */
+    public final TupleBufferOutput writeChar(int val) {
+
+        return writeUnsignedShort(val);
+    }
+
+    /**
+     * Writes a boolean (one byte) unsigned value to the buffer, writing one
+     * if the value is true and zero if it is false.
+     *
+     * @see TupleOutput#writeBoolean
+     */
+    public final TupleBufferOutput writeBoolean(boolean val) {
+
+        return writeUnsignedByte(val ? 1 : 0);
+    }
+
+    /**
+     * Writes an signed byte (one byte) value to the buffer.
+     *
+     * @see TupleOutput#writeByte
+     */
+    public final TupleBufferOutput writeByte(int val) {
+
+        return writeUnsignedByte(val ^ 0x80);
+    }
+
+    /**
+     * Writes an signed short (two byte) value to the buffer.
+     *
+     * @see TupleOutput#writeShort
+     */
+    public final TupleBufferOutput writeShort(int val) {
+
+        return writeUnsignedShort(val ^ 0x8000);
+    }
+
+    /**
+     * Writes an signed int (four byte) value to the buffer.
+     *
+     * @see TupleOutput#writeInt
+     */
+    public final TupleBufferOutput writeInt(int val) {
+
+        return writeUnsignedInt(val ^ 0x80000000);
+    }
+
+    /**
+     * Writes an signed long (eight byte) value to the buffer.
+     *
+     * @see TupleOutput#writeLong
+     */
+    public final TupleBufferOutput writeLong(long val) {
+
+        return writeUnsignedLong(val ^ 0x8000000000000000L);
+    }
+
+    /**
+     * Writes an unsorted float (four byte) value to the buffer.
+     *
+     * @see TupleOutput#writeFloat
+     */
+    public final TupleBufferOutput writeFloat(float val) {
+
+        return writeUnsignedInt(Float.floatToIntBits(val));
+    }
+
+    /**
+     * Writes an unsorted double (eight byte) value to the buffer.
+     *
+     * @see TupleOutput#writeDouble
+     */
+    public final TupleBufferOutput writeDouble(double val) {
+
+        return writeUnsignedLong(Double.doubleToLongBits(val));
+    }
+
+    /**
+     * Writes a sorted float (four byte) value to the buffer.
+     *
+     * @see TupleOutput#writeSortedFloat
+     */
+    public final TupleBufferOutput writeSortedFloat(float val) {
+
+        int intVal = Float.floatToIntBits(val);
+        intVal ^= (intVal < 0) ? 0xffffffff : 0x80000000;
+        return writeUnsignedInt(intVal);
+    }
+
+    /**
+     * Writes a sorted double (eight byte) value to the buffer.
+     *
+     * @see TupleOutput#writeSortedDouble
+     */
+    public final TupleBufferOutput writeSortedDouble(double val) {
+
+        long longVal = Double.doubleToLongBits(val);
+        longVal ^= (longVal < 0) ? 0xffffffffffffffffL : 0x8000000000000000L;
+        return writeUnsignedLong(longVal);
+    }
+
+    /**
+     * Writes an unsigned byte (one byte) value to the buffer.
+     *
+     * @see TupleOutput#writeUnsignedByte
+     */
+    public final TupleBufferOutput writeUnsignedByte(int val) {
+
+        makeSpace(1);
+        buf.put(pos++, (byte) val);
+        return this;
+    }
+
+    /**
+     * Writes an unsigned short (two byte) value to the buffer.
+     *
+     * @see TupleOutput#writeUnsignedShort
+     */
+    public final TupleBufferOutput writeUnsignedShort(int val) {
+
+        makeSpace(2);
+        buf.put(pos++, (byte) (val >>> 8));
+        buf.put(pos++, (byte) val);
+        return this;
+    }
+
+    /**
+     * Writes an unsigned int (four byte) value to the buffer.
+     *
+     * @see TupleOutput#writeUnsignedInt
+     */
+    public final TupleBufferOutput writeUnsignedInt(long val) {
+
+        makeSpace(4);
+        buf.put(pos++, (byte) (val >>> 24));
+        buf.put(pos++, (byte) (val >>> 16));
+        buf.put(pos++, (byte) (val >>> 8));
+        buf.put(pos++, (byte) val);
+        return this;
+    }
+
+    private TupleBufferOutput writeUnsignedLong(long val) {
+
+        makeSpace(8);
+        buf.put(pos++, (byte) (val >>> 56));
+        buf.put(pos++, (byte) (val >>> 48));
+        buf.put(pos++, (byte) (val >>> 40));
+        buf.put(pos++, (byte) (val >>> 32));
+        buf.put(pos++, (byte) (val >>> 24));
+        buf.put(pos++, (byte) (val >>> 16));
+        buf.put(pos++, (byte) (val >>> 8));
+        buf.put(pos++, (byte) val);
+        return this;
+    }
+
+    /**
+     * Writes an unsorted packed integer.
+     *
+     * @see TupleOutput#writePackedInt
+     */
+    public final TupleBufferOutput writePackedInt(int val) {
+
+        return writePacked(PackedInteger.writeInt(packed, 0, val));
+    }
+
+    /**
+     * Writes an unsorted packed long integer.
+     *
+     * @see TupleOutput#writePackedLong
+     */
+    public final TupleBufferOutput writePackedLong(long val) {
+
+        return writePacked(PackedInteger.writeLong(packed, 0, val));
+    }
+
+    /**
+     * Writes a sorted packed integer.
+     *
+     * @see TupleOutput#writeSortedPackedInt
+     */
+    public final TupleBufferOutput writeSortedPackedInt(int val) {
+
+        return writePacked(PackedInteger.writeSortedInt(packed, 0, val));
+    }
+
+    /**
+     * Writes a sorted packed long integer.
+     *
+     * @see TupleOutput#writeSortedPackedLong
+     */
+    public final TupleBufferOutput writeSortedPackedLong(long val) {
+
+        return writePacked(PackedInteger.writeSortedLong(packed, 0, val));
+    }
+
+    private TupleBufferOutput writePacked(int len) {
+
+        return writeFast(packed, 0, len);
+    }
+
+    /**
+     * Writes a {@code BigInteger}.
+     *
+     * @throws NullPointerException if val is null.
+     *
+     * @throws IllegalArgumentException if the byte array representation of val
+     * is larger than 0x7fff bytes.
+     *
+     * @see TupleOutput#writeBigInteger
+     */
+    public final TupleBufferOutput writeBigInteger(BigInteger val) {
+
+        byte[] a = val.toByteArray();
+        if (a.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException
+                ("BigInteger byte array is larger than 0x7fff bytes");
+        }
+        int firstByte = a[0];
+        writeShort((firstByte < 0) ? (- a.length) : a.length);
+        writeByte(firstByte);
+        return writeFast(a, 1, a.length - 1);
+    }
+
+    /**
+     * Writes the given bytes to the buffer without any conversion.
+     *
+     * @param fromBuf the bytes to write.
+     *
+     * @param offset the offset of the first byte to write.
+     *
+     * @param length the number of bytes to write.
+     */
+    public final TupleBufferOutput writeFast(byte[] fromBuf,
+                                             int offset,
+                                             int length) {
+
+        makeSpace(length);
+        if (buf.hasArray()) {
+            System.arraycopy(fromBuf, offset, buf.array(),
+                             buf.arrayOffset() + pos, length);
+        } else if (length <= PackedInteger.MAX_LONG_LENGTH) {
+            for (int i = 0; i < length; i += 1) {
+                buf.put(pos + i, fromBuf[offset + i]);
+            }
+        } else {
+            ByteBuffer dst = buf.duplicate();
+            dst.clear();
+            dst.position(pos);
+            dst.put(fromBuf, offset, length);
+        }
+        pos += length;
+        return this;
+    }
+
+    /**
+     * Ensures that the buffer has room for the given number of bytes past
+     * the current position, replacing it with a larger buffer of the same
+     * kind if necessary.
+     */
+    private void makeSpace(int sizeNeeded) {
+
+        int needed = pos + sizeNeeded;
+        if (needed <= buf.capacity()) {
+            return;
+        }
+        int newCapacity = Math.max(needed, buf.capacity() * 2);
+        ByteBuffer newBuf = buf.isDirect() ?
+            ByteBuffer.allocateDirect(newCapacity) :
+            ByteBuffer.allocate(newCapacity);
+        ByteBuffer src = buf.duplicate();
+        src.limit(pos).position(0);
+        newBuf.put(src);
+        buf = newBuf;
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.collections;
+
+import java.util.Random;
+
+/**
+ * A {@link RetryPolicy} that waits an exponentially increasing, randomized
+ * time before each retry and raises the deadlock priority of each retry.
+ *
+ * <p>Before retry number <em>n</em> (starting at zero), the delay limit is
+ * the initial delay multiplied by 2<sup>n</sup>, but not more than the
+ * maximum delay.  The actual delay is chosen at random between half the
+ * limit and the limit, so that transactions that deadlocked with each other
+ * do not retry at the same time and deadlock again.</p>
+ *
+ * <p>The first attempt of a transaction uses the default priority.  Retry
+ * number <em>n</em> uses the default priority plus (<em>n</em>+1) times the
+ * priority increment, so a transaction that is aborted repeatedly is
+ * eventually preferred over transactions that have not been retried.</p>
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+
+    /**
+     * The deadlock priority given to transactions by default.
+     */
+    public static final int DEFAULT_PRIORITY = 100;
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final int priorityIncrement;
+    private final Random random;
+
+    /**
+     * Creates a policy with an initial delay of 1 millisecond, a maximum
+     * delay of 1 second, and a priority increment of {@link
+     * #DEFAULT_PRIORITY}.
+     */
+    public BackoffRetryPolicy() {
+        this(1, 1000, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Creates a policy with the given delays and priority increment.
+     *
+     * @param initialDelay the delay limit in milliseconds for the first
+     * retry.
+     *
+     * @param maxDelay the largest delay limit in milliseconds.
+     *
+     * @param priorityIncrement the amount by which the priority is raised
+     * for each retry, or zero to always use the default priority.
+     *
+     * @throws IllegalArgumentException if a delay or the priority increment
+     * is negative, or the maximum delay is less than the initial delay.
+     */
+    public BackoffRetryPolicy(long initialDelay,
+                              long maxDelay,
+                              int priorityIncrement) {
+        if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException
+                ("Invalid delays: " + initialDelay + ", " + maxDelay);
+        }
+        if (priorityIncrement < 0) {
+            throw new IllegalArgumentException
+                ("Invalid priority increment: " + priorityIncrement);
+        }
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.priorityIncrement = priorityIncrement;
+        random = new Random();
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public int getPriorityIncrement() {
+        return priorityIncrement;
+    }
+
+    public long getRetryDelay(Exception exception, int retries) {
+        long limit = initialDelay;
+        for (int i = 0; i < retries && limit < maxDelay; i += 1) {
+            limit <<= 1;
+        }
+        limit = Math.min(limit, maxDelay);
+        long half = limit / 2;
+        if (limit == half) {
+            return limit;
+        }
+        return half + (long) (random.nextDouble() * (limit - half + 1));
+    }
+
+    public int getPriority(int retries) {
+        if (retries == 0 || priorityIncrement == 0) {
+            return 0;
+        }
+        long priority = DEFAULT_PRIORITY + (long) retries * priorityIncrement;
+        return (int) Math.min(priority, Integer.MAX_VALUE);
+    }
+}
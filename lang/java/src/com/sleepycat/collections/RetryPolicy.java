@@ -0,0 +1,52 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.collections;
+
+/**
+ * The interface implemented to control how a {@link TransactionRunner}
+ * retries a transaction after a deadlock.  A policy is set by calling {@link
+ * TransactionRunner#setRetryPolicy}.
+ *
+ * <p>Whether an exception is retried, and how many times, is still
+ * determined by {@link TransactionRunner#handleException}.  The policy
+ * determines how long to wait before each retry and the deadlock priority of
+ * each attempt.  Implementations must be thread safe, since a runner may be
+ * used by any number of threads.</p>
+ *
+ * @see BackoffRetryPolicy
+ */
+public interface RetryPolicy {
+
+    /**
+     * Returns the time to wait before retrying a transaction.
+     *
+     * @param exception the exception that caused the transaction to be
+     * aborted.
+     *
+     * @param retries the number of retries already performed, which is zero
+     * before the first retry.
+     *
+     * @return the number of milliseconds to wait, or zero to retry at once.
+     */
+    long getRetryDelay(Exception exception, int retries);
+
+    /**
+     * Returns the deadlock priority of a transaction attempt.  The priority
+     * is set by calling {@link com.sleepycat.db.Transaction#setPriority}
+     * after the transaction is begun.  The deadlock detector rejects lock
+     * requests of lower priority transactions before those of higher
+     * priority transactions, so raising the priority of each retry lets a
+     * transaction that was aborted repeatedly complete.
+     *
+     * @param retries the number of retries already performed, which is zero
+     * for the first attempt.
+     *
+     * @return the priority, or zero to use the default priority.
+     */
+    int getPriority(int retries);
+}
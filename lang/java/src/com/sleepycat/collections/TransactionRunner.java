@@ -7,10 +7,13 @@
 
 package com.sleepycat.collections;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.sleepycat.compat.DbCompat;
 import com.sleepycat.db.DatabaseException;
 import com.sleepycat.db.DeadlockException;
 import com.sleepycat.db.Environment;
+import com.sleepycat.db.LockNotGrantedException;
 import com.sleepycat.db.Transaction;
 import com.sleepycat.db.TransactionConfig;
 import com.sleepycat.util.ExceptionUnwrapper;
@@ -68,6 +71,13 @@ import com.sleepycat.util.ExceptionUnwrapper;
  * the meaning of the outermost transaction.  Nested transactions are not
  * currently supported by the JE product.</p>
  *
+ * <p>By default a transaction is retried immediately after a deadlock.  When
+ * many threads update the same records, immediate retries tend to deadlock
+ * again.  A {@link RetryPolicy} such as {@link BackoffRetryPolicy} may be set
+ * to wait before each retry and to raise the deadlock priority of retried
+ * transactions.  The number of retries, deadlocks and lock timeouts, and the
+ * time waited before retries, are returned by {@link #getStats}.</p>
+ *
  * @author Mark Hayes
  */
 public class TransactionRunner {
@@ -79,6 +89,11 @@ public class TransactionRunner {
     private int maxRetries;
     private TransactionConfig config;
     private boolean allowNestedTxn;
+    private volatile RetryPolicy retryPolicy;
+    private final AtomicLong nRetries = new AtomicLong();
+    private final AtomicLong nDeadlocks = new AtomicLong();
+    private final AtomicLong nLockTimeouts = new AtomicLong();
+    private final AtomicLong retryWaitTime = new AtomicLong();
 
     /**
      * Creates a transaction runner for a given Berkeley DB environment.
@@ -196,6 +211,51 @@ public class TransactionRunner {
         this.config = config;
     }
 
+    /**
+     * Returns the policy that determines the wait time and deadlock priority
+     * of retried transactions.
+     *
+     * @return the retry policy, or null if transactions are retried
+     * immediately with the default priority.
+     */
+    public RetryPolicy getRetryPolicy() {
+
+        return retryPolicy;
+    }
+
+    /**
+     * Changes the policy that determines the wait time and deadlock priority
+     * of retried transactions.
+     * Calling this method does not impact transactions already running.
+     *
+     * @param retryPolicy the retry policy, or null to retry transactions
+     * immediately with the default priority.  This is the default.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns the retry statistics of this runner.
+     *
+     * @param clear if true, the statistics are reset to zero after they are
+     * returned.
+     *
+     * @return the retry statistics.
+     */
+    public TransactionRunnerStats getStats(boolean clear) {
+
+        if (clear) {
+            return new TransactionRunnerStats
+                (nRetries.getAndSet(0), nDeadlocks.getAndSet(0),
+                 nLockTimeouts.getAndSet(0), retryWaitTime.getAndSet(0));
+        }
+        return new TransactionRunnerStats
+            (nRetries.get(), nDeadlocks.get(), nLockTimeouts.get(),
+             retryWaitTime.get());
+    }
+
     /**
      * Calls the {@link TransactionWorker#doWork} method and, for transactional
      * environments, may begin and end a transaction.  If the environment given
@@ -219,10 +279,17 @@ public class TransactionRunner {
             (allowNestedTxn || currentTxn.getTransaction() == null)) {
             /* Transactional and (not nested or nested txns allowed). */
             int useMaxRetries = maxRetries;
+            RetryPolicy policy = retryPolicy;
             for (int retries = 0;; retries += 1) {
                 Transaction txn = null;
                 try {
                     txn = currentTxn.beginTransaction(config);
+                    if (txn != null && policy != null) {
+                        int priority = policy.getPriority(retries);
+                        if (priority != 0) {
+                            txn.setPriority(priority);
+                        }
+                    }
                     worker.doWork();
                     if (txn != null && txn == currentTxn.getTransaction()) {
                         currentTxn.commitTransaction();
@@ -252,6 +319,11 @@ public class TransactionRunner {
                     if (e instanceof Error) {
                         throw (Error) e;
                     }
+                    if (e instanceof LockNotGrantedException) {
+                        nLockTimeouts.incrementAndGet();
+                    } else if (e instanceof DeadlockException) {
+                        nDeadlocks.incrementAndGet();
+                    }
                     /* Allow a subclass to determine retry policy. */
                     Exception ex = (Exception) e;
                     useMaxRetries =
@@ -259,6 +331,10 @@ public class TransactionRunner {
                     if (retries >= useMaxRetries) {
                         throw ex;
                     }
+                    nRetries.incrementAndGet();
+                    if (policy != null) {
+                        waitBeforeRetry(policy, ex, retries);
+                    }
                 }
             }
         } else {
@@ -271,6 +347,31 @@ public class TransactionRunner {
         }
     }
 
+    /**
+     * Waits for the time returned by the retry policy.  If the thread is
+     * interrupted, the interrupt status is restored and the exception that
+     * caused the retry is thrown.
+     */
+    private void waitBeforeRetry(RetryPolicy policy,
+                                 Exception exception,
+                                 int retries)
+        throws Exception {
+
+        long delay = policy.getRetryDelay(exception, retries);
+        if (delay <= 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw exception;
+        } finally {
+            retryWaitTime.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
     /**
      * Handles exceptions that occur during a transaction, and may implement
      * transaction retry policy.  The transaction is aborted by the {@link
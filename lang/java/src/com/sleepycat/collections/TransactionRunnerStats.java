@@ -0,0 +1,82 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.collections;
+
+/**
+ * Retry statistics of a {@link TransactionRunner}, returned by {@link
+ * TransactionRunner#getStats}.
+ *
+ * <p>The values are counted for all threads using the runner, from the time
+ * it was created or its statistics were last cleared.</p>
+ */
+public class TransactionRunnerStats {
+
+    private final long retries;
+    private final long deadlocks;
+    private final long lockTimeouts;
+    private final long retryWaitTime;
+
+    TransactionRunnerStats(long retries,
+                           long deadlocks,
+                           long lockTimeouts,
+                           long retryWaitTime) {
+        this.retries = retries;
+        this.deadlocks = deadlocks;
+        this.lockTimeouts = lockTimeouts;
+        this.retryWaitTime = retryWaitTime;
+    }
+
+    /**
+     * Returns the number of transactions that were retried.
+     *
+     * @return the number of retries.
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the number of transactions aborted because of a {@link
+     * com.sleepycat.db.DeadlockException} other than a lock timeout.
+     *
+     * @return the number of deadlocks.
+     */
+    public long getDeadlocks() {
+        return deadlocks;
+    }
+
+    /**
+     * Returns the number of transactions aborted because of a {@link
+     * com.sleepycat.db.LockNotGrantedException}, which is thrown when a lock
+     * or transaction timeout expires or a lock is requested without waiting.
+     *
+     * @return the number of lock timeouts.
+     */
+    public long getLockTimeouts() {
+        return lockTimeouts;
+    }
+
+    /**
+     * Returns the total time waited before retries, as determined by the
+     * {@link RetryPolicy} of the runner.
+     *
+     * @return the wait time in milliseconds.
+     */
+    public long getRetryWaitTime() {
+        return retryWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "retries=" + retries +
+               "\ndeadlocks=" + deadlocks +
+               "\nlockTimeouts=" + lockTimeouts +
+               "\nretryWaitTime=" + retryWaitTime +
+               '\n';
+    }
+}
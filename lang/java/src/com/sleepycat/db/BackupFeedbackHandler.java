@@ -0,0 +1,38 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+package com.sleepycat.db;
+
+/**
+An interface specifying a function to be called with the throughput of each
+file copied by a {@link com.sleepycat.db.ParallelBackup ParallelBackup}.
+<p>
+@see ParallelBackup#setBackupFeedbackHandler
+*/
+public interface BackupFeedbackHandler {
+    /**
+    A function called with the throughput of each file copied by a parallel
+    backup.
+    <p>
+    It is up to this function to display this information in an appropriate manner.
+    This function is called by the threads performing the backup, as each
+    database or log file is finished.
+    <p>
+    @param environment
+    A reference to the environment being backed up.
+    <p>
+    @param file
+    The path of the database or log file that was copied.
+    <p>
+    @param bytes
+    The number of bytes copied.
+    <p>
+    @param millis
+    The time taken to copy the file, in milliseconds.
+    */
+    void backupFeedback(Environment environment, String file, long bytes, long millis);
+}
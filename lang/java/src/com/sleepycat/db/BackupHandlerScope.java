@@ -0,0 +1,74 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2011, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/*
+ * Installs a BackupHandler, and if asked the hot backup marker, in an
+ * environment for the length of one backup, then restores the previous
+ * configuration.
+ *
+ * The handler is part of the configuration of the whole environment, so the
+ * environment's backup lock is held from install to restore: backups that
+ * install a handler run one at a time, and Environment.backup waits for them
+ * rather than writing through another backup's handler.  The lock is
+ * reentrant, so the backup itself may call Environment.backup.
+ */
+final class BackupHandlerScope {
+    private final Environment env;
+    private final boolean swapHandler;
+    private final BackupHandler oldHandler;
+    private final boolean markBackup;
+
+    /*
+     * Install the handler, or leave the handler alone if it is null, and
+     * set the hot backup marker if markHotBackup is true, the environment is
+     * transactional and the marker is not already set.
+     */
+    BackupHandlerScope(final Environment env,
+                       final BackupHandler handler,
+                       final boolean markHotBackup)
+        throws DatabaseException {
+
+        this.env = env;
+        env.backupLock.lock();
+        boolean installed = false;
+        try {
+            final EnvironmentConfig config = env.getConfig();
+            swapHandler = handler != null;
+            oldHandler = config.getBackupHandler();
+            markBackup = markHotBackup && config.getTransactional() &&
+                !config.getHotbackupInProgress();
+            if (swapHandler)
+                config.setBackupHandler(handler);
+            if (markBackup)
+                config.setHotbackupInProgress(true);
+            env.setConfig(config);
+            installed = true;
+        } finally {
+            if (!installed)
+                env.backupLock.unlock();
+        }
+    }
+
+    /* Restore the configuration and let the next backup run. */
+    void restore()
+        throws DatabaseException {
+
+        try {
+            final EnvironmentConfig config = env.getConfig();
+            if (swapHandler)
+                config.setBackupHandler(oldHandler);
+            if (markBackup)
+                config.setHotbackupInProgress(false);
+            env.setConfig(config);
+        } finally {
+            env.backupLock.unlock();
+        }
+    }
+}
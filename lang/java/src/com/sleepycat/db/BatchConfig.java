@@ -0,0 +1,147 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+Specify the attributes of a bulk scan started with
+{@link com.sleepycat.db.Cursor#scan Cursor.scan}.  An instance created with
+the default constructor is initialized with the system's default settings.
+*/
+public class BatchConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to
+    {@link com.sleepycat.db.Cursor#scan Cursor.scan}.
+    */
+    public static final BatchConfig DEFAULT = new BatchConfig();
+
+    /* Bulk buffers must be a multiple of 1KB in size. */
+    /* package */ static final int BUFFER_ALIGN = 1024;
+
+    private int initialBufferSize = 64 * 1024;
+    private int maxBufferSize = 16 * 1024 * 1024;
+    private boolean prefetch = false;
+    private LockMode lockMode = null;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public BatchConfig() {
+    }
+
+    /* package */
+    static BatchConfig checkNull(BatchConfig config) {
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /* package */
+    static int alignBufferSize(final int size) {
+        return ((size + BUFFER_ALIGN - 1) / BUFFER_ALIGN) * BUFFER_ALIGN;
+    }
+
+    /**
+    Set the size of the bulk buffer used for the first batch.
+    <p>
+    The buffer grows automatically, up to the maximum buffer size, when a
+    batch does not fit.  The size is rounded up to a multiple of 1KB, and is
+    raised to the database page size if it is smaller.
+    <p>
+    @param initialBufferSize
+    The size in bytes of the bulk buffer used for the first batch.
+    */
+    public void setInitialBufferSize(final int initialBufferSize) {
+        if (initialBufferSize <= 0)
+            throw new IllegalArgumentException(
+                "initialBufferSize must be positive");
+        this.initialBufferSize = initialBufferSize;
+    }
+
+    /**
+    Return the size of the bulk buffer used for the first batch.
+    <p>
+    @return
+    The size in bytes of the bulk buffer used for the first batch.
+    */
+    public int getInitialBufferSize() {
+        return initialBufferSize;
+    }
+
+    /**
+    Set the largest size the bulk buffer may grow to.
+    <p>
+    If a single record does not fit in a buffer of this size, the scan
+    throws {@link com.sleepycat.db.MemoryException MemoryException}.
+    <p>
+    @param maxBufferSize
+    The maximum size in bytes of the bulk buffer.
+    */
+    public void setMaxBufferSize(final int maxBufferSize) {
+        if (maxBufferSize <= 0)
+            throw new IllegalArgumentException(
+                "maxBufferSize must be positive");
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+    Return the largest size the bulk buffer may grow to.
+    <p>
+    @return
+    The maximum size in bytes of the bulk buffer.
+    */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+    Configure the scan to read the next batch on a background thread while
+    the application consumes the current one.
+    <p>
+    When prefetching, two bulk buffers are used and the cursor is accessed
+    by the background thread; the application must not use the cursor
+    directly until the scan is closed.  The environment must be opened
+    with {@link com.sleepycat.db.EnvironmentConfig#setThreaded
+    EnvironmentConfig.setThreaded} set to true.
+    <p>
+    @param prefetch
+    If true, read the next batch on a background thread.
+    */
+    public void setPrefetch(final boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+    Return if the scan reads the next batch on a background thread.
+    <p>
+    @return
+    If the scan reads the next batch on a background thread.
+    */
+    public boolean getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+    Set the locking attributes used for each bulk read.
+    <p>
+    @param lockMode
+    The locking attributes; if null, default attributes are used.
+    */
+    public void setLockMode(final LockMode lockMode) {
+        this.lockMode = lockMode;
+    }
+
+    /**
+    Return the locking attributes used for each bulk read.
+    <p>
+    @return
+    The locking attributes, or null if default attributes are used.
+    */
+    public LockMode getLockMode() {
+        return lockMode;
+    }
+}
@@ -0,0 +1,456 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+A writer that gathers individual put and delete operations from any number
+of threads and applies them to a database in batches.
+<p>
+Each batch is written with {@link com.sleepycat.db.Database#putMultipleKey
+Database.putMultipleKey} and {@link com.sleepycat.db.Database#deleteMultiple
+Database.deleteMultiple} calls under a single transaction, so the cost of
+crossing into the native library and of flushing the log is shared by all
+the operations in the batch.  A batch is written when the keys and data
+waiting reach {@link com.sleepycat.db.BatchWriterConfig#setMaxBatchBytes
+BatchWriterConfig.setMaxBatchBytes}, or when the oldest operation has waited
+{@link com.sleepycat.db.BatchWriterConfig#setMaxDelay
+BatchWriterConfig.setMaxDelay} milliseconds.
+<p>
+Operations are applied in the order they were submitted.  Each returns a
+Future that completes when its batch has committed, with the status of that
+operation alone: a delete of a missing key completes with
+{@link com.sleepycat.db.OperationStatus#NOTFOUND OperationStatus.NOTFOUND}
+and the operations after it in the batch are still applied.  If a batch
+fails, the futures of all its operations fail with the same exception.
+<p>
+When {@link com.sleepycat.db.BatchWriterConfig#setOverwrite
+BatchWriterConfig.setOverwrite} is false, puts are written one at a time
+with {@link com.sleepycat.db.Database#putNoOverwrite Database.putNoOverwrite},
+because bulk puts always replace existing keys; they still share the
+batch's transaction.
+<p>
+The key and data are copied when an operation is submitted, so the caller
+may reuse its entries immediately.  The database may not be configured with
+unsorted duplicates.
+<p>
+A writer is created with
+{@link com.sleepycat.db.Database#openBatchWriter Database.openBatchWriter}
+and must be closed before the database is closed.  This class is thread
+safe.
+*/
+public class BatchWriter {
+    private final Database database;
+    private final Environment environment;
+    private final BatchWriterConfig config;
+    private final Thread flusher;
+
+    private List<Operation> pending = new ArrayList<Operation>();
+    private long pendingBytes;
+    private long writingBytes;
+    private long firstPendingTime;
+    private boolean flushRequested;
+    private boolean closed;
+    private Operation lastOperation;
+
+    /* package */ BatchWriter(final Database database,
+                              final BatchWriterConfig config)
+        throws DatabaseException {
+
+        this.database = database;
+        this.config = config;
+        this.environment = database.getConfig().getTransactional() ?
+            database.getEnvironment() : null;
+        this.flusher = new Thread(new Runnable() {
+            public void run() {
+                runFlusher();
+            }
+        }, "BatchWriter flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+    Store a key/data pair in the database.
+    <p>
+    @param key the key.
+    @param data the data.
+    @return
+    a Future that completes when the pair has been written.
+    @throws IllegalStateException if the writer has been closed.
+    */
+    public Future<OperationStatus> put(final DatabaseEntry key,
+                                       final DatabaseEntry data) {
+        return submit(new Operation(copy(key), copy(data)));
+    }
+
+    /**
+    Remove a key and all its data items from the database.
+    <p>
+    @param key the key.
+    @return
+    a Future that completes when the key has been removed.
+    @throws IllegalStateException if the writer has been closed.
+    */
+    public Future<OperationStatus> delete(final DatabaseEntry key) {
+        return submit(new Operation(copy(key), null));
+    }
+
+    /**
+    Write all operations submitted so far and wait for them to complete.
+    <p>
+    @throws DatabaseException if the last batch could not be written.
+    */
+    public void flush()
+        throws DatabaseException {
+
+        final Operation last;
+        synchronized (this) {
+            last = lastOperation;
+            flushRequested = true;
+            notifyAll();
+        }
+        if (last != null)
+            last.await();
+    }
+
+    /**
+    Write all operations submitted so far and stop the writer.  The
+    database is not closed.
+    <p>
+    @throws DatabaseException if the last batch could not be written.
+    */
+    public void close()
+        throws DatabaseException {
+
+        final Operation last;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            last = lastOperation;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (last != null && last.isDone())
+            last.await();
+    }
+
+    private synchronized Future<OperationStatus> submit(final Operation op) {
+        while (!closed &&
+            pendingBytes + writingBytes >= config.getMaxPendingBytes()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                    "Interrupted waiting to submit an operation");
+            }
+        }
+        if (closed)
+            throw new IllegalStateException("BatchWriter is closed");
+        if (pending.isEmpty())
+            firstPendingTime = System.currentTimeMillis();
+        pending.add(op);
+        pendingBytes += op.size();
+        lastOperation = op;
+        if (pendingBytes >= config.getMaxBatchBytes())
+            notifyAll();
+        return op;
+    }
+
+    /*
+     * Wait until a batch is due, then take it from the pending list.
+     * Returns null when the writer is closed and nothing is left.
+     */
+    private synchronized List<Operation> takeBatch() {
+        while (pending.isEmpty() && !closed) {
+            flushRequested = false;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                /* Keep going until the writer is closed. */
+            }
+        }
+        while (!closed && !flushRequested &&
+            pendingBytes < config.getMaxBatchBytes()) {
+            final long delay = firstPendingTime + config.getMaxDelay() -
+                System.currentTimeMillis();
+            if (delay <= 0)
+                break;
+            try {
+                wait(delay);
+            } catch (InterruptedException e) {
+                /* Keep going until the writer is closed. */
+            }
+        }
+        if (pending.isEmpty())
+            return null;
+        final List<Operation> batch = pending;
+        pending = new ArrayList<Operation>();
+        writingBytes = pendingBytes;
+        pendingBytes = 0;
+        if (batch.get(batch.size() - 1) == lastOperation)
+            flushRequested = false;
+        return batch;
+    }
+
+    private synchronized void batchDone() {
+        writingBytes = 0;
+        notifyAll();
+    }
+
+    private void runFlusher() {
+        List<Operation> batch;
+        while ((batch = takeBatch()) != null) {
+            try {
+                writeBatch(batch);
+            } finally {
+                batchDone();
+            }
+        }
+    }
+
+    private void writeBatch(final List<Operation> batch) {
+        final OperationStatus[] status = new OperationStatus[batch.size()];
+        for (int attempt = 0; ; attempt++) {
+            Transaction txn = null;
+            try {
+                if (environment != null)
+                    txn = environment.beginTransaction(
+                        null, config.getTransactionConfig());
+                writeSegments(txn, batch, status);
+                if (txn != null) {
+                    final Transaction t = txn;
+                    txn = null;
+                    t.commit();
+                }
+                for (int i = 0; i < status.length; i++)
+                    batch.get(i).complete(status[i], null);
+                return;
+            } catch (Throwable t) {
+                abort(txn);
+                /* Without a transaction, a retry could apply twice. */
+                if (t instanceof DeadlockException && environment != null &&
+                    attempt < config.getMaxRetries())
+                    continue;
+                for (int i = 0; i < status.length; i++)
+                    batch.get(i).complete(null, t);
+                return;
+            }
+        }
+    }
+
+    private static void abort(final Transaction txn) {
+        if (txn != null) {
+            try {
+                txn.abort();
+            } catch (DatabaseException e) {
+                /* The original failure is reported instead. */
+            }
+        }
+    }
+
+    /*
+     * Write the batch as runs of consecutive puts or deletes, so that
+     * operations on the same key are applied in submission order.  A bulk
+     * call stops at the first item that fails and returns the number of
+     * items it applied, so the failing item gets the call's status and the
+     * rest of the run is written by another call.
+     */
+    private void writeSegments(final Transaction txn,
+                               final List<Operation> batch,
+                               final OperationStatus[] status)
+        throws DatabaseException {
+
+        int start = 0;
+        while (start < batch.size()) {
+            final boolean isPut = batch.get(start).data != null;
+            if (isPut && !config.getOverwrite()) {
+                /* Bulk puts cannot refuse to replace an existing key. */
+                final Operation op = batch.get(start);
+                status[start++] = database.putNoOverwrite(txn,
+                    new DatabaseEntry(op.key), new DatabaseEntry(op.data));
+                continue;
+            }
+            int end = start;
+            int bytes = 0;
+            while (end < batch.size() &&
+                (batch.get(end).data != null) == isPut) {
+                bytes += batch.get(end).size();
+                end++;
+            }
+            final int count = end - start;
+            final MultipleEntry entries;
+            final OperationStatus result;
+            if (isPut) {
+                final MultipleKeyDataEntry pairs = new MultipleKeyDataEntry(
+                    new byte[bufferSize(bytes, count, 4)]);
+                for (int i = start; i < end; i++) {
+                    final Operation op = batch.get(i);
+                    if (!pairs.append(op.key, op.data))
+                        throw new IllegalStateException(
+                            "Bulk buffer overflow");
+                }
+                entries = pairs;
+                result = database.putMultipleKey(txn, pairs, true);
+            } else {
+                final MultipleDataEntry keys = new MultipleDataEntry(
+                    new byte[bufferSize(bytes, count, 2)]);
+                for (int i = start; i < end; i++) {
+                    if (!keys.append(batch.get(i).key))
+                        throw new IllegalStateException(
+                            "Bulk buffer overflow");
+                }
+                entries = keys;
+                result = database.deleteMultiple(txn, keys);
+            }
+            if (result == OperationStatus.SUCCESS) {
+                for (int i = start; i < end; i++)
+                    status[i] = result;
+                start = end;
+                continue;
+            }
+            /* The number of items applied is returned in doff. */
+            final int failed = start + Math.min(entries.doff, count - 1);
+            for (int i = start; i < failed; i++)
+                status[i] = OperationStatus.SUCCESS;
+            status[failed] = result;
+            start = failed + 1;
+        }
+    }
+
+    /*
+     * The bulk buffer holds the bytes themselves plus an offset and a
+     * length for each item, and a terminator, rounded up to a multiple of
+     * 1KB.
+     */
+    private static int bufferSize(final int bytes,
+                                  final int count,
+                                  final int intsPerItem) {
+        return BatchConfig.alignBufferSize(
+            bytes + count * intsPerItem * DatabaseEntry.INT32SZ +
+            2 * DatabaseEntry.INT32SZ);
+    }
+
+    private static byte[] copy(final DatabaseEntry entry) {
+        final byte[] bytes = new byte[entry.getSize()];
+        if (entry.getDataNIO() != null) {
+            final java.nio.ByteBuffer buf = entry.getDataNIO().duplicate();
+            buf.position(entry.getOffset());
+            buf.get(bytes);
+        } else if (entry.getData() != null)
+            System.arraycopy(entry.getData(), entry.getOffset(),
+                bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /*
+     * A submitted operation, which is also the Future handed back to the
+     * caller.
+     */
+    private static class Operation implements Future<OperationStatus> {
+        final byte[] key;
+        final byte[] data;
+        private boolean done;
+        private OperationStatus status;
+        private Throwable failure;
+
+        Operation(final byte[] key, final byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+
+        int size() {
+            return key.length + ((data == null) ? 0 : data.length);
+        }
+
+        synchronized void complete(final OperationStatus status,
+                                   final Throwable failure) {
+            this.status = status;
+            this.failure = failure;
+            this.done = true;
+            notifyAll();
+        }
+
+        /* Wait for completion, rethrowing a failure as is. */
+        OperationStatus await()
+            throws DatabaseException {
+
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseException(e);
+            } catch (ExecutionException e) {
+                final Throwable t = e.getCause();
+                if (t instanceof DatabaseException)
+                    throw (DatabaseException)t;
+                if (t instanceof RuntimeException)
+                    throw (RuntimeException)t;
+                if (t instanceof Error)
+                    throw (Error)t;
+                throw new DatabaseException(t);
+            }
+        }
+
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        public synchronized OperationStatus get()
+            throws InterruptedException, ExecutionException {
+
+            while (!done)
+                wait();
+            return result();
+        }
+
+        public synchronized OperationStatus get(final long timeout,
+                                                final TimeUnit unit)
+            throws InterruptedException, ExecutionException,
+                   TimeoutException {
+
+            final long end = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                final long remaining = end - System.nanoTime();
+                if (remaining <= 0)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return result();
+        }
+
+        private OperationStatus result()
+            throws ExecutionException {
+
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return status;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+Specify the attributes of a {@link com.sleepycat.db.BatchWriter BatchWriter}.
+An instance created with the default constructor is initialized with the
+system's default settings.
+*/
+public class BatchWriterConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to
+    {@link com.sleepycat.db.Database#openBatchWriter Database.openBatchWriter}.
+    */
+    public static final BatchWriterConfig DEFAULT = new BatchWriterConfig();
+
+    private int maxBatchBytes = 1024 * 1024;
+    private int maxPendingBytes = 4 * 1024 * 1024;
+    private long maxDelay = 10;
+    private int maxRetries = 3;
+    private boolean overwrite = true;
+    private TransactionConfig transactionConfig = null;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public BatchWriterConfig() {
+    }
+
+    /* package */
+    static BatchWriterConfig checkNull(BatchWriterConfig config) {
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /**
+    Set the number of bytes of keys and data that triggers a flush.
+    <p>
+    @param maxBatchBytes
+    the number of bytes of keys and data that triggers a flush.
+    */
+    public void setMaxBatchBytes(final int maxBatchBytes) {
+        if (maxBatchBytes <= 0)
+            throw new IllegalArgumentException(
+                "maxBatchBytes must be positive");
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+    Return the number of bytes of keys and data that triggers a flush.
+    <p>
+    @return
+    the number of bytes of keys and data that triggers a flush.
+    */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+    Set the number of bytes of keys and data that may be waiting to be
+    written before callers of {@link com.sleepycat.db.BatchWriter#put
+    BatchWriter.put} and {@link com.sleepycat.db.BatchWriter#delete
+    BatchWriter.delete} are blocked.
+    <p>
+    @param maxPendingBytes
+    the number of waiting bytes at which callers are blocked.
+    */
+    public void setMaxPendingBytes(final int maxPendingBytes) {
+        if (maxPendingBytes <= 0)
+            throw new IllegalArgumentException(
+                "maxPendingBytes must be positive");
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+    Return the number of bytes of keys and data that may be waiting to be
+    written before callers are blocked.
+    <p>
+    @return
+    the number of waiting bytes at which callers are blocked.
+    */
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+    Set the longest time, in milliseconds, that an operation may wait
+    before its batch is flushed.
+    <p>
+    @param maxDelay
+    the longest time in milliseconds that an operation may wait to be
+    written.
+    */
+    public void setMaxDelay(final long maxDelay) {
+        if (maxDelay < 0)
+            throw new IllegalArgumentException(
+                "maxDelay must not be negative");
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+    Return the longest time, in milliseconds, that an operation may wait
+    before its batch is flushed.
+    <p>
+    @return
+    the longest time in milliseconds that an operation may wait to be
+    written.
+    */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+    Set the number of times a batch is retried after its transaction is
+    selected to resolve a deadlock.
+    <p>
+    @param maxRetries
+    the number of times a batch is retried after a deadlock.
+    */
+    public void setMaxRetries(final int maxRetries) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException(
+                "maxRetries must not be negative");
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+    Return the number of times a batch is retried after its transaction is
+    selected to resolve a deadlock.
+    <p>
+    @return
+    the number of times a batch is retried after a deadlock.
+    */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+    Configure whether puts replace existing keys.  If false, a put of a key
+    that already exists completes with
+    {@link com.sleepycat.db.OperationStatus#KEYEXIST OperationStatus.KEYEXIST}
+    and the rest of its batch is still written.  Such puts are written one
+    at a time rather than in bulk.
+    <p>
+    @param overwrite
+    If true, puts replace existing keys.
+    */
+    public void setOverwrite(final boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    /**
+    Return if puts replace existing keys.
+    <p>
+    @return
+    If puts replace existing keys.
+    */
+    public boolean getOverwrite() {
+        return overwrite;
+    }
+
+    /**
+    Set the attributes of the transaction used for each batch of a
+    transactional database.
+    <p>
+    @param transactionConfig
+    The transaction attributes.  If null, default attributes are used.
+    */
+    public void setTransactionConfig(
+        final TransactionConfig transactionConfig) {
+
+        this.transactionConfig = transactionConfig;
+    }
+
+    /**
+    Return the attributes of the transaction used for each batch.
+    <p>
+    @return
+    The transaction attributes, or null if default attributes are used.
+    */
+    public TransactionConfig getTransactionConfig() {
+        return transactionConfig;
+    }
+}
@@ -0,0 +1,276 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+A loader that fills an empty Btree database from key/data pairs supplied in
+key order.
+<p>
+When records are inserted in key order, each one goes at the end of the
+last leaf page, and every page split moves only the new record to a new
+page, leaving full pages behind.  While the loader is open, the database
+handle is configured to leave {@link
+com.sleepycat.db.BulkLoaderConfig#setFillPercent
+BulkLoaderConfig.setFillPercent} of each page's data behind instead, on
+leaf and internal pages alike, so the finished tree has room for later
+inserts without splitting at once.
+<p>
+The pairs are passed to the library in batches with
+{@link com.sleepycat.db.Database#putMultipleKey Database.putMultipleKey}.
+For a transactional database, each transaction writes
+{@link com.sleepycat.db.BulkLoaderConfig#setMaxTransactionBytes
+BulkLoaderConfig.setMaxTransactionBytes} of records, and by default is a
+{@link com.sleepycat.db.TransactionConfig#setBulk bulk} transaction, which
+does not log the contents of the pages it allocates.
+<p>
+The keys must be supplied in the order of the database's key comparator.
+In a database with sorted duplicates, the data items of a key must be
+supplied in the order of the duplicate comparator; in a database without
+duplicates, each key may be supplied only once.  A pair out of order is
+rejected with an IllegalArgumentException, and the pairs before it are not
+affected.
+<p>
+A loader is created with
+{@link com.sleepycat.db.Database#openBulkLoader Database.openBulkLoader}
+and must be closed before the database is closed.  The database must not be
+written through other handles while the loader is open.  This class is not
+thread safe.
+*/
+public class BulkLoader {
+    private final Database database;
+    private final Environment environment;
+    private final BulkLoaderConfig config;
+    private final TransactionConfig txnConfig;
+    private final Comparator<byte[]> keyComparator;
+    private final Comparator<byte[]> dupComparator;
+    private final boolean duplicates;
+    private final int savedFillPercent;
+
+    private List<byte[]> pending = new ArrayList<byte[]>();
+    private int pendingBytes;
+    private long txnBytes;
+    private Transaction txn;
+    private byte[] lastKey;
+    private byte[] lastData;
+    private boolean closed;
+
+    /* package */ BulkLoader(final Database database,
+                             final BulkLoaderConfig config)
+        throws DatabaseException {
+
+        final DatabaseConfig dbConfig = database.getConfig();
+        if (dbConfig.getType() != DatabaseType.BTREE)
+            throw new IllegalArgumentException(
+                "A bulk loader requires a Btree database");
+        if (!isEmpty(database))
+            throw new IllegalStateException(
+                "A bulk loader requires an empty database");
+
+        this.database = database;
+        this.config = config;
+        this.environment = dbConfig.getTransactional() ?
+            database.getEnvironment() : null;
+        if (config.getTransactionConfig() != null)
+            this.txnConfig = config.getTransactionConfig();
+        else {
+            this.txnConfig = new TransactionConfig();
+            txnConfig.setBulk(true);
+        }
+        this.keyComparator = comparator(dbConfig.getBtreeComparator());
+        this.dupComparator = dbConfig.getSortedDuplicates() ?
+            comparator(dbConfig.getDuplicateComparator()) : null;
+        this.duplicates = dbConfig.getSortedDuplicates() ||
+            dbConfig.getUnsortedDuplicates();
+
+        this.savedFillPercent = database.db.get_bt_fillpct();
+        database.db.set_bt_fillpct(config.getFillPercent());
+    }
+
+    /**
+    Store a key/data pair in the database.  The pair is copied, so the
+    caller may reuse its entries immediately; it is written when a batch
+    fills, or by {@link #flush} or {@link #close}.
+    <p>
+    @param key the key.
+    @param data the data.
+    @throws IllegalArgumentException if the pair is not in order.
+    @throws IllegalStateException if the loader has been closed.
+    @throws DatabaseException if a batch could not be written.  The loader
+    is closed, and the transaction in progress is aborted.
+    */
+    public void put(final DatabaseEntry key, final DatabaseEntry data)
+        throws DatabaseException {
+
+        if (closed)
+            throw new IllegalStateException("BulkLoader is closed");
+        final byte[] keyBytes = copy(key);
+        final byte[] dataBytes = copy(data);
+        checkOrder(keyBytes, dataBytes);
+        lastKey = keyBytes;
+        lastData = dataBytes;
+
+        pending.add(keyBytes);
+        pending.add(dataBytes);
+        pendingBytes += keyBytes.length + dataBytes.length;
+        if (pendingBytes >= config.getMaxBatchBytes())
+            write(false);
+    }
+
+    /**
+    Write the pairs supplied so far and commit them.
+    <p>
+    @throws DatabaseException if the pairs could not be written.  The
+    loader is closed, and the transaction in progress is aborted.
+    */
+    public void flush()
+        throws DatabaseException {
+
+        if (closed)
+            throw new IllegalStateException("BulkLoader is closed");
+        write(true);
+    }
+
+    /**
+    Write and commit the pairs supplied so far, and restore the database
+    handle's page splits.  The database is not closed.
+    <p>
+    @throws DatabaseException if the pairs could not be written.
+    */
+    public void close()
+        throws DatabaseException {
+
+        if (closed)
+            return;
+        write(true);
+        closed = true;
+        database.db.set_bt_fillpct(savedFillPercent);
+    }
+
+    private void checkOrder(final byte[] key, final byte[] data) {
+        if (lastKey == null)
+            return;
+        final int cmp = keyComparator.compare(lastKey, key);
+        if (cmp < 0)
+            return;
+        if (cmp > 0)
+            throw new IllegalArgumentException(
+                "Key is out of order for a bulk load");
+        if (!duplicates)
+            throw new IllegalArgumentException(
+                "Key was already loaded and duplicates are not configured");
+        if (dupComparator != null &&
+            dupComparator.compare(lastData, data) >= 0)
+            throw new IllegalArgumentException(
+                "Duplicate data item is out of order for a bulk load");
+    }
+
+    /*
+     * Pass the pending pairs to the library, and commit the transaction if
+     * it has written enough or a commit is requested.  On failure, abort
+     * and close the loader, because the pairs supplied since the last
+     * commit are lost.
+     */
+    private void write(final boolean commit)
+        throws DatabaseException {
+
+        try {
+            if (!pending.isEmpty()) {
+                if (environment != null && txn == null)
+                    txn = environment.beginTransaction(null, txnConfig);
+                final MultipleKeyDataEntry entries = new MultipleKeyDataEntry(
+                    new byte[BatchConfig.alignBufferSize(pendingBytes +
+                    pending.size() * 2 * DatabaseEntry.INT32SZ +
+                    2 * DatabaseEntry.INT32SZ)]);
+                for (int i = 0; i < pending.size(); i += 2) {
+                    if (!entries.append(pending.get(i), pending.get(i + 1)))
+                        throw new IllegalStateException(
+                            "Bulk buffer overflow");
+                }
+                final OperationStatus status =
+                    database.putMultipleKey(txn, entries, false);
+                if (status != OperationStatus.SUCCESS)
+                    throw new DatabaseException(
+                        "Bulk load put failed: " + status);
+                txnBytes += pendingBytes;
+                pending = new ArrayList<byte[]>();
+                pendingBytes = 0;
+            }
+            if (txn != null &&
+                (commit || txnBytes >= config.getMaxTransactionBytes())) {
+                final Transaction t = txn;
+                txn = null;
+                txnBytes = 0;
+                t.commit();
+            }
+        } catch (DatabaseException e) {
+            fail();
+            throw e;
+        } catch (RuntimeException e) {
+            fail();
+            throw e;
+        }
+    }
+
+    private void fail() {
+        closed = true;
+        pending = new ArrayList<byte[]>();
+        pendingBytes = 0;
+        if (txn != null) {
+            try {
+                txn.abort();
+            } catch (DatabaseException e) {
+                // Ignore it -- there is already an exception in flight.
+            }
+            txn = null;
+        }
+        try {
+            database.db.set_bt_fillpct(savedFillPercent);
+        } catch (DatabaseException e) {
+            // Ignore it -- there is already an exception in flight.
+        }
+    }
+
+    private static boolean isEmpty(final Database database)
+        throws DatabaseException {
+
+        final DatabaseEntry key = new DatabaseEntry();
+        final DatabaseEntry data = new DatabaseEntry();
+        key.setPartial(0, 0, true);
+        data.setPartial(0, 0, true);
+        final Cursor cursor = database.openCursor(null, null);
+        try {
+            return cursor.getFirst(key, data, null) ==
+                OperationStatus.NOTFOUND;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<byte[]> comparator(final Comparator c) {
+        return (c != null) ? (Comparator<byte[]>)c :
+            NativeComparator.LEXICOGRAPHIC;
+    }
+
+    private static byte[] copy(final DatabaseEntry entry) {
+        final byte[] bytes = new byte[entry.getSize()];
+        if (entry.getDataNIO() != null) {
+            final java.nio.ByteBuffer buf = entry.getDataNIO().duplicate();
+            buf.position(entry.getOffset());
+            buf.get(bytes);
+        } else if (entry.getData() != null)
+            System.arraycopy(entry.getData(), entry.getOffset(),
+                bytes, 0, bytes.length);
+        return bytes;
+    }
+}
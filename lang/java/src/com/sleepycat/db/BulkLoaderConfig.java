@@ -0,0 +1,151 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+Specify the attributes of a {@link com.sleepycat.db.BulkLoader BulkLoader}.
+An instance created with the default constructor is initialized with the
+system's default settings.
+*/
+public class BulkLoaderConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to
+    {@link com.sleepycat.db.Database#openBulkLoader Database.openBulkLoader}.
+    */
+    public static final BulkLoaderConfig DEFAULT = new BulkLoaderConfig();
+
+    private int fillPercent = 90;
+    private int maxBatchBytes = 1024 * 1024;
+    private long maxTransactionBytes = 16 * 1024 * 1024;
+    private TransactionConfig transactionConfig = null;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public BulkLoaderConfig() {
+    }
+
+    /* package */
+    static BulkLoaderConfig checkNull(BulkLoaderConfig config) {
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /**
+    Set the percentage of each page that is filled before the loader moves
+    on to a new page.
+    <p>
+    A page that is filled completely must be split by the first insert into
+    it after the load, so a value below 100 leaves room for later updates.
+    The default is 90.
+    <p>
+    @param fillPercent
+    the percentage of each page to fill, from 1 to 100.
+    */
+    public void setFillPercent(final int fillPercent) {
+        if (fillPercent < 1 || fillPercent > 100)
+            throw new IllegalArgumentException(
+                "fillPercent must be between 1 and 100");
+        this.fillPercent = fillPercent;
+    }
+
+    /**
+    Return the percentage of each page that is filled before the loader
+    moves on to a new page.
+    <p>
+    @return
+    the percentage of each page to fill.
+    */
+    public int getFillPercent() {
+        return fillPercent;
+    }
+
+    /**
+    Set the number of bytes of keys and data passed to the library in each
+    bulk call.
+    <p>
+    @param maxBatchBytes
+    the number of bytes of keys and data in each bulk call.
+    */
+    public void setMaxBatchBytes(final int maxBatchBytes) {
+        if (maxBatchBytes <= 0)
+            throw new IllegalArgumentException(
+                "maxBatchBytes must be positive");
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+    Return the number of bytes of keys and data passed to the library in
+    each bulk call.
+    <p>
+    @return
+    the number of bytes of keys and data in each bulk call.
+    */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+    Set the number of bytes of keys and data written by each transaction of
+    a transactional database.
+    <p>
+    Larger transactions log less, because the contents of pages allocated
+    by a bulk transaction are not logged, but hold more locks and lose more
+    work if the load fails.
+    <p>
+    @param maxTransactionBytes
+    the number of bytes of keys and data written by each transaction.
+    */
+    public void setMaxTransactionBytes(final long maxTransactionBytes) {
+        if (maxTransactionBytes <= 0)
+            throw new IllegalArgumentException(
+                "maxTransactionBytes must be positive");
+        this.maxTransactionBytes = maxTransactionBytes;
+    }
+
+    /**
+    Return the number of bytes of keys and data written by each
+    transaction of a transactional database.
+    <p>
+    @return
+    the number of bytes of keys and data written by each transaction.
+    */
+    public long getMaxTransactionBytes() {
+        return maxTransactionBytes;
+    }
+
+    /**
+    Set the attributes of the transactions used to load a transactional
+    database.
+    <p>
+    If null, the default, the transactions are configured with
+    {@link com.sleepycat.db.TransactionConfig#setBulk
+    TransactionConfig.setBulk}, so that the contents of the new pages are
+    not logged.
+    <p>
+    @param transactionConfig
+    The transaction attributes, or null to use bulk transactions.
+    */
+    public void setTransactionConfig(
+        final TransactionConfig transactionConfig) {
+
+        this.transactionConfig = transactionConfig;
+    }
+
+    /**
+    Return the attributes of the transactions used to load a transactional
+    database.
+    <p>
+    @return
+    The transaction attributes, or null if bulk transactions are used.
+    */
+    public TransactionConfig getTransactionConfig() {
+        return transactionConfig;
+    }
+}
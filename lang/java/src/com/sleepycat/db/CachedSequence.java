@@ -0,0 +1,380 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sleepycat.db.internal.DbConstants;
+
+/**
+Hands out the values of a {@link com.sleepycat.db.Sequence Sequence} from
+blocks reserved in Java, so that most calls do not enter the native library.
+<p>
+Every call to {@link com.sleepycat.db.Sequence#get Sequence.get} takes the
+mutex of the sequence handle, even when the values come from the handle's
+cache, so many threads allocating values at a high rate wait for each other.
+A cached sequence reserves a block of values at a time with a single call to
+Sequence.get and hands them out with an atomic increment.  The threads are
+spread over several stripes, each with its own block, so that they do not
+all increment the same counter.  When a stripe has used three quarters of its
+block, a spare block is reserved by a background thread, so that a stripe
+that runs out can usually carry on without calling the sequence.
+<p>
+The values returned are unique, but they are not returned in order, even to
+a single thread: each stripe hands out its own block, and a spare block may
+have been reserved before the block a stripe has just used up.  Values that have
+been reserved but not handed out are lost when the cached sequence is closed,
+as they are for the cache of a sequence handle.  When the values left in the
+range of a sequence that does not wrap are fewer than a block, they are not
+returned and {@link #get} throws the exception thrown by Sequence.get.
+<p>
+The sequence is not closed by {@link #close}, and may be used directly while
+it is used by a cached sequence.  For the best concurrency it should be
+opened with {@link com.sleepycat.db.SequenceConfig#setAutoCommitNoSync
+SequenceConfig.setAutoCommitNoSync}.
+*/
+public class CachedSequence {
+
+    /* The spare blocks kept reserved. */
+    private static final int SPARE_BLOCKS = 1;
+
+    private static final Block EMPTY = new Block(0, 1, 0);
+
+    private final Sequence sequence;
+    private final int blockSize;
+    private final boolean decrement;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final Queue<Block> spares = new ConcurrentLinkedQueue<Block>();
+    private final AtomicInteger spareCount = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ExecutorService refiller;
+    private volatile boolean closed;
+
+    /* Statistics. */
+    private final AtomicLong blocksReserved = new AtomicLong();
+    private final AtomicLong asyncRefills = new AtomicLong();
+    private final AtomicLong refillWaits = new AtomicLong();
+    private final AtomicLong refillFailures = new AtomicLong();
+    private final AtomicLong retiredValues = new AtomicLong();
+
+    /**
+    Create a cached sequence with a stripe for each processor, rounded up to a
+    power of two.
+    <p>
+    @param sequence
+    the sequence from which blocks of values are reserved.
+    <p>
+    @param blockSize
+    the number of values reserved at a time.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public CachedSequence(final Sequence sequence, final int blockSize)
+        throws DatabaseException {
+
+        this(sequence, blockSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    Create a cached sequence.
+    <p>
+    @param sequence
+    the sequence from which blocks of values are reserved.
+    <p>
+    @param blockSize
+    the number of values reserved at a time.
+    <p>
+    @param stripes
+    the number of blocks from which values are handed out at once, which is
+    rounded up to a power of two.  Threads are assigned to stripes by their
+    thread IDs.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public CachedSequence(final Sequence sequence,
+                          final int blockSize,
+                          final int stripes)
+        throws DatabaseException {
+
+        if (sequence == null)
+            throw new IllegalArgumentException("sequence must not be null");
+        if (blockSize < 1)
+            throw new IllegalArgumentException("blockSize must be positive");
+        if (stripes < 1 || stripes > (1 << 16))
+            throw new IllegalArgumentException(
+                "stripes must be between 1 and 65536");
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+        decrement = (sequence.getStats(StatsConfig.DEFAULT).getFlags() &
+            DbConstants.DB_SEQ_DEC) != 0;
+
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++)
+            this.stripes[i] = new Stripe();
+        stripeMask = n - 1;
+
+        refiller = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "CachedSequence");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+    Return the sequence from which blocks of values are reserved.
+    <p>
+    @return
+    the sequence.
+    */
+    public Sequence getSequence() {
+        return sequence;
+    }
+
+    /**
+    Return the number of values reserved at a time.
+    <p>
+    @return
+    the block size.
+    */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+    Return the number of stripes.
+    <p>
+    @return
+    the number of blocks from which values are handed out at once.
+    */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+    Return the next value for the calling thread.  This method may be called
+    by any number of threads at once.
+    <p>
+    @return
+    a value of the sequence that has not been returned before, unless the
+    sequence wrapped.
+    <p>
+    @throws DatabaseException if a block of values cannot be reserved.
+    */
+    public long get()
+        throws DatabaseException {
+
+        final Stripe stripe =
+            stripes[(int)Thread.currentThread().getId() & stripeMask];
+        while (true) {
+            final Block block = stripe.block;
+            final long i = block.next.getAndIncrement();
+            if (i < block.count) {
+                if (i == block.prefetchAt)
+                    prefetch();
+                return block.value(i);
+            }
+            refill(stripe, block);
+        }
+    }
+
+    /**
+    Return statistical information about the cached sequence and the sequence.
+    <p>
+    @param config
+    The statistics returned; if null, default statistics are returned.
+    <p>
+    @return
+    Cached sequence statistics, including those of the sequence.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public CachedSequenceStats getStats(StatsConfig config)
+        throws DatabaseException {
+
+        config = StatsConfig.checkNull(config);
+        final SequenceStats seqStats = sequence.getStats(config);
+
+        long current = 0;
+        long cached = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            final Block block = stripes[i].block;
+            final long used = Math.min(block.next.get(), block.count);
+            current += used;
+            cached += block.count - used;
+        }
+        for (final Block block : spares)
+            cached += block.count;
+
+        final CachedSequenceStats stats = new CachedSequenceStats(seqStats,
+            blockSize, stripes.length, blocksReserved.get(),
+            asyncRefills.get(), refillWaits.get(), refillFailures.get(),
+            retiredValues.get() + current, cached);
+        if (config.getClear()) {
+            blocksReserved.set(0);
+            asyncRefills.set(0);
+            refillWaits.set(0);
+            refillFailures.set(0);
+            retiredValues.addAndGet(-stats.getValuesReturned());
+        }
+        return stats;
+    }
+
+    /**
+    Stop reserving blocks.  The values that were reserved but not returned
+    are lost.  The sequence is not closed.
+    <p>
+    The cached sequence may not be used again after this method has been
+    called.
+    */
+    public void close() {
+        closed = true;
+        refiller.shutdown();
+        try {
+            refiller.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Replace the exhausted block of a stripe, unless another thread has. */
+    private void refill(final Stripe stripe, final Block old)
+        throws DatabaseException {
+
+        synchronized (stripe) {
+            if (stripe.block != old)
+                return;
+            final Block block = takeBlock();
+            retiredValues.addAndGet(old.count);
+            stripe.block = block;
+        }
+    }
+
+    /* Take a spare block, or reserve one if there is none. */
+    private Block takeBlock()
+        throws DatabaseException {
+
+        if (closed)
+            throw new IllegalStateException("Cached sequence is closed");
+        Block block = spares.poll();
+        if (block == null) {
+            refillWaits.incrementAndGet();
+            block = awaitSpare();
+        }
+        if (block != null)
+            spareCount.decrementAndGet();
+        else
+            block = reserve();
+        prefetch();
+        return block;
+    }
+
+    /*
+     * Wait for a background refill that is in progress, rather than reserve
+     * another block, which would be handed out before the one being
+     * reserved.
+     */
+    private Block awaitSpare() {
+        boolean interrupted = false;
+        Block block;
+        synchronized (refilling) {
+            while ((block = spares.poll()) == null && refilling.get()) {
+                try {
+                    refilling.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return block;
+    }
+
+    /* Reserve spare blocks in the background, if they are needed. */
+    private void prefetch() {
+        if (closed || spareCount.get() >= SPARE_BLOCKS ||
+            !refilling.compareAndSet(false, true))
+            return;
+        try {
+            refiller.execute(new Runnable() {
+                public void run() {
+                    try {
+                        while (!closed && spareCount.get() < SPARE_BLOCKS) {
+                            final Block block = reserve();
+                            spareCount.incrementAndGet();
+                            asyncRefills.incrementAndGet();
+                            synchronized (refilling) {
+                                spares.add(block);
+                                refilling.notifyAll();
+                            }
+                        }
+                    } catch (Exception e) {
+                        /* The next thread that runs out reports the error. */
+                        refillFailures.incrementAndGet();
+                    } finally {
+                        synchronized (refilling) {
+                            refilling.set(false);
+                            refilling.notifyAll();
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refilling.set(false);
+        }
+    }
+
+    private Block reserve()
+        throws DatabaseException {
+
+        final long first = sequence.get(null, blockSize);
+        blocksReserved.incrementAndGet();
+        return new Block(first, decrement ? -1 : 1, blockSize);
+    }
+
+    /* A block of values, handed out in order by an atomic index. */
+    private static final class Block {
+        final long first;
+        final int step;
+        final long count;
+        final long prefetchAt;
+        final AtomicLong next = new AtomicLong();
+
+        Block(final long first, final int step, final long count) {
+            this.first = first;
+            this.step = step;
+            this.count = count;
+            prefetchAt = count - count / 4 - 1;
+        }
+
+        long value(final long i) {
+            return first + step * i;
+        }
+    }
+
+    /* The block from which a group of threads take values. */
+    private static final class Stripe {
+        volatile Block block = EMPTY;
+    }
+}
@@ -0,0 +1,165 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+A CachedSequenceStats object is used to return the statistics of a
+{@link com.sleepycat.db.CachedSequence CachedSequence}.  The statistics of
+the sequence from which it reserves blocks are returned by the methods
+inherited from SequenceStats.
+*/
+public class CachedSequenceStats extends SequenceStats {
+    private final SequenceStats seqStats;
+
+    /* package */ CachedSequenceStats(final SequenceStats seqStats,
+                                      final int block_size,
+                                      final int stripes,
+                                      final long blocks_reserved,
+                                      final long async_refills,
+                                      final long refill_waits,
+                                      final long refill_failures,
+                                      final long values_returned,
+                                      final long values_cached) {
+        this.seqStats = seqStats;
+        this.block_size = block_size;
+        this.stripes = stripes;
+        this.blocks_reserved = blocks_reserved;
+        this.async_refills = async_refills;
+        this.refill_waits = refill_waits;
+        this.refill_failures = refill_failures;
+        this.values_returned = values_returned;
+        this.values_cached = values_cached;
+    }
+
+    /** {@inheritDoc} */
+    public long getWait() {
+        return seqStats.getWait();
+    }
+
+    /** {@inheritDoc} */
+    public long getNowait() {
+        return seqStats.getNowait();
+    }
+
+    /** {@inheritDoc} */
+    public long getCurrent() {
+        return seqStats.getCurrent();
+    }
+
+    /** {@inheritDoc} */
+    public long getValue() {
+        return seqStats.getValue();
+    }
+
+    /** {@inheritDoc} */
+    public long getLastValue() {
+        return seqStats.getLastValue();
+    }
+
+    /** {@inheritDoc} */
+    public long getMin() {
+        return seqStats.getMin();
+    }
+
+    /** {@inheritDoc} */
+    public long getMax() {
+        return seqStats.getMax();
+    }
+
+    /** {@inheritDoc} */
+    public int getCacheSize() {
+        return seqStats.getCacheSize();
+    }
+
+    /** {@inheritDoc} */
+    public int getFlags() {
+        return seqStats.getFlags();
+    }
+
+    private final int block_size;
+    /**
+    The number of values reserved from the sequence at a time.
+    */
+    public int getBlockSize() {
+        return block_size;
+    }
+
+    private final int stripes;
+    /**
+    The number of blocks from which values are handed out at once.
+    */
+    public int getStripes() {
+        return stripes;
+    }
+
+    private final long blocks_reserved;
+    /**
+    The number of blocks reserved from the sequence.
+    */
+    public long getBlocksReserved() {
+        return blocks_reserved;
+    }
+
+    private final long async_refills;
+    /**
+    The number of blocks reserved in the background before they were needed.
+    */
+    public long getAsyncRefills() {
+        return async_refills;
+    }
+
+    private final long refill_waits;
+    /**
+    The number of times a thread found no spare block and waited while one
+    was reserved from the sequence.
+    */
+    public long getRefillWaits() {
+        return refill_waits;
+    }
+
+    private final long refill_failures;
+    /**
+    The number of times reserving a block in the background failed.
+    */
+    public long getRefillFailures() {
+        return refill_failures;
+    }
+
+    private final long values_returned;
+    /**
+    The number of values returned by the cached sequence.
+    */
+    public long getValuesReturned() {
+        return values_returned;
+    }
+
+    private final long values_cached;
+    /**
+    The number of values reserved from the sequence that have not been
+    returned.
+    */
+    public long getValuesCached() {
+        return values_cached;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return "CachedSequenceStats:"
+            + "\n  block_size=" + block_size
+            + "\n  stripes=" + stripes
+            + "\n  blocks_reserved=" + blocks_reserved
+            + "\n  async_refills=" + async_refills
+            + "\n  refill_waits=" + refill_waits
+            + "\n  refill_failures=" + refill_failures
+            + "\n  values_returned=" + values_returned
+            + "\n  values_cached=" + values_cached
+            + "\n" + seqStats
+            ;
+    }
+}
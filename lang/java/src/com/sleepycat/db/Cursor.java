@@ -1203,6 +1203,43 @@ deadlock.
         dbc.set_priority(priority.getFlag());
     }
 
+    /**
+    Start a bulk scan over the key/data pairs of the database.
+    <p>
+    The scan reads pairs a batch at a time into a reusable bulk buffer,
+    growing the buffer when a batch does not fit, and optionally reads the
+    next batch on a background thread while the current one is consumed.
+    See {@link com.sleepycat.db.ScanBatch ScanBatch} for details.
+    <p>
+    If neither key is specified and the cursor is already positioned, the
+    scan starts with the pair following the cursor position.
+    <p>
+    @param fromKey
+    the smallest key returned by the scan, or null to start at the first
+    key of the database.
+    <p>
+    @param toKey
+    the key at which the scan ends, exclusive, or null to scan to the end of
+    the database.  This parameter may only be used with Btree databases.
+    <p>
+    @param config
+    The scan attributes.  If null, default attributes are used.
+    <p>
+    @return
+    A scan that returns the pairs of the range.  The scan must be closed
+    before the cursor is used again.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public ScanBatch scan(final DatabaseEntry fromKey,
+                          final DatabaseEntry toKey,
+                          final BatchConfig config)
+        throws DatabaseException {
+
+        return new ScanBatch(this, fromKey, toKey,
+            BatchConfig.checkNull(config));
+    }
+
     /**
     Return a database stream pointing to a key/data pair where the data item
     is a blob.
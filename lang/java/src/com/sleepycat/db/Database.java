@@ -302,6 +302,73 @@ it will be closed when the environment handle that owns the database handle is c
             db, (txn == null) ? null : txn.txn), config);
     }
 
+    /**
+    Open a writer that gathers individual put and delete operations from
+    any number of threads and applies them to this database in batches.
+    <p>
+    The writer must be closed before the database is closed.
+    <p>
+    @param config
+    The writer attributes.  If null, default attributes are used.
+    <p>
+    @return
+    A new writer for this database.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public BatchWriter openBatchWriter(final BatchWriterConfig config)
+        throws DatabaseException {
+
+        return new BatchWriter(this, BatchWriterConfig.checkNull(config));
+    }
+
+    /**
+    Open a loader that fills this database from key/data pairs supplied in
+    key order.  The database must be an empty Btree.
+    <p>
+    The loader must be closed before the database is closed.
+    <p>
+    @param config
+    The loader attributes.  If null, default attributes are used.
+    <p>
+    @return
+    A new loader for this database.
+    <p>
+    @throws IllegalArgumentException if the database is not a Btree.
+    <p>
+    @throws IllegalStateException if the database is not empty.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public BulkLoader openBulkLoader(final BulkLoaderConfig config)
+        throws DatabaseException {
+
+        return new BulkLoader(this, BulkLoaderConfig.checkNull(config));
+    }
+
+    /**
+    Open a sorter that puts unsorted key/data pairs into the order of this
+    database, spilling sorted runs to temporary files, so that they can be
+    written in key order.  The database must be a Btree.
+    <p>
+    The sorter must be closed to remove its temporary files.
+    <p>
+    @param config
+    The sorter attributes.  If null, default attributes are used.
+    <p>
+    @return
+    A new sorter for this database.
+    <p>
+    @throws IllegalArgumentException if the database is not a Btree.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public ExternalSorter openExternalSorter(final ExternalSorterConfig config)
+        throws DatabaseException {
+
+        return new ExternalSorter(this, ExternalSorterConfig.checkNull(config));
+    }
+
     /**
     Open a sequence represented by the key in the database.
     <p>
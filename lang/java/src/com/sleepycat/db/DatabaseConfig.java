@@ -86,6 +86,7 @@ public class DatabaseConfig implements Cloneable {
     /* Callbacks */
     private java.util.Comparator btreeComparator = null;
     private BtreeCompressor btreeCompressor = null;
+    private boolean btreeCompressDefault = false;
     private BtreePrefixCalculator btreePrefixCalculator = null;
     private java.util.Comparator duplicateComparator = null;
     private FeedbackHandler feedbackHandler = null;
@@ -215,6 +216,9 @@ True if the {@link com.sleepycat.db.Environment#openDatabase Environment.openDat
     organized in the byte array, then you can write a comparison routine that
     directly examines the contents of the arrays. Otherwise, you have to
     reconstruct your original objects, and then perform the comparison.
+    <p>
+    If the keys have a fixed layout, a {@link NativeComparator} compares
+    them without calling into Java.
     */
     public void setBtreeComparator(final java.util.Comparator btreeComparator) {
         this.btreeComparator = btreeComparator;
@@ -347,6 +351,47 @@ database has been opened.
         return btreeCompressor;
     }
 
+    /**
+    Configure the Btree to use the library's built-in compression.
+    <p>
+    Each key is stored as the length of the prefix it shares with the
+    previous key followed by the rest of the key, and the data of a
+    duplicate is stored the same way against the previous data item.  The
+    compression is done by the library without calling into Java.  It is
+    byte-oriented: it does not decode tuple formats, but keys written with
+    the sorted formats of {@link com.sleepycat.bind.tuple.TupleOutput
+    TupleOutput} that have equal leading fields share leading bytes, and so
+    compress well.
+    <p>
+    Compression may not be configured with
+    {@link #setBtreeCompressor BtreeCompressor} callbacks, with unsorted
+    duplicates or with record numbers.
+    <p>
+    If the database already exists when the database is opened, any database
+configuration specified by this method
+must be the same as the existing database or an error
+will be returned.
+    <p>
+    @param btreeCompressDefault
+    If true, configure the Btree to use the built-in compression.
+    */
+    public void setBtreeCompressDefault(final boolean btreeCompressDefault) {
+        this.btreeCompressDefault = btreeCompressDefault;
+    }
+
+    /**
+Return true if the Btree is configured to use the library's built-in
+compression.
+<p>
+This method may be called at any time during the life of the application.
+<p>
+@return
+True if the Btree is configured to use the built-in compression.
+    */
+    public boolean getBtreeCompressDefault() {
+        return btreeCompressDefault;
+    }
+
     /**
     Set the Btree prefix callback.  The prefix callback is used to determine
     the amount by which keys stored on the Btree internal pages can be
@@ -363,6 +408,10 @@ database has been opened.
     callback is specified, no prefix function is used.  It is an error to
     specify a prefix function without also specifying a Btree key comparison
     function.
+    <p>
+    If the key comparison callback is a {@link NativeComparator}, a
+    {@link NativePrefixCalculator} calculates prefixes without calling into
+    Java.
     */
     public void setBtreePrefixCalculator(
             final BtreePrefixCalculator btreePrefixCalculator) {
@@ -620,6 +669,9 @@ True if the database is configured to support read uncommitted.
     examines the contents of the arrays.  Otherwise, you have to
     reconstruct your original objects, and then perform the comparison.
     <p>
+    If the data items have a fixed layout, a {@link NativeComparator}
+    compares them without calling into Java.
+    <p>
     @param duplicateComparator
     the comparison callback for duplicate data items.
     */
@@ -908,6 +960,9 @@ The hash table density.
     organized in the byte array, then you can write a comparison routine that
     directly examines the contents of the arrays. Otherwise, you have to
     reconstruct your original objects, and then perform the comparison.
+    <p>
+    If the keys have a fixed layout, a {@link NativeComparator} compares
+    them without calling into Java.
     */
     public void setHashComparator(final java.util.Comparator hashComparator) {
         this.hashComparator = hashComparator;
@@ -2408,20 +2463,44 @@ database has been opened.
             oldConfig.noWaitDbExclusiveLock != noWaitDbExclusiveLock)
             db.set_lk_exclusive(noWaitDbExclusiveLock ? 1 : 0);
 
-        if (btreeComparator != oldConfig.btreeComparator)
+        if (btreeComparator != oldConfig.btreeComparator) {
             db.set_bt_compare(btreeComparator);
+            db.set_compare_spec(Db.BT_COMPARE_SPEC,
+                nativeSpec(btreeComparator));
+        }
+        if (btreeCompressDefault && btreeCompressor != null)
+            throw new IllegalArgumentException(
+                "BtreeCompressDefault may not be used with a BtreeCompressor");
         if (btreeCompressor != oldConfig.btreeCompressor)
             db.set_bt_compress(btreeCompressor, btreeCompressor);
-        if (btreePrefixCalculator != oldConfig.btreePrefixCalculator)
+        if (btreeCompressDefault && !oldConfig.btreeCompressDefault)
+            db.set_bt_compress_default();
+        if (btreePrefixCalculator != oldConfig.btreePrefixCalculator) {
+            if (btreePrefixCalculator instanceof NativePrefixCalculator &&
+                !((NativePrefixCalculator)btreePrefixCalculator).
+                getComparator().equals(btreeComparator))
+                throw new IllegalArgumentException(
+                    "NativePrefixCalculator is not for the btree comparator");
             db.set_bt_prefix(btreePrefixCalculator);
-        if (duplicateComparator != oldConfig.duplicateComparator)
+            db.set_compare_spec(Db.BT_PREFIX_SPEC,
+                (btreePrefixCalculator instanceof NativePrefixCalculator) ?
+                ((NativePrefixCalculator)btreePrefixCalculator).
+                getComparator().getSpec() : null);
+        }
+        if (duplicateComparator != oldConfig.duplicateComparator) {
             db.set_dup_compare(duplicateComparator);
+            db.set_compare_spec(Db.DUP_COMPARE_SPEC,
+                nativeSpec(duplicateComparator));
+        }
         if (feedbackHandler != oldConfig.feedbackHandler)
             db.set_feedback(feedbackHandler);
         if (errorHandler != oldConfig.errorHandler)
             db.set_errcall(errorHandler);
-        if (hashComparator != oldConfig.hashComparator)
+        if (hashComparator != oldConfig.hashComparator) {
             db.set_h_compare(hashComparator);
+            db.set_compare_spec(Db.H_COMPARE_SPEC,
+                nativeSpec(hashComparator));
+        }
         if (hasher != oldConfig.hasher)
             db.set_h_hash(hasher);
         if (messageHandler != oldConfig.messageHandler)
@@ -2436,6 +2515,15 @@ database has been opened.
             db.set_paniccall(panicHandler);
     }
 
+    /*
+     * A NativeComparator is also described to the library, which then
+     * compares keys itself rather than calling the comparator.
+     */
+    private static byte[] nativeSpec(final java.util.Comparator comparator) {
+        return (comparator instanceof NativeComparator) ?
+            ((NativeComparator)comparator).getSpec() : null;
+    }
+
     /* package */
     DatabaseConfig(final Db db)
         throws DatabaseException {
@@ -2523,6 +2611,7 @@ database has been opened.
 
         btreeComparator = db.get_bt_compare();
         btreeCompressor = db.get_bt_compress();
+        btreeCompressDefault = db.get_bt_compress_default();
         btreePrefixCalculator = db.get_bt_prefix();
         duplicateComparator = db.get_dup_compare();
         feedbackHandler = db.get_feedback();
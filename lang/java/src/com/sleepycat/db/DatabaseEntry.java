@@ -105,6 +105,7 @@ public class DatabaseEntry {
     /* Currently, JE stores all data records as byte array */
     /* package */ byte[] data;
     /* package */ ByteBuffer data_nio;
+    /* package */ DirectBufferPool pool;
     /* package */ int dlen = 0;
     /* package */ int doff = 0;
     /* package */ int flags = 0;
@@ -272,6 +273,7 @@ public class DatabaseEntry {
     Number of bytes in the byte array to be included.
     */
     public void setData(final byte[] data, final int offset, final int size) {
+        releasePooled(null);
         this.data = data;
         this.offset = offset;
         this.size = size;
@@ -306,6 +308,7 @@ public class DatabaseEntry {
     */
     public void setDataNIO(final ByteBuffer data, final int offset, final int size) {
         if (data == null) {
+            releasePooled(null);
             data_nio = null;
             this.data = null;
             this.offset = 0;
@@ -314,6 +317,7 @@ public class DatabaseEntry {
         } else if (data.hasArray()) {
             setData(data.array(), offset + data.arrayOffset(), size);
         } else {
+            releasePooled(data);
             data_nio = data;
             this.offset = offset;
             this.size = size;
@@ -344,6 +348,66 @@ public class DatabaseEntry {
             setDataNIO(data, data.position(), data.limit() - data.position());
     }
 
+    /**
+    Borrow a direct java.nio.ByteBuffer from a pool and wrap it in this
+    DatabaseEntry.  The offset and size are set to zero and the entry is
+    configured with an application-owned buffer of at least the requested
+    length, so it can be used directly as an output parameter.  For input,
+    write the data into the buffer returned by {@link #getDataNIO} and call
+    {@link #setSize}.
+    <p>
+    The buffer is handed back to the pool when {@link #releaseDataNIO} is
+    called or when the entry is given other data; it must not be used after
+    that.
+    <p>
+    Borrowing is always explicit.  An entry that wraps a byte array, or has
+    no data, is still copied through the Java heap by get and put calls; the
+    library does not switch it to a pooled buffer, because its data would
+    then no longer be returned by {@link #getData}.
+    <p>
+    @param pool
+    the pool from which the buffer is borrowed.
+    @param length
+    the minimum length in bytes of the buffer.
+    */
+    public void borrowDataNIO(final DirectBufferPool pool, final int length) {
+        final ByteBuffer buf = pool.acquire(length);
+        setDataNIO(buf, 0, 0);
+        this.pool = pool;
+    }
+
+    /**
+    Hand a buffer borrowed with {@link #borrowDataNIO} back to its pool and
+    set the data of this entry to null.  This method does nothing if the
+    entry does not hold a borrowed buffer.
+    */
+    public void releaseDataNIO() {
+        if (pool != null)
+            setDataNIO(null, 0, 0);
+    }
+
+    /**
+    Return the pool from which the buffer held by this entry was borrowed
+    with {@link #borrowDataNIO}, or null if the entry does not hold a
+    borrowed buffer.  A borrowed buffer belongs to the entry until it is
+    released, so it may be overwritten from its start.
+    <p>
+    @return
+    the pool from which the buffer was borrowed, or null.
+    */
+    public DirectBufferPool getDataNIOPool() {
+        return pool;
+    }
+
+    /* Return a borrowed buffer to its pool unless it is being kept. */
+    private void releasePooled(final ByteBuffer keep) {
+        if (pool != null && data_nio != keep) {
+            final DirectBufferPool p = pool;
+            pool = null;
+            p.release(data_nio);
+        }
+    }
+
     /**
      * This method is called just before performing a get operation.  It is
      * overridden by Multiple*Entry classes to return the flags used for bulk
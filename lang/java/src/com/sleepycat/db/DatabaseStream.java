@@ -8,6 +8,9 @@
 
 package com.sleepycat.db;
 
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
 import com.sleepycat.db.internal.DbConstants;
 import com.sleepycat.db.internal.DbStream;
 
@@ -28,8 +31,16 @@ use a DatabaseStreamConfig object.
     config.setReadOnly(true);
     DatabaseStream dbs = myCursor.openDatabaseStream(config);
 </pre></blockquote>
+To read or write a large blob in chunks, or to send it to a socket, use
+the adapters returned by {@link #openInputStream} and
+{@link #openOutputStream}, or {@link #transferTo}.
 */
 public class DatabaseStream {
+    /**
+    The chunk size used by the stream adapters when none is given, in bytes.
+    */
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
     /* package */ DbStream dbs;
     /* package */ Cursor cursor;
     /* package */ DatabaseStreamConfig config;
@@ -156,4 +167,105 @@ public class DatabaseStream {
         return OperationStatus.fromInt(dbs.write(data, offset, 0));
     }
 
+    /**
+    Return an InputStream and ReadableByteChannel that reads the blob from
+    the given offset, a chunk at a time.
+    <p>
+    @param offset the position in bytes in the blob where the reading starts.
+    <p>
+    @param chunkSize the number of bytes read from the blob by each call to
+    the native library, or zero to use {@link #DEFAULT_CHUNK_SIZE}.
+    <p>
+    @return the input, which should be closed to hand its buffer back to
+    the pool.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public DatabaseStreamInput openInputStream(long offset, int chunkSize)
+        throws DatabaseException {
+
+        checkArgs(offset, chunkSize);
+        return new DatabaseStreamInput(this, offset, Long.MAX_VALUE,
+            (chunkSize == 0) ? DEFAULT_CHUNK_SIZE : chunkSize);
+    }
+
+    /**
+    Return an OutputStream and WritableByteChannel that writes the blob from
+    the given offset, a chunk at a time.
+    <p>
+    @param offset the position in bytes in the blob where the writing starts.
+    <p>
+    @param chunkSize the number of bytes written to the blob by each call to
+    the native library, or zero to use {@link #DEFAULT_CHUNK_SIZE}.
+    <p>
+    @return the output, which must be flushed or closed for the last bytes
+    to be written.
+    */
+    public DatabaseStreamOutput openOutputStream(long offset, int chunkSize) {
+        checkArgs(offset, chunkSize);
+        return new DatabaseStreamOutput(this, offset,
+            (chunkSize == 0) ? DEFAULT_CHUNK_SIZE : chunkSize);
+    }
+
+    /**
+    Write bytes of the blob to a channel.
+    <p>
+    The bytes are read in chunks of {@link #DEFAULT_CHUNK_SIZE} into a pooled
+    direct buffer and written from it to the target, so they are not copied
+    onto the Java heap.  The target should be in blocking mode.
+    <p>
+    @param offset the position in bytes in the blob of the first byte to
+    write.
+    <p>
+    @param count the maximum number of bytes to write.
+    <p>
+    @param target the channel to which the bytes are written.
+    <p>
+    @return the number of bytes written, which is less than count if the end
+    of the blob is reached.
+    <p>
+    @throws IOException if the target cannot be written.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public long transferTo(long offset,
+                           long count,
+                           WritableByteChannel target)
+        throws DatabaseException, IOException {
+
+        checkArgs(offset, 0);
+        if (count < 0)
+            throw new IllegalArgumentException("count must not be negative");
+        final long end = (count > Long.MAX_VALUE - offset) ?
+            Long.MAX_VALUE : offset + count;
+        final DatabaseStreamInput input =
+            new DatabaseStreamInput(this, offset, end, DEFAULT_CHUNK_SIZE);
+        try {
+            return input.transferTo(target);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void checkArgs(long offset, int chunkSize) {
+        if (offset < 0)
+            throw new IllegalArgumentException(
+                "offset must not be negative");
+        if (chunkSize < 0)
+            throw new IllegalArgumentException(
+                "chunkSize must not be negative");
+    }
+
+    /* Return the pool of the cursor's environment, if it has one. */
+    static DirectBufferPool getBufferPool(final DatabaseStream dbs) {
+        Environment env = null;
+        try {
+            env = dbs.cursor.getDatabase().getEnvironment();
+        } catch (DatabaseException e) {
+            /* Fall through to use a pool for this stream alone. */
+        }
+        return (env != null) ? env.getDirectBufferPool() :
+            new DirectBufferPool();
+    }
+
 }
@@ -0,0 +1,232 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.sleepycat.util.IOExceptionWrapper;
+
+/**
+An InputStream and ReadableByteChannel over the blob accessed by a
+{@link com.sleepycat.db.DatabaseStream DatabaseStream}.
+<p>
+The blob is read ahead in chunks into a direct buffer borrowed from the
+environment's {@link com.sleepycat.db.DirectBufferPool DirectBufferPool}, so
+small reads do not each call into the native library, and the native library
+copies each chunk straight into the direct buffer rather than into a new
+byte array.  A read into a direct ByteBuffer with room for at least a chunk
+bypasses the buffer and is passed to the native library as is.  To send a
+blob to a socket or file, use {@link #transferTo}, which writes each chunk
+from the direct buffer to the target channel without copying it onto the
+Java heap.
+<p>
+The input is obtained by calling
+{@link com.sleepycat.db.DatabaseStream#openInputStream
+DatabaseStream.openInputStream}.  The size of the blob is read when the input
+is opened; bytes written to the blob after that are not returned.  Closing
+the input hands its buffer back to the pool but does not close the database
+stream.
+<p>
+Like the database stream, this class must not be used by more than one
+thread at a time.
+*/
+public class DatabaseStreamInput extends InputStream
+    implements ReadableByteChannel {
+
+    private final DatabaseStream dbs;
+    private final long end;
+    private long readOffset;
+    private DatabaseEntry chunk;
+    private ByteBuffer buffer;
+
+    DatabaseStreamInput(final DatabaseStream dbs,
+                        final long offset,
+                        final long end,
+                        final int chunkSize)
+        throws DatabaseException {
+
+        this.dbs = dbs;
+        this.end = Math.min(end, dbs.size());
+        readOffset = offset;
+        chunk = new DatabaseEntry();
+        chunk.borrowDataNIO(DatabaseStream.getBufferPool(dbs), chunkSize);
+        buffer = chunk.getDataNIO();
+        buffer.limit(0);
+    }
+
+    /**
+    Return the position in the blob of the next byte to be read.
+    <p>
+    @return
+    the offset in bytes of the next byte to be read.
+    */
+    public long getPosition() {
+        return readOffset - ((buffer != null) ? buffer.remaining() : 0);
+    }
+
+    public int read()
+        throws IOException {
+
+        checkOpen();
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get() & 0xff;
+    }
+
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+
+        checkOpen();
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        final int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    public int read(final ByteBuffer dst)
+        throws IOException {
+
+        if (buffer == null)
+            throw new ClosedChannelException();
+        if (!dst.hasRemaining())
+            return 0;
+        if (!buffer.hasRemaining() && dst.isDirect() &&
+            dst.remaining() >= buffer.capacity()) {
+            /* Read straight into the caller's direct buffer. */
+            final int n = (int)Math.min(dst.remaining(), end - readOffset);
+            if (n <= 0)
+                return -1;
+            final int got = readChunk(new DatabaseEntry(dst), n);
+            dst.position(dst.position() + got);
+            return got;
+        }
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return copy(buffer, dst);
+    }
+
+    public long skip(final long n)
+        throws IOException {
+
+        checkOpen();
+        if (n <= 0)
+            return 0;
+        final int buffered = (int)Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + buffered);
+        final long skipped = Math.min(n - buffered, end - readOffset);
+        if (skipped > 0)
+            readOffset += skipped;
+        return buffered + Math.max(skipped, 0);
+    }
+
+    public int available()
+        throws IOException {
+
+        checkOpen();
+        return buffer.remaining();
+    }
+
+    /**
+    Write the rest of the blob to a channel.
+    <p>
+    Each chunk is read into the direct buffer of this input and written from
+    it to the target, so the bytes are not copied onto the Java heap.  The
+    target should be in blocking mode; a non-blocking channel that accepts
+    no bytes is retried until it does.
+    <p>
+    @param target
+    the channel to which the bytes are written.
+    <p>
+    @return
+    the number of bytes written.
+    <p>
+    @throws IOException if the blob cannot be read or the target cannot be
+    written.
+    */
+    public long transferTo(final WritableByteChannel target)
+        throws IOException {
+
+        checkOpen();
+        long count = 0;
+        while (buffer.hasRemaining() || fill()) {
+            while (buffer.hasRemaining())
+                count += target.write(buffer);
+        }
+        return count;
+    }
+
+    public boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+    Hand the buffer of this input back to the pool.  The database stream is
+    not closed.
+    */
+    public void close() {
+        if (chunk != null) {
+            buffer = null;
+            chunk.releaseDataNIO();
+            chunk = null;
+        }
+    }
+
+    /* Read the next chunk into the buffer, or return false at the end. */
+    private boolean fill()
+        throws IOException {
+
+        final int n = (int)Math.min(buffer.capacity(), end - readOffset);
+        if (n <= 0)
+            return false;
+        final int got = readChunk(chunk, n);
+        buffer.clear();
+        buffer.limit(got);
+        return got > 0;
+    }
+
+    private int readChunk(final DatabaseEntry entry, final int n)
+        throws IOException {
+
+        try {
+            dbs.read(entry, readOffset, n);
+        } catch (DatabaseException e) {
+            throw new IOExceptionWrapper(e);
+        }
+        final int got = entry.getSize();
+        readOffset += got;
+        return got;
+    }
+
+    private void checkOpen()
+        throws IOException {
+
+        if (buffer == null)
+            throw new IOException("Stream is closed");
+    }
+
+    /* Copy as many bytes as fit from src to dst. */
+    static int copy(final ByteBuffer src, final ByteBuffer dst) {
+        final int n = Math.min(src.remaining(), dst.remaining());
+        final int limit = src.limit();
+        src.limit(src.position() + n);
+        dst.put(src);
+        src.limit(limit);
+        return n;
+    }
+}
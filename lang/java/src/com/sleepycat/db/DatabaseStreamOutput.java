@@ -0,0 +1,181 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import com.sleepycat.util.IOExceptionWrapper;
+
+/**
+An OutputStream and WritableByteChannel over the blob accessed by a
+{@link com.sleepycat.db.DatabaseStream DatabaseStream}.
+<p>
+Bytes are collected in a direct buffer borrowed from the environment's
+{@link com.sleepycat.db.DirectBufferPool DirectBufferPool} and written to
+the blob a chunk at a time, when the buffer is full or when {@link #flush}
+or {@link #close} is called.  The native library reads each chunk straight
+from the direct buffer.  A write from a direct ByteBuffer of at least a
+chunk, when nothing is buffered, is passed to the native library as is.
+<p>
+The output is obtained by calling
+{@link com.sleepycat.db.DatabaseStream#openOutputStream
+DatabaseStream.openOutputStream}.  Buffered bytes are not visible to reads
+of the blob until they are flushed.  Closing the output flushes it and
+hands its buffer back to the pool, but does not close the database stream.
+<p>
+Like the database stream, this class must not be used by more than one
+thread at a time.
+*/
+public class DatabaseStreamOutput extends OutputStream
+    implements WritableByteChannel {
+
+    private final DatabaseStream dbs;
+    private long writeOffset;
+    private DatabaseEntry chunk;
+    private ByteBuffer buffer;
+
+    DatabaseStreamOutput(final DatabaseStream dbs,
+                         final long offset,
+                         final int chunkSize) {
+        this.dbs = dbs;
+        writeOffset = offset;
+        chunk = new DatabaseEntry();
+        chunk.borrowDataNIO(DatabaseStream.getBufferPool(dbs), chunkSize);
+        buffer = chunk.getDataNIO();
+        buffer.clear();
+    }
+
+    /**
+    Return the position in the blob at which the next byte will be written.
+    <p>
+    @return
+    the offset in bytes of the next byte to be written.
+    */
+    public long getPosition() {
+        return writeOffset + ((buffer != null) ? buffer.position() : 0);
+    }
+
+    public void write(final int b)
+        throws IOException {
+
+        checkOpen();
+        if (!buffer.hasRemaining())
+            flushBuffer();
+        buffer.put((byte)b);
+    }
+
+    public void write(final byte[] b, int off, int len)
+        throws IOException {
+
+        checkOpen();
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        while (len > 0) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            final int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public int write(final ByteBuffer src)
+        throws IOException {
+
+        if (buffer == null)
+            throw new ClosedChannelException();
+        final int count = src.remaining();
+        if (buffer.position() == 0 && src.isDirect() &&
+            count >= buffer.capacity()) {
+            /* Write straight from the caller's direct buffer. */
+            writeChunk(new DatabaseEntry(src));
+            src.position(src.limit());
+            return count;
+        }
+        while (src.hasRemaining()) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            DatabaseStreamInput.copy(src, buffer);
+        }
+        return count;
+    }
+
+    /**
+    Write the buffered bytes to the blob.
+    <p>
+    @throws IOException if the blob cannot be written.
+    */
+    public void flush()
+        throws IOException {
+
+        checkOpen();
+        flushBuffer();
+    }
+
+    public boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+    Write the buffered bytes to the blob and hand the buffer of this output
+    back to the pool.  The database stream is not closed.
+    <p>
+    @throws IOException if the blob cannot be written.
+    */
+    public void close()
+        throws IOException {
+
+        if (chunk != null) {
+            try {
+                flushBuffer();
+            } finally {
+                buffer = null;
+                chunk.releaseDataNIO();
+                chunk = null;
+            }
+        }
+    }
+
+    private void flushBuffer()
+        throws IOException {
+
+        final int n = buffer.position();
+        if (n == 0)
+            return;
+        chunk.setSize(n);
+        writeChunk(chunk);
+        buffer.clear();
+    }
+
+    private void writeChunk(final DatabaseEntry entry)
+        throws IOException {
+
+        final OperationStatus status;
+        try {
+            status = dbs.write(entry, writeOffset);
+        } catch (DatabaseException e) {
+            throw new IOExceptionWrapper(e);
+        }
+        if (status != OperationStatus.SUCCESS)
+            throw new IOException("Blob write failed: " + status);
+        writeOffset += entry.getSize();
+    }
+
+    private void checkOpen()
+        throws IOException {
+
+        if (buffer == null)
+            throw new IOException("Stream is closed");
+    }
+}
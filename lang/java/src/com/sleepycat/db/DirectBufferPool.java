@@ -0,0 +1,294 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+A pool of direct java.nio.ByteBuffers for use with
+{@link com.sleepycat.db.DatabaseEntry DatabaseEntry}.
+<p>
+A DatabaseEntry that wraps a direct ByteBuffer passes its memory straight
+to the native library, whereas one that wraps a byte array is copied into
+and out of the Java heap on every call.  Allocating a direct buffer is
+expensive, however, so this pool recycles them:
+<blockquote><pre>
+    DirectBufferPool pool = env.getDirectBufferPool();
+    DatabaseEntry data = new DatabaseEntry();
+    data.borrowDataNIO(pool, 4096);
+    try {
+        db.get(txn, key, data, null);
+        ...
+    } finally {
+        data.releaseDataNIO();
+    }
+</pre></blockquote>
+<p>
+Entries only use the pool when they borrow from it with
+{@link com.sleepycat.db.DatabaseEntry#borrowDataNIO DatabaseEntry.borrowDataNIO};
+entries that wrap byte arrays are still copied.
+<p>
+Buffers are grouped in power-of-two size classes.  Each thread keeps a few
+buffers of each class for itself, so most borrow and release calls do not
+touch any shared state; the remainder are kept on shared lists.  The total
+size of the buffers held by the pool, including those kept by threads, is
+bounded.  When the limit is reached, the buffers kept by threads that have
+exited are dropped from the pool and no longer count towards it.  Requests
+larger than the largest size class are allocated on demand and not pooled.
+<p>
+This class is thread safe.
+*/
+public class DirectBufferPool {
+    /** The smallest size class, in bytes. */
+    public static final int MIN_BUFFER_SIZE = 1024;
+
+    /** The default largest size class, in bytes. */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /** The default limit on the bytes held by the pool. */
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    /* The number of buffers of each class kept by each thread. */
+    private static final int THREAD_CACHE_SIZE = 4;
+
+    private final int maxBufferSize;
+    private final long maxPooledBytes;
+    private final int classes;
+    private volatile Generation current;
+    private final ThreadLocal<ThreadCache> threadCache =
+        new ThreadLocal<ThreadCache>();
+
+    /**
+    Construct a pool with the default size limits.
+    */
+    public DirectBufferPool() {
+        this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+    Construct a pool with the given size limits.
+    <p>
+    @param maxBufferSize
+    the largest size class; it is rounded up to a power of two.  Larger
+    requests are allocated on demand and not pooled.
+    <p>
+    @param maxPooledBytes
+    the limit on the total size of the buffers held by the pool, including
+    those kept by individual threads.
+    */
+    public DirectBufferPool(final int maxBufferSize,
+                            final long maxPooledBytes) {
+        if (maxBufferSize < MIN_BUFFER_SIZE)
+            throw new IllegalArgumentException(
+                "maxBufferSize must be at least " + MIN_BUFFER_SIZE);
+        if (maxPooledBytes < 0)
+            throw new IllegalArgumentException(
+                "maxPooledBytes must not be negative");
+        this.classes = sizeClass(maxBufferSize) + 1;
+        this.maxBufferSize = MIN_BUFFER_SIZE << (classes - 1);
+        this.maxPooledBytes = maxPooledBytes;
+        this.current = new Generation(classes);
+    }
+
+    /**
+    Return a direct buffer with room for at least the given number of bytes.
+    The buffer's position is zero and its limit is the requested size.
+    <p>
+    @param size
+    the number of bytes needed.
+    <p>
+    @return
+    a direct buffer, which should be handed back with {@link #release}
+    when it is no longer needed.
+    */
+    public ByteBuffer acquire(final int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must not be negative");
+        if (size > maxBufferSize)
+            return ByteBuffer.allocateDirect(size);
+
+        final int sc = sizeClass(size);
+        final ThreadCache cache = getThreadCache();
+        final ByteBuffer[] local = cache.buffers[sc];
+        ByteBuffer buf = null;
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] != null) {
+                buf = local[i];
+                local[i] = null;
+                break;
+            }
+        }
+        if (buf == null)
+            buf = cache.generation.shared.get(sc).poll();
+        if (buf != null)
+            cache.generation.pooledBytes.addAndGet(-buf.capacity());
+        else
+            buf = ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sc);
+        buf.clear();
+        buf.limit(size);
+        return buf;
+    }
+
+    /**
+    Return a buffer obtained from {@link #acquire} to the pool.  The caller
+    must not use the buffer again.  Buffers that were not allocated by a
+    pool of this size class layout are ignored.
+    <p>
+    @param buf
+    the buffer to return, or null.
+    */
+    public void release(final ByteBuffer buf) {
+        if (buf == null || !buf.isDirect())
+            return;
+        final int capacity = buf.capacity();
+        if (capacity > maxBufferSize || capacity < MIN_BUFFER_SIZE ||
+            Integer.bitCount(capacity) != 1)
+            return;
+
+        final int sc = sizeClass(capacity);
+        final ThreadCache cache = getThreadCache();
+        if (!reserve(cache.generation, capacity) &&
+            (!reclaim(cache.generation) ||
+            !reserve(cache.generation, capacity)))
+            return;
+        final ByteBuffer[] local = cache.buffers[sc];
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] == null) {
+                local[i] = buf;
+                return;
+            }
+        }
+        cache.generation.shared.get(sc).offer(buf);
+    }
+
+    /* Count a released buffer against the limit, if there is room for it. */
+    private boolean reserve(final Generation generation, final int capacity) {
+        final AtomicLong pooledBytes = generation.pooledBytes;
+        if (pooledBytes.addAndGet(capacity) <= maxPooledBytes)
+            return true;
+        pooledBytes.addAndGet(-capacity);
+        return false;
+    }
+
+    /*
+     * Drop the buffers kept by threads that have exited, which can no longer
+     * be borrowed, and stop counting them towards the limit.  Return whether
+     * any were dropped.
+     */
+    private static boolean reclaim(final Generation generation) {
+        long reclaimed = 0;
+        for (ThreadCache cache : generation.caches) {
+            final Thread owner = cache.owner.get();
+            if ((owner != null && owner.isAlive()) ||
+                !generation.caches.remove(cache))
+                continue;
+            for (ByteBuffer[] local : cache.buffers)
+                for (int i = 0; i < local.length; i++)
+                    if (local[i] != null) {
+                        reclaimed += local[i].capacity();
+                        local[i] = null;
+                    }
+        }
+        generation.pooledBytes.addAndGet(-reclaimed);
+        return reclaimed > 0;
+    }
+
+    /**
+    Drop the buffers held by the pool, leaving them to be freed by the
+    garbage collector.  The buffers kept by each thread are dropped the next
+    time that thread borrows or releases a buffer; they no longer count
+    towards the limit of the pool.
+    */
+    public void clear() {
+        current = new Generation(classes);
+    }
+
+    /**
+    Return the total size of the buffers held by the pool, including those
+    kept by individual threads.
+    <p>
+    @return
+    the total size in bytes of the buffers held by the pool.
+    */
+    public long getPooledBytes() {
+        return current.pooledBytes.get();
+    }
+
+    /**
+    Return the largest size class of the pool.
+    <p>
+    @return
+    the largest buffer size, in bytes, that is recycled by the pool.
+    */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /*
+     * Return the calling thread's cache, replacing it if the pool has been
+     * cleared since it was created.
+     */
+    private ThreadCache getThreadCache() {
+        final Generation generation = current;
+        ThreadCache cache = threadCache.get();
+        if (cache == null || cache.generation != generation) {
+            cache = new ThreadCache(generation, classes);
+            generation.caches.add(cache);
+            threadCache.set(cache);
+        }
+        return cache;
+    }
+
+    /* The index of the smallest size class that holds size bytes. */
+    private static int sizeClass(final int size) {
+        if (size <= MIN_BUFFER_SIZE)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(
+            (size - 1) / MIN_BUFFER_SIZE);
+    }
+
+    /*
+     * The shared lists and the byte count of the pool between two calls to
+     * clear.  Buffers released into a generation that has been replaced are
+     * dropped with it.
+     */
+    private static final class Generation {
+        final List<ConcurrentLinkedQueue<ByteBuffer>> shared;
+        final ConcurrentLinkedQueue<ThreadCache> caches =
+            new ConcurrentLinkedQueue<ThreadCache>();
+        final AtomicLong pooledBytes = new AtomicLong();
+
+        Generation(final int classes) {
+            shared = new ArrayList<ConcurrentLinkedQueue<ByteBuffer>>(classes);
+            for (int i = 0; i < classes; i++)
+                shared.add(new ConcurrentLinkedQueue<ByteBuffer>());
+        }
+    }
+
+    /*
+     * The buffers kept by one thread, counted in their generation.  Only the
+     * owner uses the buffers until it exits, after which they are reclaimed.
+     */
+    private static final class ThreadCache {
+        final Generation generation;
+        final ByteBuffer[][] buffers;
+        final WeakReference<Thread> owner;
+
+        ThreadCache(final Generation generation, final int classes) {
+            this.generation = generation;
+            this.buffers = new ByteBuffer[classes][THREAD_CACHE_SIZE];
+            this.owner = new WeakReference<Thread>(Thread.currentThread());
+        }
+    }
+}
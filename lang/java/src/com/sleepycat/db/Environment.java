@@ -10,10 +10,12 @@ package com.sleepycat.db;
 
 import java.lang.IllegalArgumentException;
 import java.lang.NullPointerException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.sleepycat.db.internal.DbConstants;
 import com.sleepycat.db.internal.DbEnv;
 import com.sleepycat.db.internal.DbSite;
+import com.sleepycat.db.internal.DbTxn;
 import com.sleepycat.db.ReplicationManagerSite;
 
 /**
@@ -64,6 +66,9 @@ whether or not it throws an exception.
 public class Environment {
     private DbEnv dbenv;
     private int autoCommitFlag;
+    private DirectBufferPool bufferPool;
+    /* Held by backups that install a BackupHandler, see BackupHandlerScope. */
+    /* package */ final ReentrantLock backupLock = new ReentrantLock();
 
     /* package */
     Environment(final DbEnv dbenv)
@@ -150,7 +155,11 @@ public class Environment {
     public void close()
         throws DatabaseException {
 
-        dbenv.close(0);
+        try {
+            dbenv.close(0);
+        } finally {
+            clearDirectBufferPool();
+        }
     }
     /**
     Close the database environment, freeing any allocated resources and
@@ -163,7 +172,11 @@ public class Environment {
     public void closeForceSync()
         throws DatabaseException {
 
-        dbenv.close(DbConstants.DB_FORCESYNC);
+        try {
+            dbenv.close(DbConstants.DB_FORCESYNC);
+        } finally {
+            clearDirectBufferPool();
+        }
     }
 
     /* package */
@@ -171,6 +184,29 @@ public class Environment {
         return dbenv;
     }
 
+    /**
+    Return the pool of direct buffers shared by the users of this
+    environment.
+    <p>
+    The pool is created with default size limits the first time this method
+    is called, and its buffers are dropped when the environment is closed.
+    See {@link com.sleepycat.db.DatabaseEntry#borrowDataNIO
+    DatabaseEntry.borrowDataNIO}.
+    <p>
+    @return
+    The pool of direct buffers for this environment.
+    */
+    public synchronized DirectBufferPool getDirectBufferPool() {
+        if (bufferPool == null)
+            bufferPool = new DirectBufferPool();
+        return bufferPool;
+    }
+
+    private synchronized void clearDirectBufferPool() {
+        if (bufferPool != null)
+            bufferPool.clear();
+    }
+
     /**
     Destroy a database environment.
     <p>
@@ -405,11 +441,15 @@ a database handle for the primary database that is to be indexed.
             SecondaryConfig config)
         throws DatabaseException, java.io.FileNotFoundException {
 
-        return new SecondaryDatabase(
-            SecondaryConfig.checkNull(config).openSecondaryDatabase(
-                dbenv, (txn == null) ? null : txn.txn,
-                fileName, databaseName, primaryDatabase.db),
+        final SecondaryConfig secConfig = SecondaryConfig.checkNull(config);
+        final DbTxn dbtxn = (txn == null) ? null : txn.txn;
+        final SecondaryDatabase secondary = new SecondaryDatabase(
+            secConfig.openSecondaryDatabase(
+                dbenv, dbtxn, fileName, databaseName, primaryDatabase.db),
             primaryDatabase);
+        if (secConfig.parallelPopulate(dbenv, dbtxn, fileName))
+            secConfig.populate(this, secondary, fileName, databaseName);
+        return secondary;
     }
 
     /**
@@ -1243,6 +1283,27 @@ performed using a specified {@link com.sleepycat.db.Environment Environment} han
     }
 
     /* Statistics */
+    /**
+    Open a source of snapshots of the statistics of every subsystem of
+    this environment.
+    <p>
+    The metrics must be closed before the environment is closed.
+    <p>
+    @param config
+    The metrics attributes.  If null, default attributes are used.
+    <p>
+    @return
+    A new source of snapshots for this environment.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public EnvironmentMetrics openMetrics(final EnvironmentMetricsConfig config)
+        throws DatabaseException {
+
+        return new EnvironmentMetrics(this,
+            EnvironmentMetricsConfig.checkNull(config));
+    }
+
     /**
     Returns the memory pool (that is, the buffer cache) subsystem statistics. 
     <p>
@@ -1803,7 +1864,13 @@ performed using a specified {@link com.sleepycat.db.Environment Environment} han
     */
     public void backup(String target, BackupOptions opt) 
         throws DatabaseException {
-        dbenv.backup(target, opt.getFlags());
+        /* Wait for an IncrementalBackup or ParallelBackup to finish. */
+        backupLock.lock();
+        try {
+            dbenv.backup(target, opt.getFlags());
+        } finally {
+            backupLock.unlock();
+        }
     }
 
     /**
@@ -0,0 +1,267 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import com.sleepycat.db.internal.DbEnv;
+
+/**
+A source of cheap, read-only snapshots of the statistics of every subsystem
+of an environment.
+<p>
+Each sample reads the counters of the cache, locking, logging, transaction,
+mutex and replication subsystems in a single call into the library, without
+building the {@link com.sleepycat.db.CacheStats CacheStats},
+{@link com.sleepycat.db.LockStats LockStats} and other statistics objects
+returned by the <code>Environment.get*Stats</code> methods.  The sample is
+published as an immutable {@link com.sleepycat.db.MetricsSnapshot
+MetricsSnapshot}, which also holds the rates computed over the interval
+since the previous sample.
+<p>
+Samples are taken by a background thread every
+{@link com.sleepycat.db.EnvironmentMetricsConfig#setSampleInterval
+EnvironmentMetricsConfig.setSampleInterval} milliseconds, or on demand by
+calling {@link #sample}.  Reading the most recent snapshot with
+{@link #getSnapshot} does not call into the library, so it may be done as
+often as required.
+<p>
+This class is a JMX standard MBean, and may be published with, for example:
+<blockquote><pre>
+    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+        new ObjectName("com.sleepycat.db:type=EnvironmentMetrics"));
+</pre></blockquote>
+<p>
+Metrics are opened with
+{@link com.sleepycat.db.Environment#openMetrics Environment.openMetrics}
+and must be closed before the environment is closed.  This class is thread
+safe.
+*/
+public class EnvironmentMetrics implements EnvironmentMetricsMBean {
+    private final DbEnv dbenv;
+    private final long sampleInterval;
+    private final Thread sampler;
+
+    private long[] lastCounters = new long[MetricsSnapshot.NCOUNTERS];
+    private long lastSampleTime;
+    private volatile MetricsSnapshot snapshot;
+    private boolean closed;
+
+    /* package */ EnvironmentMetrics(final Environment environment,
+                                     final EnvironmentMetricsConfig config)
+        throws DatabaseException {
+
+        this.dbenv = environment.unwrap();
+        this.sampleInterval = config.getSampleInterval();
+
+        /*
+         * The first sample is the baseline for the rates of the second, so
+         * every published snapshot covers a real interval.
+         */
+        dbenv.stat_counters(lastCounters);
+        lastSampleTime = System.nanoTime();
+
+        if (sampleInterval > 0) {
+            sampler = new Thread(new Runnable() {
+                public void run() {
+                    runSampler();
+                }
+            }, "EnvironmentMetrics sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        } else
+            sampler = null;
+    }
+
+    /**
+    Take a sample now and publish it as the most recent snapshot.
+    <p>
+    @return
+    the new snapshot.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    @throws IllegalStateException if the metrics have been closed.
+    */
+    public synchronized MetricsSnapshot sample()
+        throws DatabaseException {
+
+        if (closed)
+            throw new IllegalStateException("EnvironmentMetrics is closed");
+        final long[] counters = new long[MetricsSnapshot.NCOUNTERS];
+        dbenv.stat_counters(counters);
+        final long now = System.nanoTime();
+        snapshot = new MetricsSnapshot(System.currentTimeMillis(),
+            now - lastSampleTime, counters, lastCounters);
+        lastCounters = counters;
+        lastSampleTime = now;
+        return snapshot;
+    }
+
+    /**
+    Return the most recent snapshot.  If no sample has been taken since the
+    metrics were opened, one is taken.
+    <p>
+    @return
+    the most recent snapshot.
+    <p>
+    @throws DatabaseException if a sample was needed and failed.
+    */
+    public MetricsSnapshot getSnapshot()
+        throws DatabaseException {
+
+        final MetricsSnapshot s = snapshot;
+        return (s != null) ? s : sample();
+    }
+
+    /**
+    Stop the background sampler.  The environment is not closed.  The most
+    recent snapshot remains available from {@link #getSnapshot}.
+    */
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        if (sampler == null)
+            return;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSampler() {
+        synchronized (this) {
+            while (!closed) {
+                try {
+                    wait(sampleInterval);
+                } catch (InterruptedException e) {
+                    /* Keep going until the metrics are closed. */
+                    continue;
+                }
+                if (closed)
+                    break;
+                try {
+                    sample();
+                } catch (DatabaseException e) {
+                    /*
+                     * The environment can no longer be sampled; keep the
+                     * last snapshot rather than retrying every interval.
+                     */
+                    break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Attributes of the MBean, read from the most recent snapshot.  A
+     * failure to take the first sample is reported as a runtime exception,
+     * which JMX passes back to the client.
+     */
+
+    private MetricsSnapshot current() {
+        try {
+            return getSnapshot();
+        } catch (DatabaseException e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    /** {@inheritDoc} */
+    public long getSampleTime() {
+        return current().getTime();
+    }
+
+    /** {@inheritDoc} */
+    public double getCacheHitRatio() {
+        return current().getCacheHitRatio();
+    }
+
+    /** {@inheritDoc} */
+    public double getPagesReadPerSecond() {
+        return current().getPagesReadPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getPagesWrittenPerSecond() {
+        return current().getPagesWrittenPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getPagesEvictedPerSecond() {
+        return current().getPagesEvictedPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public long getDirtyPages() {
+        return current().getDirtyPages();
+    }
+
+    /** {@inheritDoc} */
+    public double getLockRequestsPerSecond() {
+        return current().getLockRequestsPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getLockWaitsPerSecond() {
+        return current().getLockWaitsPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getDeadlocksPerSecond() {
+        return current().getDeadlocksPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public long getLocks() {
+        return current().getLocks();
+    }
+
+    /** {@inheritDoc} */
+    public double getLogBytesPerSecond() {
+        return current().getLogBytesPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getLogSyncsPerSecond() {
+        return current().getLogSyncsPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getCommitsPerSecond() {
+        return current().getCommitsPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public double getAbortsPerSecond() {
+        return current().getAbortsPerSecond();
+    }
+
+    /** {@inheritDoc} */
+    public long getActiveTransactions() {
+        return current().getActiveTransactions();
+    }
+
+    /** {@inheritDoc} */
+    public long getMutexesInUse() {
+        return current().getMutexesInUse();
+    }
+
+    /** {@inheritDoc} */
+    public int getReplicationStatus() {
+        return current().getReplicationStatus();
+    }
+
+    /** {@inheritDoc} */
+    public long getReplicationLogQueued() {
+        return current().getReplicationLogQueued();
+    }
+}
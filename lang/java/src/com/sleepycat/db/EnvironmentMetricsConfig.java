@@ -0,0 +1,70 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+Specify the attributes of an
+{@link com.sleepycat.db.EnvironmentMetrics EnvironmentMetrics}.
+An instance created with the default constructor is initialized with the
+system's default settings.
+*/
+public class EnvironmentMetricsConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to
+    {@link com.sleepycat.db.Environment#openMetrics Environment.openMetrics}.
+    */
+    public static final EnvironmentMetricsConfig DEFAULT =
+        new EnvironmentMetricsConfig();
+
+    private long sampleInterval = 10 * 1000;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public EnvironmentMetricsConfig() {
+    }
+
+    /* package */
+    static EnvironmentMetricsConfig
+        checkNull(EnvironmentMetricsConfig config) {
+
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /**
+    Set the time between samples taken by a background thread, in
+    milliseconds.
+    <p>
+    If zero, no background thread is used, and snapshots are only taken
+    when {@link com.sleepycat.db.EnvironmentMetrics#sample
+    EnvironmentMetrics.sample} is called.
+    <p>
+    @param sampleInterval
+    the time between samples in milliseconds, or zero to sample only on
+    demand.
+    */
+    public void setSampleInterval(final long sampleInterval) {
+        if (sampleInterval < 0)
+            throw new IllegalArgumentException(
+                "sampleInterval must not be negative");
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+    Return the time between samples taken by a background thread, in
+    milliseconds, or zero if samples are only taken on demand.
+    <p>
+    @return
+    the time between samples in milliseconds.
+    */
+    public long getSampleInterval() {
+        return sampleInterval;
+    }
+}
@@ -0,0 +1,79 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+The management interface through which an
+{@link com.sleepycat.db.EnvironmentMetrics EnvironmentMetrics} is published
+as a JMX standard MBean.  Every attribute is read from the most recent
+{@link com.sleepycat.db.MetricsSnapshot MetricsSnapshot}, so reading them
+does not call into the library.
+*/
+public interface EnvironmentMetricsMBean {
+
+    /**
+    Return the time the most recent sample was taken, in milliseconds
+    since the epoch.
+    <p>
+    @return
+    the time the most recent sample was taken.
+    */
+    long getSampleTime();
+
+    /** @see MetricsSnapshot#getCacheHitRatio */
+    double getCacheHitRatio();
+
+    /** @see MetricsSnapshot#getPagesReadPerSecond */
+    double getPagesReadPerSecond();
+
+    /** @see MetricsSnapshot#getPagesWrittenPerSecond */
+    double getPagesWrittenPerSecond();
+
+    /** @see MetricsSnapshot#getPagesEvictedPerSecond */
+    double getPagesEvictedPerSecond();
+
+    /** @see MetricsSnapshot#getDirtyPages */
+    long getDirtyPages();
+
+    /** @see MetricsSnapshot#getLockRequestsPerSecond */
+    double getLockRequestsPerSecond();
+
+    /** @see MetricsSnapshot#getLockWaitsPerSecond */
+    double getLockWaitsPerSecond();
+
+    /** @see MetricsSnapshot#getDeadlocksPerSecond */
+    double getDeadlocksPerSecond();
+
+    /** @see MetricsSnapshot#getLocks */
+    long getLocks();
+
+    /** @see MetricsSnapshot#getLogBytesPerSecond */
+    double getLogBytesPerSecond();
+
+    /** @see MetricsSnapshot#getLogSyncsPerSecond */
+    double getLogSyncsPerSecond();
+
+    /** @see MetricsSnapshot#getCommitsPerSecond */
+    double getCommitsPerSecond();
+
+    /** @see MetricsSnapshot#getAbortsPerSecond */
+    double getAbortsPerSecond();
+
+    /** @see MetricsSnapshot#getActiveTransactions */
+    long getActiveTransactions();
+
+    /** @see MetricsSnapshot#getMutexesInUse */
+    long getMutexesInUse();
+
+    /** @see MetricsSnapshot#getReplicationStatus */
+    int getReplicationStatus();
+
+    /** @see MetricsSnapshot#getReplicationLogQueued */
+    long getReplicationLogQueued();
+}
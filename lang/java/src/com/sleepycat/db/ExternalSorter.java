@@ -0,0 +1,479 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+A sorter that puts any number of unsorted key/data pairs into the order of
+a Btree database, so that they can be written in key order.
+<p>
+{@link com.sleepycat.db.Database#sortMultipleKeyData
+Database.sortMultipleKeyData} sorts the pairs of a single bulk buffer.  An
+ExternalSorter holds pairs in memory until they reach
+{@link com.sleepycat.db.ExternalSorterConfig#setMaxMemory
+ExternalSorterConfig.setMaxMemory}, then sorts them and writes them to a
+temporary file as a sorted run.  When the pairs are written to the
+database, the runs are merged, at most
+{@link com.sleepycat.db.ExternalSorterConfig#setMaxMergeRuns
+ExternalSorterConfig.setMaxMergeRuns} at a time, and the result is passed
+to {@link com.sleepycat.db.Database#putMultipleKey Database.putMultipleKey}
+or to a {@link com.sleepycat.db.BulkLoader BulkLoader}.  The run files are
+read and written sequentially through small buffers, so besides the pairs
+held in memory, a merge only uses a buffer and the current pair of each
+run on the Java heap.
+<p>
+The pairs are ordered by the database's key comparator and, for a database
+with sorted duplicates, by its duplicate comparator.  Pairs that compare
+equal are written in the order they were supplied.
+<p>
+A sorter is created with
+{@link com.sleepycat.db.Database#openExternalSorter
+Database.openExternalSorter}, and its pairs may be written once.  It must be
+closed to remove its temporary files.  This class is not thread safe.
+*/
+public class ExternalSorter {
+    /* The size of the buffer used to read or write a run file. */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /* The heap used by a pair besides its bytes: the pair and two arrays. */
+    private static final int PAIR_OVERHEAD = 64;
+
+    private final Database database;
+    private final ExternalSorterConfig config;
+    private final Comparator<Pair> order;
+
+    private List<Pair> pairs = new ArrayList<Pair>();
+    private long memoryBytes;
+    private List<Run> runs = new ArrayList<Run>();
+    private final List<File> files = new ArrayList<File>();
+    private boolean written;
+    private boolean closed;
+
+    /* package */ ExternalSorter(final Database database,
+                                 final ExternalSorterConfig config)
+        throws DatabaseException {
+
+        final DatabaseConfig dbConfig = database.getConfig();
+        if (dbConfig.getType() != DatabaseType.BTREE)
+            throw new IllegalArgumentException(
+                "An external sorter requires a Btree database");
+
+        this.database = database;
+        this.config = config;
+        final Comparator<byte[]> keyComparator =
+            comparator(dbConfig.getBtreeComparator());
+        final Comparator<byte[]> dupComparator =
+            dbConfig.getSortedDuplicates() ?
+            comparator(dbConfig.getDuplicateComparator()) : null;
+        this.order = new Comparator<Pair>() {
+            public int compare(final Pair a, final Pair b) {
+                final int cmp = keyComparator.compare(a.key, b.key);
+                if (cmp != 0 || dupComparator == null)
+                    return cmp;
+                return dupComparator.compare(a.data, b.data);
+            }
+        };
+    }
+
+    /**
+    Add a key/data pair to be sorted.  The pair is copied, so the caller
+    may reuse its entries immediately.
+    <p>
+    @param key the key.
+    @param data the data.
+    @throws IllegalStateException if the sorter has been closed, or its
+    pairs have been written.
+    @throws DatabaseException if a sorted run could not be written.
+    */
+    public void put(final DatabaseEntry key, final DatabaseEntry data)
+        throws DatabaseException {
+
+        checkOpen();
+        final Pair pair = new Pair(copy(key), copy(data));
+        pairs.add(pair);
+        memoryBytes += pair.key.length + pair.data.length + PAIR_OVERHEAD;
+        if (memoryBytes >= config.getMaxMemory()) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new DatabaseException(e);
+            }
+        }
+    }
+
+    /**
+    Write the sorted pairs to the database with
+    {@link com.sleepycat.db.Database#putMultipleKey Database.putMultipleKey},
+    in calls of {@link com.sleepycat.db.ExternalSorterConfig#setMaxBatchBytes
+    ExternalSorterConfig.setMaxBatchBytes}.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit for each call.  For a
+    non-transactional database, null must be specified.
+    <p>
+    @param overwrite
+    The overwrite flag passed to each call.
+    <p>
+    @return
+    {@link com.sleepycat.db.OperationStatus#SUCCESS OperationStatus.SUCCESS},
+    or the status of the first call that did not succeed, after which no
+    more pairs are written.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public OperationStatus putMultipleKey(final Transaction txn,
+                                          final boolean overwrite)
+        throws DatabaseException {
+
+        final BatchSink sink = new BatchSink(txn, overwrite);
+        merge(sink);
+        return sink.status;
+    }
+
+    /**
+    Write the sorted pairs to the database with a bulk loader.  The loader
+    is not flushed or closed.
+    <p>
+    @param loader
+    A loader opened on the database with
+    {@link com.sleepycat.db.Database#openBulkLoader Database.openBulkLoader}.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public void load(final BulkLoader loader)
+        throws DatabaseException {
+
+        merge(new Sink() {
+            public boolean put(final byte[] key, final byte[] data)
+                throws DatabaseException {
+
+                loader.put(new DatabaseEntry(key), new DatabaseEntry(data));
+                return true;
+            }
+        });
+    }
+
+    /**
+    Discard any pairs not yet written, and remove the temporary files.  The
+    database is not closed.
+    */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        pairs = null;
+        runs = null;
+        for (File file : files)
+            file.delete();
+        files.clear();
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("ExternalSorter is closed");
+        if (written)
+            throw new IllegalStateException(
+                "The pairs of an ExternalSorter may only be written once");
+    }
+
+    /* Sort the pairs in memory and write them as a new run. */
+    private void spill()
+        throws IOException {
+
+        Collections.sort(pairs, order);
+        final Run run = newRun();
+        final RunWriter writer = new RunWriter(run);
+        try {
+            for (Pair pair : pairs)
+                writer.put(pair.key, pair.data);
+        } finally {
+            writer.close();
+        }
+        runs.add(run);
+        pairs = new ArrayList<Pair>();
+        memoryBytes = 0;
+    }
+
+    private Run newRun()
+        throws IOException {
+
+        final File file = File.createTempFile(
+            "dbsort", ".run", config.getTempDirectory());
+        files.add(file);
+        return new Run(file);
+    }
+
+    /*
+     * Pass all the pairs to the sink in order.  If everything fit in
+     * memory, no run is written.  Otherwise, consecutive groups of runs are
+     * merged into longer runs until they can all be merged at once;
+     * keeping the groups in order keeps equal pairs in the order they were
+     * supplied.
+     */
+    private void merge(final Sink sink)
+        throws DatabaseException {
+
+        checkOpen();
+        written = true;
+        try {
+            if (runs.isEmpty()) {
+                Collections.sort(pairs, order);
+                for (Pair pair : pairs) {
+                    if (!sink.put(pair.key, pair.data))
+                        break;
+                }
+                pairs = new ArrayList<Pair>();
+                sink.finish();
+                return;
+            }
+            if (!pairs.isEmpty())
+                spill();
+            final int maxRuns = config.getMaxMergeRuns();
+            while (runs.size() > maxRuns) {
+                final List<Run> merged = new ArrayList<Run>();
+                for (int i = 0; i < runs.size(); i += maxRuns) {
+                    final List<Run> group =
+                        runs.subList(i, Math.min(i + maxRuns, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    final Run run = newRun();
+                    final RunWriter writer = new RunWriter(run);
+                    try {
+                        mergeRuns(group, writer);
+                    } finally {
+                        writer.close();
+                    }
+                    for (Run done : group) {
+                        done.file.delete();
+                        files.remove(done.file);
+                    }
+                    merged.add(run);
+                }
+                runs = merged;
+            }
+            mergeRuns(runs, sink);
+            sink.finish();
+        } catch (IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private void mergeRuns(final List<Run> group, final Sink sink)
+        throws DatabaseException, IOException {
+
+        final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+            group.size(), new Comparator<RunReader>() {
+                public int compare(final RunReader a, final RunReader b) {
+                    final int cmp = order.compare(a.current, b.current);
+                    return (cmp != 0) ? cmp : (a.index - b.index);
+                }
+            });
+        final List<RunReader> readers = new ArrayList<RunReader>();
+        try {
+            for (int i = 0; i < group.size(); i++) {
+                final RunReader reader = new RunReader(group.get(i), i);
+                readers.add(reader);
+                if (reader.next())
+                    queue.add(reader);
+            }
+            while (!queue.isEmpty()) {
+                final RunReader reader = queue.poll();
+                if (!sink.put(reader.current.key, reader.current.data))
+                    break;
+                if (reader.next())
+                    queue.add(reader);
+            }
+        } finally {
+            for (RunReader reader : readers)
+                reader.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<byte[]> comparator(final Comparator c) {
+        return (c != null) ? (Comparator<byte[]>)c :
+            NativeComparator.LEXICOGRAPHIC;
+    }
+
+    private static byte[] copy(final DatabaseEntry entry) {
+        final byte[] bytes = new byte[entry.getSize()];
+        if (entry.getDataNIO() != null) {
+            final ByteBuffer buf = entry.getDataNIO().duplicate();
+            buf.position(entry.getOffset());
+            buf.get(bytes);
+        } else if (entry.getData() != null)
+            System.arraycopy(entry.getData(), entry.getOffset(),
+                bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static class Pair {
+        final byte[] key;
+        final byte[] data;
+
+        Pair(final byte[] key, final byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    /* Receives the sorted pairs; returns false to stop. */
+    private static abstract class Sink {
+        abstract boolean put(byte[] key, byte[] data)
+            throws DatabaseException, IOException;
+
+        void finish()
+            throws DatabaseException {
+        }
+    }
+
+    /* Passes the pairs to putMultipleKey in batches. */
+    private class BatchSink extends Sink {
+        private final Transaction txn;
+        private final boolean overwrite;
+        private final List<byte[]> pending = new ArrayList<byte[]>();
+        private int pendingBytes;
+        OperationStatus status = OperationStatus.SUCCESS;
+
+        BatchSink(final Transaction txn, final boolean overwrite) {
+            this.txn = txn;
+            this.overwrite = overwrite;
+        }
+
+        boolean put(final byte[] key, final byte[] data)
+            throws DatabaseException {
+
+            pending.add(key);
+            pending.add(data);
+            pendingBytes += key.length + data.length;
+            if (pendingBytes >= config.getMaxBatchBytes())
+                write();
+            return status == OperationStatus.SUCCESS;
+        }
+
+        void finish()
+            throws DatabaseException {
+
+            if (status == OperationStatus.SUCCESS)
+                write();
+        }
+
+        private void write()
+            throws DatabaseException {
+
+            if (pending.isEmpty())
+                return;
+            final MultipleKeyDataEntry entries = new MultipleKeyDataEntry(
+                new byte[BatchConfig.alignBufferSize(pendingBytes +
+                pending.size() * 2 * DatabaseEntry.INT32SZ +
+                2 * DatabaseEntry.INT32SZ)]);
+            for (int i = 0; i < pending.size(); i += 2) {
+                if (!entries.append(pending.get(i), pending.get(i + 1)))
+                    throw new IllegalStateException("Bulk buffer overflow");
+            }
+            status = database.putMultipleKey(txn, entries, overwrite);
+            pending.clear();
+            pendingBytes = 0;
+        }
+    }
+
+    /* A sorted run: a file of key length, data length, key, data. */
+    private static class Run {
+        final File file;
+
+        Run(final File file) {
+            this.file = file;
+        }
+    }
+
+    /* Writes a run through a buffered stream. */
+    private static class RunWriter extends Sink {
+        private final DataOutputStream out;
+
+        RunWriter(final Run run)
+            throws IOException {
+
+            out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(run.file), BUFFER_BYTES));
+        }
+
+        boolean put(final byte[] key, final byte[] data)
+            throws IOException {
+
+            out.writeInt(key.length);
+            out.writeInt(data.length);
+            out.write(key);
+            out.write(data);
+            return true;
+        }
+
+        void close()
+            throws IOException {
+
+            out.close();
+        }
+    }
+
+    /* Reads a run through a buffered stream. */
+    private static class RunReader {
+        final int index;
+        Pair current;
+        private final DataInputStream in;
+
+        RunReader(final Run run, final int index)
+            throws IOException {
+
+            this.index = index;
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(run.file), BUFFER_BYTES));
+        }
+
+        boolean next()
+            throws IOException {
+
+            final int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            final byte[] key = new byte[keyLength];
+            final byte[] data = new byte[in.readInt()];
+            in.readFully(key);
+            in.readFully(data);
+            current = new Pair(key, data);
+            return true;
+        }
+
+        void close()
+            throws IOException {
+
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.File;
+
+/**
+Specify the attributes of an
+{@link com.sleepycat.db.ExternalSorter ExternalSorter}.
+An instance created with the default constructor is initialized with the
+system's default settings.
+*/
+public class ExternalSorterConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to
+    {@link com.sleepycat.db.Database#openExternalSorter
+    Database.openExternalSorter}.
+    */
+    public static final ExternalSorterConfig DEFAULT =
+        new ExternalSorterConfig();
+
+    private long maxMemory = 64 * 1024 * 1024;
+    private int maxMergeRuns = 64;
+    private int maxBatchBytes = 1024 * 1024;
+    private File tempDirectory = null;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public ExternalSorterConfig() {
+    }
+
+    /* package */
+    static ExternalSorterConfig checkNull(ExternalSorterConfig config) {
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /**
+    Set the number of bytes of Java heap the sorter may use to hold pairs
+    before it sorts them and writes them to a temporary file.
+    <p>
+    The estimate for each pair includes the key and data bytes and the
+    overhead of the Java objects that hold them.
+    <p>
+    @param maxMemory
+    the number of bytes of pairs held in memory.
+    */
+    public void setMaxMemory(final long maxMemory) {
+        if (maxMemory <= 0)
+            throw new IllegalArgumentException(
+                "maxMemory must be positive");
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+    Return the number of bytes of Java heap the sorter may use to hold
+    pairs.
+    <p>
+    @return
+    the number of bytes of pairs held in memory.
+    */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+    Set the largest number of sorted runs merged at once.  If more runs
+    were written, groups of runs are first merged into longer runs.
+    <p>
+    @param maxMergeRuns
+    the largest number of runs merged at once, at least 2.
+    */
+    public void setMaxMergeRuns(final int maxMergeRuns) {
+        if (maxMergeRuns < 2)
+            throw new IllegalArgumentException(
+                "maxMergeRuns must be at least 2");
+        this.maxMergeRuns = maxMergeRuns;
+    }
+
+    /**
+    Return the largest number of sorted runs merged at once.
+    <p>
+    @return
+    the largest number of runs merged at once.
+    */
+    public int getMaxMergeRuns() {
+        return maxMergeRuns;
+    }
+
+    /**
+    Set the number of bytes of keys and data passed to the library in each
+    call to {@link com.sleepycat.db.Database#putMultipleKey
+    Database.putMultipleKey}.
+    <p>
+    @param maxBatchBytes
+    the number of bytes of keys and data in each bulk call.
+    */
+    public void setMaxBatchBytes(final int maxBatchBytes) {
+        if (maxBatchBytes <= 0)
+            throw new IllegalArgumentException(
+                "maxBatchBytes must be positive");
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+    Return the number of bytes of keys and data passed to the library in
+    each bulk call.
+    <p>
+    @return
+    the number of bytes of keys and data in each bulk call.
+    */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+    Set the directory in which the sorted runs are written.
+    <p>
+    @param tempDirectory
+    The directory for the runs.  If null, the directory named by the
+    java.io.tmpdir system property is used.
+    */
+    public void setTempDirectory(final File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+    Return the directory in which the sorted runs are written.
+    <p>
+    @return
+    The directory for the runs, or null if the java.io.tmpdir directory is
+    used.
+    */
+    public File getTempDirectory() {
+        return tempDirectory;
+    }
+}
@@ -0,0 +1,260 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2011, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+Performs a full hot backup followed by incremental backups, writing through a
+{@link com.sleepycat.db.BackupHandler BackupHandler}.
+<p>
+Each call to {@link #backup backup} returns the end of the log at the time
+of the backup.  When that log sequence number is passed to the next call,
+only the log written since then is copied: the rest of the log file that
+contained it, and every later log file.  The database files are not copied
+again.  This is the same kind of incremental backup as
+{@link com.sleepycat.db.BackupOptions#setUpdate BackupOptions.setUpdate}, but
+it copies only the new part of the log instead of all log files that are
+still in the environment.  To restore, the full backup and the incremental
+backups that followed it are combined in one directory and catastrophic
+recovery is run.
+<p>
+The log is written to the handler at the positions it has in the log files,
+so the handler must not truncate a log file that it opens again to add to it.
+Every buffer passed to the handler is newly allocated, so a handler such as
+{@link com.sleepycat.db.ParallelBackupHandler ParallelBackupHandler} may keep
+it after write returns.  Use a ParallelBackupHandler to limit the rate of the
+backup and to compress or checksum its output in parallel threads.
+<p>
+An incremental backup is only possible while the log file containing the
+given log sequence number has not been removed, so log files must not be
+removed until they have been backed up.
+<p>
+The full backup installs the handler in the environment's configuration
+while it runs, so full backups of an environment and
+{@link com.sleepycat.db.ParallelBackup ParallelBackup} backups run one at a
+time, and {@link Environment#backup Environment.backup} waits for them to
+finish.
+*/
+public class IncrementalBackup {
+    /** The default number of bytes read from a log file at a time. */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /* The largest offset in a log file. */
+    private static final long MAX_LOG_OFFSET = 0xffffffffL;
+
+    private final Environment env;
+    private final BackupHandler handler;
+    private BackupOptions options = new BackupOptions();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+    Create an incremental backup of an environment.
+    <p>
+    @param env
+    the environment to back up.
+    <p>
+    @param handler
+    the handler to which all backup data is written.
+    */
+    public IncrementalBackup(final Environment env,
+                             final BackupHandler handler) {
+        if (env == null || handler == null)
+            throw new IllegalArgumentException(
+                "env and handler must not be null");
+        this.env = env;
+        this.handler = handler;
+    }
+
+    /**
+    Set the options used for the full backup.  The single directory option
+    also determines where incremental backups write log files.
+    <p>
+    @param options
+    the options for {@link Environment#backup Environment.backup}.
+    */
+    public void setBackupOptions(final BackupOptions options) {
+        this.options = (options != null) ? options : new BackupOptions();
+    }
+
+    /**
+    Return the options used for the full backup.
+    <p>
+    @return
+    the options for {@link Environment#backup Environment.backup}.
+    */
+    public BackupOptions getBackupOptions() {
+        return options;
+    }
+
+    /**
+    Set the number of bytes read from a log file and passed to the handler at
+    a time during an incremental backup.
+    <p>
+    @param chunkSize
+    the chunk size in bytes.
+    */
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+    Return the number of bytes read from a log file at a time.
+    <p>
+    @return
+    the chunk size in bytes.
+    */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+    Back up the environment.
+    <p>
+    @param target
+    the target directory, which is passed to the handler.
+    <p>
+    @param since
+    null to perform a full backup, or the value returned by the previous
+    backup to copy only the log written since then.
+    <p>
+    @return
+    the log sequence number to pass to the next incremental backup.
+    <p>
+    @throws IOException if a log file cannot be read.
+    <p>
+    @throws DatabaseException if a failure occurs, for example because the
+    handler failed or a log file needed by an incremental backup has been
+    removed.
+    */
+    public LogSequenceNumber backup(final String target,
+                                    final LogSequenceNumber since)
+        throws DatabaseException, IOException {
+
+        env.logFlush(null);
+        final LogStats stats = env.getLogStats(null);
+        final LogSequenceNumber end =
+            new LogSequenceNumber(stats.getCurFile(), stats.getCurOffset());
+        if (since == null) {
+            fullBackup(target);
+            return end;
+        }
+        if (since.getFile() > end.getFile() ||
+            (since.getFile() == end.getFile() &&
+             offset(since) > offset(end)))
+            throw new IllegalArgumentException(
+                "LSN is past the end of the log: [" + since.getFile() +
+                "][" + offset(since) + "]");
+
+        final String logTarget = getLogTarget(env, options, target);
+        long copiedEnd = offset(since);
+        for (int file = since.getFile(); file <= end.getFile(); file++) {
+            final long start = (file == since.getFile()) ? offset(since) : 0;
+            final long limit = (file == end.getFile()) ?
+                offset(end) : Long.MAX_VALUE;
+            final File path =
+                new File(env.getLogFileName(new LogSequenceNumber(file, 0)));
+            if (!path.exists())
+                throw new DatabaseException("Log file " + path +
+                    " needed for the incremental backup has been removed");
+            copiedEnd =
+                copyLogFile(path, handler, logTarget, start, limit, chunkSize);
+        }
+        if (copiedEnd > MAX_LOG_OFFSET)
+            throw new DatabaseException("Log offset " + copiedEnd +
+                " does not fit in a log sequence number");
+        return new LogSequenceNumber(end.getFile(), (int)copiedEnd);
+    }
+
+    /*
+     * The offset of a log sequence number, which the library keeps as an
+     * unsigned 32-bit value.
+     */
+    private static long offset(final LogSequenceNumber lsn) {
+        return lsn.getOffset() & MAX_LOG_OFFSET;
+    }
+
+    /* Back up everything with the handler installed in the environment. */
+    private void fullBackup(final String target)
+        throws DatabaseException {
+
+        final BackupHandlerScope scope =
+            new BackupHandlerScope(env, handler, false);
+        try {
+            env.backup(target, options);
+        } finally {
+            scope.restore();
+        }
+    }
+
+    /* The directory of log files in the backup, as chosen by backup. */
+    static String getLogTarget(final Environment env,
+                               final BackupOptions options,
+                               final String target)
+        throws DatabaseException {
+
+        final File logDir = env.getConfig().getLogDirectory();
+        if (options.getSingleDir() || logDir == null ||
+            logDir.isAbsolute() || target == null)
+            return target;
+        return new File(target, logDir.getPath()).getPath();
+    }
+
+    /*
+     * Copy the part of a log file from start up to limit or the end of the
+     * file through a handler, returning the position where copying stopped.
+     */
+    static long copyLogFile(final File path,
+                            final BackupHandler handler,
+                            final String logTarget,
+                            final long start,
+                            final long limit,
+                            final int chunkSize)
+        throws DatabaseException, IOException {
+
+        final String name = path.getName();
+        final RandomAccessFile in = new RandomAccessFile(path, "r");
+        boolean opened = false;
+        try {
+            final long end = Math.min(limit, in.length());
+            long pos = start;
+            check(handler.open(logTarget, name), "open", name);
+            opened = true;
+            in.seek(pos);
+            while (pos < end) {
+                final int len = (int)Math.min(chunkSize, end - pos);
+                final byte[] buf = new byte[len];
+                in.readFully(buf);
+                check(handler.write(pos, buf, 0, len), "write", name);
+                pos += len;
+            }
+            opened = false;
+            check(handler.close(name), "close", name);
+            return pos;
+        } finally {
+            if (opened)
+                handler.close(name);
+            in.close();
+        }
+    }
+
+    private static void check(final int ret,
+                              final String op,
+                              final String name)
+        throws DatabaseException {
+
+        if (ret != 0)
+            throw new DatabaseException(
+                "Backup handler " + op + " failed for " + name, ret);
+    }
+}
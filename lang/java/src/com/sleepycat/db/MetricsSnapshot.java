@@ -0,0 +1,625 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+/**
+An immutable sample of the counters of every subsystem of an environment,
+taken by an {@link com.sleepycat.db.EnvironmentMetrics EnvironmentMetrics}.
+<p>
+Counters such as {@link #getCacheHits} are totals since the environment
+was opened or its statistics were last cleared.  Values such as
+{@link #getDirtyPages} describe the environment at the time of the sample.
+The rates, such as {@link #getLockWaitsPerSecond}, are computed over the
+interval since the previous sample.
+<p>
+The counters of a subsystem that was not configured when the environment
+was opened are zero.
+*/
+public final class MetricsSnapshot {
+
+    /*
+     * Indexes of the counters filled in by DbEnv.stat_counters.  These must
+     * match the enum in libdb_java/java_stat.i.
+     */
+    private static final int SUBSYSTEMS = 0;
+    private static final int CACHE_HIT = 1;
+    private static final int CACHE_MISS = 2;
+    private static final int PAGE_IN = 3;
+    private static final int PAGE_OUT = 4;
+    private static final int RO_EVICT = 5;
+    private static final int RW_EVICT = 6;
+    private static final int PAGES = 7;
+    private static final int PAGE_DIRTY = 8;
+    private static final int LOCK_REQUESTS = 9;
+    private static final int LOCK_WAIT = 10;
+    private static final int LOCK_NOWAIT = 11;
+    private static final int DEADLOCKS = 12;
+    private static final int LOCK_TIMEOUTS = 13;
+    private static final int TXN_TIMEOUTS = 14;
+    private static final int LOCKS = 15;
+    private static final int LOG_BYTES = 16;
+    private static final int LOG_WRITES = 17;
+    private static final int LOG_SYNCS = 18;
+    private static final int LOG_RECORDS = 19;
+    private static final int TXN_BEGINS = 20;
+    private static final int TXN_COMMITS = 21;
+    private static final int TXN_ABORTS = 22;
+    private static final int TXN_ACTIVE = 23;
+    private static final int MUTEX_INUSE = 24;
+    private static final int MUTEX_REGION_WAIT = 25;
+    private static final int REP_STATUS = 26;
+    private static final int REP_LOG_QUEUED = 27;
+    private static final int REP_MSGS_PROCESSED = 28;
+    private static final int REP_MSGS_SENT = 29;
+    private static final int REP_SEND_FAILURES = 30;
+
+    /* package */ static final int NCOUNTERS = 31;
+
+    private static final int STAT_MPOOL = 0x01;
+    private static final int STAT_LOCK = 0x02;
+    private static final int STAT_LOG = 0x04;
+    private static final int STAT_TXN = 0x08;
+    private static final int STAT_REP = 0x20;
+
+    private final long time;
+    private final long interval;
+    private final long[] counters;
+    private final long[] previous;
+
+    /* package */
+    MetricsSnapshot(final long time,
+                    final long interval,
+                    final long[] counters,
+                    final long[] previous) {
+        this.time = time;
+        this.interval = interval;
+        this.counters = counters;
+        this.previous = previous;
+    }
+
+    private long delta(final int index) {
+        final long d = counters[index] - previous[index];
+        /* The statistics were cleared during the interval. */
+        return (d < 0) ? counters[index] : d;
+    }
+
+    private double rate(final int index) {
+        return (interval == 0) ? 0 : delta(index) * 1000000000.0 / interval;
+    }
+
+    private boolean sampled(final int subsystem) {
+        return (counters[SUBSYSTEMS] & subsystem) != 0;
+    }
+
+    /**
+    Return the time the sample was taken, in milliseconds since the epoch.
+    <p>
+    @return
+    the time the sample was taken.
+    */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+    Return the time between the previous sample and this one, in
+    milliseconds.  The rates are computed over this interval.
+    <p>
+    @return
+    the time between the previous sample and this one.
+    */
+    public long getInterval() {
+        return interval / 1000000;
+    }
+
+    /**
+    Return true if the environment was configured with a memory pool.
+    <p>
+    @return
+    true if the cache counters were sampled.
+    */
+    public boolean hasCache() {
+        return sampled(STAT_MPOOL);
+    }
+
+    /**
+    Return true if the environment was configured with locking.
+    <p>
+    @return
+    true if the lock counters were sampled.
+    */
+    public boolean hasLocking() {
+        return sampled(STAT_LOCK);
+    }
+
+    /**
+    Return true if the environment was configured with logging.
+    <p>
+    @return
+    true if the log counters were sampled.
+    */
+    public boolean hasLogging() {
+        return sampled(STAT_LOG);
+    }
+
+    /**
+    Return true if the environment was configured with transactions.
+    <p>
+    @return
+    true if the transaction counters were sampled.
+    */
+    public boolean hasTransactions() {
+        return sampled(STAT_TXN);
+    }
+
+    /**
+    Return true if the environment was configured with replication.
+    <p>
+    @return
+    true if the replication counters were sampled.
+    */
+    public boolean hasReplication() {
+        return sampled(STAT_REP);
+    }
+
+    /* Cache */
+
+    /**
+    Return the number of requested pages found in the cache.
+    <p>
+    @return
+    the number of requested pages found in the cache.
+    */
+    public long getCacheHits() {
+        return counters[CACHE_HIT];
+    }
+
+    /**
+    Return the number of requested pages not found in the cache.
+    <p>
+    @return
+    the number of requested pages not found in the cache.
+    */
+    public long getCacheMisses() {
+        return counters[CACHE_MISS];
+    }
+
+    /**
+    Return the fraction of the pages requested during the interval that
+    were found in the cache, or NaN if no pages were requested.
+    <p>
+    @return
+    the cache hit ratio over the interval.
+    */
+    public double getCacheHitRatio() {
+        final long hits = delta(CACHE_HIT);
+        final long total = hits + delta(CACHE_MISS);
+        return (total == 0) ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+    Return the number of pages read into the cache.
+    <p>
+    @return
+    the number of pages read into the cache.
+    */
+    public long getPagesRead() {
+        return counters[PAGE_IN];
+    }
+
+    /**
+    Return the number of pages read into the cache per second over the
+    interval.
+    <p>
+    @return
+    the number of pages read into the cache per second.
+    */
+    public double getPagesReadPerSecond() {
+        return rate(PAGE_IN);
+    }
+
+    /**
+    Return the number of pages written from the cache.
+    <p>
+    @return
+    the number of pages written from the cache.
+    */
+    public long getPagesWritten() {
+        return counters[PAGE_OUT];
+    }
+
+    /**
+    Return the number of pages written from the cache per second over the
+    interval.
+    <p>
+    @return
+    the number of pages written from the cache per second.
+    */
+    public double getPagesWrittenPerSecond() {
+        return rate(PAGE_OUT);
+    }
+
+    /**
+    Return the number of clean and dirty pages forced from the cache.
+    <p>
+    @return
+    the number of pages forced from the cache.
+    */
+    public long getPagesEvicted() {
+        return counters[RO_EVICT] + counters[RW_EVICT];
+    }
+
+    /**
+    Return the number of clean and dirty pages forced from the cache per
+    second over the interval.
+    <p>
+    @return
+    the number of pages forced from the cache per second.
+    */
+    public double getPagesEvictedPerSecond() {
+        return rate(RO_EVICT) + rate(RW_EVICT);
+    }
+
+    /**
+    Return the number of pages in the cache.
+    <p>
+    @return
+    the number of pages in the cache.
+    */
+    public long getCachePages() {
+        return counters[PAGES];
+    }
+
+    /**
+    Return the number of dirty pages in the cache.
+    <p>
+    @return
+    the number of dirty pages in the cache.
+    */
+    public long getDirtyPages() {
+        return counters[PAGE_DIRTY];
+    }
+
+    /* Locking */
+
+    /**
+    Return the number of locks requested.
+    <p>
+    @return
+    the number of locks requested.
+    */
+    public long getLockRequests() {
+        return counters[LOCK_REQUESTS];
+    }
+
+    /**
+    Return the number of locks requested per second over the interval.
+    <p>
+    @return
+    the number of locks requested per second.
+    */
+    public double getLockRequestsPerSecond() {
+        return rate(LOCK_REQUESTS);
+    }
+
+    /**
+    Return the number of lock requests that waited because of a conflict.
+    <p>
+    @return
+    the number of lock requests that waited.
+    */
+    public long getLockWaits() {
+        return counters[LOCK_WAIT];
+    }
+
+    /**
+    Return the number of lock requests that waited because of a conflict
+    per second over the interval.
+    <p>
+    @return
+    the number of lock requests that waited per second.
+    */
+    public double getLockWaitsPerSecond() {
+        return rate(LOCK_WAIT);
+    }
+
+    /**
+    Return the number of lock requests that were refused because of a
+    conflict, without waiting.
+    <p>
+    @return
+    the number of lock requests refused without waiting.
+    */
+    public long getLockNoWaits() {
+        return counters[LOCK_NOWAIT];
+    }
+
+    /**
+    Return the number of deadlocks.
+    <p>
+    @return
+    the number of deadlocks.
+    */
+    public long getDeadlocks() {
+        return counters[DEADLOCKS];
+    }
+
+    /**
+    Return the number of deadlocks per second over the interval.
+    <p>
+    @return
+    the number of deadlocks per second.
+    */
+    public double getDeadlocksPerSecond() {
+        return rate(DEADLOCKS);
+    }
+
+    /**
+    Return the number of lock requests that timed out.
+    <p>
+    @return
+    the number of lock requests that timed out.
+    */
+    public long getLockTimeouts() {
+        return counters[LOCK_TIMEOUTS];
+    }
+
+    /**
+    Return the number of transactions that timed out.
+    <p>
+    @return
+    the number of transactions that timed out.
+    */
+    public long getTransactionTimeouts() {
+        return counters[TXN_TIMEOUTS];
+    }
+
+    /**
+    Return the number of locks held.
+    <p>
+    @return
+    the number of locks held.
+    */
+    public long getLocks() {
+        return counters[LOCKS];
+    }
+
+    /* Logging */
+
+    /**
+    Return the number of bytes written to the log.
+    <p>
+    @return
+    the number of bytes written to the log.
+    */
+    public long getLogBytes() {
+        return counters[LOG_BYTES];
+    }
+
+    /**
+    Return the number of bytes written to the log per second over the
+    interval.
+    <p>
+    @return
+    the number of bytes written to the log per second.
+    */
+    public double getLogBytesPerSecond() {
+        return rate(LOG_BYTES);
+    }
+
+    /**
+    Return the number of times the log was written to disk.
+    <p>
+    @return
+    the number of times the log was written to disk.
+    */
+    public long getLogWrites() {
+        return counters[LOG_WRITES];
+    }
+
+    /**
+    Return the number of times the log was flushed to disk.
+    <p>
+    @return
+    the number of times the log was flushed to disk.
+    */
+    public long getLogSyncs() {
+        return counters[LOG_SYNCS];
+    }
+
+    /**
+    Return the number of times the log was flushed to disk per second over
+    the interval.
+    <p>
+    @return
+    the number of times the log was flushed to disk per second.
+    */
+    public double getLogSyncsPerSecond() {
+        return rate(LOG_SYNCS);
+    }
+
+    /**
+    Return the number of records written to the log.
+    <p>
+    @return
+    the number of records written to the log.
+    */
+    public long getLogRecords() {
+        return counters[LOG_RECORDS];
+    }
+
+    /* Transactions */
+
+    /**
+    Return the number of transactions begun.
+    <p>
+    @return
+    the number of transactions begun.
+    */
+    public long getTransactionsBegun() {
+        return counters[TXN_BEGINS];
+    }
+
+    /**
+    Return the number of transactions committed.
+    <p>
+    @return
+    the number of transactions committed.
+    */
+    public long getTransactionsCommitted() {
+        return counters[TXN_COMMITS];
+    }
+
+    /**
+    Return the number of transactions committed per second over the
+    interval.
+    <p>
+    @return
+    the number of transactions committed per second.
+    */
+    public double getCommitsPerSecond() {
+        return rate(TXN_COMMITS);
+    }
+
+    /**
+    Return the number of transactions aborted.
+    <p>
+    @return
+    the number of transactions aborted.
+    */
+    public long getTransactionsAborted() {
+        return counters[TXN_ABORTS];
+    }
+
+    /**
+    Return the number of transactions aborted per second over the interval.
+    <p>
+    @return
+    the number of transactions aborted per second.
+    */
+    public double getAbortsPerSecond() {
+        return rate(TXN_ABORTS);
+    }
+
+    /**
+    Return the number of active transactions.
+    <p>
+    @return
+    the number of active transactions.
+    */
+    public long getActiveTransactions() {
+        return counters[TXN_ACTIVE];
+    }
+
+    /* Mutexes */
+
+    /**
+    Return the number of mutexes in use.
+    <p>
+    @return
+    the number of mutexes in use.
+    */
+    public long getMutexesInUse() {
+        return counters[MUTEX_INUSE];
+    }
+
+    /**
+    Return the number of times a thread waited for the mutex region lock.
+    <p>
+    @return
+    the number of waits for the mutex region lock.
+    */
+    public long getMutexRegionWaits() {
+        return counters[MUTEX_REGION_WAIT];
+    }
+
+    /* Replication */
+
+    /**
+    Return the replication status of the environment, one of the
+    <code>REP_*</code> values described by
+    {@link com.sleepycat.db.ReplicationStats#getStatus
+    ReplicationStats.getStatus}.
+    <p>
+    @return
+    the replication status of the environment.
+    */
+    public int getReplicationStatus() {
+        return (int) counters[REP_STATUS];
+    }
+
+    /**
+    Return the number of log records queued by a replication client.
+    <p>
+    @return
+    the number of log records queued.
+    */
+    public long getReplicationLogQueued() {
+        return counters[REP_LOG_QUEUED];
+    }
+
+    /**
+    Return the number of replication messages received and processed.
+    <p>
+    @return
+    the number of replication messages processed.
+    */
+    public long getReplicationMessagesProcessed() {
+        return counters[REP_MSGS_PROCESSED];
+    }
+
+    /**
+    Return the number of replication messages sent.
+    <p>
+    @return
+    the number of replication messages sent.
+    */
+    public long getReplicationMessagesSent() {
+        return counters[REP_MSGS_SENT];
+    }
+
+    /**
+    Return the number of replication messages that could not be sent.
+    <p>
+    @return
+    the number of replication messages that could not be sent.
+    */
+    public long getReplicationSendFailures() {
+        return counters[REP_SEND_FAILURES];
+    }
+
+    /**
+    For convenience, the MetricsSnapshot class has a toString method that
+    lists the rates and the values describing the environment at the time
+    of the sample.
+    */
+    public String toString() {
+        return "MetricsSnapshot:"
+            + "\n  time=" + time
+            + "\n  interval=" + getInterval()
+            + "\n  cacheHitRatio=" + getCacheHitRatio()
+            + "\n  pagesReadPerSecond=" + getPagesReadPerSecond()
+            + "\n  pagesWrittenPerSecond=" + getPagesWrittenPerSecond()
+            + "\n  pagesEvictedPerSecond=" + getPagesEvictedPerSecond()
+            + "\n  dirtyPages=" + getDirtyPages()
+            + "\n  lockRequestsPerSecond=" + getLockRequestsPerSecond()
+            + "\n  lockWaitsPerSecond=" + getLockWaitsPerSecond()
+            + "\n  deadlocksPerSecond=" + getDeadlocksPerSecond()
+            + "\n  locks=" + getLocks()
+            + "\n  logBytesPerSecond=" + getLogBytesPerSecond()
+            + "\n  logSyncsPerSecond=" + getLogSyncsPerSecond()
+            + "\n  commitsPerSecond=" + getCommitsPerSecond()
+            + "\n  abortsPerSecond=" + getAbortsPerSecond()
+            + "\n  activeTransactions=" + getActiveTransactions()
+            + "\n  mutexesInUse=" + getMutexesInUse()
+            + "\n  replicationStatus=" + getReplicationStatus()
+            + "\n  replicationLogQueued=" + getReplicationLogQueued()
+            ;
+    }
+}
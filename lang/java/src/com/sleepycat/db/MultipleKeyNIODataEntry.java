@@ -52,6 +52,10 @@ public class MultipleKeyNIODataEntry extends MultipleEntry {
     be called after a successful call to a {@link com.sleepycat.db.Database Database} or
     {@link com.sleepycat.db.Cursor Cursor} get method with this object as the data parameter.
     <p>
+    The key and data entries are set to refer directly into this entry's
+    ByteBuffer, so they can be reused across calls to iterate over the whole
+    set without allocating any memory.
+    <p>
     @param key
     an entry that is set to refer to the next key element in the returned
     set.
@@ -64,41 +68,33 @@ public class MultipleKeyNIODataEntry extends MultipleEntry {
     indicates whether a value was found.  A return of <code>false</code>
     indicates that the end of the set was reached.
     */
-   public boolean next(final DatabaseEntry key, final DatabaseEntry data) {
-        byte[] intarr;
-        int saveoffset;
+    public boolean next(final DatabaseEntry key, final DatabaseEntry data) {
         if (pos == 0)
             pos = ulen - INT32SZ;
 
-        // pull the offsets out of the ByteBuffer.
-        if(this.data_nio.capacity() < 16)
+        /*
+         * Read the offsets in place with absolute gets: the buffer position
+         * is never moved and no temporary array is needed per pair.
+         */
+        if (this.data_nio.capacity() < 16)
             return false;
-        intarr = new byte[16];
-        saveoffset = this.data_nio.position();
-        this.data_nio.position(pos - INT32SZ*3);
-        this.data_nio.get(intarr, 0, 16);
-        this.data_nio.position(saveoffset);
 
-        final int keyoff = DbUtil.array2int(intarr, 12);
+        final int keyoff = DbUtil.buffer2int(this.data_nio, pos);
 
         // crack out the key and data offsets and lengths.
         if (keyoff < 0)
             return false;
 
-        final int keysz = DbUtil.array2int(intarr, 8);
-        final int dataoff = DbUtil.array2int(intarr, 4);
-        final int datasz = DbUtil.array2int(intarr, 0);
+        final int keysz = DbUtil.buffer2int(this.data_nio, pos - INT32SZ);
+        final int dataoff = DbUtil.buffer2int(this.data_nio, pos - INT32SZ*2);
+        final int datasz = DbUtil.buffer2int(this.data_nio, pos - INT32SZ*3);
 
         // move the position to one before the last offset read.
         pos -= INT32SZ*4;
 
-        key.setDataNIO(this.data_nio);
-        key.setOffset(keyoff);
-        key.setSize(keysz);
+        key.setDataNIO(this.data_nio, keyoff, keysz);
 
-        data.setDataNIO(this.data_nio);
-        data.setOffset(dataoff);
-        data.setSize(datasz);
+        data.setDataNIO(this.data_nio, dataoff, datasz);
 
         return true;
     }
@@ -52,6 +52,10 @@ public class MultipleNIODataEntry extends MultipleEntry {
     be called after a successful call to a {@link com.sleepycat.db.Database Database} or
     {@link com.sleepycat.db.Cursor Cursor} get method with this object as the data parameter.
     <p>
+    The data entry is set to refer directly into this entry's
+    ByteBuffer, so it can be reused across calls to iterate over the whole
+    set without allocating any memory.
+    <p>
     When used with the Queue and Recno access methods,
     <code>data.getData()<code> will return <code>null</code> for deleted
     records.
@@ -65,35 +69,29 @@ public class MultipleNIODataEntry extends MultipleEntry {
     indicates that the end of the set was reached.
     */
     public boolean next(final DatabaseEntry data) {
-        byte[] intarr;
-        int saveoffset;
         if (pos == 0)
             pos = ulen - INT32SZ;
 
-        // pull the offsets out of the ByteBuffer.
-        if(this.data_nio.capacity() < 8)
+        /*
+         * Read the offsets in place with absolute gets: the buffer position
+         * is never moved and no temporary array is needed per item.
+         */
+        if (this.data_nio.capacity() < 8)
             return false;
-        intarr = new byte[8];
-        saveoffset = this.data_nio.position();
-        this.data_nio.position(pos - INT32SZ);
-        this.data_nio.get(intarr, 0, 8);
-        this.data_nio.position(saveoffset);
 
-        final int dataoff = DbUtil.array2int(intarr, 4);
+        final int dataoff = DbUtil.buffer2int(this.data_nio, pos);
 
         // crack out the data offset and length.
         if (dataoff < 0) {
             return (false);
         }
 
-        final int datasz = DbUtil.array2int(intarr, 0);
+        final int datasz = DbUtil.buffer2int(this.data_nio, pos - INT32SZ);
 
         // move the position to one before the last offset read.
         pos -= INT32SZ*2;
 
-        data.setDataNIO(this.data_nio);
-        data.setSize(datasz);
-        data.setOffset(dataoff);
+        data.setDataNIO(this.data_nio, dataoff, datasz);
 
         return (true);
     }
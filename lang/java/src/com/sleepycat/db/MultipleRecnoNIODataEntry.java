@@ -52,6 +52,10 @@ public class MultipleRecnoNIODataEntry extends MultipleEntry {
     may only be called after a successful call to a {@link com.sleepycat.db.Database Database} or
     {@link com.sleepycat.db.Cursor Cursor} get method with this object as the data parameter.
     <p>
+    The record number and data entries are set to refer directly into this entry's
+    ByteBuffer, so they can be reused across calls to iterate over the whole
+    set without allocating any memory.
+    <p>
     When used with the Queue and Recno access methods,
     <code>data.getData()<code> will return <code>null</code> for deleted
     records.
@@ -69,39 +73,31 @@ public class MultipleRecnoNIODataEntry extends MultipleEntry {
     indicates that the end of the set was reached.
     */
     public boolean next(final DatabaseEntry recno, final DatabaseEntry data) {
-        byte[] intarr;
-        int saveoffset;
         if (pos == 0)
             pos = ulen - INT32SZ;
 
-        // pull the offsets out of the ByteBuffer.
-        if(this.data_nio.capacity() < 12)
+        /*
+         * Read the offsets in place with absolute gets: the buffer position
+         * is never moved and no temporary array is needed per pair.
+         */
+        if (this.data_nio.capacity() < 12)
             return false;
-        intarr = new byte[12];
-        saveoffset = this.data_nio.position();
-        this.data_nio.position(pos - INT32SZ*2);
-        this.data_nio.get(intarr, 0, 12);
-        this.data_nio.position(saveoffset);
 
-        final int keyoff = DbUtil.array2int(intarr, 8);
+        final int keyoff = DbUtil.buffer2int(this.data_nio, pos);
 
         // crack out the key offset and the data offset and length.
         if (keyoff < 0)
             return false;
 
-        final int dataoff = DbUtil.array2int(intarr, 4);
-        final int datasz = DbUtil.array2int(intarr, 0);
+        final int dataoff = DbUtil.buffer2int(this.data_nio, pos - INT32SZ);
+        final int datasz = DbUtil.buffer2int(this.data_nio, pos - INT32SZ*2);
 
         // move the position to one before the last offset read.
         pos -= INT32SZ*3;
 
-        recno.setDataNIO(this.data_nio);
-        recno.setOffset(keyoff);
-        recno.setSize(INT32SZ);
+        recno.setDataNIO(this.data_nio, keyoff, INT32SZ);
 
-        data.setDataNIO(this.data_nio);
-        data.setOffset(dataoff);
-        data.setSize(datasz);
+        data.setDataNIO(this.data_nio, dataoff, datasz);
 
         return true;
     }
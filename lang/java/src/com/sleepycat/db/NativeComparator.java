@@ -0,0 +1,260 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.sleepycat.db.internal.Db;
+
+/**
+A comparator of common key layouts that the library runs itself, without
+calling into Java for each comparison.
+<p>
+When a custom {@link java.util.Comparator Comparator} is configured with
+{@link com.sleepycat.db.DatabaseConfig#setBtreeComparator
+DatabaseConfig.setBtreeComparator},
+{@link com.sleepycat.db.DatabaseConfig#setDuplicateComparator
+DatabaseConfig.setDuplicateComparator} or
+{@link com.sleepycat.db.DatabaseConfig#setHashComparator
+DatabaseConfig.setHashComparator}, every comparison made while searching a
+page calls back into Java with copies of the two items.  If the comparator
+is a NativeComparator, the comparison is done by the library instead, with
+no copies and no callbacks.
+<p>
+A NativeComparator compares a key as a sequence of fields.  Each field has
+a width in bytes and is compared as unsigned big-endian bytes, optionally
+treating the first byte as signed, so that big-endian two's complement
+integers such as those written by
+{@link java.nio.ByteBuffer#putInt ByteBuffer.putInt} are ordered
+numerically, and optionally in descending order.  (Integers written by
+{@link com.sleepycat.bind.tuple.TupleOutput TupleOutput} are already
+ordered as unsigned bytes.)  A field with no width covers the rest of the
+key.  Any bytes after the last field are compared in ascending order.  If a
+key ends within a field, the shorter key sorts first in the order of that
+field.
+<p>
+For example, a key made of a four byte signed integer followed by a
+string, ordered by descending integer and then by string, is compared by:
+<blockquote><pre>
+    new NativeComparator(Field.signedInt(4).descending(), Field.rest())
+</pre></blockquote>
+<p>
+The {@link #compare} method gives the same order in Java, so a
+NativeComparator may also be used wherever a Java comparator of keys is
+needed.
+*/
+public final class NativeComparator implements Comparator<byte[]>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+    The largest number of fields in a comparator.
+    */
+    public static final int MAX_FIELDS = (Db.COMPARE_SPEC_SIZE - 1) / 2;
+
+    private static final int FIELD_SIGNED = 0x01;
+    private static final int FIELD_DESCENDING = 0x02;
+
+    /**
+    A comparator of whole keys as unsigned bytes, which is the library's
+    default order.  It is useful as a duplicate comparator of a database
+    that also has a Java key comparator.
+    */
+    public static final NativeComparator LEXICOGRAPHIC =
+        new NativeComparator(Field.rest());
+
+    /**
+    A comparator of whole keys as unsigned bytes, in descending order.
+    */
+    public static final NativeComparator REVERSE_LEXICOGRAPHIC =
+        new NativeComparator(Field.rest().descending());
+
+    /* The spec read by the library, laid out as in java_callbacks.i. */
+    private final byte[] spec;
+
+    /**
+    Create a comparator of keys made of the given fields.
+    <p>
+    @param fields
+    the fields, in the order they appear in the key.  Only the last field
+    may cover the rest of the key.
+    */
+    public NativeComparator(final Field... fields) {
+        if (fields.length == 0)
+            throw new IllegalArgumentException("no fields");
+        if (fields.length > MAX_FIELDS)
+            throw new IllegalArgumentException(
+                "more than " + MAX_FIELDS + " fields");
+        spec = new byte[1 + 2 * fields.length];
+        spec[0] = (byte)fields.length;
+        for (int i = 0; i < fields.length; i++) {
+            final Field field = fields[i];
+            if (field.width == 0 && i != fields.length - 1)
+                throw new IllegalArgumentException(
+                    "only the last field may cover the rest of the key");
+            spec[1 + 2 * i] = (byte)field.flags;
+            spec[2 + 2 * i] = (byte)field.width;
+        }
+    }
+
+    /* package */ byte[] getSpec() {
+        return spec;
+    }
+
+    /**
+    Compare two keys in the order described by the fields.
+    <p>
+    @param key1
+    the first key.
+    @param key2
+    the second key.
+    @return
+    a negative integer, zero, or a positive integer as the first key sorts
+    before, with or after the second.
+    */
+    public int compare(final byte[] key1, final byte[] key2) {
+        final int nfields = spec[0];
+        int off1 = 0;
+        int off2 = 0;
+
+        /*
+         * This must give the same order as __dbj_spec_compare in
+         * java_callbacks.i.
+         */
+        for (int field = 0; field <= nfields; field++) {
+            final int flags = (field < nfields) ? spec[1 + 2 * field] : 0;
+            final int width =
+                (field < nfields) ? (spec[2 + 2 * field] & 0xff) : 0;
+            final int len1 = key1.length - off1;
+            final int len2 = key2.length - off2;
+            final int n1 = (width == 0 || width > len1) ? len1 : width;
+            final int n2 = (width == 0 || width > len2) ? len2 : width;
+            final int n = Math.min(n1, n2);
+
+            int cmp = 0;
+            for (int i = 0; cmp == 0 && i < n; i++) {
+                int b1 = key1[off1 + i] & 0xff;
+                int b2 = key2[off2 + i] & 0xff;
+                if (i == 0 && (flags & FIELD_SIGNED) != 0) {
+                    b1 ^= 0x80;
+                    b2 ^= 0x80;
+                }
+                cmp = b1 - b2;
+            }
+            if (cmp == 0 && n1 != n2)
+                cmp = (n1 < n2) ? -1 : 1;
+            if (cmp != 0)
+                return ((flags & FIELD_DESCENDING) != 0) ? -cmp : cmp;
+
+            off1 += n1;
+            off2 += n2;
+        }
+        return 0;
+    }
+
+    /**
+    Return true if the other object is a NativeComparator with the same
+    fields.
+    */
+    public boolean equals(final Object o) {
+        return (o instanceof NativeComparator) &&
+            Arrays.equals(spec, ((NativeComparator)o).spec);
+    }
+
+    public int hashCode() {
+        return Arrays.hashCode(spec);
+    }
+
+    /**
+    A field of a key compared by a {@link NativeComparator}.  Fields are
+    immutable; {@link #descending} returns a new field.
+    */
+    public static final class Field implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int width;
+        private final int flags;
+
+        private Field(final int width, final int flags) {
+            this.width = width;
+            this.flags = flags;
+        }
+
+        private static int checkWidth(final int width) {
+            if (width <= 0 || width > 255)
+                throw new IllegalArgumentException(
+                    "width must be between 1 and 255");
+            return width;
+        }
+
+        /**
+        Return a field of the given number of bytes compared as unsigned
+        bytes, which also orders unsigned big-endian integers.
+        <p>
+        @param width
+        the width of the field in bytes.
+        @return
+        the field.
+        */
+        public static Field bytes(final int width) {
+            return new Field(checkWidth(width), 0);
+        }
+
+        /**
+        Return a field holding an unsigned big-endian integer.
+        <p>
+        @param width
+        the width of the integer in bytes.
+        @return
+        the field.
+        */
+        public static Field unsignedInt(final int width) {
+            return new Field(checkWidth(width), 0);
+        }
+
+        /**
+        Return a field holding a signed big-endian two's complement
+        integer, such as one written by
+        {@link java.nio.ByteBuffer#putInt ByteBuffer.putInt} or
+        {@link java.io.DataOutput#writeLong DataOutput.writeLong}.
+        <p>
+        @param width
+        the width of the integer in bytes.
+        @return
+        the field.
+        */
+        public static Field signedInt(final int width) {
+            return new Field(checkWidth(width), FIELD_SIGNED);
+        }
+
+        /**
+        Return a field covering the rest of the key, compared as unsigned
+        bytes.
+        <p>
+        @return
+        the field.
+        */
+        public static Field rest() {
+            return new Field(0, 0);
+        }
+
+        /**
+        Return a field like this one, compared in descending order.
+        <p>
+        @return
+        the descending field.
+        */
+        public Field descending() {
+            return new Field(width, flags | FIELD_DESCENDING);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.sleepycat.db.internal.Db;
+import com.sleepycat.util.PackedInteger;
+
+/**
+A secondary key creator for common record layouts, which the library runs
+itself without calling into Java for each primary record written.
+<p>
+When a custom {@link com.sleepycat.db.SecondaryKeyCreator SecondaryKeyCreator}
+is configured with {@link com.sleepycat.db.SecondaryConfig#setKeyCreator
+SecondaryConfig.setKeyCreator}, every write to the primary database calls
+back into Java with copies of the primary key and data.  If the key creator
+is a NativeKeyCreator, the secondary key is extracted by the library
+instead.  When the secondary key is a single field, it is not even copied.
+Any other key creator, and every
+{@link com.sleepycat.db.SecondaryMultiKeyCreator SecondaryMultiKeyCreator},
+is still called in Java.
+<p>
+A NativeKeyCreator builds the secondary key from one or more fields, each
+taken from the primary key or the primary data, and concatenated in order.
+A field is either a range of bytes or a field of a record written with
+{@link com.sleepycat.bind.tuple.TupleOutput TupleOutput}, located by the
+formats of the tuple fields before it.  If a primary record is too short to
+hold a field, the record is not indexed.
+<p>
+For example, a secondary key made of the third field of a tuple holding an
+int, a string and a sorted packed long is created by:
+<blockquote><pre>
+    new NativeKeyCreator(Field.dataTuple(2,
+        Format.INT, Format.STRING, Format.SORTED_PACKED_LONG))
+</pre></blockquote>
+<p>
+The {@link #createSecondaryKey createSecondaryKey} method creates the same
+key in Java.
+*/
+public final class NativeKeyCreator
+    implements SecondaryKeyCreator, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+    The largest number of fields in a key creator.
+    */
+    public static final int MAX_FIELDS = 16;
+
+    /* The kinds of items, as in java_callbacks.i. */
+    private static final int ITEM_FIXED = 1;
+    private static final int ITEM_REST = 2;
+    private static final int ITEM_STRING = 3;
+    private static final int ITEM_PACKED = 4;
+    private static final int ITEM_SORTED_PACKED = 5;
+
+    private static final int SOURCE_KEY = 0;
+    private static final int SOURCE_DATA = 1;
+
+    /* The spec read by the library, laid out as in java_callbacks.i. */
+    private final byte[] spec;
+
+    /**
+    Create a key creator that concatenates the given fields.
+    <p>
+    @param fields
+    the fields, in the order they appear in the secondary key.
+    */
+    public NativeKeyCreator(final Field... fields) {
+        if (fields.length == 0)
+            throw new IllegalArgumentException("no fields");
+        if (fields.length > MAX_FIELDS)
+            throw new IllegalArgumentException(
+                "more than " + MAX_FIELDS + " fields");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            out.write(fields[i].source);
+            out.write(fields[i].nitems);
+            out.write(fields[i].items, 0, fields[i].items.length);
+        }
+        spec = out.toByteArray();
+        if (spec.length > Db.SECKEY_SPEC_SIZE)
+            throw new IllegalArgumentException("the fields are too complex");
+    }
+
+    /* package */ byte[] getSpec() {
+        return spec;
+    }
+
+    /**
+    Create the secondary key in Java, in the same way as the library.
+    <p>
+    @param secondary
+    the secondary database, which is not used.
+    @param key
+    the primary key entry.
+    @param data
+    the primary data entry.
+    @param result
+    the secondary key created.
+    @return
+    true if a key was created, or false if the primary record is too short
+    to hold one of the fields.
+    */
+    public boolean createSecondaryKey(final SecondaryDatabase secondary,
+                                      final DatabaseEntry key,
+                                      final DatabaseEntry data,
+                                      final DatabaseEntry result) {
+        final int nfields = spec[0];
+        final int[] start = new int[nfields];
+        final int[] length = new int[nfields];
+        final byte[][] buf = new byte[nfields][];
+        int total = 0;
+        int s = 1;
+
+        /*
+         * This must extract the same key as __dbj_spec_seckey in
+         * java_callbacks.i.
+         */
+        for (int field = 0; field < nfields; field++) {
+            final DatabaseEntry entry =
+                (spec[s++] == SOURCE_KEY) ? key : data;
+            final byte[] b = (entry.getData() != null) ?
+                entry.getData() : new byte[0];
+            int off = (entry.getData() != null) ? entry.getOffset() : 0;
+            int len = (entry.getData() != null) ? entry.getSize() : 0;
+            final int nitems = spec[s++] & 0xff;
+            int n = 0;
+            for (int item = 0; item < nitems; item++) {
+                off += n;
+                len -= n;
+                switch (spec[s++]) {
+                case ITEM_FIXED:
+                    n = ((spec[s] & 0xff) << 24) |
+                        ((spec[s + 1] & 0xff) << 16) |
+                        ((spec[s + 2] & 0xff) << 8) | (spec[s + 3] & 0xff);
+                    s += 4;
+                    break;
+                case ITEM_REST:
+                    n = len;
+                    break;
+                case ITEM_STRING:
+                    n = len + 1;
+                    for (int i = 0; i < len; i++)
+                        if (b[off + i] == 0) {
+                            n = i + 1;
+                            break;
+                        }
+                    break;
+                case ITEM_PACKED:
+                    n = (len == 0) ?
+                        1 : PackedInteger.getReadIntLength(b, off);
+                    break;
+                case ITEM_SORTED_PACKED:
+                    n = (len == 0) ?
+                        1 : PackedInteger.getReadSortedIntLength(b, off);
+                    break;
+                default:
+                    throw new IllegalStateException("corrupt spec");
+                }
+                if (n > len)
+                    return false;
+            }
+            buf[field] = b;
+            start[field] = off;
+            length[field] = n;
+            total += n;
+        }
+
+        final byte[] secKey = new byte[total];
+        for (int field = 0, off = 0; field < nfields; field++) {
+            System.arraycopy(buf[field], start[field],
+                secKey, off, length[field]);
+            off += length[field];
+        }
+        result.setData(secKey);
+        return true;
+    }
+
+    /**
+    Return true if the other object is a NativeKeyCreator with the same
+    fields.
+    */
+    public boolean equals(final Object o) {
+        return (o instanceof NativeKeyCreator) &&
+            Arrays.equals(spec, ((NativeKeyCreator)o).spec);
+    }
+
+    public int hashCode() {
+        return Arrays.hashCode(spec);
+    }
+
+    /**
+    The formats of the fields of a record written with
+    {@link com.sleepycat.bind.tuple.TupleOutput TupleOutput}, named after
+    the <code>write</code> methods that produce them.
+    */
+    public enum Format {
+        /** Written by <code>writeBoolean</code>. */
+        BOOLEAN(ITEM_FIXED, 1),
+        /** Written by <code>writeByte</code>. */
+        BYTE(ITEM_FIXED, 1),
+        /** Written by <code>writeShort</code>. */
+        SHORT(ITEM_FIXED, 2),
+        /** Written by <code>writeChar</code>. */
+        CHAR(ITEM_FIXED, 2),
+        /** Written by <code>writeInt</code>. */
+        INT(ITEM_FIXED, 4),
+        /** Written by <code>writeLong</code>. */
+        LONG(ITEM_FIXED, 8),
+        /** Written by <code>writeFloat</code>. */
+        FLOAT(ITEM_FIXED, 4),
+        /** Written by <code>writeDouble</code>. */
+        DOUBLE(ITEM_FIXED, 8),
+        /** Written by <code>writeSortedFloat</code>. */
+        SORTED_FLOAT(ITEM_FIXED, 4),
+        /** Written by <code>writeSortedDouble</code>. */
+        SORTED_DOUBLE(ITEM_FIXED, 8),
+        /**
+        Written by <code>writeString</code>, including the terminating
+        zero byte.
+        */
+        STRING(ITEM_STRING, 0),
+        /** Written by <code>writePackedInt</code>. */
+        PACKED_INT(ITEM_PACKED, 0),
+        /** Written by <code>writePackedLong</code>. */
+        PACKED_LONG(ITEM_PACKED, 0),
+        /** Written by <code>writeSortedPackedInt</code>. */
+        SORTED_PACKED_INT(ITEM_SORTED_PACKED, 0),
+        /** Written by <code>writeSortedPackedLong</code>. */
+        SORTED_PACKED_LONG(ITEM_SORTED_PACKED, 0);
+
+        private final int kind;
+        private final int width;
+
+        private Format(final int kind, final int width) {
+            this.kind = kind;
+            this.width = width;
+        }
+    }
+
+    /**
+    A field of a secondary key created by a {@link NativeKeyCreator}.
+    */
+    public static final class Field implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int source;
+        private final int nitems;
+        private final byte[] items;
+
+        private Field(final int source, final int nitems, final byte[] items) {
+            this.source = source;
+            this.nitems = nitems;
+            this.items = items;
+        }
+
+        /**
+        Return a field holding a range of bytes of the primary key.
+        <p>
+        @param offset
+        the offset of the range in the primary key.
+        @param length
+        the number of bytes in the range.
+        @return
+        the field.
+        */
+        public static Field keyBytes(final int offset, final int length) {
+            return bytes(SOURCE_KEY, offset, length);
+        }
+
+        /**
+        Return a field holding the bytes of the primary key from the given
+        offset to its end.
+        <p>
+        @param offset
+        the offset of the field in the primary key.
+        @return
+        the field.
+        */
+        public static Field keyBytes(final int offset) {
+            return bytes(SOURCE_KEY, offset, -1);
+        }
+
+        /**
+        Return a field holding a range of bytes of the primary data.
+        <p>
+        @param offset
+        the offset of the range in the primary data.
+        @param length
+        the number of bytes in the range.
+        @return
+        the field.
+        */
+        public static Field dataBytes(final int offset, final int length) {
+            return bytes(SOURCE_DATA, offset, length);
+        }
+
+        /**
+        Return a field holding the bytes of the primary data from the given
+        offset to its end.
+        <p>
+        @param offset
+        the offset of the field in the primary data.
+        @return
+        the field.
+        */
+        public static Field dataBytes(final int offset) {
+            return bytes(SOURCE_DATA, offset, -1);
+        }
+
+        /**
+        Return a field holding one field of a primary key written with
+        {@link com.sleepycat.bind.tuple.TupleOutput TupleOutput}.
+        <p>
+        @param index
+        the index of the tuple field, counting from zero.
+        @param formats
+        the formats of the tuple fields, at least up to the one at the
+        given index.
+        @return
+        the field.
+        */
+        public static Field keyTuple(final int index,
+                                     final Format... formats) {
+            return tuple(SOURCE_KEY, index, formats);
+        }
+
+        /**
+        Return a field holding one field of primary data written with
+        {@link com.sleepycat.bind.tuple.TupleOutput TupleOutput}.
+        <p>
+        @param index
+        the index of the tuple field, counting from zero.
+        @param formats
+        the formats of the tuple fields, at least up to the one at the
+        given index.
+        @return
+        the field.
+        */
+        public static Field dataTuple(final int index,
+                                      final Format... formats) {
+            return tuple(SOURCE_DATA, index, formats);
+        }
+
+        private static Field bytes(final int source,
+                                   final int offset,
+                                   final int length) {
+            if (offset < 0)
+                throw new IllegalArgumentException("negative offset");
+            if (length == 0 || length < -1)
+                throw new IllegalArgumentException("length must be positive");
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int nitems = 1;
+            if (offset > 0) {
+                writeFixed(out, offset);
+                nitems++;
+            }
+            if (length > 0)
+                writeFixed(out, length);
+            else
+                out.write(ITEM_REST);
+            return new Field(source, nitems, out.toByteArray());
+        }
+
+        private static Field tuple(final int source,
+                                   final int index,
+                                   final Format[] formats) {
+            if (index < 0 || index >= formats.length)
+                throw new IllegalArgumentException(
+                    "no format for tuple field " + index);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int nitems = 0;
+            int skip = 0;
+            for (int i = 0; i < index; i++) {
+                /* Adjacent fixed width fields are skipped together. */
+                if (formats[i].kind == ITEM_FIXED)
+                    skip += formats[i].width;
+                else {
+                    if (skip > 0) {
+                        writeFixed(out, skip);
+                        nitems++;
+                        skip = 0;
+                    }
+                    out.write(formats[i].kind);
+                    nitems++;
+                }
+            }
+            if (skip > 0) {
+                writeFixed(out, skip);
+                nitems++;
+            }
+            if (formats[index].kind == ITEM_FIXED)
+                writeFixed(out, formats[index].width);
+            else
+                out.write(formats[index].kind);
+            nitems++;
+            if (nitems > 255)
+                throw new IllegalArgumentException("too many tuple fields");
+            return new Field(source, nitems, out.toByteArray());
+        }
+
+        private static void writeFixed(final ByteArrayOutputStream out,
+                                       final int width) {
+            out.write(ITEM_FIXED);
+            out.write(width >>> 24);
+            out.write(width >>> 16);
+            out.write(width >>> 8);
+            out.write(width);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.Serializable;
+
+/**
+A Btree prefix calculator for keys ordered by a
+{@link com.sleepycat.db.NativeComparator NativeComparator}, which the library
+runs itself without calling into Java.
+<p>
+When the keys of a Btree are compared in their default byte order, the
+library truncates the keys it stores on internal pages to the shortest
+prefix that still separates the pages below.  Configuring any key comparator
+turns this off, because the library no longer knows which prefixes sort
+correctly, so every internal page holds whole keys and fewer of them fit in
+the cache.  A NativePrefixCalculator restores the truncation for a
+NativeComparator, using its fields to choose the prefix: keys are cut just
+after the first byte that differs, except that a field in descending order
+is always kept whole.
+<p>
+The prefix calculator must be configured with the same comparator as the
+database, for example:
+<blockquote><pre>
+    NativeComparator order = new NativeComparator(
+        Field.signedInt(4), Field.rest());
+    dbConfig.setBtreeComparator(order);
+    dbConfig.setBtreePrefixCalculator(new NativePrefixCalculator(order));
+</pre></blockquote>
+*/
+public final class NativePrefixCalculator
+    implements BtreePrefixCalculator, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int FIELD_DESCENDING = 0x02;
+
+    private final NativeComparator comparator;
+
+    /**
+    Create a prefix calculator for keys in the order of the given
+    comparator.
+    <p>
+    @param comparator
+    the Btree key comparator of the database.
+    */
+    public NativePrefixCalculator(final NativeComparator comparator) {
+        if (comparator == null)
+            throw new IllegalArgumentException("comparator is null");
+        this.comparator = comparator;
+    }
+
+    /**
+    Return the comparator of the keys.
+    <p>
+    @return
+    the comparator of the keys.
+    */
+    public NativeComparator getComparator() {
+        return comparator;
+    }
+
+    /**
+    Return the length of the shortest prefix of the second key that sorts
+    after the first key, and not after the second.
+    <p>
+    @param db
+    the database, which is not used.
+    @param dbt1
+    the first key.
+    @param dbt2
+    the second key, which sorts after the first.
+    @return
+    the length of the prefix of the second key.
+    */
+    public int prefix(final Database db,
+                      final DatabaseEntry dbt1,
+                      final DatabaseEntry dbt2) {
+        final byte[] spec = comparator.getSpec();
+        final byte[] b1 = dbt1.getData();
+        final byte[] b2 = dbt2.getData();
+        final int nfields = spec[0];
+        int off1 = dbt1.getOffset();
+        int off2 = dbt2.getOffset();
+        int len1 = dbt1.getSize();
+        int len2 = dbt2.getSize();
+        int off = 0;
+
+        /*
+         * This must give the same prefix as __dbj_spec_prefix in
+         * java_callbacks.i.
+         */
+        for (int field = 0; field <= nfields; field++) {
+            final int flags = (field < nfields) ? spec[1 + 2 * field] : 0;
+            int width = (field < nfields) ? (spec[2 + 2 * field] & 0xff) : 0;
+            final int n1 = (width == 0 || width > len1) ? len1 : width;
+            int n2 = (width == 0 || width > len2) ? len2 : width;
+            final int n = Math.min(n1, n2);
+            int i = 0;
+            while (i < n && b1[off1 + i] == b2[off2 + i])
+                i++;
+
+            if (i == n && n1 == n2) {
+                off1 += n1;
+                off2 += n2;
+                len1 -= n1;
+                len2 -= n2;
+                off += n2;
+                continue;
+            }
+            if ((flags & FIELD_DESCENDING) == 0)
+                return off + i + 1;
+            for (;;) {
+                off += n2;
+                len2 -= n2;
+                if (++field >= nfields ||
+                    (spec[1 + 2 * field] & FIELD_DESCENDING) == 0)
+                    return off;
+                width = spec[2 + 2 * field] & 0xff;
+                n2 = (width == 0 || width > len2) ? len2 : width;
+            }
+        }
+        return dbt2.getSize();
+    }
+
+    /**
+    Return true if the other object is a NativePrefixCalculator for the
+    same order.
+    */
+    public boolean equals(final Object o) {
+        return (o instanceof NativePrefixCalculator) &&
+            comparator.equals(((NativePrefixCalculator)o).comparator);
+    }
+
+    public int hashCode() {
+        return comparator.hashCode();
+    }
+}
@@ -0,0 +1,552 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2011, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+Performs a hot backup of an environment with several threads, copying
+database files and log files in parallel.
+<p>
+{@link com.sleepycat.db.Environment#backup Environment.backup} copies one
+file at a time.  This class finds the same database files in the environment
+home and data directories and copies them with
+{@link com.sleepycat.db.Environment#backupDatabase Environment.backupDatabase}
+from a pool of threads, largest first, so that a large file started late does
+not hold up the end of the backup.  Log files that are no longer being written
+are copied by the same threads at the same time.  The log files written to
+during the backup are copied only after every database file is finished, so
+the backup holds the log needed to recover every page that was copied.  As
+with Environment.backup, the environment is marked as being in a hot backup
+while the files are copied, and the backup is made consistent by running
+catastrophic recovery on it.
+<p>
+By default the library writes the files to the target directory.  To write
+them elsewhere, override {@link #createBackupHandler} to return one
+{@link com.sleepycat.db.BackupHandler BackupHandler} for each thread.  Each
+handler is only called by its own thread, for one file at a time.  While the
+backup runs, a handler that passes each thread's calls on to that thread's
+handler is installed in the environment.  Other parallel backups,
+{@link com.sleepycat.db.IncrementalBackup IncrementalBackup} full backups and
+{@link com.sleepycat.db.Environment#backup Environment.backup} wait for the
+backup to finish; a call to Environment.backupDatabase made by another thread
+meanwhile fails.
+<p>
+The time taken to copy each file and the number of bytes copied are reported
+to the {@link #setBackupFeedbackHandler BackupFeedbackHandler}, if one is
+set.
+<p>
+The Clean and Files backup options are not supported.  Log files must not be
+removed while the backup runs.
+*/
+public class ParallelBackup {
+
+    /* The value returned by the installed handler when it fails. */
+    private static final int FAILED = 1;
+
+    private static final String LOG_PREFIX = "log.";
+    private static final String REGION_PREFIX = "__db";
+    private static final String PARTITION_PREFIX = "__dbp.";
+    private static final String REP_SYSTEM_DB = "__db.rep.system";
+
+    /* The magic numbers of the Btree, Hash, Heap and Queue access methods. */
+    private static final int[] MAGIC = { 0x053162, 0x061561, 0x074582, 0x042253 };
+
+    private final Environment env;
+    private BackupOptions options = new BackupOptions();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private BackupFeedbackHandler feedbackHandler;
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
+
+    /**
+    Create a parallel backup of an environment.
+    <p>
+    @param env
+    the environment to back up.
+    */
+    public ParallelBackup(final Environment env) {
+        if (env == null)
+            throw new IllegalArgumentException("env must not be null");
+        this.env = env;
+    }
+
+    /**
+    Set the options for the backup.  The AllowCreate, ExclusiveCreate,
+    NoLogs, SingleDir and Update options are honored as they are by
+    {@link com.sleepycat.db.Environment#backup Environment.backup}.
+    <p>
+    @param options
+    the backup options.
+    */
+    public void setBackupOptions(final BackupOptions options) {
+        this.options = (options != null) ? options : new BackupOptions();
+    }
+
+    /**
+    Return the options for the backup.
+    <p>
+    @return
+    the backup options.
+    */
+    public BackupOptions getBackupOptions() {
+        return options;
+    }
+
+    /**
+    Set the number of threads that copy files.  The default is the number of
+    processors.
+    <p>
+    @param threads
+    the number of threads.
+    */
+    public void setThreads(final int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        this.threads = threads;
+    }
+
+    /**
+    Return the number of threads that copy files.
+    <p>
+    @return
+    the number of threads.
+    */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+    Set the handler to which the throughput of each file is reported.
+    <p>
+    @param feedbackHandler
+    the feedback handler, or null.
+    */
+    public void setBackupFeedbackHandler(
+        final BackupFeedbackHandler feedbackHandler) {
+
+        this.feedbackHandler = feedbackHandler;
+    }
+
+    /**
+    Return the handler to which the throughput of each file is reported.
+    <p>
+    @return
+    the feedback handler, or null if none has been set.
+    */
+    public BackupFeedbackHandler getBackupFeedbackHandler() {
+        return feedbackHandler;
+    }
+
+    /**
+    Create the handler for one of the threads of a backup.  This method is
+    called for each thread when a backup starts.  The default implementation
+    returns null, so that the library writes the files to the target
+    directory.
+    <p>
+    @return
+    the handler to which the thread writes its files, or null.
+    */
+    protected BackupHandler createBackupHandler() {
+        return null;
+    }
+
+    /**
+    Back up the environment.
+    <p>
+    @param target
+    the target directory, which is passed to the handlers if there are any.
+    <p>
+    @throws IOException if a log file cannot be read or written.
+    <p>
+    @throws DatabaseException if a failure occurs at any point during the
+    backup.
+    */
+    public void backup(final String target)
+        throws DatabaseException, IOException {
+
+        if (target == null)
+            throw new IllegalArgumentException("target must not be null");
+        if (options.getClean() || options.getFiles())
+            throw new IllegalArgumentException(
+                "The Clean and Files backup options are not supported");
+
+        final EnvironmentConfig config = env.getConfig();
+        final Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Worker(createBackupHandler(), feedbackHandler);
+        final boolean useHandlers = workers[0].handler != null;
+        for (int i = 1; i < threads; i++) {
+            if ((workers[i].handler != null) != useHandlers)
+                throw new IllegalStateException("createBackupHandler must" +
+                    " return a handler for every thread or for none");
+        }
+
+        /* Collect the database files before anything is copied. */
+        final List<Callable<Void>> dbTasks = new ArrayList<Callable<Void>>();
+        if (!options.getUpdate())
+            addDatabaseTasks(config, target, useHandlers, dbTasks);
+
+        final BackupHandlerScope scope = new BackupHandlerScope(
+            env, useHandlers ? new Router() : null, true);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactory() {
+                private int next;
+
+                public synchronized Thread newThread(final Runnable r) {
+                    final Worker worker = workers[next++ % workers.length];
+                    final Thread t = new Thread(new Runnable() {
+                        public void run() {
+                            currentWorker.set(worker);
+                            r.run();
+                        }
+                    }, "ParallelBackup");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            final String logTarget =
+                IncrementalBackup.getLogTarget(env, options, target);
+            if (!useHandlers && options.getAllowCreate()) {
+                if (!options.getNoLogs())
+                    new File(logTarget).mkdirs();
+            }
+
+            /*
+             * Copy the database files and the log files that are complete
+             * now, then the rest of the log.
+             */
+            env.logFlush(null);
+            final int firstActive = env.getLogStats(null).getCurFile();
+            final List<Callable<Void>> tasks =
+                new ArrayList<Callable<Void>>(dbTasks);
+            if (!options.getNoLogs())
+                addLogTasks(logTarget, 0, firstActive, useHandlers, tasks);
+            runAll(executor, tasks);
+
+            if (!options.getNoLogs()) {
+                env.logFlush(null);
+                tasks.clear();
+                addLogTasks(logTarget, firstActive, Integer.MAX_VALUE,
+                    useHandlers, tasks);
+                runAll(executor, tasks);
+            }
+        } finally {
+            executor.shutdown();
+            scope.restore();
+        }
+    }
+
+    /*
+     * Add a task for each database file in the home and data directories,
+     * largest first, skipping the files in the library's name space as
+     * Environment.backup does.
+     */
+    private void addDatabaseTasks(final EnvironmentConfig config,
+                                  final String target,
+                                  final boolean useHandlers,
+                                  final List<Callable<Void>> tasks)
+        throws DatabaseException {
+
+        final File home = env.getHome();
+        final List<File> files = new ArrayList<File>();
+        final List<String> targets = new ArrayList<String>();
+        addDatabaseFiles(home, target, useHandlers, files, targets);
+        final File[] dataDirs = config.getDataDirs();
+        for (int i = 0; dataDirs != null && i < dataDirs.length; i++) {
+            final File dir = dataDirs[i];
+            if (dir.isAbsolute() && !options.getSingleDir())
+                throw new IllegalArgumentException("data directory " + dir +
+                    " is an absolute path, which is only permitted when" +
+                    " backing up to a single directory");
+            final File source = dir.isAbsolute() ?
+                dir : new File(home, dir.getPath());
+            final String dirTarget = options.getSingleDir() ?
+                target : new File(target, dir.getPath()).getPath();
+            addDatabaseFiles(source, dirTarget, useHandlers, files, targets);
+        }
+
+        final Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = Integer.valueOf(i);
+        final long[] sizes = new long[files.size()];
+        for (int i = 0; i < sizes.length; i++)
+            sizes[i] = files.get(i).length();
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                final long sa = sizes[a.intValue()];
+                final long sb = sizes[b.intValue()];
+                return (sa > sb) ? -1 : ((sa < sb) ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < order.length; i++) {
+            final File file = files.get(order[i].intValue());
+            final String dbTarget = targets.get(order[i].intValue());
+            tasks.add(new Callable<Void>() {
+                public Void call()
+                    throws DatabaseException {
+
+                    copyDatabase(file, dbTarget);
+                    return null;
+                }
+            });
+        }
+    }
+
+    private void addDatabaseFiles(final File dir,
+                                  final String target,
+                                  final boolean useHandlers,
+                                  final List<File> files,
+                                  final List<String> targets) {
+        final File[] list = dir.listFiles();
+        if (list == null)
+            return;
+        boolean found = false;
+        for (int i = 0; i < list.length; i++) {
+            final String name = list[i].getName();
+            if (name.startsWith(LOG_PREFIX))
+                continue;
+            if (name.startsWith(REGION_PREFIX) &&
+                !name.startsWith(PARTITION_PREFIX) &&
+                !name.equals(REP_SYSTEM_DB))
+                continue;
+            if (!list[i].isFile() || !isDatabase(list[i]))
+                continue;
+            files.add(list[i]);
+            targets.add(target);
+            found = true;
+        }
+        if (found && !useHandlers && options.getAllowCreate())
+            new File(target).mkdirs();
+    }
+
+    /* Add a task for each log file numbered from first up to end. */
+    private void addLogTasks(final String logTarget,
+                             final int first,
+                             final int end,
+                             final boolean useHandlers,
+                             final List<Callable<Void>> tasks)
+        throws DatabaseException {
+
+        final File[] logs = env.getArchiveLogFiles(true);
+        for (int i = 0; i < logs.length; i++) {
+            final File log = logs[i];
+            final int number;
+            try {
+                number = Integer.parseInt(
+                    log.getName().substring(LOG_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (number < first || number >= end)
+                continue;
+            tasks.add(new Callable<Void>() {
+                public Void call()
+                    throws DatabaseException, IOException {
+
+                    copyLog(log, logTarget);
+                    return null;
+                }
+            });
+        }
+    }
+
+    private void copyDatabase(final File file, final String target)
+        throws DatabaseException {
+
+        final Worker worker = currentWorker.get();
+        final long start = System.currentTimeMillis();
+        worker.bytes = 0;
+        env.backupDatabase(file.getName(), target,
+            options.getExclusiveCreate());
+        final long bytes = (worker.handler != null) ?
+            worker.bytes : file.length();
+        worker.report(file.getPath(), bytes, start);
+    }
+
+    private void copyLog(final File log, final String logTarget)
+        throws DatabaseException, IOException {
+
+        final Worker worker = currentWorker.get();
+        final long start = System.currentTimeMillis();
+        final long bytes;
+        if (worker.handler != null) {
+            bytes = IncrementalBackup.copyLogFile(log, worker.handler,
+                logTarget, 0, Long.MAX_VALUE,
+                IncrementalBackup.DEFAULT_CHUNK_SIZE);
+        } else {
+            bytes = copyFile(log, new File(logTarget, log.getName()));
+        }
+        worker.report(log.getPath(), bytes, start);
+    }
+
+    private long copyFile(final File source, final File dest)
+        throws DatabaseException, IOException {
+
+        if (options.getExclusiveCreate() && dest.exists())
+            throw new DatabaseException(dest + " already exists");
+        final FileInputStream in = new FileInputStream(source);
+        try {
+            final FileOutputStream out = new FileOutputStream(dest);
+            try {
+                final FileChannel src = in.getChannel();
+                final long size = src.size();
+                long pos = 0;
+                while (pos < size)
+                    pos += src.transferTo(pos, size - pos, out.getChannel());
+                return pos;
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Run the tasks and wait for all of them.  After a failure the tasks
+     * not yet started are cancelled, but the running ones are waited for,
+     * so that no copy is still using the environment when the backup
+     * returns.
+     */
+    private static void runAll(final ExecutorService executor,
+                               final List<Callable<Void>> tasks)
+        throws DatabaseException, IOException {
+
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final Callable<Void> task : tasks)
+            futures.add(executor.submit(task));
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (final Future<Void> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (failure == null)
+                        failure = e;
+                    cancelAll(futures);
+                    continue;
+                } catch (CancellationException e) {
+                    /* Cancelled after an earlier failure. */
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                    cancelAll(futures);
+                }
+                break;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure == null)
+            return;
+        if (failure instanceof DatabaseException)
+            throw (DatabaseException)failure;
+        if (failure instanceof IOException)
+            throw (IOException)failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException)failure;
+        if (failure instanceof Error)
+            throw (Error)failure;
+        throw new DatabaseException(failure);
+    }
+
+    private static void cancelAll(final List<Future<Void>> futures) {
+        for (final Future<Void> future : futures)
+            future.cancel(false);
+    }
+
+    /* Whether a file starts with the meta page of a database. */
+    private static boolean isDatabase(final File file) {
+        try {
+            final RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                if (in.length() < 16)
+                    return false;
+                in.seek(12);
+                final int magic = in.readInt();
+                final int swapped = Integer.reverseBytes(magic);
+                for (int i = 0; i < MAGIC.length; i++) {
+                    if (magic == MAGIC[i] || swapped == MAGIC[i])
+                        return true;
+                }
+                return false;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /* The state of one copying thread. */
+    private final class Worker {
+        final BackupHandler handler;
+        final BackupFeedbackHandler feedback;
+        long bytes;
+
+        Worker(final BackupHandler handler,
+               final BackupFeedbackHandler feedback) {
+            this.handler = handler;
+            this.feedback = feedback;
+        }
+
+        void report(final String file, final long bytes, final long start) {
+            if (feedback != null)
+                feedback.backupFeedback(env, file, bytes,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /*
+     * The handler installed in the environment, which passes the calls
+     * made by each thread to that thread's handler.
+     */
+    private final class Router implements BackupHandler {
+        public int open(final String target, final String dbname) {
+            final Worker worker = currentWorker.get();
+            return (worker == null) ?
+                FAILED : worker.handler.open(target, dbname);
+        }
+
+        public int write(final long filePos,
+                         final byte[] buf,
+                         final int off,
+                         final int len) {
+            final Worker worker = currentWorker.get();
+            if (worker == null)
+                return FAILED;
+            worker.bytes += len;
+            return worker.handler.write(filePos, buf, off, len);
+        }
+
+        public int close(final String dbname) {
+            final Worker worker = currentWorker.get();
+            return (worker == null) ? FAILED : worker.handler.close(dbname);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2011, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+A {@link com.sleepycat.db.BackupHandler BackupHandler} that processes backup
+data in parallel threads, limits the rate at which it is written, and passes
+the results to another handler.
+<p>
+Each buffer passed to {@link #write write} is handed to a pool of threads,
+which call {@link #process process} for it.  Subclasses override process to
+compress, checksum or encrypt the data.  The results are passed to the target
+handler in their original order, by the thread that called write, so the
+target handler is never called by more than one thread at a time.  A bounded
+number of buffers are processed or waiting at once; when the bound is
+reached, write waits for the oldest one to be written.
+<p>
+When a rate limit is set, write sleeps as needed so that no more than the
+given number of bytes per second are accepted.  Because
+{@link com.sleepycat.db.Environment#backup Environment.backup} reads the next
+part of a file only after write returns, the limit also applies to the reads
+of the environment's files, which keeps the backup from competing with other
+disk I/O.
+<p>
+Errors are reported by returning a non-zero value from write or close, which
+causes the backup to fail.  The exception, if any, is returned by
+{@link #getFailure}.  A handler must not be used by more than one backup at a
+time.  Call {@link #shutdown} to stop its threads when it is no longer needed.
+*/
+public class ParallelBackupHandler implements BackupHandler {
+
+    /* The value returned by the handler methods when they fail. */
+    private static final int FAILED = 1;
+
+    private final BackupHandler target;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final LinkedList<Pending> pending = new LinkedList<Pending>();
+    private volatile long maxBytesPerSecond;
+    private long nextWriteTime;
+    private String dbname;
+    private volatile Throwable failure;
+    private volatile long bytesWritten;
+    private volatile long throttleTime;
+
+    /**
+    Create a handler that processes data with the given number of threads
+    and passes the results to the target handler.
+    <p>
+    @param target
+    the handler to which the processed data is written.
+    <p>
+    @param threads
+    the number of threads that call {@link #process}.
+    */
+    public ParallelBackupHandler(final BackupHandler target,
+                                 final int threads) {
+        if (target == null)
+            throw new IllegalArgumentException("target must not be null");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        this.target = target;
+        maxPending = threads * 2;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "ParallelBackupHandler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+    Set the maximum number of bytes per second accepted by {@link #write}.
+    <p>
+    @param maxBytesPerSecond
+    the rate limit, or zero for no limit.
+    */
+    public void setMaxBytesPerSecond(final long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0)
+            throw new IllegalArgumentException(
+                "maxBytesPerSecond must not be negative");
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+    Return the maximum number of bytes per second accepted by {@link #write}.
+    <p>
+    @return
+    the rate limit, or zero if there is no limit.
+    */
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+    Return the number of bytes accepted by {@link #write}, before they were
+    processed.
+    <p>
+    @return
+    the number of bytes backed up through this handler.
+    */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+    Return the time that {@link #write} spent sleeping to honor the rate
+    limit.
+    <p>
+    @return
+    the time in milliseconds.
+    */
+    public long getThrottleTime() {
+        return throttleTime;
+    }
+
+    /**
+    Return the exception that caused the backup to fail, if any.  It is
+    cleared when the next file is opened.
+    <p>
+    @return
+    the exception thrown by {@link #process} or while waiting for it, or null.
+    */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+    Process a buffer of backup data.  This method is called by the threads of
+    this handler, possibly for several buffers of the same file at once.  The
+    default implementation returns the given buffer.
+    <p>
+    @param dbname
+    the name of the file being backed up.
+    <p>
+    @param filePos
+    the position of the data in the file.
+    <p>
+    @param buf
+    the data, which is not modified by the caller or reused.
+    <p>
+    @param len
+    the number of bytes of data.
+    <p>
+    @return
+    the given buffer, to write its first len bytes, or a new buffer, to write
+    all of it.  The data is written to the target handler at the position
+    filePos.
+    <p>
+    @throws Exception
+    to fail the backup.
+    */
+    protected byte[] process(final String dbname,
+                             final long filePos,
+                             final byte[] buf,
+                             final int len)
+        throws Exception {
+
+        return buf;
+    }
+
+    public synchronized int open(final String targetDir, final String name) {
+        if (drain(0) != 0)
+            return FAILED;
+        failure = null;
+        dbname = name;
+        return target.open(targetDir, name);
+    }
+
+    public synchronized int write(final long filePos,
+                                  final byte[] buf,
+                                  final int off,
+                                  final int len) {
+        if (failure != null)
+            return FAILED;
+        try {
+            throttle(len);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+            return FAILED;
+        }
+        final byte[] data;
+        if (off == 0) {
+            data = buf;
+        } else {
+            data = new byte[len];
+            System.arraycopy(buf, off, data, 0, len);
+        }
+        final String name = dbname;
+        final Future<byte[]> result = executor.submit(new Callable<byte[]>() {
+            public byte[] call()
+                throws Exception {
+
+                return process(name, filePos, data, len);
+            }
+        });
+        pending.add(new Pending(filePos, data, len, result));
+        bytesWritten += len;
+        return drain(maxPending - 1);
+    }
+
+    public synchronized int close(final String name) {
+        final int ret = drain(0);
+        final int closeRet = target.close(name);
+        dbname = null;
+        return (ret != 0) ? ret : closeRet;
+    }
+
+    /**
+    Stop the threads of this handler.  The handler may not be used after this
+    method is called.
+    */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /*
+     * Write the oldest buffers to the target until no more than the given
+     * number are pending.  After a failure the remaining buffers are
+     * discarded.
+     */
+    private int drain(final int maxLeft) {
+        while (pending.size() > maxLeft) {
+            final Pending p = pending.removeFirst();
+            if (failure != null) {
+                p.result.cancel(false);
+                continue;
+            }
+            final byte[] out;
+            try {
+                out = p.result.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+                continue;
+            }
+            final int outLen = (out == p.data) ? p.len : out.length;
+            final int ret = target.write(p.filePos, out, 0, outLen);
+            if (ret != 0)
+                failure = new DatabaseException(
+                    "Backup handler write failed", ret);
+        }
+        return (failure != null) ? FAILED : 0;
+    }
+
+    /* Sleep until len more bytes may be accepted under the rate limit. */
+    private void throttle(final int len)
+        throws InterruptedException {
+
+        final long rate = maxBytesPerSecond;
+        if (rate == 0)
+            return;
+        final long now = System.nanoTime();
+        if (nextWriteTime - now > 0) {
+            final long wait = nextWriteTime - now;
+            Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+            throttleTime += wait / 1000000;
+        } else {
+            nextWriteTime = now;
+        }
+        nextWriteTime += (long)(len * (1000000000.0 / rate));
+    }
+
+    private static class Pending {
+        final long filePos;
+        final byte[] data;
+        final int len;
+        final Future<byte[]> result;
+
+        Pending(final long filePos,
+                final byte[] data,
+                final int len,
+                final Future<byte[]> result) {
+            this.filePos = filePos;
+            this.data = data;
+            this.len = len;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+package com.sleepycat.db;
+
+/**
+An interface specifying a function to be called with the progress of a
+secondary database populated by more than one thread.
+<p>
+@see SecondaryConfig#setPopulateFeedbackHandler
+*/
+public interface PopulateFeedbackHandler {
+    /**
+    A function called with progress information when a secondary database is
+    being populated by more than one thread.
+    <p>
+    It is up to this function to display this information in an appropriate manner.
+    This function is called by the threads populating the secondary.
+    <p>
+    @param secondary
+    A reference to the secondary database being populated.
+    <p>
+    @param percent
+    The percent of the operation completed, specified as an integer value between 0 and 100.
+    */
+    void populateFeedback(SecondaryDatabase secondary, int percent);
+}
@@ -0,0 +1,327 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+A reusable batch of key/data pairs read in bulk by a scan started with
+{@link com.sleepycat.db.Cursor#scan Cursor.scan}.
+<p>
+Each call to {@link #next next} returns the next pair of the scan.  Pairs
+are read from the database a buffer at a time with a single
+{@link com.sleepycat.db.Cursor#getNext Cursor.getNext} call using
+{@link com.sleepycat.db.MultipleKeyDataEntry MultipleKeyDataEntry}, so the
+cost of crossing into the native library is paid once per batch rather than
+once per record.  If a record does not fit in the bulk buffer, the buffer is
+grown and the read is retried, up to
+{@link com.sleepycat.db.BatchConfig#setMaxBufferSize BatchConfig.setMaxBufferSize}.
+<p>
+The key and data entries passed to {@link #next next} are set to refer into
+the bulk buffer and are only valid until the following call to
+{@link #next next}; copy the bytes out if they are needed for longer.
+<p>
+Scans only return pairs in key order for Btree databases, and the end key of
+a scan is only meaningful for Btree databases.
+<p>
+A scan must be closed before its cursor is used for anything else or is
+closed:
+<blockquote><pre>
+    Cursor cursor = myDatabase.openCursor(txn, null);
+    ScanBatch scan = cursor.scan(fromKey, toKey, null);
+    try {
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        while (scan.next(key, data)) {
+            ...
+        }
+    } finally {
+        scan.close();
+        cursor.close();
+    }
+</pre></blockquote>
+*/
+public class ScanBatch {
+    private final Cursor cursor;
+    private final LockMode lockMode;
+    private final int maxBufferSize;
+    private final Comparator comparator;
+    private final byte[] toKey;
+    private final DatabaseEntry keyParam = new DatabaseEntry();
+    private DatabaseEntry fromKey;
+
+    private MultipleKeyDataEntry current;
+    private MultipleKeyDataEntry spare;
+    private ExecutorService prefetcher;
+    private Future<OperationStatus> pending;
+    private volatile int bufferSize;
+    private boolean inBatch;
+    private boolean exhausted;
+    private boolean done;
+    private long batchCount;
+
+    /* package */ ScanBatch(final Cursor cursor,
+                            final DatabaseEntry fromKey,
+                            final DatabaseEntry toKey,
+                            final BatchConfig config)
+        throws DatabaseException {
+
+        this.cursor = cursor;
+        this.lockMode = config.getLockMode();
+        /* DB refuses bulk buffers smaller than a page. */
+        final int pageSize = cursor.getDatabase().db.get_pagesize();
+        this.maxBufferSize = Math.max(config.getMaxBufferSize(),
+            BatchConfig.alignBufferSize(pageSize));
+        this.bufferSize = Math.min(
+            BatchConfig.alignBufferSize(
+                Math.max(config.getInitialBufferSize(), pageSize)),
+            maxBufferSize);
+        this.fromKey = (fromKey == null) ? null :
+            new DatabaseEntry(copyBytes(fromKey));
+        this.toKey = (toKey == null) ? null : copyBytes(toKey);
+        this.comparator = (toKey == null) ? null :
+            cursor.getDatabase().getConfig().getBtreeComparator();
+
+        current = new MultipleKeyDataEntry(new byte[bufferSize]);
+        if (config.getPrefetch()) {
+            spare = new MultipleKeyDataEntry(new byte[bufferSize]);
+            prefetcher = Executors.newSingleThreadExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "ScanBatch prefetch");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+    }
+
+    /**
+    Return the next key/data pair of the scan, reading the next batch from
+    the database when the current one is used up.
+    <p>
+    @param key
+    an entry that is set to refer to the next key.
+    <p>
+    @param data
+    an entry that is set to refer to the next data item.
+    <p>
+    @return
+    indicates whether a pair was found.  A return of <code>false</code>
+    indicates that the end of the scan was reached.
+    <p>
+    @throws MemoryException if a single record does not fit in a buffer of
+    the maximum configured size.
+    <p>
+    @throws DeadlockException if the operation was selected to resolve a
+    deadlock.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public boolean next(final DatabaseEntry key, final DatabaseEntry data)
+        throws DatabaseException {
+
+        while (!done) {
+            if (inBatch && current.next(key, data)) {
+                if (toKey != null && compareToEnd(key) >= 0)
+                    break;
+                return true;
+            }
+            inBatch = nextBatch();
+            if (!inBatch)
+                break;
+        }
+        done = true;
+        return false;
+    }
+
+    /**
+    Return the number of batches read from the database so far.
+    <p>
+    @return
+    The number of batches read from the database so far.
+    */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+    Return the current size of the bulk buffer.
+    <p>
+    @return
+    The current size in bytes of the bulk buffer.
+    */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+    End the scan, waiting for any batch being read in the background.
+    <p>
+    The cursor used by the scan is not closed, and may be used again once
+    this method returns.
+    <p>
+    @throws DatabaseException if a failure occurs.
+    */
+    public void close()
+        throws DatabaseException {
+
+        done = true;
+        if (prefetcher != null) {
+            try {
+                if (pending != null) {
+                    try {
+                        pending.get();
+                    } catch (ExecutionException e) {
+                        /* The scan is over, so the failure is moot. */
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    pending = null;
+                }
+            } finally {
+                prefetcher.shutdown();
+                prefetcher = null;
+            }
+        }
+    }
+
+    /*
+     * Make the next batch current, either by waiting for the one being read
+     * in the background or by reading it now.  Returns false when the cursor
+     * has no more records.
+     */
+    private boolean nextBatch()
+        throws DatabaseException {
+
+        if (exhausted)
+            return false;
+
+        final OperationStatus status;
+        if (pending != null) {
+            status = awaitPending();
+            final MultipleKeyDataEntry tmp = current;
+            current = spare;
+            spare = tmp;
+        } else
+            status = fetch(current);
+
+        if (status != OperationStatus.SUCCESS) {
+            exhausted = true;
+            return false;
+        }
+        batchCount++;
+
+        if (prefetcher != null) {
+            final MultipleKeyDataEntry target = spare;
+            pending = prefetcher.submit(new Callable<OperationStatus>() {
+                public OperationStatus call()
+                    throws DatabaseException {
+
+                    return fetch(target);
+                }
+            });
+        }
+        return true;
+    }
+
+    private OperationStatus awaitPending()
+        throws DatabaseException {
+
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(
+                "Interrupted waiting for the next batch: " + e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof DatabaseException)
+                throw (DatabaseException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new DatabaseException(cause);
+        } finally {
+            pending = null;
+        }
+    }
+
+    /*
+     * Read one batch into the given bulk entry, growing the buffer and
+     * retrying if DB reports that it is too small.
+     */
+    private OperationStatus fetch(final MultipleKeyDataEntry entry)
+        throws DatabaseException {
+
+        if (entry.getData().length < bufferSize)
+            resize(entry, bufferSize);
+        while (true) {
+            try {
+                if (fromKey != null) {
+                    final OperationStatus status =
+                        cursor.getSearchKeyRange(fromKey, entry, lockMode);
+                    fromKey = null;
+                    return status;
+                }
+                return cursor.getNext(keyParam, entry, lockMode);
+            } catch (MemoryException e) {
+                if (bufferSize >= maxBufferSize)
+                    throw e;
+                bufferSize = Math.min(maxBufferSize,
+                    BatchConfig.alignBufferSize(
+                    Math.max(bufferSize * 2, entry.getSize())));
+                resize(entry, bufferSize);
+            }
+        }
+    }
+
+    private static void resize(final MultipleKeyDataEntry entry,
+                               final int size) {
+        entry.setData(new byte[size]);
+        entry.setUserBuffer(size, true);
+    }
+
+    private int compareToEnd(final DatabaseEntry key) {
+        if (comparator != null) {
+            @SuppressWarnings("unchecked")
+            final int cmp = comparator.compare(copyBytes(key), toKey);
+            return cmp;
+        }
+        final byte[] a = key.getData();
+        final int off = key.getOffset();
+        final int len = key.getSize();
+        final int limit = Math.min(len, toKey.length);
+        for (int i = 0; i < limit; i++) {
+            final int diff = (a[off + i] & 0xff) - (toKey[i] & 0xff);
+            if (diff != 0)
+                return diff;
+        }
+        return len - toKey.length;
+    }
+
+    private static byte[] copyBytes(final DatabaseEntry entry) {
+        final byte[] bytes = new byte[entry.getSize()];
+        if (entry.getDataNIO() != null) {
+            final java.nio.ByteBuffer buf = entry.getDataNIO().duplicate();
+            buf.position(entry.getOffset());
+            buf.get(bytes);
+        } else if (entry.getData() != null)
+            System.arraycopy(entry.getData(), entry.getOffset(),
+                bytes, 0, bytes.length);
+        return bytes;
+    }
+}
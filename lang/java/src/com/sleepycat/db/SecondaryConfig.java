@@ -70,7 +70,13 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
         return (config == null) ? DEFAULT : config;
     }
 
+    /* The suffix of the file marking a population that has not finished. */
+    private static final String POPULATE_MARKER_SUFFIX = ".populate";
+
     private boolean allowPopulate;
+    private int populateThreads = 1;
+    private int populateBatchBytes = 1024 * 1024;
+    private PopulateFeedbackHandler populateFeedbackHandler;
     private boolean immutableSecondaryKey;
     private Db foreign;
     private ForeignKeyDeleteAction fkDelAction;
@@ -117,6 +123,126 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
         return allowPopulate;
     }
 
+    /**
+    Set the number of threads used to populate the secondary.
+    <p>
+    When more than one thread is configured and the secondary is opened
+    with {@link com.sleepycat.db.Environment#openSecondaryDatabase
+    Environment.openSecondaryDatabase} without an explicit transaction, an
+    empty secondary is populated after it is opened, rather than within the
+    transaction used to open it.  The primary key space is split into about
+    this many ranges using
+    {@link com.sleepycat.db.Database#getKeyRange Database.getKeyRange}, and
+    each range is read, and its secondary keys created, by its own thread.
+    The secondary keys of each thread are sorted and written with
+    {@link com.sleepycat.db.Database#putMultipleKey Database.putMultipleKey}
+    in runs of about {@link #setPopulateBatchBytes PopulateBatchBytes}, one
+    run at a time, each committed in its own transaction, so locks are only
+    held for one run at a time.  Progress is reported to
+    the {@link #setPopulateFeedbackHandler PopulateFeedbackHandler}, which
+    is called by the populating threads.
+    <p>
+    The primary is only split when it is a Btree using the default key order
+    or a {@link com.sleepycat.db.NativeComparator NativeComparator};
+    otherwise a single thread reads it.  The primary should not be written
+    while the secondary is being populated, as a record updated after it has
+    been read may leave its old secondary key in the index.  If population
+    fails, the secondary is emptied again, or removed if it was opened with
+    {@link com.sleepycat.db.DatabaseConfig#setExclusiveCreate
+    ExclusiveCreate}, and the exception is thrown from the open.
+    <p>
+    While the secondary is being populated, a marker database with the
+    secondary's database name is kept in a file named after the secondary's
+    file with a <code>.populate</code> suffix; it is removed once the
+    secondary is complete.  If the application or system fails during
+    population, the next open finds the marker, empties the partly
+    populated secondary and populates it again.
+    <p>
+    With one thread, or when the secondary is opened in an explicit
+    transaction, the library populates the secondary as described for
+    {@link #setAllowPopulate setAllowPopulate}.
+    <p>
+    @param populateThreads the number of threads used to populate the
+    secondary.
+    */
+    public void setPopulateThreads(final int populateThreads) {
+        if (populateThreads < 1)
+            throw new IllegalArgumentException(
+                "populateThreads must be at least 1");
+        this.populateThreads = populateThreads;
+    }
+
+    /**
+    Return the number of threads used to populate the secondary.  If
+    {@link #setPopulateThreads} has not been called, this method returns 1.
+    <p>
+    @return the number of threads used to populate the secondary.
+    <p>
+    @see #setPopulateThreads
+    */
+    public int getPopulateThreads() {
+        return populateThreads;
+    }
+
+    /**
+    Set the size of the secondary key and primary key pairs that a
+    populating thread gathers, sorts and commits at a time.
+    <p>
+    This is only used when the secondary is populated by more than one
+    thread; see {@link #setPopulateThreads setPopulateThreads}.  The default
+    is 1MB.
+    <p>
+    @param populateBatchBytes the number of bytes written in each
+    transaction.
+    */
+    public void setPopulateBatchBytes(final int populateBatchBytes) {
+        if (populateBatchBytes <= 0)
+            throw new IllegalArgumentException(
+                "populateBatchBytes must be positive");
+        this.populateBatchBytes = populateBatchBytes;
+    }
+
+    /**
+    Return the size of the pairs written in each transaction when the
+    secondary is populated by more than one thread.
+    <p>
+    @return the number of bytes written in each transaction.
+    <p>
+    @see #setPopulateBatchBytes
+    */
+    public int getPopulateBatchBytes() {
+        return populateBatchBytes;
+    }
+
+    /**
+    Set the function to be called with the progress of the threads populating
+    the secondary.
+    <p>
+    This is only used when the secondary is populated by more than one
+    thread; see {@link #setPopulateThreads setPopulateThreads}.  Progress is
+    only reported when the primary is a Btree.
+    <p>
+    @param populateFeedbackHandler the function to be called, or null.
+    */
+    public void setPopulateFeedbackHandler(
+        final PopulateFeedbackHandler populateFeedbackHandler) {
+
+        this.populateFeedbackHandler = populateFeedbackHandler;
+    }
+
+    /**
+    Return the function called with the progress of the threads populating
+    the secondary.
+    <p>
+    @return the function called with the progress of the threads populating
+    the secondary, or null if none has been set.
+    <p>
+    @see #setPopulateFeedbackHandler
+    */
+    public PopulateFeedbackHandler getPopulateFeedbackHandler() {
+        return populateFeedbackHandler;
+    }
+
     /**
     Specifies whether the secondary key is immutable.
     <p>
@@ -164,6 +290,9 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
     Unless the primary database is read-only, a key creator is required
     when opening a secondary database.
     <p>
+    If the secondary key is a range of bytes or a tuple field of the primary
+    record, a {@link NativeKeyCreator} creates it without calling into Java.
+    <p>
     @param keyCreator the user-supplied object used for creating single-valued
     secondary keys.
     */
@@ -360,7 +489,8 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
         throws DatabaseException, java.io.FileNotFoundException {
 	int associateFlags = 0;
 	int foreignFlags = 0;
-        associateFlags |= allowPopulate ? DbConstants.DB_CREATE : 0;
+        if (allowPopulate && !parallelPopulate(dbenv, txn, fileName))
+            associateFlags |= DbConstants.DB_CREATE;
         if (getTransactional() && txn == null)
             associateFlags |= DbConstants.DB_AUTO_COMMIT;
         if (immutableSecondaryKey)
@@ -375,6 +505,8 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
              * set or not.
              */
             db.set_secmultikey_create(multiKeyCreator);
+            db.set_seckey_spec((keyCreator instanceof NativeKeyCreator) ?
+                ((NativeKeyCreator)keyCreator).getSpec() : null);
             primary.associate(txn, db, keyCreator, associateFlags);
  	    if (foreign != null){
 		db.set_foreignmultikey_nullifier(multiKeyNullifier);
@@ -392,6 +524,134 @@ public class SecondaryConfig extends DatabaseConfig implements Cloneable {
         }
     }
 
+    /*
+     * Whether an open populates the secondary with several threads after
+     * it is associated, rather than letting associate populate it.  This
+     * needs a shared environment, so that a second handle can write the
+     * secondary, and no explicit transaction, so that it can commit as it
+     * goes.
+     */
+    /* package */
+    boolean parallelPopulate(final DbEnv dbenv,
+                             final DbTxn txn,
+                             final String fileName) {
+        return allowPopulate && populateThreads > 1 &&
+            dbenv != null && txn == null && fileName != null;
+    }
+
+    /*
+     * Populate a newly opened secondary with several threads, writing through
+     * a plain handle.  On failure the secondary is closed and emptied or
+     * removed, so that a later open populates it again.
+     */
+    /* package */
+    void populate(final Environment environment,
+                  final SecondaryDatabase secondary,
+                  final String fileName,
+                  final String databaseName)
+        throws DatabaseException {
+
+        final DatabaseConfig opened = secondary.getConfig();
+        final DatabaseConfig targetConfig = new DatabaseConfig();
+        targetConfig.setType(opened.getType());
+        targetConfig.setTransactional(opened.getTransactional());
+        targetConfig.setSortedDuplicates(opened.getSortedDuplicates());
+        targetConfig.setBtreeComparator(opened.getBtreeComparator());
+        targetConfig.setBtreeCompressor(opened.getBtreeCompressor());
+        targetConfig.setBtreeCompressDefault(opened.getBtreeCompressDefault());
+        targetConfig.setBtreePrefixCalculator(
+            opened.getBtreePrefixCalculator());
+        targetConfig.setDuplicateComparator(opened.getDuplicateComparator());
+        targetConfig.setHashComparator(opened.getHashComparator());
+        targetConfig.setHasher(opened.getHasher());
+
+        Database target = null;
+        boolean succeeded = false;
+        try {
+            target = environment.openDatabase(
+                null, fileName, databaseName, targetConfig);
+            final String markerName = fileName + POPULATE_MARKER_SUFFIX;
+            if (openMarker(environment, markerName, databaseName, false)) {
+                /*
+                 * An earlier population did not finish: start it again
+                 * rather than take what it wrote for a complete index.
+                 */
+                target.truncate(null, false);
+            } else if (!SecondaryPopulator.isEmpty(target)) {
+                succeeded = true;
+                return;
+            } else {
+                openMarker(environment, markerName, databaseName, true);
+            }
+            new SecondaryPopulator(environment, secondary, target,
+                populateThreads, populateBatchBytes,
+                populateFeedbackHandler).run();
+            environment.removeDatabase(null, markerName, databaseName);
+            succeeded = true;
+        } catch (java.io.FileNotFoundException e) {
+            throw new DatabaseException(e);
+        } finally {
+            if (succeeded)
+                target.close();
+            else
+                discard(environment, secondary, target,
+                    fileName, databaseName);
+        }
+    }
+
+    /*
+     * Check for, or create, the marker recording that population of a
+     * secondary has started but not finished.
+     */
+    private boolean openMarker(final Environment environment,
+                               final String markerName,
+                               final String databaseName,
+                               final boolean create)
+        throws DatabaseException {
+
+        final DatabaseConfig markerConfig = new DatabaseConfig();
+        markerConfig.setType(DatabaseType.BTREE);
+        markerConfig.setAllowCreate(create);
+        markerConfig.setTransactional(getTransactional());
+        try {
+            environment.openDatabase(
+                null, markerName, databaseName, markerConfig).close();
+            return true;
+        } catch (java.io.FileNotFoundException e) {
+            if (create)
+                throw new DatabaseException(e);
+            return false;
+        }
+    }
+
+    private void discard(final Environment environment,
+                         final SecondaryDatabase secondary,
+                         final Database target,
+                         final String fileName,
+                         final String databaseName) {
+        try {
+            if (target != null && !getExclusiveCreate())
+                target.truncate(null, false);
+        } catch (Throwable t) {
+            // Ignore it -- there is already an exception in flight.
+        }
+        try {
+            if (target != null)
+                target.close();
+            secondary.close();
+            if (getExclusiveCreate())
+                environment.removeDatabase(null, fileName, databaseName);
+        } catch (Throwable t) {
+            // Ignore it -- there is already an exception in flight.
+        }
+        try {
+            environment.removeDatabase(
+                null, fileName + POPULATE_MARKER_SUFFIX, databaseName);
+        } catch (Throwable t) {
+            // Ignore it -- the marker may not have been created.
+        }
+    }
+
     /* package */
     SecondaryConfig(final Db db)
         throws DatabaseException {
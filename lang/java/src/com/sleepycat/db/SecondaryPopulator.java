@@ -0,0 +1,416 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.sleepycat.util.keyrange.KeySplitter;
+
+/*
+ * Fills an empty secondary database from its primary with several threads.
+ *
+ * The primary key space is split into one range per thread, using
+ * Database.getKeyRange to place the split keys.  Each thread scans its range
+ * in bulk, creates the secondary keys of each record, and gathers the pairs
+ * into a run of up to SecondaryConfig.getPopulateBatchBytes bytes.  The run
+ * is sorted in secondary order and written with Database.putMultipleKey in
+ * a transaction of its own, so no lock is held for longer than one run.
+ *
+ * Reading the primary and creating keys is done in parallel, but the runs
+ * are written one at a time: runs from different ranges of the primary
+ * cover the same range of the secondary, and writing them together only
+ * makes the threads deadlock with each other.
+ *
+ * The secondary handle may not be written directly, so the runs are written
+ * through a second, plain handle on the same database.
+ */
+class SecondaryPopulator {
+    private static final int MAX_RETRIES = 3;
+
+    private final Environment environment;
+    private final Database primary;
+    private final SecondaryDatabase secondary;
+    private final Database target;
+    private final SecondaryConfig config;
+    private final int threads;
+    private final int batchBytes;
+    private final boolean transactional;
+    private final boolean duplicates;
+    private final Comparator<byte[]> primaryComparator;
+    private final Comparator<byte[]> secondaryComparator;
+    private final Comparator<byte[][]> pairComparator;
+    private final PopulateFeedbackHandler feedback;
+    private final Object writeLock = new Object();
+
+    private volatile Throwable failure;
+    private double[] rangeDone;
+    private int percentReported;
+
+    SecondaryPopulator(final Environment environment,
+                       final SecondaryDatabase secondary,
+                       final Database target,
+                       final int threads,
+                       final int batchBytes,
+                       final PopulateFeedbackHandler feedback)
+        throws DatabaseException {
+
+        this.environment = environment;
+        this.primary = secondary.getPrimaryDatabase();
+        this.secondary = secondary;
+        this.target = target;
+        this.config = secondary.getSecondaryConfig();
+        this.threads = threads;
+        this.batchBytes = batchBytes;
+        this.transactional = config.getTransactional();
+        this.duplicates = config.getSortedDuplicates();
+        this.feedback = feedback;
+
+        final Comparator<byte[]> priCmp =
+            primary.getConfig().getBtreeComparator();
+        primaryComparator = (priCmp == null) ?
+            NativeComparator.LEXICOGRAPHIC : priCmp;
+        final Comparator<byte[]> secCmp =
+            (config.getBtreeComparator() == null) ?
+            NativeComparator.LEXICOGRAPHIC : config.getBtreeComparator();
+        secondaryComparator = secCmp;
+        final Comparator<byte[]> dupCmp =
+            (config.getDuplicateComparator() == null) ?
+            NativeComparator.LEXICOGRAPHIC : config.getDuplicateComparator();
+        pairComparator = new Comparator<byte[][]>() {
+            public int compare(final byte[][] p1, final byte[][] p2) {
+                final int cmp = secCmp.compare(p1[0], p2[0]);
+                return (cmp != 0) ? cmp : dupCmp.compare(p1[1], p2[1]);
+            }
+        };
+    }
+
+    void run()
+        throws DatabaseException {
+
+        if (isEmpty(primary))
+            return;
+
+        final List<byte[]> splits = splitKeys(threads);
+        final int nranges = splits.size() + 1;
+        final double[] rangeStart = new double[nranges + 1];
+        rangeStart[nranges] = 1.0;
+        for (int i = 1; i < nranges; i++)
+            rangeStart[i] = primary.getKeyRange(null,
+                new DatabaseEntry(splits.get(i - 1))).less;
+        rangeDone = new double[nranges];
+
+        final Thread[] workers = new Thread[nranges];
+        for (int i = 0; i < nranges; i++) {
+            final int range = i;
+            final byte[] fromKey = (i == 0) ? null : splits.get(i - 1);
+            final byte[] toKey = (i == nranges - 1) ? null : splits.get(i);
+            final double start = rangeStart[i];
+            final double end = Math.max(start, rangeStart[i + 1]);
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        populateRange(range, fromKey, toKey, start, end);
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                }
+            }, "SecondaryPopulator " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < nranges; i++) {
+            try {
+                workers[i].join();
+            } catch (InterruptedException e) {
+                /* Stop the workers, but wait for them to finish. */
+                fail(e);
+                interrupted = true;
+                i--;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        final Throwable t = failure;
+        if (t instanceof DatabaseException)
+            throw (DatabaseException)t;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException)t;
+        if (t instanceof Error)
+            throw (Error)t;
+        if (t != null)
+            throw new DatabaseException(t);
+        report(1.0);
+    }
+
+    private synchronized void fail(final Throwable t) {
+        if (failure == null)
+            failure = t;
+    }
+
+    private void populateRange(final int range,
+                               final byte[] fromKey,
+                               final byte[] toKey,
+                               final double start,
+                               final double end)
+        throws DatabaseException {
+
+        final List<byte[][]> run = new ArrayList<byte[][]>();
+        final Set<DatabaseEntry> results = new HashSet<DatabaseEntry>();
+        final DatabaseEntry result = new DatabaseEntry();
+        final DatabaseEntry key = new DatabaseEntry();
+        final DatabaseEntry data = new DatabaseEntry();
+        final SecondaryKeyCreator keyCreator = config.getKeyCreator();
+        final SecondaryMultiKeyCreator multiKeyCreator =
+            config.getMultiKeyCreator();
+        long runBytes = 0;
+        byte[] lastKey = null;
+
+        final Cursor cursor = primary.openCursor(null, null);
+        final ScanBatch scan = cursor.scan(
+            (fromKey == null) ? null : new DatabaseEntry(fromKey),
+            (toKey == null) ? null : new DatabaseEntry(toKey), null);
+        try {
+            while (failure == null && scan.next(key, data)) {
+                /*
+                 * Key creators are written for entries that start at offset
+                 * zero, so the pair is copied out of the bulk buffer.
+                 */
+                final byte[] priKey = copy(key);
+                final DatabaseEntry priKeyEntry = new DatabaseEntry(priKey);
+                final DatabaseEntry dataEntry = new DatabaseEntry(copy(data));
+                lastKey = priKey;
+                if (multiKeyCreator != null) {
+                    results.clear();
+                    multiKeyCreator.createSecondaryKeys(
+                        secondary, priKeyEntry, dataEntry, results);
+                    for (DatabaseEntry secKey : results) {
+                        run.add(new byte[][] { copy(secKey), priKey });
+                        runBytes += secKey.getSize() + priKey.length;
+                    }
+                } else {
+                    result.setData(null);
+                    if (keyCreator.createSecondaryKey(
+                        secondary, priKeyEntry, dataEntry, result)) {
+                        run.add(new byte[][] { copy(result), priKey });
+                        runBytes += result.getSize() + priKey.length;
+                    }
+                }
+                if (runBytes >= batchBytes) {
+                    writeRun(run, runBytes);
+                    run.clear();
+                    runBytes = 0;
+                    progress(range, lastKey, start, end);
+                }
+            }
+        } finally {
+            scan.close();
+            cursor.close();
+        }
+        if (failure == null && !run.isEmpty())
+            writeRun(run, runBytes);
+        synchronized (this) {
+            rangeDone[range] = end - start;
+        }
+    }
+
+    /*
+     * Sort a run in secondary order and write it in one transaction,
+     * retrying if it is chosen to resolve a deadlock with an application
+     * thread.
+     */
+    private void writeRun(final List<byte[][]> run, final long runBytes)
+        throws DatabaseException {
+
+        Collections.sort(run, pairComparator);
+        if (!duplicates) {
+            for (int i = 1; i < run.size(); i++)
+                if (secondaryComparator.compare(
+                    run.get(i - 1)[0], run.get(i)[0]) == 0)
+                    throw new DatabaseException(
+                        "Secondary key is not unique and the secondary " +
+                        "does not allow duplicates");
+        }
+        final MultipleKeyDataEntry entries = new MultipleKeyDataEntry(
+            new byte[BatchConfig.alignBufferSize((int)runBytes +
+            run.size() * 4 * DatabaseEntry.INT32SZ +
+            2 * DatabaseEntry.INT32SZ)]);
+        for (byte[][] pair : run)
+            if (!entries.append(pair[0], pair[1]))
+                throw new IllegalStateException("Bulk buffer overflow");
+
+        synchronized (writeLock) {
+            writeEntries(entries);
+        }
+    }
+
+    private void writeEntries(final MultipleKeyDataEntry entries)
+        throws DatabaseException {
+
+        for (int attempt = 0; ; attempt++) {
+            Transaction txn = null;
+            try {
+                if (transactional)
+                    txn = environment.beginTransaction(null, null);
+                final OperationStatus status =
+                    target.putMultipleKey(txn, entries, duplicates);
+                if (status != OperationStatus.SUCCESS)
+                    throw new DatabaseException(
+                        "Secondary key is not unique and the secondary " +
+                        "does not allow duplicates");
+                if (txn != null) {
+                    final Transaction t = txn;
+                    txn = null;
+                    t.commit();
+                }
+                return;
+            } catch (DeadlockException e) {
+                abort(txn);
+                if (txn == null || attempt >= MAX_RETRIES)
+                    throw e;
+            } catch (DatabaseException e) {
+                abort(txn);
+                throw e;
+            } catch (RuntimeException e) {
+                abort(txn);
+                throw e;
+            }
+        }
+    }
+
+    private static void abort(final Transaction txn) {
+        if (txn != null) {
+            try {
+                txn.abort();
+            } catch (DatabaseException e) {
+                /* The original failure is reported instead. */
+            }
+        }
+    }
+
+    /*
+     * Record how far through its range a thread has got, and report the
+     * total to the feedback handler whenever it passes another percent.
+     */
+    private void progress(final int range,
+                          final byte[] lastKey,
+                          final double start,
+                          final double end)
+        throws DatabaseException {
+
+        if (feedback == null || primary.getConfig().getType() !=
+            DatabaseType.BTREE)
+            return;
+        final double less =
+            primary.getKeyRange(null, new DatabaseEntry(lastKey)).less;
+        synchronized (this) {
+            rangeDone[range] =
+                Math.min(Math.max(less - start, 0.0), end - start);
+            double done = 0;
+            for (int i = 0; i < rangeDone.length; i++)
+                done += rangeDone[i];
+            report(done);
+        }
+    }
+
+    private synchronized void report(final double done) {
+        final int percent = (int)Math.min(100, Math.round(done * 100));
+        if (feedback != null && percent > percentReported) {
+            percentReported = percent;
+            feedback.populateFeedback(secondary, percent);
+        }
+    }
+
+    /*
+     * Choose up to n - 1 keys that split the primary into ranges of about the
+     * same number of records, with KeySplitter.
+     *
+     * KeySplitter only follows the order of the database for the default
+     * byte order and for a NativeComparator, which also accepts any key
+     * bytes, so with another comparator the primary is scanned by a single
+     * thread.
+     */
+    private List<byte[]> splitKeys(final int n)
+        throws DatabaseException {
+
+        final List<byte[]> splits = new ArrayList<byte[]>();
+        final Comparator<byte[]> priCmp =
+            primary.getConfig().getBtreeComparator();
+        if (n <= 1 ||
+            primary.getConfig().getType() != DatabaseType.BTREE ||
+            (priCmp != null && !(priCmp instanceof NativeComparator)))
+            return splits;
+
+        final byte[] first = endKey(true);
+        final byte[] last = endKey(false);
+        if (first == null || last == null)
+            return splits;
+        for (int i = 1; i < n; i++) {
+            final byte[] split =
+                KeySplitter.splitKey(primary, first, last, (double)i / n);
+            if (split == null)
+                return splits;
+            if (primaryComparator.compare(split, first) > 0 &&
+                primaryComparator.compare(split, last) <= 0)
+                splits.add(split);
+        }
+        Collections.sort(splits, primaryComparator);
+        for (int i = splits.size() - 1; i > 0; i--)
+            if (primaryComparator.compare(
+                splits.get(i - 1), splits.get(i)) == 0)
+                splits.remove(i);
+        return splits;
+    }
+
+    private byte[] endKey(final boolean first)
+        throws DatabaseException {
+
+        final DatabaseEntry key = new DatabaseEntry();
+        final DatabaseEntry data = new DatabaseEntry();
+        data.setPartial(0, 0, true);
+        final Cursor cursor = primary.openCursor(null, null);
+        try {
+            final OperationStatus status = first ?
+                cursor.getFirst(key, data, null) :
+                cursor.getLast(key, data, null);
+            return (status == OperationStatus.SUCCESS) ? copy(key) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static boolean isEmpty(final Database db)
+        throws DatabaseException {
+
+        final DatabaseEntry key = new DatabaseEntry();
+        final DatabaseEntry data = new DatabaseEntry();
+        key.setPartial(0, 0, true);
+        data.setPartial(0, 0, true);
+        final Cursor cursor = db.openCursor(null, null);
+        try {
+            return cursor.getFirst(key, data, null) != OperationStatus.SUCCESS;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static byte[] copy(final DatabaseEntry entry) {
+        final byte[] bytes = new byte[entry.getSize()];
+        if (entry.getData() != null)
+            System.arraycopy(entry.getData(), entry.getOffset(),
+                bytes, 0, bytes.length);
+        return bytes;
+    }
+}
@@ -125,6 +125,6 @@ must be specified.
     public SequenceStats getStats(StatsConfig config)
         throws DatabaseException {
 
-        return seq.stat(config.getFlags());
+        return seq.stat(StatsConfig.checkNull(config).getFlags());
     }
 }
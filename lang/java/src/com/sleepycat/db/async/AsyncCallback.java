@@ -0,0 +1,40 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db.async;
+
+/**
+An interface specifying a callback that is notified when an asynchronous
+operation completes.
+<p>
+The callback is called by the thread that ran the operation, or by the
+thread that registered it if the operation had already completed.  It
+should return quickly and must not block, because it holds a thread that
+could be running other operations in the native library.
+<p>
+@see com.sleepycat.db.async.AsyncFuture#addCallback
+*/
+public interface AsyncCallback<T> {
+    /**
+    Called when the operation completes successfully.
+    <p>
+    @param result
+    the result of the operation.
+    */
+    void completed(T result);
+
+    /**
+    Called when the operation fails or is cancelled.
+    <p>
+    @param failure
+    the exception thrown by the operation, or a
+    {@link java.util.concurrent.CancellationException CancellationException}
+    if it was cancelled.
+    */
+    void failed(Throwable failure);
+}
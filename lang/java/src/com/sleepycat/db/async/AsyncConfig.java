@@ -0,0 +1,150 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db.async;
+
+/**
+Specify the attributes of an
+{@link com.sleepycat.db.async.AsyncEnvironment AsyncEnvironment}.
+An instance created with the default constructor is initialized with the
+system's default settings.
+*/
+public class AsyncConfig implements Cloneable {
+    /**
+    Default configuration used if null is passed to the
+    {@link com.sleepycat.db.async.AsyncEnvironment AsyncEnvironment}
+    constructor.
+    */
+    public static final AsyncConfig DEFAULT = new AsyncConfig();
+
+    private int maxConcurrency = 8;
+    private int maxPending = 1024;
+    private boolean blockWhenFull = true;
+    private long idleTimeout = 60 * 1000;
+
+    /**
+    An instance created using the default constructor is initialized with
+    the system's default settings.
+    */
+    public AsyncConfig() {
+    }
+
+    /* package */
+    static AsyncConfig checkNull(AsyncConfig config) {
+        return (config == null) ? DEFAULT : config;
+    }
+
+    /**
+    Set the largest number of operations that may run in the native
+    library at the same time.  This is the number of threads used to call
+    the library for the environment.
+    <p>
+    @param maxConcurrency
+    the largest number of operations that may run at the same time.
+    */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException(
+                "maxConcurrency must be positive");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+    Return the largest number of operations that may run in the native
+    library at the same time.
+    <p>
+    @return
+    the largest number of operations that may run at the same time.
+    */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+    Set the number of operations that may be waiting for a thread, in
+    addition to those running, before new operations are refused or their
+    callers are blocked.
+    <p>
+    @param maxPending
+    the number of operations that may be waiting for a thread.
+    */
+    public void setMaxPending(final int maxPending) {
+        if (maxPending < 0)
+            throw new IllegalArgumentException(
+                "maxPending must not be negative");
+        this.maxPending = maxPending;
+    }
+
+    /**
+    Return the number of operations that may be waiting for a thread
+    before new operations are refused or their callers are blocked.
+    <p>
+    @return
+    the number of operations that may be waiting for a thread.
+    */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+    Configure what happens when an operation is submitted while the
+    environment already has the largest number of operations running and
+    waiting.
+    <p>
+    If true, the caller is blocked until an operation completes.  If
+    false, the operation is refused with a
+    {@link java.util.concurrent.RejectedExecutionException
+    RejectedExecutionException}, which is appropriate for callers, such as
+    event loops, that must never block.
+    <p>
+    @param blockWhenFull
+    if true, block callers when the environment is full; if false, refuse
+    the operation.
+    */
+    public void setBlockWhenFull(final boolean blockWhenFull) {
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    /**
+    Return true if callers are blocked when the environment is full.
+    <p>
+    @return
+    true if callers are blocked when the environment is full, false if the
+    operation is refused.
+    */
+    public boolean getBlockWhenFull() {
+        return blockWhenFull;
+    }
+
+    /**
+    Set the time, in milliseconds, after which an idle thread is stopped.
+    Threads are started again as operations are submitted.
+    <p>
+    @param idleTimeout
+    the time in milliseconds after which an idle thread is stopped, or 0 to
+    keep threads running until the environment is closed.
+    */
+    public void setIdleTimeout(final long idleTimeout) {
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException(
+                "idleTimeout must not be negative");
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+    Return the time, in milliseconds, after which an idle thread is
+    stopped.
+    <p>
+    @return
+    the time in milliseconds after which an idle thread is stopped, or 0 if
+    threads are kept running.
+    */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+}
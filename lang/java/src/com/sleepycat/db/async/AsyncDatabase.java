@@ -0,0 +1,252 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db.async;
+
+import java.util.concurrent.Callable;
+
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.LockMode;
+import com.sleepycat.db.OperationStatus;
+import com.sleepycat.db.Transaction;
+
+/**
+An asynchronous facade over a {@link com.sleepycat.db.Database Database}.
+<p>
+Each method submits the corresponding <code>Database</code> call to the
+{@link com.sleepycat.db.async.AsyncEnvironment AsyncEnvironment} and returns
+at once.  The concurrency limits and backpressure of the environment apply
+to all of its databases together.  The entries passed to a method must not
+be modified or reused until its future completes; for
+{@link #get get}, the data entry is filled in when the future completes.
+<p>
+This class is thread safe.
+*/
+public class AsyncDatabase {
+    private final AsyncEnvironment environment;
+    private final Database database;
+
+    /**
+    Create an asynchronous facade over an open database.  The database
+    must belong to the environment used by the asynchronous environment.
+    <p>
+    @param environment
+    the asynchronous environment whose threads run the database calls.
+    <p>
+    @param database
+    the open database.
+    */
+    public AsyncDatabase(final AsyncEnvironment environment,
+                         final Database database) {
+        this.environment = environment;
+        this.database = database;
+    }
+
+    /**
+    Return the asynchronous environment whose threads run the database
+    calls.
+    <p>
+    @return
+    the asynchronous environment.
+    */
+    public AsyncEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+    Return the database used by this facade.
+    <p>
+    @return
+    the database used by this facade.
+    */
+    public Database getDatabase() {
+        return database;
+    }
+
+    /**
+    Retrieve the key/data pair with the given key asynchronously.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param key
+    the key used as input.
+    <p>
+    @param data
+    the data returned as output when the future completes.
+    <p>
+    @param lockMode
+    the locking attributes; if null, default attributes are used.
+    <p>
+    @return
+    a future holding {@link com.sleepycat.db.OperationStatus#NOTFOUND
+    OperationStatus.NOTFOUND} if no matching key/data pair is found;
+    otherwise, {@link com.sleepycat.db.OperationStatus#SUCCESS
+    OperationStatus.SUCCESS}.
+    <p>
+    @see com.sleepycat.db.Database#get Database.get
+    */
+    public AsyncFuture<OperationStatus> get(final Transaction txn,
+                                            final DatabaseEntry key,
+                                            final DatabaseEntry data,
+                                            final LockMode lockMode) {
+        return environment.submit(new Callable<OperationStatus>() {
+            public OperationStatus call()
+                throws Exception {
+
+                return database.get(txn, key, data, lockMode);
+            }
+        });
+    }
+
+    /**
+    Check asynchronously whether the key exists in the database.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param key
+    the key used as input.
+    <p>
+    @return
+    a future holding {@link com.sleepycat.db.OperationStatus#NOTFOUND
+    OperationStatus.NOTFOUND} if the key is not found;
+    otherwise, {@link com.sleepycat.db.OperationStatus#SUCCESS
+    OperationStatus.SUCCESS}.
+    <p>
+    @see com.sleepycat.db.Database#exists Database.exists
+    */
+    public AsyncFuture<OperationStatus> exists(final Transaction txn,
+                                               final DatabaseEntry key) {
+        return environment.submit(new Callable<OperationStatus>() {
+            public OperationStatus call()
+                throws Exception {
+
+                return database.exists(txn, key);
+            }
+        });
+    }
+
+    /**
+    Store the key/data pair into the database asynchronously.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param key
+    the key entry operated on.
+    <p>
+    @param data
+    the data entry stored.
+    <p>
+    @return
+    a future holding the status of the put.
+    <p>
+    @see com.sleepycat.db.Database#put Database.put
+    */
+    public AsyncFuture<OperationStatus> put(final Transaction txn,
+                                            final DatabaseEntry key,
+                                            final DatabaseEntry data) {
+        return environment.submit(new Callable<OperationStatus>() {
+            public OperationStatus call()
+                throws Exception {
+
+                return database.put(txn, key, data);
+            }
+        });
+    }
+
+    /**
+    Store the key/data pair into the database asynchronously if the key
+    does not already appear in the database.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param key
+    the key entry operated on.
+    <p>
+    @param data
+    the data entry stored.
+    <p>
+    @return
+    a future holding {@link com.sleepycat.db.OperationStatus#KEYEXIST
+    OperationStatus.KEYEXIST} if the key already appears in the database,
+    else {@link com.sleepycat.db.OperationStatus#SUCCESS
+    OperationStatus.SUCCESS}.
+    <p>
+    @see com.sleepycat.db.Database#putNoOverwrite Database.putNoOverwrite
+    */
+    public AsyncFuture<OperationStatus> putNoOverwrite(
+        final Transaction txn,
+        final DatabaseEntry key,
+        final DatabaseEntry data) {
+
+        return environment.submit(new Callable<OperationStatus>() {
+            public OperationStatus call()
+                throws Exception {
+
+                return database.putNoOverwrite(txn, key, data);
+            }
+        });
+    }
+
+    /**
+    Remove key/data pairs from the database asynchronously.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param key
+    the key operated on.
+    <p>
+    @return
+    a future holding {@link com.sleepycat.db.OperationStatus#NOTFOUND
+    OperationStatus.NOTFOUND} if the key is not found; otherwise,
+    {@link com.sleepycat.db.OperationStatus#SUCCESS OperationStatus.SUCCESS}.
+    <p>
+    @see com.sleepycat.db.Database#delete Database.delete
+    */
+    public AsyncFuture<OperationStatus> delete(final Transaction txn,
+                                               final DatabaseEntry key) {
+        return environment.submit(new Callable<OperationStatus>() {
+            public OperationStatus call()
+                throws Exception {
+
+                return database.delete(txn, key);
+            }
+        });
+    }
+
+    /**
+    Close the database asynchronously.  The caller must not submit further
+    operations on the database, and those already submitted must complete
+    before it is closed.
+    <p>
+    @return
+    a future that completes when the database has been closed.
+    <p>
+    @see com.sleepycat.db.Database#close Database.close
+    */
+    public AsyncFuture<Void> close() {
+        return environment.submit(new Callable<Void>() {
+            public Void call()
+                throws Exception {
+
+                database.close();
+                return null;
+            }
+        });
+    }
+}
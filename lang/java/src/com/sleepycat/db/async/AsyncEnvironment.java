@@ -0,0 +1,323 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sleepycat.db.CheckpointConfig;
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseConfig;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.Transaction;
+import com.sleepycat.db.TransactionConfig;
+
+/**
+An asynchronous facade over an {@link com.sleepycat.db.Environment
+Environment}.
+<p>
+Every call into Berkeley DB blocks the calling thread in the native library
+until it completes.  An <code>AsyncEnvironment</code> runs those calls on a
+small set of threads dedicated to the environment and returns an
+{@link com.sleepycat.db.async.AsyncFuture AsyncFuture} at once, so that
+threads that must not block, such as the threads of an event loop, can
+drive the database.
+<p>
+The number of operations running at the same time is limited by
+{@link com.sleepycat.db.async.AsyncConfig#setMaxConcurrency
+AsyncConfig.setMaxConcurrency}, and the number waiting for a thread by
+{@link com.sleepycat.db.async.AsyncConfig#setMaxPending
+AsyncConfig.setMaxPending}.  When both limits are reached, new operations
+either block their caller or are refused, as specified by
+{@link com.sleepycat.db.async.AsyncConfig#setBlockWhenFull
+AsyncConfig.setBlockWhenFull}, so that a fast producer cannot queue an
+unbounded amount of work.
+<p>
+Operations are not ordered with respect to each other unless the caller
+waits for one to complete before submitting the next.  The entries passed
+to an operation are used by the thread that runs it, so they must not be
+modified or reused until the operation completes.  A
+{@link com.sleepycat.db.Transaction Transaction} may be used by operations
+that run on different threads, but only by one operation at a time.
+<p>
+Closing the facade does not close the environment.  This class is thread
+safe.
+*/
+public class AsyncEnvironment {
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final Environment environment;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final boolean blockWhenFull;
+    private final Runnable releasePermit = new Runnable() {
+        public void run() {
+            permits.release();
+        }
+    };
+
+    /**
+    Create an asynchronous facade over an open environment.
+    <p>
+    @param environment
+    the open environment.
+    <p>
+    @param config
+    the facade attributes.  If null, default attributes are used.
+    */
+    public AsyncEnvironment(final Environment environment,
+                            AsyncConfig config) {
+        config = AsyncConfig.checkNull(config);
+        this.environment = environment;
+        this.blockWhenFull = config.getBlockWhenFull();
+        this.maxPermits = config.getMaxConcurrency() + config.getMaxPending();
+        this.permits = new Semaphore(maxPermits);
+
+        /* The permits bound the queue, so it need not be bounded itself. */
+        final long idleTimeout = config.getIdleTimeout();
+        executor = new ThreadPoolExecutor(
+            config.getMaxConcurrency(), config.getMaxConcurrency(),
+            idleTimeout, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "AsyncEnvironment-" +
+                        threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        if (idleTimeout > 0)
+            executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+    Return the environment used by this facade.
+    <p>
+    @return
+    the environment used by this facade.
+    */
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+    Return the number of operations that have been submitted and have not
+    yet completed, including those that are running and those that were
+    cancelled while running and have not yet returned.
+    <p>
+    @return
+    the number of operations that have not yet completed.
+    */
+    public int getPendingCount() {
+        return maxPermits - permits.availablePermits();
+    }
+
+    /**
+    Run an arbitrary sequence of calls on one of the environment's threads.
+    This may be used for operations that have no asynchronous form, such as
+    iterating with a {@link com.sleepycat.db.Cursor Cursor}.
+    <p>
+    @param operation
+    the calls to make.
+    <p>
+    @return
+    a future holding the value returned by the operation.
+    <p>
+    @throws RejectedExecutionException if the environment is full and is
+    configured not to block.
+    <p>
+    @throws IllegalStateException if the facade has been closed, or the
+    caller was interrupted while blocked waiting for room.
+    */
+    public <T> AsyncFuture<T> submit(final Callable<T> operation) {
+        acquire();
+        final AsyncFuture<T> future = new AsyncFuture<T>(operation);
+        future.setOnFinish(releasePermit);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new IllegalStateException("AsyncEnvironment is closed");
+        }
+        return future;
+    }
+
+    private void acquire() {
+        if (executor.isShutdown())
+            throw new IllegalStateException("AsyncEnvironment is closed");
+        if (!blockWhenFull) {
+            if (!permits.tryAcquire())
+                throw new RejectedExecutionException(
+                    "Too many operations pending: " + maxPermits);
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "Interrupted waiting to submit an operation");
+        }
+    }
+
+    /**
+    Open a database asynchronously.
+    <p>
+    @param txn
+    For a transactional database, an explicit transaction may be specified,
+    or null may be specified to use auto-commit.
+    <p>
+    @param fileName
+    The name of an underlying file used to back the database.
+    <p>
+    @param databaseName
+    An optional parameter that allows applications to have multiple
+    databases in a single file.
+    <p>
+    @param config The database open attributes.  If null, default attributes
+    are used.
+    <p>
+    @return
+    a future holding the asynchronous facade over the opened database.
+    <p>
+    @see com.sleepycat.db.Environment#openDatabase Environment.openDatabase
+    */
+    public AsyncFuture<AsyncDatabase> openDatabase(final Transaction txn,
+                                                   final String fileName,
+                                                   final String databaseName,
+                                                   final DatabaseConfig config) {
+        return submit(new Callable<AsyncDatabase>() {
+            public AsyncDatabase call()
+                throws Exception {
+
+                final Database db = environment.openDatabase(
+                    txn, fileName, databaseName, config);
+                return new AsyncDatabase(AsyncEnvironment.this, db);
+            }
+        });
+    }
+
+    /**
+    Create a new transaction asynchronously.
+    <p>
+    @param parent
+    If non-null, the new transaction will be a nested transaction.
+    <p>
+    @param config
+    The transaction attributes.  If null, default attributes are used.
+    <p>
+    @return
+    a future holding the new transaction.
+    <p>
+    @see com.sleepycat.db.Environment#beginTransaction
+    Environment.beginTransaction
+    */
+    public AsyncFuture<Transaction> beginTransaction(
+        final Transaction parent,
+        final TransactionConfig config) {
+
+        return submit(new Callable<Transaction>() {
+            public Transaction call()
+                throws Exception {
+
+                return environment.beginTransaction(parent, config);
+            }
+        });
+    }
+
+    /**
+    Commit a transaction asynchronously.  The future completes when the
+    commit, including any log flush it requires, is done.
+    <p>
+    @param txn
+    the transaction to commit.
+    <p>
+    @return
+    a future that completes when the transaction has committed.
+    <p>
+    @see com.sleepycat.db.Transaction#commit Transaction.commit
+    */
+    public AsyncFuture<Void> commit(final Transaction txn) {
+        return submit(new Callable<Void>() {
+            public Void call()
+                throws Exception {
+
+                txn.commit();
+                return null;
+            }
+        });
+    }
+
+    /**
+    Abort a transaction asynchronously.
+    <p>
+    @param txn
+    the transaction to abort.
+    <p>
+    @return
+    a future that completes when the transaction has been aborted.
+    <p>
+    @see com.sleepycat.db.Transaction#abort Transaction.abort
+    */
+    public AsyncFuture<Void> abort(final Transaction txn) {
+        return submit(new Callable<Void>() {
+            public Void call()
+                throws Exception {
+
+                txn.abort();
+                return null;
+            }
+        });
+    }
+
+    /**
+    Checkpoint the environment asynchronously.
+    <p>
+    @param config
+    The checkpoint attributes.  If null, default attributes are used.
+    <p>
+    @return
+    a future that completes when the checkpoint is done.
+    <p>
+    @see com.sleepycat.db.Environment#checkpoint Environment.checkpoint
+    */
+    public AsyncFuture<Void> checkpoint(final CheckpointConfig config) {
+        return submit(new Callable<Void>() {
+            public Void call()
+                throws Exception {
+
+                environment.checkpoint(config);
+                return null;
+            }
+        });
+    }
+
+    /**
+    Stop accepting operations and wait for those already submitted to
+    complete.  The environment and its databases are not closed.
+    */
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                /* Keep waiting, operations in the library can't be stopped. */
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
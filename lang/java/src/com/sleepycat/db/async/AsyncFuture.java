@@ -0,0 +1,162 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.db.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sleepycat.db.DatabaseException;
+
+/**
+The pending result of an operation submitted to an
+{@link com.sleepycat.db.async.AsyncEnvironment AsyncEnvironment}.
+<p>
+In addition to the methods of {@link java.util.concurrent.Future Future},
+callbacks may be registered with {@link #addCallback addCallback}, so that a
+caller need never block waiting for the result.  An operation that has not
+started may be cancelled; an operation that is running in the native library
+is not interrupted, and counts towards the concurrency of the environment
+until it returns, even though the future reports it as cancelled.
+*/
+public class AsyncFuture<T> extends FutureTask<T> {
+    private List<AsyncCallback<? super T>> callbacks =
+        new ArrayList<AsyncCallback<? super T>>();
+    private Runnable onFinish;
+
+    /* Whether the operation has started, and whether onFinish has run. */
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int FINISHED = 2;
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+    /* package */ AsyncFuture(final Callable<T> callable) {
+        super(callable);
+    }
+
+    /*
+     * Set the action run once the operation can no longer be running:
+     * after it returns, or when it is cancelled before it starts.  A
+     * cancelled operation that has started keeps running in the native
+     * library, so it is not finished until it returns.
+     */
+    /* package */ void setOnFinish(final Runnable onFinish) {
+        this.onFinish = onFinish;
+    }
+
+    /** {@inheritDoc} */
+    public void run() {
+        if (!state.compareAndSet(QUEUED, RUNNING))
+            return;
+        try {
+            super.run();
+        } finally {
+            state.set(FINISHED);
+            if (onFinish != null)
+                onFinish.run();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && state.compareAndSet(QUEUED, FINISHED) &&
+            onFinish != null)
+            onFinish.run();
+        return cancelled;
+    }
+
+    /**
+    Register a callback to be notified when the operation completes.  If
+    the operation has already completed, the callback is called before this
+    method returns.  Callbacks are called in the order they were
+    registered.
+    <p>
+    @param callback
+    the callback to notify.
+    @return
+    this future.
+    */
+    public AsyncFuture<T> addCallback(final AsyncCallback<? super T> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notify(callback);
+        return this;
+    }
+
+    /**
+    Wait for the operation to complete and return its result, rethrowing
+    the exception thrown by the operation rather than wrapping it in an
+    {@link java.util.concurrent.ExecutionException ExecutionException}.
+    <p>
+    @return
+    the result of the operation.
+    <p>
+    @throws DatabaseException if the operation failed, or if the wait was
+    interrupted or the operation was cancelled.
+    */
+    public T await()
+        throws DatabaseException {
+
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(e);
+        } catch (CancellationException e) {
+            throw new DatabaseException(e);
+        } catch (ExecutionException e) {
+            final Throwable t = e.getCause();
+            if (t instanceof DatabaseException)
+                throw (DatabaseException)t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            if (t instanceof Error)
+                throw (Error)t;
+            throw new DatabaseException(t);
+        }
+    }
+
+    protected void done() {
+        final List<AsyncCallback<? super T>> toNotify;
+        synchronized (this) {
+            toNotify = callbacks;
+            callbacks = null;
+        }
+        for (final AsyncCallback<? super T> callback : toNotify)
+            notify(callback);
+    }
+
+    private void notify(final AsyncCallback<? super T> callback) {
+        final T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            callback.failed(e.getCause());
+            return;
+        } catch (CancellationException e) {
+            callback.failed(e);
+            return;
+        } catch (InterruptedException e) {
+            /* Not possible, the operation is done. */
+            Thread.currentThread().interrupt();
+            callback.failed(e);
+            return;
+        }
+        callback.completed(result);
+    }
+}
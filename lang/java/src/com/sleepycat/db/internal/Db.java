@@ -49,6 +49,7 @@ public class Db {
 	private Comparator bt_compare_handler;
 	private BtreeCompressor bt_compress_handler;
 	private BtreeCompressor bt_decompress_handler;
+	private boolean bt_compress_default;
 	private BtreePrefixCalculator bt_prefix_handler;
 	private Comparator dup_compare_handler;
 	private FeedbackHandler db_feedback_handler;
@@ -105,6 +106,54 @@ public class Db {
 		return append_recno_handler;
 	}
 
+	/*
+	 * Callbacks done in the library without calling into Java, see
+	 * com.sleepycat.db.NativeComparator, NativePrefixCalculator and
+	 * NativeKeyCreator.  The layout of the specs must match
+	 * java_callbacks.i.
+	 */
+	public static final int BT_COMPARE_SPEC = 0;
+	public static final int DUP_COMPARE_SPEC = 1;
+	public static final int H_COMPARE_SPEC = 2;
+	public static final int BT_PREFIX_SPEC = 3;
+	public static final int COMPARE_SPEC_SIZE = 64;
+	public static final int SECKEY_SPEC_SIZE = 256;
+	private static final int SECKEY_SPEC_OFFSET = 4 * COMPARE_SPEC_SIZE;
+	private java.nio.ByteBuffer callback_specs;
+
+	public void set_compare_spec(int which, byte[] spec)
+	    throws DatabaseException {
+		if (spec != null && spec.length > COMPARE_SPEC_SIZE)
+			throw new IllegalArgumentException(
+			    "comparison spec is too long");
+		set_callback_spec(which * COMPARE_SPEC_SIZE, spec);
+	}
+
+	public void set_seckey_spec(byte[] spec)
+	    throws DatabaseException {
+		if (spec != null && spec.length > SECKEY_SPEC_SIZE)
+			throw new IllegalArgumentException(
+			    "secondary key spec is too long");
+		set_callback_spec(SECKEY_SPEC_OFFSET, spec);
+	}
+
+	private void set_callback_spec(int offset, byte[] spec)
+	    throws DatabaseException {
+		if (callback_specs == null) {
+			if (spec == null)
+				return;
+			callback_specs = java.nio.ByteBuffer.allocateDirect(
+			    SECKEY_SPEC_OFFSET + SECKEY_SPEC_SIZE);
+			db_javaJNI.Db_set_callback_specs(swigCPtr, this,
+			    callback_specs);
+		}
+		callback_specs.position(offset);
+		if (spec == null)
+			callback_specs.put((byte)0);
+		else
+			callback_specs.put(spec);
+	}
+
 	private final int handle_bt_compare(byte[] arr1, byte[] arr2) {
 		return bt_compare_handler.compare(arr1, arr2);
 	}
@@ -135,6 +184,19 @@ public class Db {
 		return bt_decompress_handler;
 	}
 
+	/*
+	 * With no callbacks, the library uses its own prefix compression.
+	 */
+	public void set_bt_compress_default()
+	    throws com.sleepycat.db.DatabaseException {
+		set_bt_compress(null, null);
+		bt_compress_default = true;
+	}
+
+	public boolean get_bt_compress_default() {
+		return bt_compress_default;
+	}
+
 	private final int handle_bt_prefix(DatabaseEntry dbt1,
 					   DatabaseEntry dbt2) {
 		return bt_prefix_handler.prefix(wrapper, dbt1, dbt2);
@@ -415,6 +477,8 @@ public class Db {
 
   public int get_pagesize() throws com.sleepycat.db.DatabaseException { return db_javaJNI.Db_get_pagesize(swigCPtr, this); }
 
+  public int get_bt_fillpct() throws com.sleepycat.db.DatabaseException { return db_javaJNI.Db_get_bt_fillpct(swigCPtr, this); }
+
   public int get_bt_minkey() throws com.sleepycat.db.DatabaseException { return db_javaJNI.Db_get_bt_minkey(swigCPtr, this); }
 
   public long get_heapsize() throws com.sleepycat.db.DatabaseException {
@@ -492,6 +556,8 @@ public class Db {
 
   public void set_bt_compare(java.util.Comparator bt_compare_fcn) throws com.sleepycat.db.DatabaseException { db_javaJNI.Db_set_bt_compare(swigCPtr, this,  (bt_compare_handler = bt_compare_fcn) != null ); }
 
+  public void set_bt_fillpct(int bt_fillpct) throws com.sleepycat.db.DatabaseException { db_javaJNI.Db_set_bt_fillpct(swigCPtr, this, bt_fillpct); }
+
   public void set_bt_minkey(int bt_minkey) throws com.sleepycat.db.DatabaseException { db_javaJNI.Db_set_bt_minkey(swigCPtr, this, bt_minkey); }
 
   public void set_bt_compress(com.sleepycat.db.BtreeCompressor bt_compress_fcn, com.sleepycat.db.BtreeCompressor bt_decompress_fcn) throws com.sleepycat.db.DatabaseException { db_javaJNI.Db_set_bt_compress(swigCPtr, this,  (bt_compress_handler = bt_compress_fcn) != null ,  (bt_decompress_handler = bt_decompress_fcn) != null ); }
@@ -284,6 +284,10 @@ public class DbEnv {
 		    offset, count);
 	}
 
+	public void stat_counters(long[] counters) throws DatabaseException {
+		db_javaJNI.DbEnv_stat_counters(swigCPtr, this, counters);
+	}
+
 	public synchronized void remove(String db_home, int flags)
 	    throws DatabaseException, java.io.FileNotFoundException {
 		try {
@@ -352,7 +356,7 @@ public class DbEnv {
 		 * Offset in buf is always 0.  We include it anyways to match
 		 * the OutputStream.write() signature.
 		 */
-		long file_pos = file_pos_gbytes * GIGABYTE + file_pos_bytes;
+		long file_pos = (long)file_pos_gbytes * GIGABYTE + file_pos_bytes;
 		return backup_open_handler.write(file_pos, buf, 0, len);
 	}
 
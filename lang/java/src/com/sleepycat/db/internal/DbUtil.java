@@ -7,6 +7,9 @@
  */
 package com.sleepycat.db.internal;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  *  DbUtil is a simple class that holds a few static utility functions other
  *  parts of the package share and that don't have a good home elsewhere. (For
@@ -66,6 +69,23 @@ public class DbUtil {
     }
 
 
+    /**
+     *  Get the u_int32_t stored beginning at absolute index "offset" into
+     *  the ByteBuffer "buf".  The value is read with a single absolute
+     *  getInt call, so neither the buffer position nor its byte order is
+     *  changed and nothing is allocated; if the buffer's byte order differs
+     *  from the platform's, the bytes are swapped after the read.
+     *
+     * @return    Description of the Return Value
+     */
+    public static int buffer2int(ByteBuffer buf, int offset) {
+        final int n = buf.getInt(offset);
+        if ((buf.order() == ByteOrder.BIG_ENDIAN) == big_endian)
+            return n;
+        return Integer.reverseBytes(n);
+    }
+
+
     /**
      *  Store the specified u_int32_t, with endianness appropriate to
      *  the platform we're running on, into four consecutive bytes of
@@ -17,6 +17,14 @@ package com.sleepycat.db.internal;
     db_javaJNI.DbTxn_commit(DbTxn.getCPtr(txn), txn, flags);
   }
 
+  public static void DbEnv_stat_counters(DbEnv dbenv, long[] counters) throws com.sleepycat.db.DatabaseException {
+    db_javaJNI.DbEnv_stat_counters(DbEnv.getCPtr(dbenv), dbenv, counters);
+  }
+
+  public static void Db_set_callback_specs(Db db, Object specs) throws com.sleepycat.db.DatabaseException {
+    db_javaJNI.Db_set_callback_specs(Db.getCPtr(db), db, specs);
+  }
+
   /* package */ static long initDbEnvRef0(DbEnv self, Object handle) {
     return db_javaJNI.initDbEnvRef0(DbEnv.getCPtr(self), self, handle);
   }
@@ -72,6 +72,8 @@ class db_javaJNI {
 
   public final static native void DbEnv_lock_vec(long jarg1, DbEnv jarg1_, int jarg2, int jarg3, com.sleepycat.db.LockRequest[] jarg4, int jarg5, int jarg6) throws com.sleepycat.db.DatabaseException;
   public final static native void DbTxn_commit(long jarg1, DbTxn jarg1_, int jarg2) throws com.sleepycat.db.DatabaseException;
+  public final static native void DbEnv_stat_counters(long jarg1, DbEnv jarg1_, long[] jarg2) throws com.sleepycat.db.DatabaseException;
+  public final static native void Db_set_callback_specs(long jarg1, Db jarg1_, Object jarg2) throws com.sleepycat.db.DatabaseException;
   /* package */ final static native long initDbEnvRef0(long jarg1, DbEnv jarg1_, Object jarg2);
   /* package */ final static native long initDbRef0(long jarg1, Db jarg1_, Object jarg2);
   /* package */ final static native void deleteRef0(long jarg1);
@@ -104,6 +106,7 @@ class db_javaJNI {
   public final static native long Db_get_mpf(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
   public final static native int Db_get_open_flags(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
   public final static native int Db_get_pagesize(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
+  public final static native int Db_get_bt_fillpct(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
   public final static native int Db_get_bt_minkey(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
   public final static native long Db_get_heapsize(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
   public final static native int Db_get_heap_regionsize(long jarg1, Db jarg1_) throws com.sleepycat.db.DatabaseException;
@@ -132,6 +135,7 @@ class db_javaJNI {
   public final static native void Db_set_blob_dir(long jarg1, Db jarg1_, String jarg2) throws com.sleepycat.db.DatabaseException;
   public final static native void Db_set_blob_threshold(long jarg1, Db jarg1_, int jarg2, int jarg3) throws com.sleepycat.db.DatabaseException;
   public final static native void Db_set_bt_compare(long jarg1, Db jarg1_, boolean jarg2) throws com.sleepycat.db.DatabaseException;
+  public final static native void Db_set_bt_fillpct(long jarg1, Db jarg1_, int jarg2) throws com.sleepycat.db.DatabaseException;
   public final static native void Db_set_bt_minkey(long jarg1, Db jarg1_, int jarg2) throws com.sleepycat.db.DatabaseException;
   public final static native void Db_set_bt_compress(long jarg1, Db jarg1_, boolean jarg2, boolean jarg3) throws com.sleepycat.db.DatabaseException;
   public final static native void Db_set_bt_prefix(long jarg1, Db jarg1_, boolean jarg2) throws com.sleepycat.db.DatabaseException;
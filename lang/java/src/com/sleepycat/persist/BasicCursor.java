@@ -26,6 +26,7 @@ class BasicCursor<V> implements EntityCursor<V> {
     RangeCursor cursor;
     ValueAdapter<V> adapter;
     boolean updateAllowed;
+    BasicIndex<?, ?> index;
     DatabaseEntry key;
     DatabaseEntry pkey;
     DatabaseEntry data;
@@ -178,20 +179,64 @@ class BasicCursor<V> implements EntityCursor<V> {
         }
         checkInitialized();
         adapter.valueToData(entity, data);
-        return cursor.putCurrent(data) == OperationStatus.SUCCESS;
+        DatabaseEntry[] writtenKeys = getWrittenKeys();
+        try {
+            return cursor.putCurrent(data) == OperationStatus.SUCCESS;
+        } finally {
+            entityWritten(writtenKeys, false);
+        }
     }
 
     public boolean delete()
         throws DatabaseException {
 
         checkInitialized();
-        return cursor.delete() == OperationStatus.SUCCESS;
+        DatabaseEntry[] writtenKeys = getWrittenKeys();
+        try {
+            return cursor.delete() == OperationStatus.SUCCESS;
+        } finally {
+            entityWritten(writtenKeys, true);
+        }
+    }
+
+    /**
+     * Returns the key and primary key at the cursor position when the index
+     * uses an entity cache, or null otherwise.  The key entries of this
+     * cursor are cleared when an entity is returned, so the keys are read
+     * again without reading the data.  If the position cannot be read, the
+     * returned keys are null and the entire cache is invalidated.
+     */
+    private DatabaseEntry[] getWrittenKeys()
+        throws DatabaseException {
+
+        if (index == null || !index.isEntityCached()) {
+            return null;
+        }
+        DatabaseEntry keyEntry = new DatabaseEntry();
+        DatabaseEntry pkeyEntry = (pkey != null) ? new DatabaseEntry() : null;
+        DatabaseEntry dataEntry = new DatabaseEntry();
+        dataEntry.setPartial(0, 0, true);
+        OperationStatus status = cursor.getCurrent
+            (keyEntry, pkeyEntry, dataEntry, LockMode.DEFAULT);
+        if (status != OperationStatus.SUCCESS) {
+            return new DatabaseEntry[] { null, null };
+        }
+        return new DatabaseEntry[] { keyEntry, pkeyEntry };
+    }
+
+    private void entityWritten(DatabaseEntry[] writtenKeys, boolean delete) {
+        if (writtenKeys != null) {
+            index.entityWritten(writtenKeys[0], writtenKeys[1], delete);
+        }
     }
 
     public EntityCursor<V> dup()
         throws DatabaseException {
 
-        return new BasicCursor<V>(cursor.dup(true), adapter, updateAllowed);
+        BasicCursor<V> dupCursor =
+            new BasicCursor<V>(cursor.dup(true), adapter, updateAllowed);
+        dupCursor.index = index;
+        return dupCursor;
     }
 
     public void close()
@@ -7,6 +7,10 @@
 
 package com.sleepycat.persist;
 
+import java.util.Comparator;
+import java.util.Set;
+
+import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.bind.EntryBinding;
 import com.sleepycat.compat.DbCompat;
 import com.sleepycat.db.Cursor;
@@ -17,8 +21,10 @@ import com.sleepycat.db.DatabaseEntry;
 import com.sleepycat.db.DatabaseException;
 import com.sleepycat.db.Environment;
 import com.sleepycat.db.LockMode;
+import com.sleepycat.db.NativeComparator;
 import com.sleepycat.db.OperationStatus;
 import com.sleepycat.db.Transaction;
+import com.sleepycat.persist.impl.PersistEntityBinding;
 import com.sleepycat.util.keyrange.KeyRange;
 import com.sleepycat.util.keyrange.RangeCursor;
 
@@ -133,7 +139,12 @@ abstract class BasicIndex<K, E> implements EntityIndex<K, E> {
         DatabaseEntry keyEntry = new DatabaseEntry();
         keyBinding.objectToEntry(key, keyEntry);
 
-        OperationStatus status = db.delete(txn, keyEntry);
+        OperationStatus status;
+        try {
+            status = db.delete(txn, keyEntry);
+        } finally {
+            entityWritten(keyEntry, null, true);
+        }
         return (status == OperationStatus.SUCCESS);
     }
 
@@ -211,6 +222,41 @@ abstract class BasicIndex<K, E> implements EntityIndex<K, E> {
                                        CursorConfig config)
         throws DatabaseException {
 
+        KeyRange range = range(fromKey, fromInclusive, toKey, toInclusive);
+        return cursor(txn, range, adapter, config);
+    }
+
+    <V> EntityCursor<V> cursor(Transaction txn,
+                               KeyRange range,
+                               ValueAdapter<V> adapter,
+                               CursorConfig config)
+        throws DatabaseException {
+
+        return cursor(txn, range, adapter, config, isUpdateAllowed());
+    }
+
+    /*
+     * Returns a cursor for entities read with a projection.  Updates are not
+     * allowed, since storing a projected entity would discard the fields
+     * that were not read.
+     */
+    <V> EntityCursor<V> projectedCursor(Transaction txn,
+                                        K fromKey,
+                                        boolean fromInclusive,
+                                        K toKey,
+                                        boolean toInclusive,
+                                        ValueAdapter<V> adapter,
+                                        CursorConfig config)
+        throws DatabaseException {
+
+        KeyRange range = range(fromKey, fromInclusive, toKey, toInclusive);
+        return cursor(txn, range, adapter, config, false);
+    }
+
+    private KeyRange range(K fromKey,
+                           boolean fromInclusive,
+                           K toKey,
+                           boolean toInclusive) {
         DatabaseEntry fromEntry = null;
         if (fromKey != null) {
             fromEntry = new DatabaseEntry();
@@ -221,21 +267,75 @@ abstract class BasicIndex<K, E> implements EntityIndex<K, E> {
             toEntry = new DatabaseEntry();
             keyBinding.objectToEntry(toKey, toEntry);
         }
-        KeyRange range = emptyRange.subRange
+        return emptyRange.subRange
             (fromEntry, fromInclusive, toEntry, toInclusive);
-        return cursor(txn, range, adapter, config);
     }
 
     private <V> EntityCursor<V> cursor(Transaction txn,
                                        KeyRange range,
                                        ValueAdapter<V> adapter,
-                                       CursorConfig config)
+                                       CursorConfig config,
+                                       boolean updateAllowed)
         throws DatabaseException {
 
         Cursor cursor = db.openCursor(txn, config);
         RangeCursor rangeCursor =
             new RangeCursor(range, null/*pkRange*/, sortedDups, cursor);
-        return new BasicCursor<V>(rangeCursor, adapter, isUpdateAllowed());
+        BasicCursor<V> basicCursor =
+            new BasicCursor<V>(rangeCursor, adapter, updateAllowed);
+        basicCursor.index = this;
+        return basicCursor;
+    }
+
+    /*
+     * Returns a spliterator for the whole index.  Its range is only split
+     * when the keys are in the default byte order.
+     */
+    <V> EntitySpliterator<V> spliterator(ValueAdapter<V> adapter,
+                                         CursorConfig config)
+        throws DatabaseException {
+
+        Comparator<byte[]> comparator = null;
+        if (db.getConfig().getBtreeComparator() == null) {
+            comparator = NativeComparator.LEXICOGRAPHIC;
+        }
+        return new EntitySpliterator<V>
+            (this, adapter, config, comparator, null, null);
+    }
+
+    /*
+     * Returns the names of the fields to read for a projection, or null to
+     * read whole entities.  Only the DPL's own entity binding can skip fields.
+     */
+    static Set<String> getFieldNames(Projection projection,
+                                     EntityBinding entityBinding) {
+        if (projection == null ||
+            !(entityBinding instanceof PersistEntityBinding)) {
+            return null;
+        }
+        Set<String> fieldNames = projection.getFieldNames();
+        ((PersistEntityBinding) entityBinding).checkFieldNames(fieldNames);
+        return fieldNames;
+    }
+
+    /*
+     * Called after a record is written or deleted through this index, with
+     * the key of this index and, if it is known, the primary key.  A null
+     * key means that any record may have been written.  Used to invalidate
+     * the entity cache of the store.
+     */
+    void entityWritten(DatabaseEntry key,
+                       DatabaseEntry priKey,
+                       boolean delete) {
+    }
+
+    /*
+     * Returns whether entities of this index are kept in an entity cache, in
+     * which case entityWritten must be called with the keys of entities
+     * written by a cursor.
+     */
+    boolean isEntityCached() {
+        return false;
     }
 
     abstract boolean isUpdateAllowed();
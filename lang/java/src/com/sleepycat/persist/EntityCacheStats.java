@@ -0,0 +1,110 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist;
+
+/**
+ * Statistics for the entity cache of a store, returned by {@link
+ * EntityStore#getEntityCacheStats}.
+ *
+ * <p>The values are counted from the time the store was opened.  See {@link
+ * StoreConfig#setEntityCacheSize} for a description of the entity cache.</p>
+ */
+public class EntityCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int entries;
+    private final long bytes;
+
+    /**
+     * For internal use only.
+     */
+    public EntityCacheStats(long hits,
+                            long misses,
+                            long evictions,
+                            long invalidations,
+                            int entries,
+                            long bytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the number of reads that found the entity in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads that used the cache and did not find the
+     * entity in it.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entities evicted to keep the cache within its
+     * maximum size.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entities removed from the cache because they
+     * were written or deleted.
+     *
+     * @return the number of invalidated entities.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the number of entities in the cache.
+     *
+     * @return the number of cached entities.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the number of bytes used by the entities in the cache.
+     *
+     * @return the size of the cached entities.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits +
+               "\nmisses=" + misses +
+               "\nevictions=" + evictions +
+               "\ninvalidations=" + invalidations +
+               "\nentries=" + entries +
+               "\nbytes=" + bytes +
+               '\n';
+    }
+}
@@ -931,6 +931,10 @@ public interface EntityIndex<K, V> {
      * com.sleepycat.collections Collections API}.  Stored collections conform
      * to the standard Java collections framework interface.
      *
+     * <p>If the store has an {@link StoreConfig#setEntityCacheSize entity
+     * cache}, the map of a primary or secondary index is read-only, and its
+     * write methods throw {@code UnsupportedOperationException}.</p>
+     *
      * @return the map.
      */
     Map<K, V> map();
@@ -941,6 +945,10 @@ public interface EntityIndex<K, V> {
      * com.sleepycat.collections Collections API}.  Stored collections conform
      * to the standard Java collections framework interface.
      *
+     * <p>If the store has an {@link StoreConfig#setEntityCacheSize entity
+     * cache}, the map of a primary or secondary index is read-only, and its
+     * write methods throw {@code UnsupportedOperationException}.</p>
+     *
      * @return the map.
      */
     SortedMap<K, V> sortedMap();
@@ -0,0 +1,388 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ * $Id$
+ */
+
+package com.sleepycat.persist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sleepycat.db.Cursor;
+import com.sleepycat.db.CursorConfig;
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DatabaseException;
+import com.sleepycat.db.OperationStatus;
+import com.sleepycat.util.keyrange.KeyRange;
+import com.sleepycat.util.keyrange.KeySplitter;
+
+/**
+ * Traverses the values in a range of keys of an index, and splits the range
+ * so that its parts can be traversed by several threads at once.
+ *
+ * <p>An {@code EntitySpliterator} is obtained from {@link
+ * PrimaryIndex#spliterator} or {@link SecondaryIndex#spliterator} and
+ * initially covers the whole index.  {@link #trySplit} divides the range at a
+ * key that {@link Database#getKeyRange Database.getKeyRange} places about
+ * half way through it, and returns a new spliterator for the first half.
+ * Each part is traversed with its own cursor, opened without a transaction
+ * and with the {@code CursorConfig} the spliterator was obtained with, for
+ * example {@link CursorConfig#READ_COMMITTED} or {@link
+ * CursorConfig#SNAPSHOT}.  {@link #parallelForEach} splits the range and
+ * traverses the parts with a thread each, for example:</p>
+ *
+ * <pre class="code">
+ * final AtomicLong total = new AtomicLong();
+ * employeeById.spliterator(CursorConfig.READ_COMMITTED).parallelForEach(
+ *     4, new EntityVisitor&lt;Employee&gt;() {
+ *         public void visit(Employee employee) {
+ *             total.addAndGet(employee.salary);
+ *         }
+ *     });</pre>
+ *
+ * <p>A range is only split for an index in the default key order.  If the
+ * key class defines its own order with {@code Comparable}, {@link #trySplit}
+ * returns null and the index is traversed as one part.  Splits are estimates,
+ * so the parts do not hold exactly the same number of values.</p>
+ *
+ * <p>An {@code EntitySpliterator} is not thread-safe; each part must be used
+ * by a single thread.  When parts are used by several threads, the
+ * environment must be opened with {@link
+ * com.sleepycat.db.EnvironmentConfig#setThreaded
+ * EnvironmentConfig.setThreaded}.</p>
+ */
+public class EntitySpliterator<V> {
+
+    private final BasicIndex<?, ?> index;
+    private final ValueAdapter<V> adapter;
+    private final CursorConfig config;
+    private final Comparator<byte[]> comparator;
+    private byte[] fromKey;
+    private byte[] toKey;
+    private boolean traversed;
+
+    /**
+     * Creates a spliterator for the keys from fromKey inclusive to toKey
+     * exclusive, either of which may be null for the start or end of the
+     * index.  The comparator is null if the range may not be split.
+     */
+    EntitySpliterator(BasicIndex<?, ?> index,
+                      ValueAdapter<V> adapter,
+                      CursorConfig config,
+                      Comparator<byte[]> comparator,
+                      byte[] fromKey,
+                      byte[] toKey) {
+        this.index = index;
+        this.adapter = adapter;
+        this.config = config;
+        this.comparator = comparator;
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+    }
+
+    /**
+     * Splits the range in two parts of about the same size.  This
+     * spliterator keeps the second part, and a new spliterator is returned
+     * for the first part.
+     *
+     * @return the spliterator for the first part, or null if the range
+     * cannot be split, because it holds fewer than two keys, the index is not
+     * in the default key order, or the values have been traversed.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntitySpliterator<V> trySplit()
+        throws DatabaseException {
+
+        if (traversed || comparator == null) {
+            return null;
+        }
+        byte[] low = endKey(true);
+        byte[] high = endKey(false);
+        if (low == null || high == null ||
+            comparator.compare(low, high) >= 0) {
+            return null;
+        }
+
+        /* Split at the key getKeyRange places half way through the range. */
+        byte[] split = KeySplitter.splitKey
+            (index.db, low, high, (less(low) + less(high)) / 2);
+        if (split == null ||
+            comparator.compare(split, low) <= 0 ||
+            comparator.compare(split, high) > 0) {
+            return null;
+        }
+        EntitySpliterator<V> first = new EntitySpliterator<V>
+            (index, adapter, config, comparator, fromKey, split);
+        fromKey = split;
+        return first;
+    }
+
+    /**
+     * Returns an estimate of the fraction of the index in the range of this
+     * spliterator.
+     *
+     * @return the fraction, from 0 to 1, or 0 if the values have been
+     * traversed.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public double estimateFraction()
+        throws DatabaseException {
+
+        if (traversed) {
+            return 0;
+        }
+        double from = (fromKey == null) ? 0 : less(fromKey);
+        double to = (toKey == null) ? 1 : less(toKey);
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Opens a cursor for the values in the range of this spliterator.  The
+     * cursor is opened without a transaction, and must be closed by the
+     * caller.
+     *
+     * @return the cursor.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntityCursor<V> openCursor()
+        throws DatabaseException {
+
+        KeyRange range = index.emptyRange.subRange
+            (entry(fromKey), true, entry(toKey), false);
+        return index.cursor(null, range, adapter, config);
+    }
+
+    /**
+     * Passes each value in the range to the visitor, in key order, on the
+     * calling thread.
+     *
+     * @param visitor the visitor.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public void forEachRemaining(EntityVisitor<? super V> visitor)
+        throws DatabaseException {
+
+        traverse(visitor, new AtomicBoolean());
+    }
+
+    /**
+     * Splits the range into as many as the given number of parts and passes
+     * each value to the visitor, with a thread for each part.  Each part is
+     * traversed in key order, but the parts are traversed at the same time.
+     * If the visitor or a cursor fails, the other threads stop and the first
+     * failure is thrown.
+     *
+     * @param threads the number of threads.
+     *
+     * @param visitor the visitor, which must be thread-safe.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public void parallelForEach(int threads,
+                                final EntityVisitor<? super V> visitor)
+        throws DatabaseException {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (traversed) {
+            return;
+        }
+        List<EntitySpliterator<V>> parts = split(threads);
+        if (parts.size() == 1) {
+            forEachRemaining(visitor);
+            return;
+        }
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(parts.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final EntitySpliterator<V> part : parts) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call()
+                        throws DatabaseException {
+
+                        try {
+                            part.traverse(visitor, stop);
+                        } catch (DatabaseException e) {
+                            stop.set(true);
+                            throw e;
+                        } catch (RuntimeException e) {
+                            stop.set(true);
+                            throw e;
+                        } catch (Error e) {
+                            stop.set(true);
+                            throw e;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            Throwable failure = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop.set(true);
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure instanceof DatabaseException) {
+                throw (DatabaseException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new DatabaseException(failure);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Split the largest part until there are n parts or none can be split.
+     * This spliterator is the last part.
+     */
+    private List<EntitySpliterator<V>> split(int n)
+        throws DatabaseException {
+
+        List<EntitySpliterator<V>> parts = new ArrayList<EntitySpliterator<V>>();
+        List<Double> fractions = new ArrayList<Double>();
+        parts.add(this);
+        fractions.add(estimateFraction());
+        while (parts.size() < n) {
+            int largest = -1;
+            for (int i = 0; i < parts.size(); i++) {
+                if (fractions.get(i) >= 0 &&
+                    (largest < 0 ||
+                     fractions.get(i) > fractions.get(largest))) {
+                    largest = i;
+                }
+            }
+            if (largest < 0) {
+                break;
+            }
+            EntitySpliterator<V> part = parts.get(largest);
+            EntitySpliterator<V> first = part.trySplit();
+            if (first == null) {
+                /* Mark the part as one that cannot be split. */
+                fractions.set(largest, -1.0);
+                continue;
+            }
+            parts.add(largest, first);
+            fractions.add(largest, first.estimateFraction());
+            fractions.set(largest + 1, part.estimateFraction());
+        }
+        return parts;
+    }
+
+    private void traverse(EntityVisitor<? super V> visitor,
+                          AtomicBoolean stop)
+        throws DatabaseException {
+
+        if (traversed) {
+            return;
+        }
+        traversed = true;
+        EntityCursor<V> cursor = openCursor();
+        try {
+            for (V value = cursor.next();
+                 value != null && !stop.get();
+                 value = cursor.next()) {
+                visitor.visit(value);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+     * Returns the first or last key in the range, or null if the range is
+     * empty.
+     */
+    private byte[] endKey(boolean first)
+        throws DatabaseException {
+
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = BasicIndex.NO_RETURN_ENTRY;
+        Cursor cursor = index.db.openCursor(null, config);
+        try {
+            OperationStatus status;
+            if (first) {
+                if (fromKey == null) {
+                    status = cursor.getFirst(key, data, null);
+                } else {
+                    key.setData(fromKey);
+                    status = cursor.getSearchKeyRange(key, data, null);
+                }
+            } else if (toKey == null) {
+                status = cursor.getLast(key, data, null);
+            } else {
+                key.setData(toKey);
+                status = cursor.getSearchKeyRange(key, data, null);
+                if (status == OperationStatus.SUCCESS) {
+                    status = cursor.getPrev(key, data, null);
+                } else {
+                    status = cursor.getLast(key, data, null);
+                }
+            }
+            if (status != OperationStatus.SUCCESS) {
+                return null;
+            }
+            byte[] bytes = copy(key);
+            if ((fromKey != null && comparator.compare(bytes, fromKey) < 0) ||
+                (toKey != null && comparator.compare(bytes, toKey) >= 0)) {
+                return null;
+            }
+            return bytes;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /* Returns the fraction of the index before the key. */
+    private double less(byte[] key)
+        throws DatabaseException {
+
+        return index.db.getKeyRange(null, new DatabaseEntry(key)).less;
+    }
+
+    private static DatabaseEntry entry(byte[] key) {
+        return (key == null) ? null : new DatabaseEntry(key);
+    }
+
+    private static byte[] copy(DatabaseEntry entry) {
+        byte[] bytes = new byte[entry.getSize()];
+        System.arraycopy(entry.getData(), entry.getOffset(),
+                         bytes, 0, bytes.length);
+        return bytes;
+    }
+}
@@ -131,6 +131,16 @@ public class EntityStore
         return store.getConfig();
     }
 
+    /**
+     * Returns the statistics of the entity cache of this store.
+     *
+     * @return the statistics, or null if no entity cache is configured with
+     * {@link StoreConfig#setEntityCacheSize}.
+     */
+    public EntityCacheStats getEntityCacheStats() {
+        return store.getEntityCacheStats();
+    }
+
     /**
      * Returns the name of this store.
      *
@@ -565,6 +575,14 @@ public class EntityStore
      * <p>In addition, {@link DatabaseConfig#setAllowCreate AllowCreate} must be
      * the inverse of {@code ReadOnly}</p>
      *
+     * <p>{@link SecondaryConfig#setPopulateThreads PopulateThreads} may be set
+     * to populate a new secondary index with several threads.  This applies
+     * when the index is created by {@link #getSecondaryIndex
+     * getSecondaryIndex} after its primary index is open, for example with
+     * {@link StoreConfig#setSecondaryBulkLoad SecondaryBulkLoad}; the index is
+     * then created and populated outside the transaction used to open
+     * it.</p>
+     *
      * @param entityClass the entity class identifying the primary database.
      *
      * @param config the configuration to use for the given entity class.
@@ -649,6 +667,14 @@ public class EntityStore
      * <p>In addition, {@link DatabaseConfig#setAllowCreate AllowCreate} must be
      * the inverse of {@code ReadOnly}</p>
      *
+     * <p>{@link SecondaryConfig#setPopulateThreads PopulateThreads} may be set
+     * to populate a new secondary index with several threads.  This applies
+     * when the index is created by {@link #getSecondaryIndex
+     * getSecondaryIndex} after its primary index is open, for example with
+     * {@link StoreConfig#setSecondaryBulkLoad SecondaryBulkLoad}; the index is
+     * then created and populated outside the transaction used to open
+     * it.</p>
+     *
      * @param entityClass the entity class containing the given secondary key
      * name.
      *
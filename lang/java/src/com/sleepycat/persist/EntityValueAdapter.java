@@ -7,8 +7,11 @@
 
 package com.sleepycat.persist;
 
+import java.util.Set;
+
 import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.persist.impl.PersistEntityBinding;
 
 /**
  * A ValueAdapter where the "value" is the entity.
@@ -19,12 +22,25 @@ class EntityValueAdapter<V> implements ValueAdapter<V> {
 
     private EntityBinding entityBinding;
     private boolean isSecondary;
+    private Set<String> fieldNames;
 
     EntityValueAdapter(Class<V> entityClass,
                        EntityBinding entityBinding,
                        boolean isSecondary) {
+        this(entityClass, entityBinding, isSecondary, null);
+    }
+
+    /*
+     * When fieldNames is non-null, only the named fields of each entity are
+     * read.  The binding is then always a PersistEntityBinding.
+     */
+    EntityValueAdapter(Class<V> entityClass,
+                       EntityBinding entityBinding,
+                       boolean isSecondary,
+                       Set<String> fieldNames) {
         this.entityBinding = entityBinding;
         this.isSecondary = isSecondary;
+        this.fieldNames = fieldNames;
     }
 
     public DatabaseEntry initKey() {
@@ -52,6 +68,10 @@ class EntityValueAdapter<V> implements ValueAdapter<V> {
     public V entryToValue(DatabaseEntry key,
                           DatabaseEntry pkey,
                           DatabaseEntry data) {
+        if (fieldNames != null) {
+            return (V) ((PersistEntityBinding) entityBinding).entryToObject
+                (isSecondary ? pkey : key, data, fieldNames);
+        }
         return (V) entityBinding.entryToObject(isSecondary ? pkey : key, data);
     }
 
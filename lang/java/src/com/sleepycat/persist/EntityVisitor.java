@@ -0,0 +1,30 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist;
+
+import com.sleepycat.db.DatabaseException;
+
+/**
+ * Receives the values traversed by an {@link EntitySpliterator}.
+ *
+ * <p>When the values are traversed by {@link
+ * EntitySpliterator#parallelForEach}, the visitor is called by several
+ * threads at once and must be thread-safe.</p>
+ */
+public interface EntityVisitor<V> {
+
+    /**
+     * Called for each value traversed.
+     *
+     * @param value the entity or key value.
+     *
+     * @throws DatabaseException to stop the traversal.
+     */
+    void visit(V value)
+        throws DatabaseException;
+}
@@ -8,6 +8,7 @@
 package com.sleepycat.persist;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 
 import com.sleepycat.bind.EntityBinding;
@@ -24,6 +25,7 @@ import com.sleepycat.db.LockMode;
 import com.sleepycat.db.OperationStatus;
 import com.sleepycat.db.Transaction;
 import com.sleepycat.db.TransactionConfig;
+import com.sleepycat.persist.impl.EntityCache;
 import com.sleepycat.persist.impl.PersistEntityBinding;
 import com.sleepycat.persist.impl.PersistKeyAssigner;
 import com.sleepycat.persist.model.Entity;
@@ -205,6 +207,7 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
     private EntityBinding<E> entityBinding;
     private SortedMap<PK, E> map;
     private PersistKeyAssigner keyAssigner;
+    private EntityCache entityCache;
 
     /**
      * Creates a primary index without using an <code>EntityStore</code>.
@@ -249,6 +252,8 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
         if (entityBinding instanceof PersistEntityBinding) {
             keyAssigner =
                 ((PersistEntityBinding) entityBinding).getKeyAssigner();
+            entityCache =
+                ((PersistEntityBinding) entityBinding).getEntityCache();
         }
     }
 
@@ -371,12 +376,12 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
                 if (status == OperationStatus.SUCCESS) {
                     E existing =
                         entityBinding.entryToObject(keyEntry, dataEntry);
-                    entityBinding.objectToData(entity, dataEntry);
+                    entityToData(entity, dataEntry);
                     cursor.put(keyEntry, dataEntry);
                     failed = false;
                     return existing;
                 } else {
-                    entityBinding.objectToData(entity, dataEntry);
+                    entityToData(entity, dataEntry);
                     status = cursor.putNoOverwrite(keyEntry, dataEntry);
                     if (status != OperationStatus.KEYEXIST) {
                         failed = false;
@@ -386,6 +391,7 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
             }
         } finally {
             cursor.close();
+            entityWritten(keyEntry, null, false);
             if (autoCommit) {
                 if (failed) {
                     txn.abort();
@@ -443,9 +449,13 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
         DatabaseEntry keyEntry = new DatabaseEntry();
         DatabaseEntry dataEntry = new DatabaseEntry();
         assignKey(entity, keyEntry);
-        entityBinding.objectToData(entity, dataEntry);
+        entityToData(entity, dataEntry);
 
-        db.put(txn, keyEntry, dataEntry);
+        try {
+            db.put(txn, keyEntry, dataEntry);
+        } finally {
+            entityWritten(keyEntry, null, false);
+        }
     }
 
     /**
@@ -497,13 +507,33 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
         DatabaseEntry keyEntry = new DatabaseEntry();
         DatabaseEntry dataEntry = new DatabaseEntry();
         assignKey(entity, keyEntry);
-        entityBinding.objectToData(entity, dataEntry);
+        entityToData(entity, dataEntry);
 
-        OperationStatus status = db.putNoOverwrite(txn, keyEntry, dataEntry);
+        OperationStatus status;
+        try {
+            status = db.putNoOverwrite(txn, keyEntry, dataEntry);
+        } finally {
+            entityWritten(keyEntry, null, false);
+        }
 
         return (status == OperationStatus.SUCCESS);
     }
 
+    /**
+     * Writes the entity to the data entry.  The DPL binding writes it to a
+     * buffer that is reused by the next write in this thread, which is safe
+     * because the entry is passed to the database before that.
+     */
+    private void entityToData(E entity, DatabaseEntry dataEntry) {
+
+        if (entityBinding instanceof PersistEntityBinding) {
+            ((PersistEntityBinding) entityBinding).
+                objectToReusedData(entity, dataEntry);
+        } else {
+            entityBinding.objectToData(entity, dataEntry);
+        }
+    }
+
     /**
      * If we are assigning primary keys from a sequence, assign the next key
      * and set the primary key field.
@@ -520,6 +550,27 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
         }
     }
 
+    /**
+     * Returns a spliterator for all entities in this index, so that they can
+     * be traversed in parallel by several threads.  The spliterator and each
+     * of its parts open a cursor with the given configuration and without a
+     * transaction; the entities of each part are returned in primary key
+     * order.
+     *
+     * @param config the cursor configuration, for example {@link
+     * CursorConfig#READ_COMMITTED} or {@link CursorConfig#SNAPSHOT}, or null
+     * to use the default configuration.
+     *
+     * @return the spliterator.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntitySpliterator<E> spliterator(CursorConfig config)
+        throws DatabaseException {
+
+        return spliterator(entityAdapter, config);
+    }
+
     /*
      * Of the EntityIndex methods only get()/map()/sortedMap() are implemented
      * here.  All other methods are implemented by BasicIndex.
@@ -534,16 +585,98 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
     public E get(Transaction txn, PK key, LockMode lockMode)
         throws DatabaseException {
 
+        return get(txn, key, lockMode, null);
+    }
+
+    /**
+     * Gets an entity via a key of this index, reading only the primary key
+     * and the fields named by a projection.
+     *
+     * <p>The operation will not be transaction protected, and {@link
+     * LockMode#DEFAULT} is used implicitly.</p>
+     *
+     * @param key the key to search for.
+     *
+     * @param projection the fields to read, or null to read the whole entity.
+     *
+     * @return the value mapped to the given key, or null if the key is not
+     * present in the index.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public E get(PK key, Projection projection)
+        throws DatabaseException {
+
+        return get(null, key, null, projection);
+    }
+
+    /**
+     * Gets an entity via a key of this index, reading only the primary key
+     * and the fields named by a projection.  See {@link Projection} for
+     * the values of the fields that are not read.
+     *
+     * @param txn the transaction used to protect this operation, or null
+     * if the operation should not be transaction protected.
+     *
+     * @param key the key to search for.
+     *
+     * @param lockMode the lock mode to use for this operation, or null to
+     * use {@link LockMode#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read the whole entity.
+     *
+     * @return the value mapped to the given key, or null if the key is not
+     * present in the index.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public E get(Transaction txn,
+                 PK key,
+                 LockMode lockMode,
+                 Projection projection)
+        throws DatabaseException {
+
+        Set<String> fieldNames = getFieldNames(projection, entityBinding);
         DatabaseEntry keyEntry = new DatabaseEntry();
         DatabaseEntry dataEntry = new DatabaseEntry();
         keyBinding.objectToEntry(key, keyEntry);
 
-        OperationStatus status = db.get(txn, keyEntry, dataEntry, lockMode);
+        /*
+         * Only reads without a transaction, which see committed data, use
+         * the entity cache.  The generation is taken before reading so that
+         * data made stale by a concurrent write is not cached.
+         */
+        EntityCache cache = null;
+        if (entityCache != null &&
+            txn == null &&
+            (lockMode == null ||
+             lockMode == LockMode.DEFAULT ||
+             lockMode == LockMode.READ_COMMITTED)) {
+            cache = entityCache;
+        }
+        OperationStatus status;
+        byte[] cached = (cache != null) ? cache.get(db, keyEntry) : null;
+        if (cached != null) {
+            dataEntry.setData(cached);
+            status = OperationStatus.SUCCESS;
+        } else {
+            long generation = (cache != null) ? cache.getGeneration() : 0;
+            status = db.get(txn, keyEntry, dataEntry, lockMode);
+            if (cache != null && status == OperationStatus.SUCCESS) {
+                cache.put(db, keyEntry, dataEntry, generation);
+            }
+        }
 
         if (status == OperationStatus.SUCCESS) {
             if (entityBinding instanceof PersistEntityBinding) {
                 return (E)((PersistEntityBinding) entityBinding).
-                           entryToObjectWithPriKey(key, dataEntry);
+                           entryToObjectWithPriKey(key, dataEntry, fieldNames);
             } else {
                 return entityBinding.entryToObject(keyEntry, dataEntry);
             }
@@ -552,13 +685,101 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
         }
     }
 
+    /**
+     * Opens a cursor for traversing all entities in this index, reading only
+     * the primary key and the fields named by a projection.  The cursor may
+     * not be used to update entities.
+     *
+     * @param txn the transaction used to protect all operations performed with
+     * the cursor, or null if the operations should not be transaction
+     * protected.  If the store is non-transactional, null must be specified.
+     *
+     * @param config the cursor configuration that determines the default lock
+     * mode used for all cursor operations, or null to implicitly use {@link
+     * CursorConfig#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read whole entities.
+     *
+     * @return the cursor.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntityCursor<E> entities(Transaction txn,
+                                    CursorConfig config,
+                                    Projection projection)
+        throws DatabaseException {
+
+        return entities(txn, null, false, null, false, config, projection);
+    }
+
+    /**
+     * Opens a cursor for traversing entities in a key range, reading only the
+     * primary key and the fields named by a projection.  The cursor may not
+     * be used to update entities.
+     *
+     * @param txn the transaction used to protect all operations performed with
+     * the cursor, or null if the operations should not be transaction
+     * protected.  If the store is non-transactional, null must be specified.
+     *
+     * @param fromKey is the lower bound of the key range, or null if the range
+     * has no lower bound.
+     *
+     * @param fromInclusive is true if keys greater than or equal to fromKey
+     * should be included in the key range, or false if only keys greater than
+     * fromKey should be included.
+     *
+     * @param toKey is the upper bound of the key range, or null if the range
+     * has no upper bound.
+     *
+     * @param toInclusive is true if keys less than or equal to toKey should be
+     * included in the key range, or false if only keys less than toKey should
+     * be included.
+     *
+     * @param config the cursor configuration that determines the default lock
+     * mode used for all cursor operations, or null to implicitly use {@link
+     * CursorConfig#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read whole entities.
+     *
+     * @return the cursor.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntityCursor<E> entities(Transaction txn,
+                                    PK fromKey,
+                                    boolean fromInclusive,
+                                    PK toKey,
+                                    boolean toInclusive,
+                                    CursorConfig config,
+                                    Projection projection)
+        throws DatabaseException {
+
+        Set<String> fieldNames = getFieldNames(projection, entityBinding);
+        if (fieldNames == null) {
+            return entities(txn, fromKey, fromInclusive, toKey, toInclusive,
+                            config);
+        }
+        ValueAdapter<E> adapter = new EntityValueAdapter<E>
+            (entityClass, entityBinding, false, fieldNames);
+        return projectedCursor(txn, fromKey, fromInclusive, toKey, toInclusive,
+                               adapter, config);
+    }
+
     public Map<PK, E> map() {
         return sortedMap();
     }
 
     public synchronized SortedMap<PK, E> sortedMap() {
         if (map == null) {
-            map = new StoredSortedMap(db, keyBinding, entityBinding, true);
+            /* Writes through the map would not invalidate the cache. */
+            map = new StoredSortedMap(db, keyBinding, entityBinding,
+                                      !isEntityCached());
         }
         return map;
     }
@@ -576,4 +797,18 @@ public class PrimaryIndex<PK, E> extends BasicIndex<PK, E> {
     boolean isUpdateAllowed() {
         return true;
     }
+
+    @Override
+    boolean isEntityCached() {
+        return entityCache != null;
+    }
+
+    @Override
+    void entityWritten(DatabaseEntry key,
+                       DatabaseEntry priKey,
+                       boolean delete) {
+        if (entityCache != null) {
+            entityCache.invalidate(db, key, delete);
+        }
+    }
 }
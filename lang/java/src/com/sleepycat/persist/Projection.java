@@ -0,0 +1,96 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The names of the entity fields to read when only part of an entity is
+ * needed.
+ *
+ * <p>A projection is passed to methods such as {@link
+ * PrimaryIndex#get(Object,Projection)} and {@link
+ * PrimaryIndex#entities(Transaction,CursorConfig,Projection)}.  The primary
+ * key and the named fields are read, and the stored bytes of all other fields
+ * are skipped without being decoded.  Unread fields keep the values assigned
+ * by the entity's default constructor, so no objects are created for nested
+ * values that the caller does not use.  For example:</p>
+ *
+ * <pre class="code">
+ * Projection nameOnly = new Projection("name");
+ * EntityCursor&lt;Employee&gt; cursor =
+ *     employeeById.entities(null, null, nameOnly);
+ * try {
+ *     for (Employee employee : cursor) {
+ *         System.out.println(employee.id + " " + employee.name);
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }</pre>
+ *
+ * <p>Field names are the names of persistent fields declared by the entity
+ * class or its superclasses.  Nested fields cannot be named; a named field is
+ * always read whole.  Fields declared only by an entity subclass are not
+ * read.  Records written with an older version of the entity class are read
+ * whole, since their fields must be converted.</p>
+ *
+ * <p>Because unread fields are missing, the entities returned by a projected
+ * read should not be stored again, and cursors opened with a projection do
+ * not allow {@link EntityCursor#update}.</p>
+ *
+ * <p>A projection is immutable and may be shared by several threads.</p>
+ */
+public class Projection {
+
+    private final Set<String> fieldNames;
+
+    /**
+     * Creates a projection of the given fields.
+     *
+     * @param fieldNames the names of the persistent fields to read.
+     */
+    public Projection(String... fieldNames) {
+        for (String name : fieldNames) {
+            if (name == null) {
+                throw new IllegalArgumentException("Field name is null");
+            }
+        }
+        this.fieldNames = Collections.unmodifiableSet
+            (new LinkedHashSet<String>(Arrays.asList(fieldNames)));
+    }
+
+    /**
+     * Returns the names of the fields to read.
+     *
+     * @return an unmodifiable set of field names.
+     */
+    public Set<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Projection)) {
+            return false;
+        }
+        return fieldNames.equals(((Projection) other).fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return fieldNames.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "[Projection " + fieldNames + ']';
+    }
+}
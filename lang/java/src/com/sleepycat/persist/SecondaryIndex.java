@@ -8,12 +8,14 @@
 package com.sleepycat.persist;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 
 import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.bind.EntryBinding;
 import com.sleepycat.collections.StoredSortedMap;
 import com.sleepycat.compat.DbCompat;
+import com.sleepycat.db.CursorConfig;
 import com.sleepycat.db.Database;
 import com.sleepycat.db.DatabaseConfig;
 import com.sleepycat.db.DatabaseEntry;
@@ -23,6 +25,7 @@ import com.sleepycat.db.OperationStatus;
 import com.sleepycat.db.SecondaryDatabase;
 import com.sleepycat.db.Transaction;
 import com.sleepycat.db.TransactionConfig;
+import com.sleepycat.persist.impl.PersistEntityBinding;
 import com.sleepycat.persist.model.DeleteAction;
 import com.sleepycat.persist.model.Relationship;
 import com.sleepycat.persist.model.SecondaryKey;
@@ -937,6 +940,30 @@ public class SecondaryIndex<SK, PK, E> extends BasicIndex<SK, E> {
         return new SubIndex(this, entityBinding, key);
     }
 
+    /**
+     * Returns a spliterator for all entities in this index, so that they can
+     * be traversed in parallel by several threads.  The spliterator and each
+     * of its parts open a cursor with the given configuration and without a
+     * transaction; the entities of each part are returned in secondary key
+     * order.
+     *
+     * <p>An entity with more than one secondary key in this index is
+     * traversed once for each key, as with a cursor.</p>
+     *
+     * @param config the cursor configuration, for example {@link
+     * CursorConfig#READ_COMMITTED} or {@link CursorConfig#SNAPSHOT}, or null
+     * to use the default configuration.
+     *
+     * @return the spliterator.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntitySpliterator<E> spliterator(CursorConfig config)
+        throws DatabaseException {
+
+        return spliterator(entityAdapter, config);
+    }
+
     /*
      * Of the EntityIndex methods only get()/map()/sortedMap() are implemented
      * here.  All other methods are implemented by BasicIndex.
@@ -951,6 +978,64 @@ public class SecondaryIndex<SK, PK, E> extends BasicIndex<SK, E> {
     public E get(Transaction txn, SK key, LockMode lockMode)
         throws DatabaseException {
 
+        return get(txn, key, lockMode, null);
+    }
+
+    /**
+     * Gets an entity via a key of this index, reading only the primary key
+     * and the fields named by a projection.
+     *
+     * <p>The operation will not be transaction protected, and {@link
+     * LockMode#DEFAULT} is used implicitly.</p>
+     *
+     * @param key the key to search for.
+     *
+     * @param projection the fields to read, or null to read the whole entity.
+     *
+     * @return the value mapped to the given key, or null if the key is not
+     * present in the index.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public E get(SK key, Projection projection)
+        throws DatabaseException {
+
+        return get(null, key, null, projection);
+    }
+
+    /**
+     * Gets an entity via a key of this index, reading only the primary key
+     * and the fields named by a projection.  See {@link Projection} for
+     * the values of the fields that are not read.
+     *
+     * @param txn the transaction used to protect this operation, or null
+     * if the operation should not be transaction protected.
+     *
+     * @param key the key to search for.
+     *
+     * @param lockMode the lock mode to use for this operation, or null to
+     * use {@link LockMode#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read the whole entity.
+     *
+     * @return the value mapped to the given key, or null if the key is not
+     * present in the index.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public E get(Transaction txn,
+                 SK key,
+                 LockMode lockMode,
+                 Projection projection)
+        throws DatabaseException {
+
+        Set<String> fieldNames = getFieldNames(projection, entityBinding);
         DatabaseEntry keyEntry = new DatabaseEntry();
         DatabaseEntry pkeyEntry = new DatabaseEntry();
         DatabaseEntry dataEntry = new DatabaseEntry();
@@ -960,19 +1045,111 @@ public class SecondaryIndex<SK, PK, E> extends BasicIndex<SK, E> {
             secDb.get(txn, keyEntry, pkeyEntry, dataEntry, lockMode);
 
         if (status == OperationStatus.SUCCESS) {
+            if (fieldNames != null) {
+                return (E) ((PersistEntityBinding) entityBinding).
+                    entryToObject(pkeyEntry, dataEntry, fieldNames);
+            }
             return entityBinding.entryToObject(pkeyEntry, dataEntry);
         } else {
             return null;
         }
     }
 
+    /**
+     * Opens a cursor for traversing all entities in this index, reading only
+     * the primary key and the fields named by a projection.  The cursor may
+     * not be used to update entities.
+     *
+     * @param txn the transaction used to protect all operations performed with
+     * the cursor, or null if the operations should not be transaction
+     * protected.  If the store is non-transactional, null must be specified.
+     *
+     * @param config the cursor configuration that determines the default lock
+     * mode used for all cursor operations, or null to implicitly use {@link
+     * CursorConfig#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read whole entities.
+     *
+     * @return the cursor.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntityCursor<E> entities(Transaction txn,
+                                    CursorConfig config,
+                                    Projection projection)
+        throws DatabaseException {
+
+        return entities(txn, null, false, null, false, config, projection);
+    }
+
+    /**
+     * Opens a cursor for traversing entities in a key range, reading only the
+     * primary key and the fields named by a projection.  The cursor may not
+     * be used to update entities.
+     *
+     * @param txn the transaction used to protect all operations performed with
+     * the cursor, or null if the operations should not be transaction
+     * protected.  If the store is non-transactional, null must be specified.
+     *
+     * @param fromKey is the lower bound of the key range, or null if the range
+     * has no lower bound.
+     *
+     * @param fromInclusive is true if keys greater than or equal to fromKey
+     * should be included in the key range, or false if only keys greater than
+     * fromKey should be included.
+     *
+     * @param toKey is the upper bound of the key range, or null if the range
+     * has no upper bound.
+     *
+     * @param toInclusive is true if keys less than or equal to toKey should be
+     * included in the key range, or false if only keys less than toKey should
+     * be included.
+     *
+     * @param config the cursor configuration that determines the default lock
+     * mode used for all cursor operations, or null to implicitly use {@link
+     * CursorConfig#DEFAULT}.
+     *
+     * @param projection the fields to read, or null to read whole entities.
+     *
+     * @return the cursor.
+     *
+     * @throws IllegalArgumentException if the projection names a field that
+     * is not a persistent field of the entity class or its superclasses.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public EntityCursor<E> entities(Transaction txn,
+                                    SK fromKey,
+                                    boolean fromInclusive,
+                                    SK toKey,
+                                    boolean toInclusive,
+                                    CursorConfig config,
+                                    Projection projection)
+        throws DatabaseException {
+
+        Set<String> fieldNames = getFieldNames(projection, entityBinding);
+        if (fieldNames == null) {
+            return entities(txn, fromKey, fromInclusive, toKey, toInclusive,
+                            config);
+        }
+        ValueAdapter<E> adapter = new EntityValueAdapter<E>
+            (priIndex.getEntityClass(), entityBinding, true, fieldNames);
+        return projectedCursor(txn, fromKey, fromInclusive, toKey, toInclusive,
+                               adapter, config);
+    }
+
     public Map<SK, E> map() {
         return sortedMap();
     }
 
     public synchronized SortedMap<SK, E> sortedMap() {
         if (map == null) {
-            map = new StoredSortedMap(db, keyBinding, entityBinding, true);
+            /* Writes through the map would not invalidate the cache. */
+            map = new StoredSortedMap(db, keyBinding, entityBinding,
+                                      !isEntityCached());
         }
         return map;
     }
@@ -990,4 +1167,24 @@ public class SecondaryIndex<SK, PK, E> extends BasicIndex<SK, E> {
     boolean isUpdateAllowed() {
         return false;
     }
+
+    @Override
+    boolean isEntityCached() {
+        return priIndex.isEntityCached();
+    }
+
+    /*
+     * The primary records of a secondary key are not known when deleting by
+     * secondary key, and then all cached entities are invalidated.
+     */
+    @Override
+    void entityWritten(DatabaseEntry key,
+                       DatabaseEntry priKey,
+                       boolean delete) {
+        if (priKey != null && priKey.getData() != null) {
+            priIndex.entityWritten(priKey, null, delete);
+        } else {
+            priIndex.entityWritten(null, null, delete);
+        }
+    }
 }
@@ -9,6 +9,8 @@ package com.sleepycat.persist;
 
 import com.sleepycat.db.DatabaseException;
 import com.sleepycat.db.Environment; // for javadoc
+import com.sleepycat.db.LockMode; // for javadoc
+import com.sleepycat.db.Transaction; // for javadoc
 import com.sleepycat.persist.evolve.IncompatibleClassException;
 import com.sleepycat.persist.evolve.Mutations;
 import com.sleepycat.persist.model.AnnotationModel;
@@ -43,6 +45,7 @@ public class StoreConfig implements Cloneable {
     private EntityModel model;
     private Mutations mutations;
     private DatabaseNamer databaseNamer = DatabaseNamer.DEFAULT;
+    private long entityCacheSize;
 
     /**
      * Creates an entity store configuration object with default properties.
@@ -324,4 +327,54 @@ public class StoreConfig implements Cloneable {
     public DatabaseNamer getDatabaseNamer() {
         return databaseNamer;
     }
+
+    /**
+     * Sets the maximum number of bytes held by the entity cache of the store.
+     * By default this property is zero and no entity cache is used.
+     *
+     * <p>The entity cache holds the stored bytes of entities recently read by
+     * {@link PrimaryIndex#get(Transaction,Object,LockMode) PrimaryIndex.get}
+     * without a transaction, so that reading a frequently used entity again
+     * does not require a database operation.  A new entity object is created
+     * for each read, so that entities returned to different callers are not
+     * shared.  Entities are removed from the cache when they are written or
+     * deleted through an index of the store, and when the cache is full, the
+     * entities not read recently are evicted.  Statistics are returned by
+     * {@link EntityStore#getEntityCacheStats}.</p>
+     *
+     * <p>Only reads that are not transaction protected, and that use the
+     * default lock mode or {@link LockMode#READ_COMMITTED}, use the cache.
+     * Because a record written by a transaction is locked until the
+     * transaction ends, an entity added to the cache after a write has been
+     * committed, so the cache does not need to be notified when the
+     * transaction commits or aborts.  For the same reason, the cache is not
+     * used for databases configured for multiversion concurrency control.
+     * The {@link EntityIndex#map map} views of the primary and secondary
+     * indexes are read-only while the cache is used.  Writes made outside
+     * the indexes of this store, for example with a {@link RawStore},
+     * another store or another process, are not seen by the cache.</p>
+     */
+    public StoreConfig setEntityCacheSize(long entityCacheSize) {
+        setEntityCacheSizeVoid(entityCacheSize);
+        return this;
+    }
+
+    /**
+     * The void return setter for use by Bean editors.
+     */
+    public void setEntityCacheSizeVoid(long entityCacheSize) {
+        if (entityCacheSize < 0) {
+            throw new IllegalArgumentException
+                ("Entity cache size may not be negative: " + entityCacheSize);
+        }
+        this.entityCacheSize = entityCacheSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes held by the entity cache of the
+     * store, or zero if no entity cache is used.
+     */
+    public long getEntityCacheSize() {
+        return entityCacheSize;
+    }
 }
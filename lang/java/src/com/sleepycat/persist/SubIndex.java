@@ -178,6 +178,7 @@ class SubIndex<PK, E> implements EntityIndex<PK, E> {
                  locking ? LockMode.RMW : null);
             if (status == OperationStatus.SUCCESS) {
                 status = cursor.delete();
+                secIndex.entityWritten(keyEntry, pkeyEntry, true);
             }
             failed = false;
         } finally {
@@ -296,7 +297,10 @@ class SubIndex<PK, E> implements EntityIndex<PK, E> {
         Cursor cursor = db.openCursor(txn, config);
         RangeCursor rangeCursor =
             new RangeCursor(singleKeyRange, pkeyRange, sortedDups, cursor);
-        return new SubIndexCursor<V>(rangeCursor, adapter);
+        SubIndexCursor<V> subCursor =
+            new SubIndexCursor<V>(rangeCursor, adapter);
+        subCursor.index = secIndex;
+        return subCursor;
     }
 
     public Map<PK, E> map() {
@@ -29,7 +29,10 @@ class SubIndexCursor<V> extends BasicCursor<V> {
     public EntityCursor<V> dup()
         throws DatabaseException {
 
-        return new SubIndexCursor<V>(cursor.dup(true), adapter);
+        SubIndexCursor<V> dupCursor =
+            new SubIndexCursor<V>(cursor.dup(true), adapter);
+        dupCursor.index = index;
+        return dupCursor;
     }
 
     @Override
@@ -0,0 +1,406 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.impl;
+
+import static com.sleepycat.asm.Opcodes.ACC_PUBLIC;
+import static com.sleepycat.asm.Opcodes.ACC_SUPER;
+import static com.sleepycat.asm.Opcodes.ALOAD;
+import static com.sleepycat.asm.Opcodes.ARETURN;
+import static com.sleepycat.asm.Opcodes.ATHROW;
+import static com.sleepycat.asm.Opcodes.CHECKCAST;
+import static com.sleepycat.asm.Opcodes.DUP;
+import static com.sleepycat.asm.Opcodes.GETFIELD;
+import static com.sleepycat.asm.Opcodes.ILOAD;
+import static com.sleepycat.asm.Opcodes.INVOKESPECIAL;
+import static com.sleepycat.asm.Opcodes.IRETURN;
+import static com.sleepycat.asm.Opcodes.NEW;
+import static com.sleepycat.asm.Opcodes.PUTFIELD;
+import static com.sleepycat.asm.Opcodes.RETURN;
+import static com.sleepycat.asm.Opcodes.V1_5;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sleepycat.asm.ClassWriter;
+import com.sleepycat.asm.Label;
+import com.sleepycat.asm.MethodVisitor;
+import com.sleepycat.asm.Type;
+import com.sleepycat.compat.DbCompat;
+
+/**
+ * Generates a {@link FieldAccessor} for an unenhanced persistent class, so
+ * that {@link ReflectionAccessor} can create instances and get and set fields
+ * with ordinary field instructions rather than through java.lang.reflect.
+ * This gives unenhanced classes most of the speed of enhanced classes without
+ * the ClassEnhancer build step.
+ *
+ * <p>The generated class is defined as a hidden class that is a nestmate of
+ * the persistent class, which allows it to access private fields and
+ * constructors.  That requires MethodHandles.Lookup.defineHiddenClass, which
+ * is only present in Java 15 and later, so it is called reflectively.  When it
+ * is not available, or the persistent class is in a module that is not open
+ * to this one, {@link #generate} returns null and reflection is used as
+ * before.  Any other failure to define the class is a bug in the generator
+ * and is thrown.  Setting the system property
+ * com.sleepycat.persist.reflectionAccessors to true disables generation for
+ * the classes whose accessors are created after it is set.</p>
+ *
+ * <p>Fields that are final, or whose type is not accessible from the package
+ * of the persistent class, are left out of the generated class, and {@link
+ * #canAccess} returns false for them; they must still be accessed with
+ * reflection.</p>
+ */
+class AccessorGenerator {
+
+    private static final String ACCESSOR_NAME =
+        Type.getInternalName(FieldAccessor.class);
+
+    private static final String CLASS_SUFFIX = "$$FieldAccessor";
+
+    private static final String DISABLE_PROPERTY =
+        "com.sleepycat.persist.reflectionAccessors";
+
+    private static final Object LOOKUP;
+    private static final Object HIDDEN_OPTIONS;
+    private static final Method PRIVATE_LOOKUP_IN;
+    private static final Method DEFINE_HIDDEN_CLASS;
+    private static final Method LOOKUP_CLASS;
+
+    static {
+        Object lookup = null;
+        Object options = null;
+        Method privateLookupIn = null;
+        Method defineHiddenClass = null;
+        Method lookupClass = null;
+        try {
+            Class handlesCls =
+                Class.forName("java.lang.invoke.MethodHandles");
+            Class lookupCls =
+                Class.forName("java.lang.invoke.MethodHandles$Lookup");
+            Class optionCls = Class.forName
+                ("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(optionCls, 1);
+            Array.set(options, 0, getEnumConstant(optionCls, "NESTMATE"));
+            lookup = handlesCls.getMethod("lookup").invoke(null);
+            privateLookupIn = handlesCls.getMethod
+                ("privateLookupIn", Class.class, lookupCls);
+            defineHiddenClass = lookupCls.getMethod
+                ("defineHiddenClass", byte[].class, Boolean.TYPE,
+                 options.getClass());
+            lookupClass = lookupCls.getMethod("lookupClass");
+        } catch (Exception e) {
+            /* Hidden classes are not supported by this JVM. */
+            lookup = null;
+        }
+        LOOKUP = lookup;
+        HIDDEN_OPTIONS = options;
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+        DEFINE_HIDDEN_CLASS = defineHiddenClass;
+        LOOKUP_CLASS = lookupClass;
+    }
+
+    private static Object getEnumConstant(Class enumCls, String name) {
+        for (Object constant : enumCls.getEnumConstants()) {
+            if (name.equals(((Enum) constant).name())) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Returns whether accessors can be generated by this JVM, and generation
+     * has not been disabled.
+     */
+    static boolean isSupported() {
+        return LOOKUP != null && !Boolean.getBoolean(DISABLE_PROPERTY);
+    }
+
+    /**
+     * Returns whether the given field of the given class is accessed by the
+     * generated accessor.
+     */
+    static boolean canAccess(Class type, Field field) {
+        int mods = field.getModifiers();
+        if (Modifier.isStatic(mods) ||
+            Modifier.isFinal(mods) ||
+            field.getDeclaringClass() != type) {
+            return false;
+        }
+        Class fieldCls = field.getType();
+        while (fieldCls.isArray()) {
+            fieldCls = fieldCls.getComponentType();
+        }
+        return fieldCls.isPrimitive() || isAccessible(type, fieldCls);
+    }
+
+    /*
+     * Returns whether the generated class, which is in the package of the
+     * persistent class, may name the given class in a cast.  At the JVM level
+     * a class is either public or package-private, and the modifiers of a
+     * member class are not always its JVM modifiers, so only public classes
+     * and classes in the same package and class loader are accepted.
+     */
+    private static boolean isAccessible(Class type, Class cls) {
+        if (cls.getClassLoader() == type.getClassLoader() &&
+            getPackageName(cls).equals(getPackageName(type))) {
+            return true;
+        }
+        for (Class c = cls; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getPackageName(Class cls) {
+        String name = cls.getName();
+        int i = name.lastIndexOf('.');
+        return (i < 0) ? "" : name.substring(0, i);
+    }
+
+    /**
+     * Generates and loads an accessor for the given fields of the given class,
+     * or returns null if that is not possible.  Null elements of the fields
+     * array are ignored.
+     */
+    static FieldAccessor generate(Class type, Field[] fields) {
+        if (!isSupported() || type.isInterface() || type.isArray()) {
+            return null;
+        }
+        byte[] bytes = generateClass(type, fields);
+        Object lookup;
+        try {
+            lookup = PRIVATE_LOOKUP_IN.invoke(null, type, LOOKUP);
+        } catch (InvocationTargetException e) {
+            /* The class is in a module that is not open to us. */
+            if (e.getCause() instanceof IllegalAccessException ||
+                e.getCause() instanceof SecurityException) {
+                return null;
+            }
+            throw DbCompat.unexpectedException(e);
+        } catch (IllegalAccessException e) {
+            throw DbCompat.unexpectedException(e);
+        }
+        try {
+            Object hidden = DEFINE_HIDDEN_CLASS.invoke
+                (lookup, bytes, Boolean.TRUE, HIDDEN_OPTIONS);
+            Class cls = (Class) LOOKUP_CLASS.invoke(hidden);
+            return (FieldAccessor) cls.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw DbCompat.unexpectedException
+                ("Unable to define the accessor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the bytes of the accessor class.
+     */
+    private static byte[] generateClass(Class type, Field[] fields) {
+        String owner = Type.getInternalName(type);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, ACC_PUBLIC | ACC_SUPER, owner + CLASS_SUFFIX, null,
+                 "java/lang/Object", new String[] { ACCESSOR_NAME });
+
+        MethodVisitor mv =
+            cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn
+            (INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        genNewInstance(cw, type, owner);
+
+        List<Integer> refFields = new ArrayList<Integer>();
+        for (int i = 0; i < fields.length; i += 1) {
+            if (fields[i] != null &&
+                !fields[i].getType().isPrimitive() &&
+                canAccess(type, fields[i])) {
+                refFields.add(i);
+            }
+        }
+        genGetter(cw, owner, fields, refFields, "getObject",
+                  Type.getType(Object.class));
+        genSetter(cw, owner, fields, refFields, "setObject",
+                  Type.getType(Object.class));
+
+        Class[] primitives = {
+            Boolean.TYPE, Character.TYPE, Byte.TYPE, Short.TYPE,
+            Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE,
+        };
+        String[] names = {
+            "Boolean", "Char", "Byte", "Short", "Int", "Long", "Float",
+            "Double",
+        };
+        for (int p = 0; p < primitives.length; p += 1) {
+            List<Integer> primFields = new ArrayList<Integer>();
+            for (int i = 0; i < fields.length; i += 1) {
+                if (fields[i] != null &&
+                    fields[i].getType() == primitives[p] &&
+                    canAccess(type, fields[i])) {
+                    primFields.add(i);
+                }
+            }
+            Type primType = Type.getType(primitives[p]);
+            genGetter(cw, owner, fields, primFields, "get" + names[p],
+                      primType);
+            genSetter(cw, owner, fields, primFields, "set" + names[p],
+                      primType);
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     *  public Object newInstance() {
+     *      return new Xxx();
+     *  }
+     *
+     * An abstract class, or one without a no-arg constructor, cannot be
+     * instantiated and an IllegalArgumentException is thrown instead.
+     */
+    private static void genNewInstance(ClassWriter cw,
+                                       Class type,
+                                       String owner) {
+        MethodVisitor mv = cw.visitMethod
+            (ACC_PUBLIC, "newInstance", "()Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        boolean hasConstructor;
+        try {
+            type.getDeclaredConstructor();
+            hasConstructor = !Modifier.isAbstract(type.getModifiers());
+        } catch (NoSuchMethodException e) {
+            hasConstructor = false;
+        }
+        if (hasConstructor) {
+            mv.visitTypeInsn(NEW, owner);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "()V");
+            mv.visitInsn(ARETURN);
+        } else {
+            genThrow(mv);
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     *  public int getInt(Object o, int field) {
+     *      switch (field) {
+     *      case 0:
+     *          return ((Xxx) o).f1;
+     *      ...
+     *      default:
+     *          throw new IllegalArgumentException();
+     *      }
+     *  }
+     */
+    private static void genGetter(ClassWriter cw,
+                                  String owner,
+                                  Field[] fields,
+                                  List<Integer> indexes,
+                                  String name,
+                                  Type valueType) {
+        MethodVisitor mv = cw.visitMethod
+            (ACC_PUBLIC, name,
+             "(Ljava/lang/Object;I)" + valueType.getDescriptor(), null, null);
+        mv.visitCode();
+        Label[] labels = genSwitch(mv, indexes);
+        for (int i = 0; i < labels.length; i += 1) {
+            Field field = fields[indexes.get(i)];
+            mv.visitLabel(labels[i]);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, owner);
+            mv.visitFieldInsn(GETFIELD, owner, field.getName(),
+                              Type.getDescriptor(field.getType()));
+            mv.visitInsn(valueType.getOpcode(IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     *  public void setObject(Object o, int field, Object value) {
+     *      switch (field) {
+     *      case 1:
+     *          ((Xxx) o).f2 = (String) value;
+     *          return;
+     *      ...
+     *      default:
+     *          throw new IllegalArgumentException();
+     *      }
+     *  }
+     */
+    private static void genSetter(ClassWriter cw,
+                                  String owner,
+                                  Field[] fields,
+                                  List<Integer> indexes,
+                                  String name,
+                                  Type valueType) {
+        MethodVisitor mv = cw.visitMethod
+            (ACC_PUBLIC, name,
+             "(Ljava/lang/Object;I" + valueType.getDescriptor() + ")V",
+             null, null);
+        mv.visitCode();
+        Label[] labels = genSwitch(mv, indexes);
+        for (int i = 0; i < labels.length; i += 1) {
+            Field field = fields[indexes.get(i)];
+            Class fieldCls = field.getType();
+            mv.visitLabel(labels[i]);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, owner);
+            mv.visitVarInsn(valueType.getOpcode(ILOAD), 3);
+            if (!fieldCls.isPrimitive() && fieldCls != Object.class) {
+                mv.visitTypeInsn(CHECKCAST, Type.getInternalName(fieldCls));
+            }
+            mv.visitFieldInsn(PUTFIELD, owner, field.getName(),
+                              Type.getDescriptor(fieldCls));
+            mv.visitInsn(RETURN);
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * Generates a lookupswitch on the field index, with the default case
+     * throwing an exception, and returns the labels of the cases.
+     */
+    private static Label[] genSwitch(MethodVisitor mv, List<Integer> indexes) {
+        Label dflt = new Label();
+        Label[] labels = new Label[indexes.size()];
+        int[] keys = new int[indexes.size()];
+        for (int i = 0; i < labels.length; i += 1) {
+            labels[i] = new Label();
+            keys[i] = indexes.get(i);
+        }
+        if (labels.length > 0) {
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+        mv.visitLabel(dflt);
+        genThrow(mv);
+        return labels;
+    }
+
+    private static void genThrow(MethodVisitor mv) {
+        mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException",
+                           "<init>", "()V");
+        mv.visitInsn(ATHROW);
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.Set;
 
 import com.sleepycat.compat.DbCompat;
+import com.sleepycat.db.DatabaseEntry;
 import com.sleepycat.persist.evolve.Converter;
 import com.sleepycat.persist.evolve.Deleter;
 import com.sleepycat.persist.evolve.EntityConverter;
@@ -589,6 +590,144 @@ public class ComplexFormat extends Format {
         return o;
     }
 
+    /**
+     * Like readObject, but only reads the named fields.  Fields are stored
+     * in the same order that readObject reads them: secondary key fields and
+     * then non-key fields, each from the highest superclass downward.  Fields
+     * that are not named are skipped without being decoded, and once the last
+     * named field is read the rest of the record is ignored.
+     *
+     * <p>The primary key must already be assigned to the object.  Either
+     * priKey is the assigned key object, or priKeyEntry is the entry it was
+     * read from.</p>
+     */
+    Object readProjection(Object o,
+                          RecordInput input,
+                          DatabaseEntry priKeyEntry,
+                          Object priKey,
+                          boolean rawAccess,
+                          Set<String> fieldNames)
+        throws RefreshException {
+
+        Accessor accessor = rawAccess ? rawAccessor : objAccessor;
+
+        /* Store the class formats from the highest superclass downward. */
+        int depth = 0;
+        for (ComplexFormat format = this;
+             format != null;
+             format = format.getComplexSuper()) {
+            depth += 1;
+        }
+        ComplexFormat[] hierarchy = new ComplexFormat[depth];
+        int remaining = 0;
+        int level = depth;
+        for (ComplexFormat format = this;
+             format != null;
+             format = format.getComplexSuper()) {
+            level -= 1;
+            hierarchy[level] = format;
+            remaining += countFields(format.secKeyFields, fieldNames);
+            remaining += countFields(format.nonKeyFields, fieldNames);
+        }
+        if (remaining == 0) {
+            return o;
+        }
+
+        /*
+         * readObject registers the primary key object in readSecKeyFields,
+         * before any field that refers to it is read, but here other fields
+         * may be read first.  Register the key assigned by the caller, or
+         * else read references to the key from the key entry.
+         */
+        if (priKey instanceof String) {
+            input.registerPriStringKeyObject(priKey);
+        } else if (priKey != null) {
+            input.registerPriKeyObject(priKey);
+        } else {
+            input.setPriKeyEntry(priKeyEntry, getPriKeyFormat().getId());
+        }
+
+        for (level = 0; level < depth && remaining > 0; level += 1) {
+            List<FieldInfo> fields = hierarchy[level].secKeyFields;
+            for (int i = 0; i < fields.size() && remaining > 0; i += 1) {
+                FieldInfo field = fields.get(i);
+                if (fieldNames.contains(field.getName())) {
+                    accessor.readSecKeyFields
+                        (o, input, i, i, depth - 1 - level);
+                    remaining -= 1;
+                } else {
+                    input.skipField(field.getType());
+                }
+            }
+        }
+        for (level = 0; level < depth && remaining > 0; level += 1) {
+            List<FieldInfo> fields = hierarchy[level].nonKeyFields;
+            for (int i = 0; i < fields.size() && remaining > 0; i += 1) {
+                FieldInfo field = fields.get(i);
+                if (fieldNames.contains(field.getName())) {
+                    accessor.readNonKeyFields
+                        (o, input, i, i, depth - 1 - level);
+                    remaining -= 1;
+                } else {
+                    input.skipField(field.getType());
+                }
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Returns the format of the primary key field declared by this class or
+     * the nearest superclass.
+     */
+    private Format getPriKeyFormat() {
+        for (ComplexFormat format = this;
+             format != null;
+             format = format.getComplexSuper()) {
+            if (format.priKeyField != null) {
+                return format.priKeyField.getType();
+            }
+        }
+        throw DbCompat.unexpectedState("No primary key field");
+    }
+
+    private static int countFields(List<FieldInfo> fields,
+                                   Set<String> fieldNames) {
+        int count = 0;
+        for (FieldInfo field : fields) {
+            if (fieldNames.contains(field.getName())) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether this class or one of its superclasses declares a
+     * persistent field with the given name.
+     */
+    boolean hasField(String name) {
+        for (ComplexFormat format = this;
+             format != null;
+             format = format.getComplexSuper()) {
+            if (format.priKeyField != null &&
+                format.priKeyField.getName().equals(name)) {
+                return true;
+            }
+            for (FieldInfo field : format.secKeyFields) {
+                if (field.getName().equals(name)) {
+                    return true;
+                }
+            }
+            for (FieldInfo field : format.nonKeyFields) {
+                if (field.getName().equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     void writeObject(Object o, EntityOutput output, boolean rawAccess)
         throws RefreshException {
@@ -0,0 +1,250 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.persist.EntityCacheStats;
+
+/**
+ * The entity cache of a store: the stored bytes of recently read entities,
+ * keyed by primary database and primary key bytes.  See
+ * StoreConfig.setEntityCacheSize.
+ *
+ * Entries are evicted with the CLOCK algorithm.  The entries form a ring and
+ * each has a referenced flag that is set when the entry is read.  To make
+ * room, the clock hand moves around the ring clearing flags that are set,
+ * and evicts the first entry whose flag is already clear.  New entries are
+ * added just behind the hand, so they are the last to be examined.
+ *
+ * Invalidation and filling race: a reader may read an entity from the
+ * database, then a writer may change it and invalidate the entry, and only
+ * then may the reader add the old bytes.  To prevent this, each invalidation
+ * increments a generation number.  A reader gets the generation before
+ * reading the database, and its entry is added only if the generation has
+ * not changed since.
+ *
+ * All methods are synchronized.  The cache is only used for short operations
+ * on in-memory structures, so contention is low compared to the database
+ * operation that a hit avoids.
+ */
+public class EntityCache {
+
+    /* Approximate bytes used by an entry in addition to its key and data. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final Map<Key, Entry> map;
+    private final Map<Database, Object> cascadingDatabases;
+    private Entry hand;
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public EntityCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        map = new HashMap<Key, Entry>();
+        cascadingDatabases = new IdentityHashMap<Database, Object>();
+    }
+
+    /**
+     * Returns the cached data for the given key, or null if it is not cached.
+     */
+    public synchronized byte[] get(Database db, DatabaseEntry key) {
+        Entry entry = map.get(new Key(db, key));
+        if (entry == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        entry.referenced = true;
+        return entry.data;
+    }
+
+    /**
+     * Returns the current generation, to be passed to put after the data is
+     * read from the database.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Adds the data read for the given key, unless an invalidation happened
+     * since the given generation was returned by getGeneration.
+     */
+    public synchronized void put(Database db,
+                                 DatabaseEntry key,
+                                 DatabaseEntry data,
+                                 long readGeneration) {
+        if (readGeneration != generation) {
+            return;
+        }
+        Key mapKey = new Key(db, key);
+        if (map.containsKey(mapKey)) {
+            return;
+        }
+        byte[] bytesCopy = new byte[data.getSize()];
+        System.arraycopy(data.getData(), data.getOffset(), bytesCopy, 0,
+                         bytesCopy.length);
+        Entry entry = new Entry(mapKey, bytesCopy);
+        if (entry.size > maxBytes) {
+            return;
+        }
+        while (bytes + entry.size > maxBytes) {
+            evict();
+        }
+        map.put(mapKey, entry);
+        if (hand == null) {
+            entry.prev = entry;
+            entry.next = entry;
+            hand = entry;
+        } else {
+            entry.next = hand;
+            entry.prev = hand.prev;
+            hand.prev.next = entry;
+            hand.prev = entry;
+        }
+        bytes += entry.size;
+    }
+
+    /**
+     * Removes the entry for a key written or deleted in the given database,
+     * or all entries if key is null.  All entries are also removed when a
+     * deletion may cascade to other databases through a foreign key.
+     */
+    public synchronized void invalidate(Database db,
+                                        DatabaseEntry key,
+                                        boolean delete) {
+        generation += 1;
+        if (key == null ||
+            (delete && cascadingDatabases.containsKey(db))) {
+            invalidations += map.size();
+            clear();
+            return;
+        }
+        Entry entry = map.get(new Key(db, key));
+        if (entry != null) {
+            remove(entry);
+            invalidations += 1;
+        }
+    }
+
+    /**
+     * Removes all entries, for example when databases of the store are
+     * closed or truncated.
+     */
+    public synchronized void invalidateAll() {
+        generation += 1;
+        invalidations += map.size();
+        clear();
+    }
+
+    /**
+     * Records that a deletion in the given database may delete or change
+     * records in other databases, because it is the foreign key database of
+     * a secondary with the CASCADE or NULLIFY delete action.
+     */
+    synchronized void addCascadingDatabase(Database db) {
+        cascadingDatabases.put(db, null);
+    }
+
+    public synchronized EntityCacheStats getStats() {
+        return new EntityCacheStats
+            (hits, misses, evictions, invalidations, map.size(), bytes);
+    }
+
+    private void evict() {
+        while (hand.referenced) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        remove(hand);
+        evictions += 1;
+    }
+
+    private void remove(Entry entry) {
+        map.remove(entry.key);
+        bytes -= entry.size;
+        if (entry.next == entry) {
+            hand = null;
+        } else {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            if (hand == entry) {
+                hand = entry.next;
+            }
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private void clear() {
+        map.clear();
+        hand = null;
+        bytes = 0;
+    }
+
+    /**
+     * A primary database and primary key, compared by database identity and
+     * key bytes.
+     */
+    private static class Key {
+
+        private final Database db;
+        private final byte[] key;
+        private final int hashCode;
+
+        Key(Database db, DatabaseEntry entry) {
+            this.db = db;
+            key = new byte[entry.getSize()];
+            System.arraycopy(entry.getData(), entry.getOffset(), key, 0,
+                             key.length);
+            hashCode = System.identityHashCode(db) * 31 +
+                       Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) other;
+            return db == o.db && Arrays.equals(key, o.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Entry {
+
+        final Key key;
+        final byte[] data;
+        final int size;
+        boolean referenced;
+        Entry prev;
+        Entry next;
+
+        Entry(Key key, byte[] data) {
+            this.key = key;
+            this.data = data;
+            size = key.key.length + data.length + ENTRY_OVERHEAD;
+        }
+    }
+}
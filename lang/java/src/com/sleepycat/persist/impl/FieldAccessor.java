@@ -0,0 +1,90 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.impl;
+
+/**
+ * Interface implemented by classes generated at runtime by {@link
+ * AccessorGenerator} to create instances of an unenhanced persistent class and
+ * to get and set its fields without using java.lang.reflect.
+ *
+ * <p>Fields are identified by their index in the array of fields passed to
+ * the generator.  Only the methods for the type of a field may be used with
+ * its index, and the object methods are only used for fields with reference
+ * types.  An IllegalArgumentException is thrown for any other index.  An
+ * example of the generated code is shown below.</p>
+ *
+ * <pre>
+ *  public Object newInstance() {
+ *      return new Xxx();
+ *  }
+ *
+ *  public int getInt(Object o, int field) {
+ *      switch (field) {
+ *      case 0:
+ *          return ((Xxx) o).f1;
+ *      case 3:
+ *          return ((Xxx) o).f4;
+ *      default:
+ *          throw new IllegalArgumentException();
+ *      }
+ *  }
+ *
+ *  public void setObject(Object o, int field, Object value) {
+ *      switch (field) {
+ *      case 1:
+ *          ((Xxx) o).f2 = (String) value;
+ *          return;
+ *      default:
+ *          throw new IllegalArgumentException();
+ *      }
+ *  }
+ * </pre>
+ *
+ * <p>This interface is public because the generated class is defined in the
+ * package of the persistent class.</p>
+ */
+public interface FieldAccessor {
+
+    Object newInstance();
+
+    Object getObject(Object o, int field);
+
+    void setObject(Object o, int field, Object value);
+
+    boolean getBoolean(Object o, int field);
+
+    void setBoolean(Object o, int field, boolean value);
+
+    char getChar(Object o, int field);
+
+    void setChar(Object o, int field, char value);
+
+    byte getByte(Object o, int field);
+
+    void setByte(Object o, int field, byte value);
+
+    short getShort(Object o, int field);
+
+    void setShort(Object o, int field, short value);
+
+    int getInt(Object o, int field);
+
+    void setInt(Object o, int field, int value);
+
+    long getLong(Object o, int field);
+
+    void setLong(Object o, int field, long value);
+
+    float getFloat(Object o, int field);
+
+    void setFloat(Object o, int field, float value);
+
+    double getDouble(Object o, int field);
+
+    void setDouble(Object o, int field, double value);
+}
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.sleepycat.bind.tuple.IntegerBinding;
 import com.sleepycat.compat.DbCompat;
@@ -127,6 +128,17 @@ public class PersistCatalog implements Catalog {
      */
     private volatile Map<String, Format> latestFormatMap;
 
+    /**
+     * A cache of the formats in formatMap, indexed by Class identity, so that
+     * the frequent lookups by class neither lock nor compare class names.
+     *
+     * <p>The cache is replaced whenever formatMap is reassigned.  Because
+     * formats are only ever added to formatMap after initialization, a format
+     * cached from an older formatMap is still correct.</p>
+     */
+    private volatile Map<Class, Format> classFormatMap =
+        new ConcurrentHashMap<Class, Format>();
+
     /**
      * A temporary map of proxied class name to proxy class name.  Used during
      * catalog creation, and then set to null.  This map is used to force proxy
@@ -387,6 +399,7 @@ public class PersistCatalog implements Catalog {
              */
             formatMap = new HashMap<String, Format>(formatList.size());
             latestFormatMap = new HashMap<String, Format>(formatList.size());
+            classFormatMap = new ConcurrentHashMap<Class, Format>();
             if (rawAccess) {
                 for (Format format : formatList) {
                     if (format != null) {
@@ -876,6 +889,7 @@ public class PersistCatalog implements Catalog {
     void useExistingFormat(Format oldFormat) {
         assert oldFormat.isCurrentVersion();
         formatMap.put(oldFormat.getClassName(), oldFormat);
+        classFormatMap = new ConcurrentHashMap<Class, Format>();
     }
 
     /**
@@ -1019,7 +1033,13 @@ public class PersistCatalog implements Catalog {
     public Format getFormat(Class cls, boolean checkEntitySubclassIndexes)
         throws RefreshException {
 
-        Format format = formatMap.get(cls.getName());
+        Format format = classFormatMap.get(cls);
+        if (format == null) {
+            format = formatMap.get(cls.getName());
+            if (format != null) {
+                classFormatMap.put(cls, format);
+            }
+        }
         if (format == null) {
             if (model != null) {
                 format = addNewFormat(cls);
@@ -1183,6 +1203,7 @@ public class PersistCatalog implements Catalog {
         formatList = newFormatList;
         formatMap = newFormatMap;
         latestFormatMap = newLatestFormatMap;
+        classFormatMap = new ConcurrentHashMap<Class, Format>();
 
         return format;
     }
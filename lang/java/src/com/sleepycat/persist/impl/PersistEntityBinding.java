@@ -7,11 +7,14 @@
 
 package com.sleepycat.persist.impl;
 
+import java.util.Set;
+
 import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.bind.tuple.TupleBase;
 import com.sleepycat.compat.DbCompat;
 import com.sleepycat.db.DatabaseEntry;
 import com.sleepycat.persist.raw.RawObject;
+import com.sleepycat.util.BufferSizeHint;
 
 /**
  * A persistence entity binding for a given entity class.
@@ -25,6 +28,14 @@ public class PersistEntityBinding implements EntityBinding {
     volatile Format entityFormat;
     final boolean rawAccess;
     PersistKeyAssigner keyAssigner;
+    EntityCache entityCache;
+
+    /*
+     * The size of recently written entities, used to size new output buffers,
+     * and the buffer of each thread for objectToReusedData.
+     */
+    private final BufferSizeHint dataSizeHint = new BufferSizeHint();
+    private final ThreadLocal<byte[]> threadBuffer = new ThreadLocal<byte[]>();
 
     /**
      * Creates a key binding for a given entity class.
@@ -58,14 +69,34 @@ public class PersistEntityBinding implements EntityBinding {
         return keyAssigner;
     }
 
+    /**
+     * Returns the entity cache of the store, or null if entities of this
+     * class are not cached.
+     */
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
     public Object entryToObject(final DatabaseEntry key,
                                 final DatabaseEntry data) {
+        return entryToObject(key, data, null);
+    }
+
+    /**
+     * Like entryToObject, but only the primary key and the named fields are
+     * read when fieldNames is non-null.  Other fields are skipped without
+     * being decoded and keep the values assigned by the default constructor.
+     * Entities of an evolved class version are read whole.
+     */
+    public Object entryToObject(final DatabaseEntry key,
+                                final DatabaseEntry data,
+                                final Set<String> fieldNames) {
         try {
-            return entryToObjectInternal(key, null, data);
+            return entryToObjectInternal(key, null, data, fieldNames);
         } catch (RefreshException e) {
             e.refresh();
             try {
-                return entryToObjectInternal(key, null, data);
+                return entryToObjectInternal(key, null, data, fieldNames);
             } catch (RefreshException e2) {
                 throw DbCompat.unexpectedException(e2);
             }
@@ -79,32 +110,59 @@ public class PersistEntityBinding implements EntityBinding {
      */     
     public Object entryToObjectWithPriKey(final Object priKey,
                                           final DatabaseEntry data) {
+        return entryToObjectWithPriKey(priKey, data, null);
+    }
+
+    /**
+     * Like entryToObjectWithPriKey, but only the named fields are read when
+     * fieldNames is non-null.
+     */
+    public Object entryToObjectWithPriKey(final Object priKey,
+                                          final DatabaseEntry data,
+                                          final Set<String> fieldNames) {
         try {
             if (priKey == null) {
                 throw new 
                     IllegalArgumentException("Primary key cannot be null.");
             }
-            return entryToObjectInternal(null, priKey, data);
+            return entryToObjectInternal(null, priKey, data, fieldNames);
         } catch (RefreshException e) {
             e.refresh();
             try {
-                return entryToObjectInternal(null, priKey, data);
+                return entryToObjectInternal(null, priKey, data, fieldNames);
             } catch (RefreshException e2) {
                 throw DbCompat.unexpectedException(e2);
             }
         }
     }
 
+    /**
+     * Checks that each name is a persistent field of the entity class or one
+     * of its superclasses.
+     */
+    public void checkFieldNames(final Set<String> fieldNames) {
+        Format format = entityFormat;
+        for (String name : fieldNames) {
+            if (!(format instanceof ComplexFormat) ||
+                !((ComplexFormat) format).hasField(name)) {
+                throw new IllegalArgumentException
+                    ("Not a persistent field of " + format.getClassName() +
+                     ": " + name);
+            }
+        }
+    }
+
     /**
      * This method is always called after reading an entity.  If a refresh is
      * needed, we detect that in PersistCatalog.getFormat(int).
      */
     private Object entryToObjectInternal(final DatabaseEntry key,
                                          final Object priKey,
-                                         final DatabaseEntry data)
+                                         final DatabaseEntry data,
+                                         final Set<String> fieldNames)
         throws RefreshException {
         
-        return readEntity(catalog, key, priKey, data, rawAccess);
+        return readEntity(catalog, key, priKey, data, rawAccess, fieldNames);
     }
 
     /**
@@ -118,12 +176,16 @@ public class PersistEntityBinding implements EntityBinding {
      * - The entity is not checked for existence in the visited object set;
      *   entities cannot be referenced by another entity.
      * - Reader.readPriKey must be called prior to calling Reader.readObject.
+     *
+     * When fieldNames is non-null and the format is the latest version, only
+     * the named fields are read by ComplexFormat.readProjection.
      */
     static Object readEntity(Catalog useCatalog,
                              DatabaseEntry key,
                              Object priKey,
                              DatabaseEntry data,
-                             boolean rawAccess)
+                             boolean rawAccess,
+                             Set<String> fieldNames)
         throws RefreshException {
 
         RecordInput dataInput = new RecordInput
@@ -160,17 +222,42 @@ public class PersistEntityBinding implements EntityBinding {
             accessor.setPriField(entity, priKey);
         }
         dataInput.registerEntity(entity, initialOffset);
-        entity = reader.readObject(entity, dataInput, rawAccess);
+        if (fieldNames != null &&
+            reader == format &&
+            format instanceof ComplexFormat) {
+            entity = ((ComplexFormat) format).readProjection
+                (entity, dataInput, key, priKey, rawAccess, fieldNames);
+        } else {
+            entity = reader.readObject(entity, dataInput, rawAccess);
+        }
         return entity;
     }
 
     public void objectToData(final Object entity, final DatabaseEntry data) {
+        objectToData(entity, data, false);
+    }
+
+    /**
+     * Like objectToData, but the entity is written to a buffer that belongs
+     * to the current thread, and the data entry refers to that buffer.  The
+     * data is only valid until the thread next calls this method, so it must
+     * be passed to a database operation at once.  This is used by
+     * PrimaryIndex to avoid allocating a buffer for each entity written.
+     */
+    public void objectToReusedData(final Object entity,
+                                   final DatabaseEntry data) {
+        objectToData(entity, data, true);
+    }
+
+    private void objectToData(final Object entity,
+                              final DatabaseEntry data,
+                              final boolean reuseBuffer) {
         try {
-            objectToDataInternal(entity, data);
+            objectToDataInternal(entity, data, reuseBuffer);
         } catch (RefreshException e) {
             e.refresh();
             try {
-                objectToDataInternal(entity, data);
+                objectToDataInternal(entity, data, reuseBuffer);
             } catch (RefreshException e2) {
                 throw DbCompat.unexpectedException(e2);
             }
@@ -182,13 +269,33 @@ public class PersistEntityBinding implements EntityBinding {
      * needed, we detect that here.
      */
     private void objectToDataInternal(final Object entity,
-                                      final DatabaseEntry data)
+                                      final DatabaseEntry data,
+                                      final boolean reuseBuffer)
         throws RefreshException {
 
         Format format = getValidFormat(entity);
         /* Before a write, check whether a refresh is needed. [#16655] */
         catalog.checkWriteInReplicaUpgradeMode();
-        writeEntity(format, catalog, entity, data, rawAccess);
+
+        /*
+         * The thread's buffer is removed while it is written, so that a
+         * nested write by the same thread allocates its own buffer.
+         */
+        byte[] buffer = null;
+        if (reuseBuffer) {
+            buffer = threadBuffer.get();
+            threadBuffer.remove();
+        }
+        if (buffer == null) {
+            buffer = new byte[dataSizeHint.getSize()];
+        }
+        RecordOutput output = new RecordOutput(catalog, rawAccess, buffer);
+        writeEntity(format, entity, output, data, rawAccess);
+        dataSizeHint.update(output.getBufferLength());
+        if (reuseBuffer &&
+            output.getBufferBytes().length <= BufferSizeHint.MAX_SIZE) {
+            threadBuffer.set(output.getBufferBytes());
+        }
     }
 
     /**
@@ -208,6 +315,16 @@ public class PersistEntityBinding implements EntityBinding {
         throws RefreshException {
 
         RecordOutput output = new RecordOutput(catalog, rawAccess);
+        writeEntity(format, entity, output, data, rawAccess);
+    }
+
+    private static void writeEntity(Format format,
+                                    Object entity,
+                                    RecordOutput output,
+                                    DatabaseEntry data,
+                                    boolean rawAccess)
+        throws RefreshException {
+
         output.registerEntity(entity);
         output.writePackedInt(format.getId());
         format.writeObject(entity, output, rawAccess);
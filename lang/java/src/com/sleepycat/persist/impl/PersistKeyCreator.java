@@ -185,7 +185,7 @@ public class PersistKeyCreator implements SecondaryKeyCreator,
 
         /* Deserialize the entity and get its current class format. */
         RawObject entity = (RawObject) PersistEntityBinding.readEntity
-            (catalog, key, null, data, true /*rawAccess*/);
+            (catalog, key, null, data, true /*rawAccess*/, null);
         Format entityFormat = (Format) entity.getType();
 
         /*
@@ -74,6 +74,7 @@ class RecordInput extends TupleInput implements EntityInput {
         this(other.catalog, other.rawAccess, other.priKeyEntry,
              other.priKeyFormatId, other.buf, offset, other.len);
         visited = other.visited;
+        newStringFormat = other.newStringFormat;
     }
 
     /**
@@ -84,6 +85,17 @@ class RecordInput extends TupleInput implements EntityInput {
              other.priKeyFormatId, entry.getData(), entry.getOffset(),
              entry.getSize());
         visited = other.visited;
+        newStringFormat = other.newStringFormat;
+    }
+
+    /**
+     * Reads a reference to the primary key object from the given key entry,
+     * as when reading starts from a non-zero offset.  Used when the fields of
+     * an entity are read without first registering the primary key object.
+     */
+    void setPriKeyEntry(DatabaseEntry priKeyEntry, int priKeyFormatId) {
+        this.priKeyEntry = priKeyEntry;
+        this.priKeyFormatId = priKeyFormatId;
     }
 
     /**
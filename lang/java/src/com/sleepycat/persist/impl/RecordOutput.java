@@ -37,6 +37,18 @@ class RecordOutput extends TupleOutput implements EntityOutput {
         this.visited = new IdentityHashMap<Object, Integer>();
     }
 
+    /**
+     * Creates a new output that writes to the given buffer, with an
+     * empty/null visited map.
+     */
+    RecordOutput(Catalog catalog, boolean rawAccess, byte[] buffer) {
+
+        super(buffer);
+        this.catalog = catalog;
+        this.rawAccess = rawAccess;
+        this.visited = new IdentityHashMap<Object, Integer>();
+    }
+
     /**
      * @see EntityOutput#writeObject
      */
@@ -13,12 +13,20 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.sleepycat.compat.DbCompat;
 
 /**
- * Implements Accessor using reflection.
+ * Implements Accessor for an unenhanced class.
+ *
+ * <p>When the JVM supports it, a {@link FieldAccessor} is generated for the
+ * class by {@link AccessorGenerator} and used to create instances and to get
+ * and set fields; reflection is then only used for the few fields the
+ * generated accessor cannot reach.  Otherwise reflection is used for
+ * everything.</p>
  *
  * @author Mark Hayes
  */
@@ -32,6 +40,7 @@ class ReflectionAccessor implements Accessor {
     private FieldAccess priKey;
     private FieldAccess[] secKeys;
     private FieldAccess[] nonKeys;
+    private FieldAccessor generated;
 
     private ReflectionAccessor(Class type, Accessor superAccessor) {
         this.type = type;
@@ -75,6 +84,7 @@ class ReflectionAccessor implements Accessor {
         } else {
             nonKeys = EMPTY_KEYS;
         }
+        generateAccessor();
     }
 
     /**
@@ -87,6 +97,33 @@ class ReflectionAccessor implements Accessor {
         priKey = null;
         secKeys = EMPTY_KEYS;
         nonKeys = getFields(catalog, fieldInfos, true /*isRequiredKeyField*/);
+        generateAccessor();
+    }
+
+    /**
+     * Generates a FieldAccessor for the fields declared by this class and
+     * switches each field that it can access over to it.
+     */
+    private void generateAccessor() {
+        List<FieldAccess> all = new ArrayList<FieldAccess>();
+        if (priKey != null) {
+            all.add(priKey);
+        }
+        all.addAll(Arrays.asList(secKeys));
+        all.addAll(Arrays.asList(nonKeys));
+        Field[] fields = new Field[all.size()];
+        for (int i = 0; i < fields.length; i += 1) {
+            fields[i] = all.get(i).field;
+        }
+        generated = AccessorGenerator.generate(type, fields);
+        if (generated != null) {
+            for (int i = 0; i < fields.length; i += 1) {
+                if (AccessorGenerator.canAccess(type, fields[i])) {
+                    all.get(i).generated = generated;
+                    all.get(i).index = i;
+                }
+            }
+        }
     }
 
     private FieldAccess[] getFields(Catalog catalog,
@@ -143,6 +180,10 @@ class ReflectionAccessor implements Accessor {
     }
 
     public Object newInstance() {
+        if (generated != null &&
+            !Modifier.isAbstract(type.getModifiers())) {
+            return generated.newInstance();
+        }
         try {
             return constructor.newInstance();
         } catch (IllegalAccessException e) {
@@ -214,7 +255,7 @@ class ReflectionAccessor implements Accessor {
              * not need to be registered. [#19247]
              */
             if (priKey != null && !priKey.isPrimitive && !priKey.isString) {
-                output.registerPriKeyObject(priKey.field.get(o));
+                output.registerPriKeyObject(priKey.get(o));
             }
             if (superAccessor != null) {
                 superAccessor.writeSecKeyFields(o, output);
@@ -236,9 +277,9 @@ class ReflectionAccessor implements Accessor {
 
         try {
             if (priKey != null && !priKey.isPrimitive && !priKey.isString) {
-                input.registerPriKeyObject(priKey.field.get(o));
+                input.registerPriKeyObject(priKey.get(o));
             } else if (priKey != null && priKey.isString) {
-                input.registerPriStringKeyObject(priKey.field.get(o));
+                input.registerPriStringKeyObject(priKey.get(o));
             }
             if (superLevel != 0 && superAccessor != null) {
                 superAccessor.readSecKeyFields
@@ -338,8 +379,7 @@ class ReflectionAccessor implements Accessor {
                 (o, field, superLevel - 1, isSecField);
         }
         try {
-            Field fld =
-                isSecField ? secKeys[field].field : nonKeys[field].field;
+            FieldAccess fld = isSecField ? secKeys[field] : nonKeys[field];
             return fld.get(o);
         } catch (IllegalAccessException e) {
             throw DbCompat.unexpectedException(e);
@@ -357,8 +397,7 @@ class ReflectionAccessor implements Accessor {
             return;
         }
         try {
-            Field fld =
-                isSecField ? secKeys[field].field : nonKeys[field].field;
+            FieldAccess fld = isSecField ? secKeys[field] : nonKeys[field];
             fld.set(o, value);
         } catch (IllegalAccessException e) {
             throw DbCompat.unexpectedException(e);
@@ -368,7 +407,7 @@ class ReflectionAccessor implements Accessor {
     public void setPriField(Object o, Object value) {
         try {
             if (priKey != null) {
-                priKey.field.set(o, value);
+                priKey.set(o, value);
             } else if (superAccessor != null) {
                 superAccessor.setPriField(o, value);
             } else {
@@ -388,6 +427,10 @@ class ReflectionAccessor implements Accessor {
         boolean isPrimitive;
         boolean isString = false;
 
+        /* Set when the field is accessed by a generated accessor. */
+        FieldAccessor generated;
+        int index;
+
         FieldAccess(Field field) {
             this.field = field;
             isPrimitive = field.getType().isPrimitive();
@@ -395,6 +438,29 @@ class ReflectionAccessor implements Accessor {
                 field.getType().getName().equals(String.class.getName());
         }
 
+        /**
+         * Returns the value of a field with a reference type.
+         */
+        Object get(Object o)
+            throws IllegalAccessException {
+
+            return (generated != null) ?
+                generated.getObject(o, index) : field.get(o);
+        }
+
+        /**
+         * Sets the value of a field with a reference type.
+         */
+        void set(Object o, Object value)
+            throws IllegalAccessException {
+
+            if (generated != null) {
+                generated.setObject(o, index, value);
+            } else {
+                field.set(o, value);
+            }
+        }
+
         /**
          * Writes a field.
          */
@@ -415,7 +481,7 @@ class ReflectionAccessor implements Accessor {
         boolean isNullOrZero(Object o)
             throws IllegalAccessException {
 
-            return field.get(o) == null;
+            return get(o) == null;
         }
     }
 
@@ -432,14 +498,14 @@ class ReflectionAccessor implements Accessor {
         void write(Object o, EntityOutput out)
             throws IllegalAccessException, RefreshException {
 
-            out.writeObject(field.get(o), null);
+            out.writeObject(get(o), null);
         }
 
         @Override
         void read(Object o, EntityInput in)
             throws IllegalAccessException, RefreshException {
 
-            field.set(o, in.readObject());
+            set(o, in.readObject());
         }
     }
 
@@ -460,14 +526,14 @@ class ReflectionAccessor implements Accessor {
         void write(Object o, EntityOutput out)
             throws IllegalAccessException, RefreshException {
 
-            out.writeKeyObject(field.get(o), format);
+            out.writeKeyObject(get(o), format);
         }
 
         @Override
         void read(Object o, EntityInput in)
             throws IllegalAccessException, RefreshException {
 
-            field.set(o, in.readKeyObject(format));
+            set(o, in.readKeyObject(format));
         }
     }
 
@@ -484,14 +550,14 @@ class ReflectionAccessor implements Accessor {
         void write(Object o, EntityOutput out)
             throws IllegalAccessException, RefreshException {
             
-            out.writeString((String) field.get(o));
+            out.writeString((String) get(o));
         }
 
         @Override
         void read(Object o, EntityInput in)
             throws IllegalAccessException, RefreshException {
 
-            field.set(o, in.readStringObject());
+            set(o, in.readStringObject());
         }
     }
 
@@ -507,18 +573,41 @@ class ReflectionAccessor implements Accessor {
             this.format = format;
         }
 
+        /* The generated accessor is only used for the primitive value. */
+        @Override
+        Object get(Object o)
+            throws IllegalAccessException {
+
+            return field.get(o);
+        }
+
+        @Override
+        void set(Object o, Object value)
+            throws IllegalAccessException {
+
+            field.set(o, value);
+        }
+
         @Override
         void write(Object o, EntityOutput out)
             throws IllegalAccessException {
 
-            format.writePrimitiveField(o, out, field);
+            if (generated != null) {
+                format.writePrimitiveField(o, out, generated, index);
+            } else {
+                format.writePrimitiveField(o, out, field);
+            }
         }
 
         @Override
         void read(Object o, EntityInput in)
             throws IllegalAccessException, RefreshException {
 
-            format.readPrimitiveField(o, in, field);
+            if (generated != null) {
+                format.readPrimitiveField(o, in, generated, index);
+            } else {
+                format.readPrimitiveField(o, in, field);
+            }
         }
 
         @Override
@@ -111,6 +111,31 @@ public abstract class SimpleFormat extends Format {
         throw DbCompat.unexpectedState();
     }
 
+    /**
+     * Reads a primitive field using an accessor generated by {@link
+     * AccessorGenerator}.
+     */
+    void readPrimitiveField(Object o,
+                            EntityInput input,
+                            FieldAccessor accessor,
+                            int field)
+        throws RefreshException {
+
+        throw DbCompat.unexpectedState();
+    }
+
+    /**
+     * Writes a primitive field using an accessor generated by {@link
+     * AccessorGenerator}.
+     */
+    void writePrimitiveField(Object o,
+                             EntityOutput output,
+                             FieldAccessor accessor,
+                             int field) {
+
+        throw DbCompat.unexpectedState();
+    }
+
     /* -- End methods to be overridden by primitive formats only. -- */
 
     void skipPrimitiveArray(int len, RecordInput input) {
@@ -204,6 +229,25 @@ public abstract class SimpleFormat extends Format {
 
             output.writeBoolean(field.getBoolean(o));
         }
+
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setBoolean(o, field, input.readBoolean());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeBoolean(accessor.getBoolean(o, field));
+        }
     }
 
     public static class FByte extends SimpleFormat {
@@ -281,6 +325,25 @@ public abstract class SimpleFormat extends Format {
             output.writeByte(field.getByte(o));
         }
 
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setByte(o, field, input.readByte());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeByte(accessor.getByte(o, field));
+        }
+
         @Override
         Format getSequenceKeyFormat() {
             return this;
@@ -363,6 +426,25 @@ public abstract class SimpleFormat extends Format {
             output.writeShort(field.getShort(o));
         }
 
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setShort(o, field, input.readShort());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeShort(accessor.getShort(o, field));
+        }
+
         @Override
         Format getSequenceKeyFormat() {
             return this;
@@ -448,6 +530,25 @@ public abstract class SimpleFormat extends Format {
             output.writeInt(field.getInt(o));
         }
 
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setInt(o, field, input.readInt());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeInt(accessor.getInt(o, field));
+        }
+
         @Override
         Format getSequenceKeyFormat() {
             return this;
@@ -531,6 +632,25 @@ public abstract class SimpleFormat extends Format {
             output.writeLong(field.getLong(o));
         }
 
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setLong(o, field, input.readLong());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeLong(accessor.getLong(o, field));
+        }
+
         @Override
         Format getSequenceKeyFormat() {
             return this;
@@ -614,6 +734,25 @@ public abstract class SimpleFormat extends Format {
 
             output.writeSortedFloat(field.getFloat(o));
         }
+
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setFloat(o, field, input.readSortedFloat());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeSortedFloat(accessor.getFloat(o, field));
+        }
     }
 
     public static class FDouble extends SimpleFormat {
@@ -692,6 +831,25 @@ public abstract class SimpleFormat extends Format {
 
             output.writeSortedDouble(field.getDouble(o));
         }
+
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setDouble(o, field, input.readSortedDouble());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeSortedDouble(accessor.getDouble(o, field));
+        }
     }
 
     public static class FChar extends SimpleFormat {
@@ -770,6 +928,25 @@ public abstract class SimpleFormat extends Format {
 
             output.writeChar(field.getChar(o));
         }
+
+        @Override
+        void readPrimitiveField(Object o,
+                                EntityInput input,
+                                FieldAccessor accessor,
+                                int field)
+            throws RefreshException {
+
+            accessor.setChar(o, field, input.readChar());
+        }
+
+        @Override
+        void writePrimitiveField(Object o,
+                                 EntityOutput output,
+                                 FieldAccessor accessor,
+                                 int field) {
+
+            output.writeChar(accessor.getChar(o, field));
+        }
     }
 
     public static class FString extends SimpleFormat {
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.bind.tuple.StringBinding;
@@ -36,6 +37,7 @@ import com.sleepycat.db.Transaction;
 import com.sleepycat.db.TransactionConfig;
 import java.util.IdentityHashMap;
 import com.sleepycat.persist.DatabaseNamer;
+import com.sleepycat.persist.EntityCacheStats;
 import com.sleepycat.persist.IndexNotAvailableException;
 import com.sleepycat.persist.PrimaryIndex;
 import com.sleepycat.persist.SecondaryIndex;
@@ -90,6 +92,15 @@ public class Store {
     private final String storePrefix;
     private final Map<String, InternalPrimaryIndex> priIndexMap;
     private final Map<String, InternalSecondaryIndex> secIndexMap;
+
+    /*
+     * Indexes that are completely open, for lookup without synchronizing on
+     * the store.  An index is added only after its open has committed, and
+     * is removed before its database is closed.  priIndexMap and secIndexMap
+     * remain the authoritative maps and are only used while synchronized.
+     */
+    private final Map<String, InternalPrimaryIndex> openPriIndexMap;
+    private final Map<String, InternalSecondaryIndex> openSecIndexMap;
     private final Map<String, DatabaseConfig> priConfigMap;
     private final Map<String, SecondaryConfig> secConfigMap;
     private final Map<String, PersistKeyBinding> keyBindingMap;
@@ -100,6 +111,7 @@ public class Store {
     private final Map<String, Set<String>> inverseRelatedEntityMap;
     private final TransactionConfig autoCommitTxnConfig;
     private final TransactionConfig autoCommitNoWaitTxnConfig;
+    private final EntityCache entityCache;
 
     public Store(Environment env,
                  String storeName,
@@ -126,12 +138,19 @@ public class Store {
         autoCommitTxnConfig = new TransactionConfig();
         autoCommitNoWaitTxnConfig = new TransactionConfig();
         autoCommitNoWaitTxnConfig.setNoWait(true);
+        entityCache = (storeConfig.getEntityCacheSize() > 0) ?
+            new EntityCache(storeConfig.getEntityCacheSize()) :
+            null;
 
         model = config.getModel();
 
         storePrefix = NAME_PREFIX + storeName + NAME_SEPARATOR;
         priIndexMap = new HashMap<String, InternalPrimaryIndex>();
         secIndexMap = new HashMap<String, InternalSecondaryIndex>();
+        openPriIndexMap =
+            new ConcurrentHashMap<String, InternalPrimaryIndex>();
+        openSecIndexMap =
+            new ConcurrentHashMap<String, InternalSecondaryIndex>();
         priConfigMap = new HashMap<String, DatabaseConfig>();
         secConfigMap = new HashMap<String, SecondaryConfig>();
         keyBindingMap = new HashMap<String, PersistKeyBinding>();
@@ -253,14 +272,35 @@ public class Store {
      * primaryKeyClassName is used for consistency checking and should be null
      * for a raw store only.  entityClassName is used to identify the store and
      * may not be null.
+     *
+     * An index that is already open is returned without synchronizing on
+     * the store.
      */
-    public synchronized <PK, E> PrimaryIndex<PK, E>
+    public <PK, E> PrimaryIndex<PK, E>
         getPrimaryIndex(Class<PK> primaryKeyClass,
                         String primaryKeyClassName,
                         Class<E> entityClass,
                         String entityClassName)
         throws DatabaseException, IndexNotAvailableException {
 
+        checkOpen();
+
+        InternalPrimaryIndex<PK, E> priIndex =
+            openPriIndexMap.get(entityClassName);
+        if (priIndex != null) {
+            return priIndex;
+        }
+        return openPrimaryIndex(primaryKeyClass, primaryKeyClassName,
+                                entityClass, entityClassName);
+    }
+
+    private synchronized <PK, E> PrimaryIndex<PK, E>
+        openPrimaryIndex(Class<PK> primaryKeyClass,
+                         String primaryKeyClassName,
+                         Class<E> entityClass,
+                         String entityClassName)
+        throws DatabaseException, IndexNotAvailableException {
+
         assert (rawAccess && entityClass == RawObject.class) ||
               (!rawAccess && entityClass != RawObject.class);
         assert (rawAccess && primaryKeyClassName == null) ||
@@ -354,6 +394,15 @@ public class Store {
 
                 priOpenState.addDatabase(db);
 
+                /*
+                 * The entity cache relies on write locks to only cache
+                 * committed data, so it is not used with multiversion
+                 * concurrency control.
+                 */
+                if (entityCache != null && !dbConfig.getMultiversion()) {
+                    entityBinding.entityCache = entityCache;
+                }
+
                 /* Create index object. */
                 priIndex = new InternalPrimaryIndex(db, primaryKeyClass,
                                                     keyBinding, entityClass,
@@ -397,6 +446,7 @@ public class Store {
                 }
             }
         }
+        openPriIndexMap.put(entityClassName, priIndex);
         return priIndex;
     }
 
@@ -509,8 +559,12 @@ public class Store {
      * A getSecondaryIndex with extra parameters for opening a raw store.
      * keyClassName is used for consistency checking and should be null for a
      * raw store only.
+     *
+     * An index that is already open is returned without synchronizing on
+     * the store, except for a subclass index, whose key must be validated
+     * against the subclass on every call.
      */
-    public synchronized <SK, PK, E1, E2 extends E1> SecondaryIndex<SK, PK, E2>
+    public <SK, PK, E1, E2 extends E1> SecondaryIndex<SK, PK, E2>
         getSecondaryIndex(PrimaryIndex<PK, E1> primaryIndex,
                           Class<E2> entityClass,
                           String entityClassName,
@@ -519,6 +573,29 @@ public class Store {
                           String keyName)
         throws DatabaseException, IndexNotAvailableException {
 
+        checkOpen();
+
+        if (entityClass == primaryIndex.getEntityClass()) {
+            InternalSecondaryIndex<SK, PK, E2> secIndex =
+                openSecIndexMap.get(makeSecName(entityClassName, keyName));
+            if (secIndex != null) {
+                return secIndex;
+            }
+        }
+        return openSecondaryIndex(primaryIndex, entityClass, entityClassName,
+                                  keyClass, keyClassName, keyName);
+    }
+
+    private synchronized <SK, PK, E1, E2 extends E1>
+        SecondaryIndex<SK, PK, E2>
+        openSecondaryIndex(PrimaryIndex<PK, E1> primaryIndex,
+                           Class<E2> entityClass,
+                           String entityClassName,
+                           Class<SK> keyClass,
+                           String keyClassName,
+                           String keyName)
+        throws DatabaseException, IndexNotAvailableException {
+
         assert (rawAccess && keyClassName == null) ||
               (!rawAccess && keyClassName != null);
 
@@ -646,6 +723,7 @@ public class Store {
                      keyName);
             }
         }
+        openSecIndexMap.put(secName, secIndex);
         return secIndex;
     }
 
@@ -734,6 +812,11 @@ public class Store {
         if (relatedClsName != null) {
             PrimaryIndex relatedIndex = getRelatedIndex(relatedClsName);
             config.setForeignKeyDatabase(relatedIndex.getDatabase());
+            if (entityCache != null &&
+                config.getForeignKeyDeleteAction() !=
+                ForeignKeyDeleteAction.ABORT) {
+                entityCache.addCascadingDatabase(relatedIndex.getDatabase());
+            }
         }
 
         if (config.getTransactional() != priConfig.getTransactional() ||
@@ -748,9 +831,17 @@ public class Store {
 
         PersistKeyBinding keyBinding = getKeyBinding(keyClassName);
 
+        /*
+         * A secondary populated by several threads commits as it goes, so
+         * it is created outside the open transaction.  This is only done
+         * when the primary is already open, and so cannot have been created
+         * by the open transaction.
+         */
+        final boolean parallelPopulate =
+            priOpenState == null && config.getPopulateThreads() > 1;
         SecondaryDatabase db = openSecondaryDatabase
             (txn, fileAndDbNames, primaryIndex, 
-             secKeyMeta.getKeyName(), config, doNotCreate);
+             secKeyMeta.getKeyName(), config, doNotCreate, parallelPopulate);
         if (db == null) {
             assert doNotCreate;
             return null;
@@ -788,6 +879,9 @@ public class Store {
      * the DB and return null.  When getSecondaryIndex is subsequently called,
      * the secondary database will be created and populated from the primary --
      * a bulk load.
+     *
+     * @param parallelPopulate is true to create the database without a
+     * transaction, so that it may be populated by several threads.
      */
     private SecondaryDatabase
         openSecondaryDatabase(final Transaction txn,
@@ -795,7 +889,8 @@ public class Store {
                               final PrimaryIndex priIndex,
                               final String keyName,
                               final SecondaryConfig config,
-                              final boolean doNotCreate)
+                              final boolean doNotCreate,
+                              final boolean parallelPopulate)
         throws DatabaseException {
 
         assert config.getAllowPopulate();
@@ -815,8 +910,8 @@ public class Store {
                 config.setExclusiveCreate(true);
                 /* AllowPopulate is true; comparators are set. */
                 final SecondaryDatabase db = DbCompat.openSecondaryDatabase
-                    (env, txn, fileAndDbNames[0], fileAndDbNames[1], priDb,
-                     config);
+                    (env, parallelPopulate ? null : txn, fileAndDbNames[0],
+                     fileAndDbNames[1], priDb, config);
                 if (db != null) {
                     /* For unit testing. */ 
                     boolean doFlush = false;
@@ -977,6 +1072,10 @@ public class Store {
 
         PrimaryIndex priIndex = priIndexMap.get(clsName);
         if (priIndex != null) {
+            if (entityCache != null) {
+                entityCache.invalidateAll();
+            }
+
             /* Close the secondaries first. */
             DatabaseException firstException = null;
             for (SecondaryKeyMetadata keyMeta :
@@ -985,6 +1084,7 @@ public class Store {
                 String secName = makeSecName(clsName, keyMeta.getKeyName());
                 SecondaryIndex secIndex = secIndexMap.get(secName);
                 if (secIndex != null) {
+                    openSecIndexMap.remove(secName);
                     Database db = secIndex.getDatabase();
                     firstException = closeDb(db, firstException);
                     firstException =
@@ -994,6 +1094,7 @@ public class Store {
                 }
             }
             /* Close the primary last. */
+            openPriIndexMap.remove(clsName);
             Database db = priIndex.getDatabase();
             firstException = closeDb(db, firstException);
             priIndexMap.remove(clsName);
@@ -1012,6 +1113,11 @@ public class Store {
         if (catalog == null) {
             return;
         }
+        openPriIndexMap.clear();
+        openSecIndexMap.clear();
+        if (entityCache != null) {
+            entityCache.invalidateAll();
+        }
 
         DatabaseException firstException = null;
         try {
@@ -1734,6 +1840,14 @@ public class Store {
 
     }
 
+    /**
+     * Returns the entity cache statistics, or null if the entity cache is not
+     * configured.
+     */
+    public EntityCacheStats getEntityCacheStats() {
+        return (entityCache != null) ? entityCache.getStats() : null;
+    }
+
     TransactionConfig getAutoCommitTxnConfig() {
         return autoCommitTxnConfig;
     }
@@ -0,0 +1,58 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2000, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.util;
+
+/**
+ * Learns the size of recently written records, so that an output buffer can
+ * be allocated with room for a typical record and seldom has to grow.
+ *
+ * <p>The hint rises at once to the size of a larger record and decays by an
+ * eighth of the difference toward each smaller one, so that a few small
+ * records do not cause the next large one to grow its buffer.  The hint is
+ * not larger than {@link #MAX_SIZE}; larger records grow their buffer as
+ * before.</p>
+ *
+ * <p>Updates are not synchronized.  When several threads update a hint at
+ * once an update may be lost, which only makes the hint less current.</p>
+ */
+public class BufferSizeHint {
+
+    /**
+     * The largest size returned by {@link #getSize}, and the largest buffer
+     * that should be kept for reuse.  This constant is 256 KB.
+     */
+    public static final int MAX_SIZE = 256 * 1024;
+
+    private int size;
+
+    /**
+     * Returns the size for a new output buffer.
+     *
+     * @return the learned size, or {@link FastOutputStream#DEFAULT_INIT_SIZE}
+     * if no record has been written.
+     */
+    public int getSize() {
+        int current = size;
+        return (current > 0) ? current : FastOutputStream.DEFAULT_INIT_SIZE;
+    }
+
+    /**
+     * Records the size of a record that was written.
+     *
+     * @param recordSize the number of bytes written.
+     */
+    public void update(int recordSize) {
+        int current = size;
+        if (recordSize >= current) {
+            current = Math.min(recordSize, MAX_SIZE);
+        } else {
+            current -= (current - recordSize) >> 3;
+        }
+        size = current;
+    }
+}
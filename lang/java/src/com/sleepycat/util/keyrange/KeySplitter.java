@@ -0,0 +1,104 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.util.keyrange;
+
+import java.math.BigInteger;
+
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DatabaseException;
+
+/**
+ * Chooses keys that split a range of a Btree into parts of about the same
+ * number of records, for populating or traversing the parts with a thread
+ * each.
+ *
+ * <p>The keys between the first and last key of the range are treated as
+ * numbers, and a binary search over those numbers finds the one that {@link
+ * Database#getKeyRange Database.getKeyRange} places at a given fraction of
+ * the database.  The numbers only follow the order of the database for the
+ * default byte order, or a comparator that orders keys the same way and
+ * accepts any key bytes, so the caller must check that the database is in
+ * such an order.</p>
+ */
+public class KeySplitter {
+
+    /* The number of getKeyRange probes used to place a split. */
+    private static final int SPLIT_STEPS = 32;
+
+    /* The number of leading key bytes used to place a split. */
+    private static final int SPLIT_KEY_BYTES = 16;
+
+    private KeySplitter() {
+    }
+
+    /**
+     * Returns a key between the first and last keys of a range that {@link
+     * Database#getKeyRange Database.getKeyRange} places at about the given
+     * fraction of the database.
+     *
+     * <p>The key returned is greater than the first key when the keys are
+     * numbered far enough apart, but it is an estimate and is not always in
+     * the range, so the caller must check it with the order of the
+     * database.</p>
+     *
+     * @param db the Btree database.
+     *
+     * @param first the first key in the range.
+     *
+     * @param last the last key in the range.
+     *
+     * @param fraction the fraction of the database, from 0 to 1, before the
+     * key.
+     *
+     * @return the split key, or null if the first and last keys cannot be
+     * told apart as numbers.
+     *
+     * @throws DatabaseException the base class for all BDB exceptions.
+     */
+    public static byte[] splitKey(Database db,
+                                  byte[] first,
+                                  byte[] last,
+                                  double fraction)
+        throws DatabaseException {
+
+        int width = Math.min(SPLIT_KEY_BYTES,
+                             Math.max(first.length, last.length));
+        BigInteger lo = toNumber(first, width);
+        BigInteger hi = toNumber(last, width);
+        if (lo.compareTo(hi) >= 0) {
+            return null;
+        }
+        for (int step = 0; step < SPLIT_STEPS &&
+             lo.add(BigInteger.ONE).compareTo(hi) < 0; step++) {
+            BigInteger mid = lo.add(hi).shiftRight(1);
+            double less = db.getKeyRange
+                (null, new DatabaseEntry(toBytes(mid, width))).less;
+            if (less < fraction) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return toBytes(hi, width);
+    }
+
+    private static BigInteger toNumber(byte[] key, int width) {
+        byte[] bytes = new byte[width + 1];
+        System.arraycopy(key, 0, bytes, 1, Math.min(width, key.length));
+        return new BigInteger(bytes);
+    }
+
+    private static byte[] toBytes(BigInteger n, int width) {
+        byte[] bytes = n.toByteArray();
+        byte[] key = new byte[width];
+        int len = Math.min(width, bytes.length);
+        System.arraycopy(bytes, bytes.length - len, key, width - len, len);
+        return key;
+    }
+}
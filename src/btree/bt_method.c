@@ -13,6 +13,8 @@
 #include "dbinc/btree.h"
 #include "dbinc/qam.h"
 
+static int __bam_get_bt_fillpct __P((DB *, u_int32_t *));
+static int __bam_set_bt_fillpct __P((DB *, u_int32_t));
 static int __bam_set_bt_minkey __P((DB *, u_int32_t));
 static int __bam_get_bt_compare
 	       __P((DB *, int (**)(DB *, const DBT *, const DBT *, size_t *)));
@@ -67,6 +69,8 @@ __bam_db_create(dbp)
 
 	dbp->get_bt_compare = __bam_get_bt_compare;
 	dbp->set_bt_compare = __bam_set_bt_compare;
+	dbp->get_bt_fillpct = __bam_get_bt_fillpct;
+	dbp->set_bt_fillpct = __bam_set_bt_fillpct;
 	dbp->get_bt_minkey = __bam_get_bt_minkey;
 	dbp->set_bt_minkey = __bam_set_bt_minkey;
 	dbp->get_bt_prefix = __bam_get_bt_prefix;
@@ -389,6 +393,53 @@ __bam_set_bt_compress(dbp, compress, decompress)
 #endif
 }
 
+/*
+ * __bam_get_bt_fillpct --
+ *	Get the fill percentage of pages split by appends.
+ */
+static int
+__bam_get_bt_fillpct(dbp, bt_fillpctp)
+	DB *dbp;
+	u_int32_t *bt_fillpctp;
+{
+	BTREE *t;
+
+	DB_ILLEGAL_METHOD(dbp, DB_OK_BTREE);
+
+	t = dbp->bt_internal;
+	*bt_fillpctp = t->bt_fillpct;
+	return (0);
+}
+
+/*
+ * __bam_set_bt_fillpct --
+ *	Set the fill percentage of pages split by appends.
+ *
+ * This only affects the handle it is set on, and so may be changed after
+ * the database is opened, for example while the database is being loaded
+ * in key order.
+ */
+static int
+__bam_set_bt_fillpct(dbp, bt_fillpct)
+	DB *dbp;
+	u_int32_t bt_fillpct;
+{
+	BTREE *t;
+
+	DB_ILLEGAL_METHOD(dbp, DB_OK_BTREE);
+
+	t = dbp->bt_internal;
+
+	if (bt_fillpct > 100) {
+		__db_errx(dbp->env, DB_STR("1199",
+		    "maximum bt_fillpct value is 100"));
+		return (EINVAL);
+	}
+
+	t->bt_fillpct = bt_fillpct;
+	return (0);
+}
+
 /*
  * __db_get_bt_minkey --
  *	Get the minimum keys per page.
@@ -493,6 +544,7 @@ __bam_copy_config(src, dst, nparts)
 	d->bt_compare = s->bt_compare;
 	d->bt_minkey = s->bt_minkey;
 	d->bt_minkey = s->bt_minkey;
+	d->bt_fillpct = s->bt_fillpct;
 	d->bt_prefix = s->bt_prefix;
 #ifdef HAVE_COMPRESSION
 	d->bt_compress = s->bt_compress;
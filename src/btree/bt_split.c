@@ -1111,6 +1111,7 @@ __bam_psplit(dbc, cp, lp, rp, splitret)
 	DB *dbp;
 	PAGE *pp;
 	db_indx_t half, *inp, nbytes, off, splitp, top;
+	u_int32_t fillpct;
 	int adjust, cnt, iflag, isbigkey, ret;
 
 	dbp = dbc->dbp;
@@ -1150,13 +1151,20 @@ __bam_psplit(dbc, cp, lp, rp, splitret)
 	 * Do a simple test which might be wrong because calling the comparison
 	 * functions is expensive.  Regardless, it's not a big deal if we're
 	 * wrong, we'll do the split the right way next time.
+	 *
+	 * If the handle has a fill percentage set, an append leaves that
+	 * percentage of the page's data on the left page instead, so that
+	 * a tree loaded in key order has room for later inserts.
 	 */
 	off = 0;
-	if (NEXT_PGNO(pp) == PGNO_INVALID && cp->indx >= NUM_ENT(pp) - adjust)
+	fillpct = 0;
+	if (NEXT_PGNO(pp) == PGNO_INVALID && cp->indx >= NUM_ENT(pp) - adjust) {
 		off = NUM_ENT(pp) - adjust;
-	else if (PREV_PGNO(pp) == PGNO_INVALID && cp->indx == 0)
+		if (dbp->type == DB_BTREE)
+			fillpct = ((BTREE *)dbp->bt_internal)->bt_fillpct;
+	} else if (PREV_PGNO(pp) == PGNO_INVALID && cp->indx == 0)
 		off = adjust;
-	if (off != 0)
+	if (off != 0 && fillpct == 0)
 		goto sort;
 
 	/*
@@ -1181,7 +1189,11 @@ __bam_psplit(dbc, cp, lp, rp, splitret)
 	 * need more space soon anyway.
 	 */
 	top = NUM_ENT(pp) - adjust;
-	half = (dbp->pgsize - HOFFSET(pp)) / 2;
+	if (fillpct != 0)
+		half = (db_indx_t)
+		    (((u_int32_t)dbp->pgsize - HOFFSET(pp)) * fillpct / 100);
+	else
+		half = (dbp->pgsize - HOFFSET(pp)) / 2;
 	for (nbytes = 0, off = 0; off < top && nbytes < half; ++off)
 		switch (TYPE(pp)) {
 		case P_IBTREE:
@@ -470,6 +470,7 @@ struct __btree {			/* Btree access method. */
 	u_int32_t revision;		/* Revision of root/meta. */
 
 	u_int32_t bt_minkey;		/* Minimum keys per page. */
+	u_int32_t bt_fillpct;		/* Append split fill percentage. */
 
 					/* Btree comparison function. */
 	int (*bt_compare) __P((DB *, const DBT *, const DBT *, size_t *));
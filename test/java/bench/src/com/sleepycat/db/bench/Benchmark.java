@@ -0,0 +1,135 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import com.sleepycat.db.Environment;
+
+/**
+ * A single measured operation of the binding benchmarks.
+ *
+ * <p>{@link #setUp} is called once with a new environment and creates and
+ * loads the databases used.  {@link #run} is then called repeatedly by the
+ * {@link BenchmarkRunner}, first to warm up and then to measure, and returns
+ * the number of operations it performed so that results can be reported per
+ * operation.  Results that would otherwise be unused should be passed to
+ * {@link #consume} so that the JIT cannot remove the work that produced
+ * them.</p>
+ */
+public abstract class Benchmark {
+
+    /** The size of the data item of every loaded record. */
+    public static final int DATA_SIZE = 100;
+
+    /** The number of operations performed by one call to {@link #run}. */
+    public static final int OPS_PER_RUN = 1000;
+
+    private static volatile int sink;
+
+    private final String name;
+    private int records;
+    private int seed = 0x2545F491;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of records loaded, as passed to {@link #setUp}.
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * Creates and loads the databases used by the benchmark.  The default
+     * implementation only records the number of records.
+     */
+    public void setUp(Environment env, int records)
+        throws Exception {
+
+        this.records = records;
+    }
+
+    /**
+     * Performs one invocation of the benchmark.
+     *
+     * @return the number of operations performed.
+     */
+    public abstract int run()
+        throws Exception;
+
+    /**
+     * Closes the databases opened by {@link #setUp}.  The environment is
+     * closed and removed by the runner.
+     */
+    public void tearDown()
+        throws Exception {
+    }
+
+    /**
+     * Returns a pseudo-random key between zero and the number of records,
+     * exclusive, using a generator cheap enough not to distort the result.
+     */
+    protected int nextKey() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return (x & 0x7fffffff) % records;
+    }
+
+    /**
+     * Keeps a result alive.
+     */
+    protected static void consume(int value) {
+        sink += value;
+    }
+
+    /**
+     * Keeps a result alive.
+     */
+    protected static void consume(Object value) {
+        if (value != null) {
+            sink += System.identityHashCode(value);
+        }
+    }
+
+    /**
+     * Encodes a key as a four byte big endian integer, the format of {@link
+     * com.sleepycat.bind.tuple.IntegerBinding} without the sign bit flipped.
+     */
+    protected static byte[] keyBytes(int key) {
+        byte[] bytes = new byte[4];
+        putKey(bytes, key);
+        return bytes;
+    }
+
+    protected static void putKey(byte[] bytes, int key) {
+        putKey(bytes, 0, key);
+    }
+
+    protected static void putKey(byte[] bytes, int off, int key) {
+        bytes[off] = (byte) (key >>> 24);
+        bytes[off + 1] = (byte) (key >>> 16);
+        bytes[off + 2] = (byte) (key >>> 8);
+        bytes[off + 3] = (byte) key;
+    }
+
+    protected static byte[] dataBytes(int key) {
+        byte[] bytes = new byte[DATA_SIZE];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (key + i);
+        }
+        return bytes;
+    }
+}
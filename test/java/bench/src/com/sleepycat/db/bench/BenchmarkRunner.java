@@ -0,0 +1,230 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+
+/**
+ * Runs the binding benchmarks and prints the throughput of each.
+ *
+ * <p>Each benchmark is given a new private environment in a temporary
+ * directory, which is removed when the benchmark ends.  The benchmark is run
+ * for a number of warmup iterations, whose results are discarded, and then
+ * for a number of measured iterations of a fixed duration.  The mean and
+ * standard deviation of the operations per second, and the mean time per
+ * operation, are reported for the measured iterations.</p>
+ *
+ * <pre>
+ * java com.sleepycat.db.bench.BenchmarkRunner
+ *     [-records n] [-warmup n] [-iterations n] [-time ms]
+ *     [-cache mb] [-dir path] [pattern]
+ * </pre>
+ *
+ * <p>If a pattern is given, only the benchmarks whose names contain a match
+ * of the regular expression are run.</p>
+ */
+public class BenchmarkRunner {
+
+    private int records = 100000;
+    private int warmup = 3;
+    private int iterations = 5;
+    private long time = 1000;
+    private int cacheMb = 64;
+    private File parentDir = new File(System.getProperty("java.io.tmpdir"));
+    private Pattern pattern;
+
+    public static void main(String[] args) {
+        try {
+            BenchmarkRunner runner = new BenchmarkRunner();
+            runner.parseArgs(args);
+            runner.runAll();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(
+                "usage: java " + BenchmarkRunner.class.getName() +
+                "\n    [-records n] [-warmup n] [-iterations n] [-time ms]" +
+                "\n    [-cache mb] [-dir path] [pattern]");
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns every benchmark, in the order they are run.
+     */
+    public static List<Benchmark> getBenchmarks() {
+        List<Benchmark> list = new ArrayList<Benchmark>();
+        CoreBenchmarks.addTo(list);
+        BindingBenchmarks.addTo(list);
+        return list;
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                if (i != args.length - 1) {
+                    throw new IllegalArgumentException("Unexpected: " + arg);
+                }
+                pattern = Pattern.compile(arg);
+                break;
+            }
+            if (i == args.length - 1) {
+                throw new IllegalArgumentException("Missing value: " + arg);
+            }
+            String val = args[++i];
+            if (arg.equals("-records")) {
+                records = parseInt(arg, val);
+            } else if (arg.equals("-warmup")) {
+                warmup = parseInt(arg, val);
+            } else if (arg.equals("-iterations")) {
+                iterations = parseInt(arg, val);
+            } else if (arg.equals("-time")) {
+                time = parseInt(arg, val);
+            } else if (arg.equals("-cache")) {
+                cacheMb = parseInt(arg, val);
+            } else if (arg.equals("-dir")) {
+                parentDir = new File(val);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (records < Benchmark.OPS_PER_RUN || iterations < 1 || time < 1) {
+            throw new IllegalArgumentException(
+                "records must be at least " + Benchmark.OPS_PER_RUN +
+                ", iterations and time at least 1");
+        }
+    }
+
+    private static int parseInt(String arg, String val) {
+        try {
+            return Integer.parseInt(val);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for " + arg);
+        }
+    }
+
+    private void runAll()
+        throws Exception {
+
+        System.out.println("records=" + records + " warmup=" + warmup +
+                           " iterations=" + iterations + " time=" + time +
+                           "ms cache=" + cacheMb + "MB");
+        System.out.println(pad("benchmark", 28) + pad("ops/s", 14) +
+                           pad("+/-", 12) + pad("ns/op", 10));
+        for (Benchmark bench : getBenchmarks()) {
+            if (pattern == null || pattern.matcher(bench.getName()).find()) {
+                runOne(bench);
+            }
+        }
+    }
+
+    private void runOne(Benchmark bench)
+        throws Exception {
+
+        File dir = File.createTempFile("dbbench", "", parentDir);
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        Environment env = null;
+        try {
+            EnvironmentConfig envConfig = new EnvironmentConfig();
+            envConfig.setAllowCreate(true);
+            envConfig.setInitializeCache(true);
+            envConfig.setPrivate(true);
+            envConfig.setCacheSize(cacheMb * 1024L * 1024L);
+            env = new Environment(dir, envConfig);
+
+            bench.setUp(env, records);
+            try {
+                for (int i = 0; i < warmup; i++) {
+                    iterate(bench);
+                }
+                double[] rates = new double[iterations];
+                for (int i = 0; i < iterations; i++) {
+                    rates[i] = iterate(bench);
+                }
+                report(bench.getName(), rates);
+            } finally {
+                bench.tearDown();
+            }
+        } finally {
+            if (env != null) {
+                env.close();
+            }
+            removeDir(dir);
+        }
+    }
+
+    /*
+     * Runs the benchmark for one iteration and returns the operations per
+     * second.
+     */
+    private double iterate(Benchmark bench)
+        throws Exception {
+
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + time * 1000000L;
+        long now;
+        do {
+            ops += bench.run();
+            now = System.nanoTime();
+        } while (now < end);
+        return ops * 1e9 / (now - start);
+    }
+
+    private static void report(String name, double[] rates) {
+        double sum = 0;
+        for (double r : rates) {
+            sum += r;
+        }
+        double mean = sum / rates.length;
+        double sq = 0;
+        for (double r : rates) {
+            sq += (r - mean) * (r - mean);
+        }
+        double dev = (rates.length > 1) ?
+            Math.sqrt(sq / (rates.length - 1)) : 0;
+        System.out.println(pad(name, 28) +
+                           pad(String.format("%.0f", mean), 14) +
+                           pad(String.format("%.0f", dev), 12) +
+                           pad(String.format("%.1f", 1e9 / mean), 10));
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder buf = new StringBuilder(s);
+        while (buf.length() < width) {
+            buf.append(' ');
+        }
+        return buf.toString();
+    }
+
+    private static void removeDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    removeDir(f);
+                } else {
+                    f.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+}
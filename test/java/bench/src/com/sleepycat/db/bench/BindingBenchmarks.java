@@ -0,0 +1,406 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.sleepycat.bind.ByteArrayBinding;
+import com.sleepycat.bind.EntryBinding;
+import com.sleepycat.bind.serial.SerialBinding;
+import com.sleepycat.bind.serial.StoredClassCatalog;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleBufferBinding;
+import com.sleepycat.bind.tuple.TupleBufferInput;
+import com.sleepycat.bind.tuple.TupleBufferOutput;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.collections.StoredIterator;
+import com.sleepycat.collections.StoredSortedMap;
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseConfig;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DatabaseType;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.SecondaryConfig;
+import com.sleepycat.db.SecondaryDatabase;
+import com.sleepycat.db.SecondaryKeyCreator;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+
+/**
+ * Benchmarks of the bindings layered over the core API: the same record
+ * written and read with tuple, tuple buffer, serial and DPL bindings, puts
+ * that maintain zero, one or two secondary indexes, and iteration of a
+ * StoredSortedMap.
+ */
+public class BindingBenchmarks {
+
+    static void addTo(List<Benchmark> list) {
+
+        list.add(new RecordBenchmark("bind.tuple") {
+            EntryBinding<Record> createBinding(Environment env) {
+                return new TupleBinding<Record>() {
+                    public Record entryToObject(TupleInput input) {
+                        Record r = new Record();
+                        r.id = input.readInt();
+                        r.name = input.readString();
+                        r.timestamp = input.readLong();
+                        r.group = input.readInt();
+                        r.amount = input.readDouble();
+                        return r;
+                    }
+                    public void objectToEntry(Record r, TupleOutput output) {
+                        output.writeInt(r.id);
+                        output.writeString(r.name);
+                        output.writeLong(r.timestamp);
+                        output.writeInt(r.group);
+                        output.writeDouble(r.amount);
+                    }
+                };
+            }
+        });
+
+        list.add(new RecordBenchmark("bind.tupleBuffer") {
+            EntryBinding<Record> createBinding(Environment env) {
+                TupleBufferBinding<Record> binding =
+                    new TupleBufferBinding<Record>() {
+                    public Record entryToObject(TupleBufferInput input) {
+                        Record r = new Record();
+                        r.id = input.readInt();
+                        r.name = input.readString();
+                        r.timestamp = input.readLong();
+                        r.group = input.readInt();
+                        r.amount = input.readDouble();
+                        return r;
+                    }
+                    public void objectToEntry(Record r,
+                                              TupleBufferOutput output) {
+                        output.writeInt(r.id);
+                        output.writeString(r.name);
+                        output.writeLong(r.timestamp);
+                        output.writeInt(r.group);
+                        output.writeDouble(r.amount);
+                    }
+                };
+                binding.setBufferPool(env.getDirectBufferPool());
+                return binding;
+            }
+        });
+
+        list.add(new RecordBenchmark("bind.serial") {
+            private Database catalogDb;
+
+            EntryBinding<Record> createBinding(Environment env)
+                throws Exception {
+
+                DatabaseConfig dbConfig = new DatabaseConfig();
+                dbConfig.setAllowCreate(true);
+                dbConfig.setType(DatabaseType.BTREE);
+                catalogDb =
+                    env.openDatabase(null, "catalog.db", null, dbConfig);
+                return new SerialBinding<Record>(
+                    new StoredClassCatalog(catalogDb), Record.class);
+            }
+
+            @Override
+            public void tearDown()
+                throws Exception {
+
+                super.tearDown();
+                catalogDb.close();
+            }
+        });
+
+        list.add(new Benchmark("bind.dpl") {
+            private EntityStore store;
+            private PrimaryIndex<Integer, RecordEntity> index;
+
+            @Override
+            public void setUp(Environment env, int records)
+                throws Exception {
+
+                super.setUp(env, records);
+                StoreConfig config = new StoreConfig();
+                config.setAllowCreate(true);
+                store = new EntityStore(env, "bench", config);
+                index = store.getPrimaryIndex(Integer.class,
+                                              RecordEntity.class);
+                for (int i = 0; i < records; i++) {
+                    index.putNoReturn(new RecordEntity(i));
+                }
+            }
+
+            public int run()
+                throws Exception {
+
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    index.putNoReturn(new RecordEntity(nextKey()));
+                    consume(index.get(nextKey()));
+                }
+                return OPS_PER_RUN;
+            }
+
+            @Override
+            public void tearDown()
+                throws Exception {
+
+                store.close();
+            }
+        });
+
+        list.add(new SecondaryBenchmark("secondary.put0", 0));
+        list.add(new SecondaryBenchmark("secondary.put1", 1));
+        list.add(new SecondaryBenchmark("secondary.put2", 2));
+
+        list.add(new DatabaseBenchmark("storedMap.iterate") {
+            private StoredSortedMap<byte[], byte[]> map;
+
+            @Override
+            public void setUp(Environment env, int records)
+                throws Exception {
+
+                super.setUp(env, records);
+                ByteArrayBinding binding = new ByteArrayBinding();
+                map = new StoredSortedMap<byte[], byte[]>(
+                    db, binding, binding, false);
+            }
+
+            public int run()
+                throws Exception {
+
+                int start = Math.min(nextKey(), getRecords() - OPS_PER_RUN);
+                Iterator<Map.Entry<byte[], byte[]>> i =
+                    map.tailMap(keyBytes(start)).entrySet().iterator();
+                int n = 0;
+                try {
+                    while (n < OPS_PER_RUN && i.hasNext()) {
+                        consume(i.next().getValue());
+                        n++;
+                    }
+                } finally {
+                    StoredIterator.close(i);
+                }
+                return n;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("storedMap.get") {
+            private StoredSortedMap<byte[], byte[]> map;
+
+            @Override
+            public void setUp(Environment env, int records)
+                throws Exception {
+
+                super.setUp(env, records);
+                ByteArrayBinding binding = new ByteArrayBinding();
+                map = new StoredSortedMap<byte[], byte[]>(
+                    db, binding, binding, false);
+            }
+
+            public int run()
+                throws Exception {
+
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    consume(map.get(keyBytes(nextKey())));
+                }
+                return OPS_PER_RUN;
+            }
+        });
+    }
+
+    /**
+     * The record written by the binding benchmarks.
+     */
+    static class Record implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        int id;
+        String name;
+        long timestamp;
+        int group;
+        double amount;
+
+        Record() {
+        }
+
+        Record(int id) {
+            this.id = id;
+            this.name = "record number " + id;
+            this.timestamp = 1000000L * id;
+            this.group = id % 100;
+            this.amount = id / 100.0;
+        }
+    }
+
+    /**
+     * The same record as a DPL entity.
+     */
+    @Entity
+    static class RecordEntity {
+
+        @PrimaryKey
+        int id;
+        String name;
+        long timestamp;
+        int group;
+        double amount;
+
+        RecordEntity() {
+        }
+
+        RecordEntity(int id) {
+            this.id = id;
+            this.name = "record number " + id;
+            this.timestamp = 1000000L * id;
+            this.group = id % 100;
+            this.amount = id / 100.0;
+        }
+    }
+
+    /**
+     * Writes and reads back records with an entry binding, one put and one
+     * get per operation.
+     */
+    private static abstract class RecordBenchmark extends Benchmark {
+
+        private Database db;
+        private EntryBinding<Record> binding;
+
+        RecordBenchmark(String name) {
+            super(name);
+        }
+
+        abstract EntryBinding<Record> createBinding(Environment env)
+            throws Exception;
+
+        @Override
+        public void setUp(Environment env, int records)
+            throws Exception {
+
+            super.setUp(env, records);
+            binding = createBinding(env);
+            DatabaseConfig dbConfig = new DatabaseConfig();
+            dbConfig.setAllowCreate(true);
+            dbConfig.setType(DatabaseType.BTREE);
+            db = env.openDatabase(null, "bench.db", null, dbConfig);
+            DatabaseEntry key = new DatabaseEntry(new byte[4]);
+            DatabaseEntry data = new DatabaseEntry();
+            for (int i = 0; i < records; i++) {
+                putKey(key.getData(), i);
+                binding.objectToEntry(new Record(i), data);
+                db.put(null, key, data);
+            }
+        }
+
+        public int run()
+            throws Exception {
+
+            DatabaseEntry key = new DatabaseEntry(new byte[4]);
+            DatabaseEntry data = new DatabaseEntry();
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                int id = nextKey();
+                putKey(key.getData(), id);
+                binding.objectToEntry(new Record(id), data);
+                db.put(null, key, data);
+
+                putKey(key.getData(), nextKey());
+                DatabaseEntry found = new DatabaseEntry();
+                db.get(null, key, found, null);
+                consume(binding.entryToObject(found));
+            }
+            return OPS_PER_RUN;
+        }
+
+        @Override
+        public void tearDown()
+            throws Exception {
+
+            db.close();
+        }
+    }
+
+    /**
+     * Overwrites records in a database with the given number of secondary
+     * indexes, each keyed on four bytes of the data item, so that every put
+     * moves an entry in each index.
+     */
+    private static class SecondaryBenchmark extends DatabaseBenchmark {
+
+        private final int nSecondaries;
+        private final SecondaryDatabase[] secondaries;
+        private int version;
+
+        SecondaryBenchmark(String name, int nSecondaries) {
+            super(name);
+            this.nSecondaries = nSecondaries;
+            this.secondaries = new SecondaryDatabase[nSecondaries];
+        }
+
+        @Override
+        public void setUp(Environment env, int records)
+            throws Exception {
+
+            super.setUp(env, records);
+            for (int i = 0; i < nSecondaries; i++) {
+                final int offset = i * 4;
+                SecondaryConfig secConfig = new SecondaryConfig();
+                secConfig.setAllowCreate(true);
+                secConfig.setType(DatabaseType.BTREE);
+                secConfig.setSortedDuplicates(true);
+                secConfig.setAllowPopulate(true);
+                secConfig.setKeyCreator(new SecondaryKeyCreator() {
+                    public boolean createSecondaryKey(
+                        SecondaryDatabase secondary,
+                        DatabaseEntry key,
+                        DatabaseEntry data,
+                        DatabaseEntry result) {
+
+                        result.setData(data.getData(),
+                                       data.getOffset() + offset, 4);
+                        return true;
+                    }
+                });
+                secondaries[i] = env.openSecondaryDatabase(
+                    null, "secondary" + i + ".db", null, db, secConfig);
+            }
+        }
+
+        public int run()
+            throws Exception {
+
+            DatabaseEntry key = new DatabaseEntry(new byte[4]);
+            DatabaseEntry data = new DatabaseEntry(dataBytes(0));
+            for (int i = 0; i < OPS_PER_RUN; i++) {
+                putKey(key.getData(), nextKey());
+                version++;
+                for (int j = 0; j < nSecondaries; j++) {
+                    putKey(data.getData(), j * 4, version);
+                }
+                db.put(null, key, data);
+            }
+            return OPS_PER_RUN;
+        }
+
+        @Override
+        public void tearDown()
+            throws Exception {
+
+            for (SecondaryDatabase secondary : secondaries) {
+                secondary.close();
+            }
+            super.tearDown();
+        }
+    }
+}
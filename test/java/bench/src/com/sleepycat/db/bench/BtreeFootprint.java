@@ -0,0 +1,224 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Random;
+
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.db.BtreePrefixCalculator;
+import com.sleepycat.db.BtreeStats;
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseConfig;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DatabaseType;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+import com.sleepycat.db.NativeComparator;
+import com.sleepycat.db.NativePrefixCalculator;
+
+/**
+ * Reports the size of a string-keyed Btree under each key order, prefix and
+ * compression configuration.
+ *
+ * <p>The same records, whose keys are tuple strings with long common
+ * prefixes, are loaded in random order into a database for each
+ * configuration.  For each, the number of leaf and internal pages, how full
+ * they are, and the space the internal pages need in the cache are printed,
+ * with the time taken to load.  A Java comparator turns off the library's
+ * default prefix truncation, which {@link NativePrefixCalculator} restores
+ * for a {@link NativeComparator}; the library's built-in compression
+ * compresses the leaf pages.</p>
+ *
+ * <pre>
+ * java com.sleepycat.db.bench.BtreeFootprint
+ *     [-records n] [-pagesize n] [-dir path]
+ * </pre>
+ */
+public class BtreeFootprint {
+
+    private int records = 200000;
+    private int pageSize = 4096;
+    private File parentDir = new File(System.getProperty("java.io.tmpdir"));
+
+    public static void main(String[] args) {
+        try {
+            BtreeFootprint footprint = new BtreeFootprint();
+            footprint.parseArgs(args);
+            footprint.runAll();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(
+                "usage: java " + BtreeFootprint.class.getName() +
+                "\n    [-records n] [-pagesize n] [-dir path]");
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            String arg = args[i];
+            if (i == args.length - 1) {
+                throw new IllegalArgumentException("Missing value: " + arg);
+            }
+            String val = args[i + 1];
+            try {
+                if (arg.equals("-records")) {
+                    records = Integer.parseInt(val);
+                } else if (arg.equals("-pagesize")) {
+                    pageSize = Integer.parseInt(val);
+                } else if (arg.equals("-dir")) {
+                    parentDir = new File(val);
+                } else {
+                    throw new IllegalArgumentException(
+                        "Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + arg);
+            }
+        }
+    }
+
+    private void runAll()
+        throws Exception {
+
+        final NativeComparator order = NativeComparator.LEXICOGRAPHIC;
+        NativePrefixCalculator prefix = new NativePrefixCalculator(order);
+        Comparator<byte[]> javaOrder = new Comparator<byte[]>() {
+            public int compare(byte[] a, byte[] b) {
+                return order.compare(a, b);
+            }
+        };
+
+        System.out.println("records=" + records + " pagesize=" + pageSize);
+        System.out.println(pad("configuration", 26) + pad("leaf", 9) +
+                           pad("fill", 7) + pad("internal", 10) +
+                           pad("fill", 7) + pad("internalKB", 12) +
+                           pad("totalKB", 10) + pad("load ms", 8));
+        run("default", null, null, false);
+        run("javaComparator", javaOrder, null, false);
+        run("nativeComparator", order, null, false);
+        run("nativeComparator+prefix", order, prefix, false);
+        run("default+compress", null, null, true);
+        run("native+prefix+compress", order, prefix, true);
+    }
+
+    private void run(String name,
+                     Comparator<byte[]> comparator,
+                     BtreePrefixCalculator prefix,
+                     boolean compress)
+        throws Exception {
+
+        File dir = File.createTempFile("dbfoot", "", parentDir);
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        Environment env = null;
+        try {
+            EnvironmentConfig envConfig = new EnvironmentConfig();
+            envConfig.setAllowCreate(true);
+            envConfig.setInitializeCache(true);
+            envConfig.setPrivate(true);
+            envConfig.setCacheSize(256 * 1024 * 1024);
+            env = new Environment(dir, envConfig);
+
+            DatabaseConfig dbConfig = new DatabaseConfig();
+            dbConfig.setAllowCreate(true);
+            dbConfig.setType(DatabaseType.BTREE);
+            dbConfig.setPageSize(pageSize);
+            dbConfig.setBtreeComparator(comparator);
+            dbConfig.setBtreePrefixCalculator(prefix);
+            dbConfig.setBtreeCompressDefault(compress);
+            Database db = env.openDatabase(null, "foot.db", null, dbConfig);
+
+            long start = System.nanoTime();
+            load(db);
+            long loadMs = (System.nanoTime() - start) / 1000000;
+
+            BtreeStats stats = (BtreeStats) db.getStats(null, null);
+            long leafBytes = (long) stats.getLeafPages() * pageSize;
+            long intBytes = (long) stats.getIntPages() * pageSize;
+            System.out.println(
+                pad(name, 26) +
+                pad(String.valueOf(stats.getLeafPages()), 9) +
+                pad(fill(leafBytes, stats.getLeafPagesFree()), 7) +
+                pad(String.valueOf(stats.getIntPages()), 10) +
+                pad(fill(intBytes, stats.getIntPagesFree()), 7) +
+                pad(String.valueOf(intBytes / 1024), 12) +
+                pad(String.valueOf((long) stats.getPageCount() *
+                                   pageSize / 1024), 10) +
+                pad(String.valueOf(loadMs), 8));
+            db.close();
+        } finally {
+            if (env != null) {
+                env.close();
+            }
+            removeDir(dir);
+        }
+    }
+
+    /*
+     * Writes the records in a fixed random order, so that every
+     * configuration gets the same page splits it would get in use.
+     */
+    private void load(Database db)
+        throws Exception {
+
+        int[] order = new int[records];
+        for (int i = 0; i < records; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(42);
+        for (int i = records - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry(new byte[16]);
+        for (int i = 0; i < records; i++) {
+            int id = order[i];
+            TupleOutput out = new TupleOutput();
+            out.writeString("tenant-" + (id % 97) + "/accounts/customer-" +
+                            id + "/profile");
+            key.setData(out.getBufferBytes(), 0, out.getBufferLength());
+            db.put(null, key, data);
+        }
+    }
+
+    private static String fill(long bytes, long free) {
+        if (bytes == 0) {
+            return "-";
+        }
+        return String.format("%.0f%%", 100.0 * (bytes - free) / bytes);
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder buf = new StringBuilder(s);
+        while (buf.length() < width) {
+            buf.append(' ');
+        }
+        return buf.toString();
+    }
+
+    private static void removeDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
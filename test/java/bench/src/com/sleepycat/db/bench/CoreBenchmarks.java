@@ -0,0 +1,279 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.sleepycat.db.BatchConfig;
+import com.sleepycat.db.BatchWriter;
+import com.sleepycat.db.Cursor;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.MultipleKeyDataEntry;
+import com.sleepycat.db.MultipleKeyNIODataEntry;
+import com.sleepycat.db.OperationStatus;
+import com.sleepycat.db.ScanBatch;
+
+/**
+ * Benchmarks of the core API: single gets and puts with byte array and NIO
+ * entries, bulk puts, and cursor scans with single, bulk and NIO bulk
+ * retrieval.
+ */
+public class CoreBenchmarks {
+
+    private static final int BULK_BUFFER_SIZE = 256 * 1024;
+
+    static void addTo(List<Benchmark> list) {
+
+        list.add(new DatabaseBenchmark("get.bytes") {
+            public int run()
+                throws Exception {
+
+                DatabaseEntry key = new DatabaseEntry(new byte[4]);
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    DatabaseEntry data = new DatabaseEntry();
+                    putKey(key.getData(), nextKey());
+                    db.get(null, key, data, null);
+                    consume(data.getData());
+                }
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("get.userBuffer") {
+            public int run()
+                throws Exception {
+
+                DatabaseEntry key = new DatabaseEntry(new byte[4]);
+                DatabaseEntry data = new DatabaseEntry(new byte[DATA_SIZE]);
+                data.setUserBuffer(DATA_SIZE, true);
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    putKey(key.getData(), nextKey());
+                    db.get(null, key, data, null);
+                    consume(data.getData()[0]);
+                }
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("get.nio") {
+            public int run()
+                throws Exception {
+
+                ByteBuffer keyBuf = ByteBuffer.allocateDirect(4);
+                DatabaseEntry key = new DatabaseEntry(keyBuf);
+                DatabaseEntry data =
+                    new DatabaseEntry(ByteBuffer.allocateDirect(DATA_SIZE));
+                data.setUserBuffer(DATA_SIZE, true);
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    keyBuf.putInt(0, nextKey());
+                    db.get(null, key, data, null);
+                    consume(data.getDataNIO().get(0));
+                }
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("put.bytes") {
+            public int run()
+                throws Exception {
+
+                DatabaseEntry key = new DatabaseEntry(new byte[4]);
+                DatabaseEntry data = new DatabaseEntry(dataBytes(0));
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    putKey(key.getData(), nextKey());
+                    db.put(null, key, data);
+                }
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("put.nio") {
+            public int run()
+                throws Exception {
+
+                ByteBuffer keyBuf = ByteBuffer.allocateDirect(4);
+                ByteBuffer dataBuf = ByteBuffer.allocateDirect(DATA_SIZE);
+                dataBuf.put(dataBytes(0));
+                dataBuf.clear();
+                DatabaseEntry key = new DatabaseEntry(keyBuf);
+                DatabaseEntry data = new DatabaseEntry(dataBuf);
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    keyBuf.putInt(0, nextKey());
+                    db.put(null, key, data);
+                }
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("put.bulk") {
+            public int run()
+                throws Exception {
+
+                MultipleKeyDataEntry bulk =
+                    new MultipleKeyDataEntry(new byte[BULK_BUFFER_SIZE]);
+                byte[] key = new byte[4];
+                byte[] data = dataBytes(0);
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    putKey(key, nextKey());
+                    bulk.append(key, data);
+                }
+                db.putMultipleKey(null, bulk, true);
+                return OPS_PER_RUN;
+            }
+        });
+
+        list.add(new DatabaseBenchmark("put.batchWriter") {
+            private BatchWriter writer;
+
+            @Override
+            public void setUp(Environment env, int records)
+                throws Exception {
+
+                super.setUp(env, records);
+                writer = db.openBatchWriter(null);
+            }
+
+            public int run()
+                throws Exception {
+
+                DatabaseEntry key = new DatabaseEntry(new byte[4]);
+                DatabaseEntry data = new DatabaseEntry(dataBytes(0));
+                for (int i = 0; i < OPS_PER_RUN; i++) {
+                    putKey(key.getData(), nextKey());
+                    writer.put(key, data);
+                }
+                writer.flush();
+                return OPS_PER_RUN;
+            }
+
+            @Override
+            public void tearDown()
+                throws Exception {
+
+                writer.close();
+                super.tearDown();
+            }
+        });
+
+        list.add(new ScanBenchmark("scan.single") {
+            int scan(Cursor cursor, DatabaseEntry key)
+                throws Exception {
+
+                DatabaseEntry data = new DatabaseEntry();
+                int n = 0;
+                OperationStatus status =
+                    cursor.getSearchKeyRange(key, data, null);
+                while (status == OperationStatus.SUCCESS && n < OPS_PER_RUN) {
+                    consume(data.getData());
+                    n++;
+                    status = cursor.getNext(key, data, null);
+                }
+                return n;
+            }
+        });
+
+        list.add(new ScanBenchmark("scan.bulk") {
+            int scan(Cursor cursor, DatabaseEntry key)
+                throws Exception {
+
+                MultipleKeyDataEntry bulk =
+                    new MultipleKeyDataEntry(new byte[BULK_BUFFER_SIZE]);
+                bulk.setUserBuffer(BULK_BUFFER_SIZE, true);
+                return decode(cursor, key, bulk);
+            }
+        });
+
+        list.add(new ScanBenchmark("scan.bulkNIO") {
+            int scan(Cursor cursor, DatabaseEntry key)
+                throws Exception {
+
+                MultipleKeyNIODataEntry bulk = new MultipleKeyNIODataEntry(
+                    ByteBuffer.allocateDirect(BULK_BUFFER_SIZE));
+                bulk.setUserBuffer(BULK_BUFFER_SIZE, true);
+                return decode(cursor, key, bulk);
+            }
+        });
+
+        list.add(new ScanBenchmark("scan.api") {
+            int scan(Cursor cursor, DatabaseEntry key)
+                throws Exception {
+
+                BatchConfig config = new BatchConfig();
+                config.setInitialBufferSize(BULK_BUFFER_SIZE);
+                ScanBatch scan = cursor.scan(key, null, config);
+                DatabaseEntry data = new DatabaseEntry();
+                int n = 0;
+                try {
+                    while (n < OPS_PER_RUN && scan.next(key, data)) {
+                        consume(data.getSize());
+                        n++;
+                    }
+                } finally {
+                    scan.close();
+                }
+                return n;
+            }
+        });
+    }
+
+    /**
+     * Reads up to OPS_PER_RUN records with a cursor, starting at a random
+     * key.
+     */
+    private static abstract class ScanBenchmark extends DatabaseBenchmark {
+
+        ScanBenchmark(String name) {
+            super(name);
+        }
+
+        abstract int scan(Cursor cursor, DatabaseEntry key)
+            throws Exception;
+
+        public int run()
+            throws Exception {
+
+            int start = Math.min(nextKey(), getRecords() - OPS_PER_RUN);
+            Cursor cursor = db.openCursor(null, null);
+            try {
+                return scan(cursor, new DatabaseEntry(keyBytes(start)));
+            } finally {
+                cursor.close();
+            }
+        }
+
+        /*
+         * Reads records with bulk gets from the key onward, decoding them in
+         * place, until OPS_PER_RUN have been read or the database ends.
+         */
+        int decode(Cursor cursor, DatabaseEntry key, DatabaseEntry bulk)
+            throws Exception {
+
+            DatabaseEntry k = new DatabaseEntry();
+            DatabaseEntry d = new DatabaseEntry();
+            int n = 0;
+            OperationStatus status =
+                cursor.getSearchKeyRange(key, bulk, null);
+            while (status == OperationStatus.SUCCESS) {
+                boolean more = (bulk instanceof MultipleKeyDataEntry) ?
+                    ((MultipleKeyDataEntry) bulk).next(k, d) :
+                    ((MultipleKeyNIODataEntry) bulk).next(k, d);
+                if (more) {
+                    consume(d.getSize());
+                    if (++n == OPS_PER_RUN) {
+                        break;
+                    }
+                } else {
+                    status = cursor.getNext(key, bulk, null);
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.db.bench;
+
+import com.sleepycat.db.Database;
+import com.sleepycat.db.DatabaseConfig;
+import com.sleepycat.db.DatabaseType;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.MultipleKeyDataEntry;
+
+/**
+ * A benchmark over a single Btree database loaded with records whose keys
+ * are the integers from zero to the number of records, encoded by {@link
+ * #keyBytes}, and whose data items are {@link #DATA_SIZE} bytes long.
+ */
+public abstract class DatabaseBenchmark extends Benchmark {
+
+    protected Environment env;
+    protected Database db;
+
+    protected DatabaseBenchmark(String name) {
+        super(name);
+    }
+
+    @Override
+    public void setUp(Environment env, int records)
+        throws Exception {
+
+        super.setUp(env, records);
+        this.env = env;
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setType(DatabaseType.BTREE);
+        db = env.openDatabase(null, "bench.db", null, dbConfig);
+        load(db, 0, records);
+    }
+
+    @Override
+    public void tearDown()
+        throws Exception {
+
+        db.close();
+    }
+
+    /**
+     * Writes the records with keys from start, inclusive, to end, exclusive,
+     * with bulk puts.
+     */
+    protected static void load(Database db, int start, int end)
+        throws Exception {
+
+        MultipleKeyDataEntry bulk =
+            new MultipleKeyDataEntry(new byte[1024 * 1024]);
+        byte[] key = new byte[4];
+        for (int i = start; i < end; i++) {
+            putKey(key, i);
+            if (!bulk.append(key, dataBytes(i))) {
+                db.putMultipleKey(null, bulk, true);
+                bulk = new MultipleKeyDataEntry(new byte[1024 * 1024]);
+                bulk.append(key, dataBytes(i));
+            }
+        }
+        db.putMultipleKey(null, bulk, true);
+    }
+}
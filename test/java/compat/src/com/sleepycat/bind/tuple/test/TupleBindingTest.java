@@ -400,6 +400,51 @@ public class TupleBindingTest {
         assertEquals(1000, binding.bufSize);
     }
 
+    @Test
+    public void testLearnedBufferSize() {
+
+        CaptureSizeBinding binding = new CaptureSizeBinding();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i += 1) {
+            builder.append('a');
+        }
+        String big = builder.toString();
+
+        /* The size of the largest recent record is used. */
+        binding.objectToEntry(big, buffer);
+        binding.objectToEntry("x", buffer);
+        assertEquals(big.length() + 1, binding.bufSize);
+        assertEquals("x", binding.entryToObject(buffer));
+
+        /* The size decays toward the size of smaller records. */
+        for (int i = 0; i < 100; i += 1) {
+            binding.objectToEntry("x", buffer);
+        }
+        assertTrue(binding.bufSize < 10);
+    }
+
+    @Test
+    public void testBufferReuse() {
+
+        CaptureSizeBinding binding = new CaptureSizeBinding();
+        binding.setTupleBufferReuse(true);
+        assertTrue(binding.getTupleBufferReuse());
+
+        binding.objectToEntry("x", buffer);
+        binding.objectToEntry("aaaaaaaaaaaaaaaaaaaaaa", buffer);
+        assertEquals("aaaaaaaaaaaaaaaaaaaaaa", binding.entryToObject(buffer));
+
+        /* The grown buffer is kept for the next record of this thread. */
+        byte[] bytes = buffer.getData();
+        binding.objectToEntry("y", buffer);
+        assertSame(bytes, buffer.getData());
+        assertEquals("y", binding.entryToObject(buffer));
+
+        binding.setTupleBufferReuse(false);
+        binding.objectToEntry("z", buffer);
+        assertTrue(bytes != buffer.getData());
+    }
+
     private class CaptureSizeBinding extends TupleBinding {
 
         int bufSize;
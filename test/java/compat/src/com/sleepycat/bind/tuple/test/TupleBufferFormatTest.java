@@ -0,0 +1,304 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.bind.tuple.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleBufferBinding;
+import com.sleepycat.bind.tuple.TupleBufferInput;
+import com.sleepycat.bind.tuple.TupleBufferOutput;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.db.DatabaseEntry;
+import com.sleepycat.db.DirectBufferPool;
+
+/**
+ * Checks that TupleBufferOutput writes exactly the bytes written by
+ * TupleOutput, and that TupleBufferInput reads them back, for both direct and
+ * heap buffers.
+ */
+public class TupleBufferFormatTest {
+
+    private static final String[] STRINGS = {
+        "", "abc", "\u0000", "\u007f\u0080", "\u07ff\u0800\uffff",
+    };
+
+    private static final long[] LONGS = {
+        Long.MIN_VALUE, Integer.MIN_VALUE - 1L, -70000, -120, -1, 0, 1, 119,
+        120, 255, 256, 70000, Integer.MAX_VALUE + 1L, Long.MAX_VALUE,
+    };
+
+    private static void writeAll(TupleOutput out) {
+
+        for (String s : STRINGS) {
+            out.writeString(s);
+        }
+        out.writeString((String) null);
+        out.writeBytes("bytes");
+        out.writeChar('x');
+        out.writeBoolean(true);
+        for (long v : LONGS) {
+            out.writeByte((int) v);
+            out.writeShort((int) v);
+            out.writeInt((int) v);
+            out.writeLong(v);
+            out.writeFloat(v);
+            out.writeDouble(v);
+            out.writeSortedFloat(v);
+            out.writeSortedDouble(v);
+            out.writeUnsignedByte((int) v & 0xff);
+            out.writeUnsignedShort((int) v & 0xffff);
+            out.writeUnsignedInt(v & 0xffffffffL);
+            out.writePackedInt((int) v);
+            out.writePackedLong(v);
+            out.writeSortedPackedInt((int) v);
+            out.writeSortedPackedLong(v);
+            out.writeBigInteger(BigInteger.valueOf(v));
+        }
+    }
+
+    private static void writeAll(TupleBufferOutput out) {
+
+        for (String s : STRINGS) {
+            out.writeString(s);
+        }
+        out.writeString((String) null);
+        out.writeBytes("bytes");
+        out.writeChar('x');
+        out.writeBoolean(true);
+        for (long v : LONGS) {
+            out.writeByte((int) v);
+            out.writeShort((int) v);
+            out.writeInt((int) v);
+            out.writeLong(v);
+            out.writeFloat(v);
+            out.writeDouble(v);
+            out.writeSortedFloat(v);
+            out.writeSortedDouble(v);
+            out.writeUnsignedByte((int) v & 0xff);
+            out.writeUnsignedShort((int) v & 0xffff);
+            out.writeUnsignedInt(v & 0xffffffffL);
+            out.writePackedInt((int) v);
+            out.writePackedLong(v);
+            out.writeSortedPackedInt((int) v);
+            out.writeSortedPackedLong(v);
+            out.writeBigInteger(BigInteger.valueOf(v));
+        }
+    }
+
+    private static void readAll(TupleBufferInput in) {
+
+        for (String s : STRINGS) {
+            assertEquals(s, in.readString());
+        }
+        assertNull(in.readString());
+        assertEquals("bytes", in.readBytes(5));
+        assertEquals('x', in.readChar());
+        assertEquals(true, in.readBoolean());
+        for (long v : LONGS) {
+            assertEquals((byte) v, in.readByte());
+            assertEquals((short) v, in.readShort());
+            assertEquals((int) v, in.readInt());
+            assertEquals(v, in.readLong());
+            assertEquals((float) v, in.readFloat(), 0);
+            assertEquals((double) v, in.readDouble(), 0);
+            assertEquals((float) v, in.readSortedFloat(), 0);
+            assertEquals((double) v, in.readSortedDouble(), 0);
+            assertEquals((int) v & 0xff, in.readUnsignedByte());
+            assertEquals((int) v & 0xffff, in.readUnsignedShort());
+            assertEquals(v & 0xffffffffL, in.readUnsignedInt());
+            assertEquals((int) v, in.readPackedInt());
+            assertEquals(v, in.readPackedLong());
+            assertEquals((int) v, in.readSortedPackedInt());
+            assertEquals(v, in.readSortedPackedLong());
+            assertEquals(BigInteger.valueOf(v), in.readBigInteger());
+        }
+        assertEquals(0, in.available());
+    }
+
+    private static byte[] toBytes(TupleBufferOutput out) {
+
+        byte[] bytes = new byte[out.getBufferLength()];
+        ByteBuffer buf = out.getBuffer().duplicate();
+        buf.clear();
+        buf.position(out.getBufferOffset());
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private void formatTest(ByteBuffer buf, int offset) {
+
+        TupleOutput expect = new TupleOutput();
+        writeAll(expect);
+
+        TupleBufferOutput out = new TupleBufferOutput(buf, offset);
+        writeAll(out);
+        assertEquals(buf.isDirect(), out.getBuffer().isDirect());
+        assertEquals(expect.size(), out.getBufferLength());
+        assertTrue(Arrays.equals(expect.toByteArray(), toBytes(out)));
+
+        readAll(new TupleBufferInput(out.getBuffer(), offset,
+                                     out.getBufferLength()));
+    }
+
+    @Test
+    public void testDirectFormat() {
+
+        formatTest(ByteBuffer.allocateDirect(8192), 0);
+        formatTest(ByteBuffer.allocateDirect(8192), 7);
+    }
+
+    @Test
+    public void testHeapFormat() {
+
+        formatTest(ByteBuffer.allocate(8192), 0);
+        formatTest(ByteBuffer.allocate(8192), 7);
+    }
+
+    @Test
+    public void testGrow() {
+
+        ByteBuffer small = ByteBuffer.allocateDirect(4);
+        formatTest(small, 2);
+
+        TupleBufferOutput out = new TupleBufferOutput(small, 0);
+        out.writeInt(1);
+        assertSame(small, out.getBuffer());
+        out.writeInt(2);
+        assertTrue(out.getBuffer() != small);
+        assertEquals(8, out.getBufferLength());
+    }
+
+    @Test
+    public void testEntry() {
+
+        TupleOutput expect = new TupleOutput();
+        writeAll(expect);
+
+        /* A tuple written by TupleOutput is read in place. */
+        DatabaseEntry entry = new DatabaseEntry();
+        TupleBinding.outputToEntry(expect, entry);
+        readAll(TupleBufferInput.entryToInput(entry));
+
+        /* A tuple written into an entry's direct buffer is not copied. */
+        ByteBuffer buf = ByteBuffer.allocateDirect(8192);
+        entry.setDataNIO(buf);
+        TupleBufferOutput out = new TupleBufferOutput(buf, 0);
+        writeAll(out);
+        out.toEntry(entry);
+        assertSame(buf, entry.getDataNIO());
+        assertEquals(expect.size(), entry.getSize());
+        readAll(TupleBufferInput.entryToInput(entry));
+
+        /* And is readable by TupleInput. */
+        byte[] bytes = toBytes(out);
+        TupleInput in = new TupleInput(bytes);
+        assertEquals(STRINGS[0], in.readString());
+        assertEquals(STRINGS[1], in.readString());
+    }
+
+    private static TupleBufferBinding<Long> longBinding() {
+
+        return new TupleBufferBinding<Long>() {
+            public Long entryToObject(TupleBufferInput input) {
+                return input.readLong();
+            }
+            public void objectToEntry(Long object, TupleBufferOutput output) {
+                output.writeLong(object);
+            }
+        };
+    }
+
+    @Test
+    public void testBinding() {
+
+        TupleBufferBinding<Long> binding = longBinding();
+        DatabaseEntry entry = new DatabaseEntry();
+        ByteBuffer first = null;
+        for (long v : LONGS) {
+            binding.objectToEntry(v, entry);
+            assertTrue(entry.getDataNIO().isDirect());
+            assertEquals(8, entry.getSize());
+            assertEquals(Long.valueOf(v), binding.entryToObject(entry));
+
+            /* Without a pool, the entry keeps the buffer it borrowed. */
+            assertNotNull(entry.getDataNIOPool());
+            if (first == null) {
+                first = entry.getDataNIO();
+            }
+            assertSame(first, entry.getDataNIO());
+        }
+        entry.releaseDataNIO();
+    }
+
+    @Test
+    public void testBindingSharedBuffer() {
+
+        TupleBufferBinding<Long> binding = longBinding();
+        ByteBuffer shared = ByteBuffer.allocateDirect(32);
+        for (int i = 0; i < shared.capacity(); i += 1) {
+            shared.put(i, (byte) 0x7f);
+        }
+
+        /* Only the bytes of the entry are overwritten. */
+        DatabaseEntry entry = new DatabaseEntry();
+        entry.setDataNIO(shared, 8, 8);
+        binding.objectToEntry(42L, entry);
+        assertEquals(Long.valueOf(42), binding.entryToObject(entry));
+        assertEquals(8, entry.getSize());
+        for (int i = 0; i < shared.capacity(); i += 1) {
+            if (i < 8 || i >= 16) {
+                assertEquals(0x7f, shared.get(i));
+            }
+        }
+        assertEquals(42L, new TupleBufferInput(shared, 8, 8).readLong());
+
+        /* A tuple that does not fit is written elsewhere. */
+        ByteBuffer copy = ByteBuffer.allocateDirect(32);
+        copy.put(shared.duplicate()).clear();
+        entry.setDataNIO(shared, 20, 4);
+        binding.objectToEntry(7L, entry);
+        assertEquals(Long.valueOf(7), binding.entryToObject(entry));
+        assertEquals(copy, shared.duplicate().clear());
+        assertNotSame(shared, entry.getDataNIO());
+    }
+
+    @Test
+    public void testBindingPool() {
+
+        TupleBufferBinding<Long> binding = longBinding();
+        DirectBufferPool pool = new DirectBufferPool();
+        binding.setBufferPool(pool);
+
+        /* A borrowed buffer is reused from its start. */
+        DatabaseEntry entry = new DatabaseEntry();
+        binding.objectToEntry(1L, entry);
+        ByteBuffer borrowed = entry.getDataNIO();
+        assertSame(pool, entry.getDataNIOPool());
+        binding.objectToEntry(2L, entry);
+        assertSame(borrowed, entry.getDataNIO());
+        assertEquals(0, entry.getOffset());
+        assertEquals(Long.valueOf(2), binding.entryToObject(entry));
+
+        entry.releaseDataNIO();
+        assertNull(entry.getDataNIOPool());
+        assertNull(entry.getDataNIO());
+    }
+}
@@ -16,6 +16,8 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
@@ -25,6 +27,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sleepycat.collections.BackoffRetryPolicy;
 import com.sleepycat.collections.CurrentTransaction;
 import com.sleepycat.collections.StoredCollections;
 import com.sleepycat.collections.StoredContainer;
@@ -32,6 +35,7 @@ import com.sleepycat.collections.StoredIterator;
 import com.sleepycat.collections.StoredList;
 import com.sleepycat.collections.StoredSortedMap;
 import com.sleepycat.collections.TransactionRunner;
+import com.sleepycat.collections.TransactionRunnerStats;
 import com.sleepycat.collections.TransactionWorker;
 import com.sleepycat.compat.DbCompat;
 import com.sleepycat.db.Cursor;
@@ -43,6 +47,7 @@ import com.sleepycat.db.DatabaseException;
 import com.sleepycat.db.Environment;
 import com.sleepycat.db.EnvironmentConfig;
 import com.sleepycat.db.DeadlockException;
+import com.sleepycat.db.LockNotGrantedException;
 import com.sleepycat.db.OperationStatus;
 import com.sleepycat.db.Transaction;
 import com.sleepycat.db.TransactionConfig;
@@ -420,6 +425,83 @@ public class TransactionTest extends TestBase {
         assertNull(currentTxn.getTransaction());
     }
 
+    @Test
+    public void testRetryPolicy()
+        throws Exception {
+
+        /* Hold a write lock so that the worker cannot get it. */
+        Transaction blocker = env.beginTransaction(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        testStore.getKeyBinding().objectToEntry(ONE, key);
+        testStore.getValueBinding().objectToEntry(ONE, value);
+        store.put(blocker, key, value);
+
+        TransactionRunner runner = new TransactionRunner(env);
+        TransactionConfig config = new TransactionConfig();
+        config.setNoWait(true);
+        runner.setTransactionConfig(config);
+        runner.setMaxRetries(2);
+        assertNull(runner.getRetryPolicy());
+        runner.setRetryPolicy(new BackoffRetryPolicy(1, 4, 100));
+
+        final List<Integer> priorities = new ArrayList<Integer>();
+        TransactionWorker worker = new TransactionWorker() {
+            public void doWork() throws Exception {
+                priorities.add
+                    (currentTxn.getTransaction().getPriority());
+                map.put(ONE, TWO);
+            }
+        };
+        try {
+            runner.run(worker);
+            fail();
+        } catch (LockNotGrantedException expected) {
+        }
+        assertEquals(Arrays.asList(100, 200, 300), priorities);
+
+        TransactionRunnerStats stats = runner.getStats(true);
+        assertEquals(2, stats.getRetries());
+        assertEquals(3, stats.getLockTimeouts());
+        assertEquals(0, stats.getDeadlocks());
+        assertTrue(stats.getRetryWaitTime() >= 0);
+        assertEquals(0, runner.getStats(false).getRetries());
+
+        blocker.abort();
+        priorities.clear();
+        runner.run(worker);
+        assertEquals(Arrays.asList(100), priorities);
+        assertEquals(TWO, map.get(ONE));
+        assertEquals(0, runner.getStats(false).getRetries());
+    }
+
+    @Test
+    public void testBackoffRetryPolicy() {
+
+        BackoffRetryPolicy policy = new BackoffRetryPolicy(8, 100, 50);
+        for (int i = 0; i < 100; i += 1) {
+            long delay = policy.getRetryDelay(null, 0);
+            assertTrue(delay >= 4 && delay <= 8);
+            delay = policy.getRetryDelay(null, 2);
+            assertTrue(delay >= 16 && delay <= 32);
+            delay = policy.getRetryDelay(null, 40);
+            assertTrue(delay >= 50 && delay <= 100);
+        }
+        assertEquals(0, policy.getPriority(0));
+        assertEquals(150, policy.getPriority(1));
+        assertEquals(200, policy.getPriority(2));
+
+        policy = new BackoffRetryPolicy(0, 0, 0);
+        assertEquals(0, policy.getRetryDelay(null, 5));
+        assertEquals(0, policy.getPriority(5));
+
+        try {
+            new BackoffRetryPolicy(10, 5, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     @Test
     public void testReadCommittedCollection()
         throws Exception {
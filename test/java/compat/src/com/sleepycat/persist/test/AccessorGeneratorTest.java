@@ -0,0 +1,224 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.test;
+
+import static com.sleepycat.persist.model.Relationship.MANY_TO_ONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+import com.sleepycat.db.util.DualTestCase;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+import com.sleepycat.persist.model.SecondaryKey;
+import com.sleepycat.util.test.SharedTestUtils;
+import com.sleepycat.util.test.TestEnv;
+
+/**
+ * Tests the accessors generated for unenhanced classes, and the reflection
+ * used instead when com.sleepycat.persist.reflectionAccessors is true.
+ */
+public class AccessorGeneratorTest extends DualTestCase {
+
+    private static final String DISABLE_PROPERTY =
+        "com.sleepycat.persist.reflectionAccessors";
+
+    private File envHome;
+    private Environment env;
+    private EntityStore store;
+
+    @Before
+    public void setUp()
+        throws Exception {
+
+        super.setUp();
+        envHome = SharedTestUtils.getTestDir();
+        EnvironmentConfig envConfig = TestEnv.TXN.getConfig();
+        envConfig.setAllowCreate(true);
+        env = create(envHome, envConfig);
+    }
+
+    @After
+    public void tearDown()
+        throws Exception {
+
+        System.clearProperty(DISABLE_PROPERTY);
+        if (store != null) {
+            store.close();
+        }
+        if (env != null) {
+            close(env);
+        }
+        super.tearDown();
+        envHome = null;
+        env = null;
+        store = null;
+    }
+
+    /**
+     * Returns whether this JVM can define the hidden classes that the
+     * accessors are generated as.
+     */
+    private static boolean hiddenClassesSupported() {
+        try {
+            Class.forName("java.lang.invoke.MethodHandles$Lookup")
+                .getMethod("defineHiddenClass", byte[].class, Boolean.TYPE,
+                           Class.forName("[Ljava.lang.invoke." +
+                                         "MethodHandles$Lookup$ClassOption;"));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the same entities in a new store, reads them back and returns
+     * them in key order.
+     */
+    private Item[] readBack(String storeName)
+        throws Exception {
+
+        StoreConfig storeConfig = new StoreConfig();
+        storeConfig.setAllowCreate(true);
+        storeConfig.setTransactional(true);
+        store = new EntityStore(env, storeName, storeConfig);
+        PrimaryIndex<Long, Item> index =
+            store.getPrimaryIndex(Long.class, Item.class);
+        for (long i = 0; i < 5; i++) {
+            index.put(Item.create(i));
+        }
+        SecondaryIndex<String, Long, Item> byGroup =
+            store.getSecondaryIndex(index, String.class, "group");
+
+        Item[] items = new Item[5];
+        for (int i = 0; i < items.length; i++) {
+            Item.lastCaller = null;
+            items[i] = index.get((long) i);
+            assertNotNull(items[i]);
+            assertNotNull(Item.lastCaller);
+        }
+        assertEquals(3, byGroup.subIndex("group0").count());
+        store.close();
+        store = null;
+        return items;
+    }
+
+    private static boolean isReflection(String caller) {
+        return caller.startsWith("java.") ||
+               caller.startsWith("jdk.") ||
+               caller.startsWith("sun.");
+    }
+
+    @Test
+    public void testGeneratedAccessor()
+        throws Exception {
+
+        Item[] items = readBack("generated");
+        for (int i = 0; i < items.length; i++) {
+            items[i].check(i);
+        }
+        if (hiddenClassesSupported()) {
+            /* The private constructor is not called by reflection. */
+            assertFalse(Item.lastCaller, isReflection(Item.lastCaller));
+        }
+    }
+
+    @Test
+    public void testReflectionFallback()
+        throws Exception {
+
+        Item[] generated = readBack("generated");
+
+        System.setProperty(DISABLE_PROPERTY, "true");
+        Item[] reflected = readBack("reflected");
+        assertTrue(Item.lastCaller, isReflection(Item.lastCaller));
+
+        for (int i = 0; i < generated.length; i++) {
+            reflected[i].check(i);
+            assertEquals(generated[i].toString(), reflected[i].toString());
+        }
+    }
+
+    @Entity
+    static class Item {
+
+        /* The class that last called the private constructor. */
+        static String lastCaller;
+
+        @PrimaryKey
+        private long id;
+
+        @SecondaryKey(relate=MANY_TO_ONE)
+        private String group;
+
+        private boolean z;
+        private char c;
+        private byte b;
+        private short s;
+        private int i;
+        private float f;
+        private double d;
+        private Integer boxed;
+        private int[] ints;
+        private String[] strings;
+        private final String fin;
+
+        private Item() {
+            fin = null;
+            lastCaller = new Throwable().getStackTrace()[1].getClassName();
+        }
+
+        private Item(long id, String fin) {
+            this.id = id;
+            this.fin = fin;
+        }
+
+        static Item create(long id) {
+            Item item = new Item(id, "final" + id);
+            item.group = "group" + (id % 2);
+            item.z = (id % 2) == 1;
+            item.c = (char) ('a' + id);
+            item.b = (byte) -id;
+            item.s = (short) (id * 1000);
+            item.i = (int) (id << 20);
+            item.f = id / 4f;
+            item.d = id / 3.0;
+            item.boxed = (id == 0) ? null : Integer.valueOf((int) id);
+            item.ints = new int[] { (int) id, (int) -id };
+            item.strings = new String[] { "s" + id, null };
+            return item;
+        }
+
+        void check(long expectId) {
+            Item expect = create(expectId);
+            assertEquals(expect.toString(), toString());
+        }
+
+        @Override
+        public String toString() {
+            return id + " " + group + " " + z + " " + c + " " + b + " " +
+                s + " " + i + " " + f + " " + d + " " + boxed + " " +
+                Arrays.toString(ints) + " " + Arrays.toString(strings) + " " +
+                fin;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.test;
+
+import static com.sleepycat.persist.model.Relationship.MANY_TO_ONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+import com.sleepycat.db.Transaction;
+import com.sleepycat.db.util.DualTestCase;
+import com.sleepycat.persist.EntityCacheStats;
+import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+import com.sleepycat.persist.model.SecondaryKey;
+import com.sleepycat.util.test.SharedTestUtils;
+import com.sleepycat.util.test.TestEnv;
+
+/**
+ * Tests the entity cache configured with StoreConfig.setEntityCacheSize.
+ */
+public class EntityCacheTest extends DualTestCase {
+
+    private File envHome;
+    private Environment env;
+    private EntityStore store;
+    private PrimaryIndex<Long, Item> index;
+
+    @Before
+    public void setUp()
+        throws Exception {
+
+        super.setUp();
+        envHome = SharedTestUtils.getTestDir();
+        EnvironmentConfig envConfig = TestEnv.TXN.getConfig();
+        envConfig.setAllowCreate(true);
+        env = create(envHome, envConfig);
+    }
+
+    @After
+    public void tearDown()
+        throws Exception {
+
+        if (store != null) {
+            store.close();
+        }
+        if (env != null) {
+            close(env);
+        }
+        super.tearDown();
+        envHome = null;
+        env = null;
+        store = null;
+        index = null;
+    }
+
+    private void open(long cacheSize)
+        throws Exception {
+
+        StoreConfig storeConfig = new StoreConfig();
+        storeConfig.setAllowCreate(true);
+        storeConfig.setTransactional(true);
+        storeConfig.setEntityCacheSize(cacheSize);
+        store = new EntityStore(env, "foo", storeConfig);
+        index = store.getPrimaryIndex(Long.class, Item.class);
+        for (long i = 0; i < 10; i++) {
+            index.put(new Item(i, (int) (i % 2), "item" + i));
+        }
+    }
+
+    @Test
+    public void testDisabled()
+        throws Exception {
+
+        open(0);
+        assertEquals("item3", index.get(3L).name);
+        assertNull(store.getEntityCacheStats());
+    }
+
+    @Test
+    public void testHitsAndMisses()
+        throws Exception {
+
+        open(1024 * 1024);
+        Item first = index.get(3L);
+        Item second = index.get(3L);
+        assertEquals("item3", first.name);
+        assertEquals("item3", second.name);
+        /* Each read returns a new object. */
+        assertNotSame(first, second);
+        assertNull(index.get(100L));
+
+        EntityCacheStats stats = store.getEntityCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+        assertTrue(stats.getBytes() > 0);
+    }
+
+    @Test
+    public void testTransactionBypassesCache()
+        throws Exception {
+
+        open(1024 * 1024);
+        Transaction txn = env.beginTransaction(null, null);
+        assertEquals("item3", index.get(txn, 3L, null).name);
+        txn.commit();
+
+        EntityCacheStats stats = store.getEntityCacheStats();
+        assertEquals(0, stats.getHits());
+        assertEquals(0, stats.getMisses());
+        assertEquals(0, stats.getEntries());
+    }
+
+    @Test
+    public void testPutInvalidates()
+        throws Exception {
+
+        open(1024 * 1024);
+        assertEquals("item3", index.get(3L).name);
+        index.put(new Item(3, 1, "changed"));
+        assertEquals("changed", index.get(3L).name);
+
+        index.putNoReturn(new Item(3, 1, "again"));
+        assertEquals("again", index.get(3L).name);
+
+        EntityCacheStats stats = store.getEntityCacheStats();
+        assertEquals(0, stats.getHits());
+        assertEquals(2, stats.getInvalidations());
+    }
+
+    @Test
+    public void testDeleteInvalidates()
+        throws Exception {
+
+        open(1024 * 1024);
+        assertEquals("item3", index.get(3L).name);
+        index.delete(3L);
+        assertNull(index.get(3L));
+
+        /* Deleting by secondary key invalidates the primary key entries. */
+        assertEquals("item4", index.get(4L).name);
+        SecondaryIndex<Integer, Long, Item> byGroup =
+            store.getSecondaryIndex(index, Integer.class, "group");
+        byGroup.delete(0);
+        assertNull(index.get(4L));
+        assertEquals("item5", index.get(5L).name);
+    }
+
+    @Test
+    public void testCursorInvalidates()
+        throws Exception {
+
+        open(1024 * 1024);
+        assertEquals("item3", index.get(3L).name);
+        assertEquals("item4", index.get(4L).name);
+
+        Transaction txn = env.beginTransaction(null, null);
+        EntityCursor<Item> cursor = index.entities(txn, null);
+        for (Item item : cursor) {
+            if (item.id == 3) {
+                item.name = "updated";
+                cursor.update(item);
+            } else if (item.id == 4) {
+                cursor.delete();
+            }
+        }
+        cursor.close();
+        txn.commit();
+
+        assertEquals("updated", index.get(3L).name);
+        assertNull(index.get(4L));
+    }
+
+    @Test
+    public void testMapReadOnly()
+        throws Exception {
+
+        open(1024 * 1024);
+        assertEquals("item3", index.get(3L).name);
+        assertEquals("item3", index.map().get(3L).name);
+        try {
+            index.map().put(3L, new Item(3, 1, "changed"));
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        SecondaryIndex<Integer, Long, Item> byGroup =
+            store.getSecondaryIndex(index, Integer.class, "group");
+        try {
+            byGroup.sortedMap().remove(1);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals("item3", index.get(3L).name);
+    }
+
+    @Test
+    public void testMapWritableWithoutCache()
+        throws Exception {
+
+        open(0);
+        index.map().put(3L, new Item(3, 1, "changed"));
+        assertEquals("changed", index.get(3L).name);
+    }
+
+    @Test
+    public void testAbortedWrite()
+        throws Exception {
+
+        open(1024 * 1024);
+        Transaction txn = env.beginTransaction(null, null);
+        index.put(txn, new Item(3, 1, "aborted"));
+        txn.abort();
+        assertEquals("item3", index.get(3L).name);
+        assertEquals("item3", index.get(3L).name);
+        assertEquals(1, store.getEntityCacheStats().getHits());
+    }
+
+    @Test
+    public void testEviction()
+        throws Exception {
+
+        /* Room for only a few entities. */
+        open(512);
+        for (long i = 0; i < 10; i++) {
+            assertEquals("item" + i, index.get(i).name);
+        }
+        EntityCacheStats stats = store.getEntityCacheStats();
+        assertTrue(stats.getEvictions() > 0);
+        assertTrue(stats.getEntries() < 10);
+        assertTrue(stats.getBytes() <= 512);
+
+        for (long i = 0; i < 10; i++) {
+            assertEquals("item" + i, index.get(i).name);
+        }
+    }
+
+    @Entity
+    static class Item {
+
+        @PrimaryKey
+        long id;
+
+        @SecondaryKey(relate=MANY_TO_ONE)
+        int group;
+
+        String name;
+
+        Item(long id, int group, String name) {
+            this.id = id;
+            this.group = group;
+            this.name = name;
+        }
+
+        private Item() {}
+    }
+}
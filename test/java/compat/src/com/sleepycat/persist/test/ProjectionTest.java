@@ -0,0 +1,333 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.test;
+
+import static com.sleepycat.persist.model.Relationship.MANY_TO_ONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+import com.sleepycat.db.util.DualTestCase;
+import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.Projection;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.KeyField;
+import com.sleepycat.persist.model.Persistent;
+import com.sleepycat.persist.model.PrimaryKey;
+import com.sleepycat.persist.model.SecondaryKey;
+import com.sleepycat.util.test.SharedTestUtils;
+import com.sleepycat.util.test.TestEnv;
+
+/**
+ * Tests reading entities with a Projection.
+ */
+public class ProjectionTest extends DualTestCase {
+
+    private File envHome;
+    private Environment env;
+    private EntityStore store;
+    private PrimaryIndex<Long, Employee> index;
+
+    @Before
+    public void setUp()
+        throws Exception {
+
+        super.setUp();
+        envHome = SharedTestUtils.getTestDir();
+        EnvironmentConfig envConfig = TestEnv.TXN.getConfig();
+        envConfig.setAllowCreate(true);
+        env = create(envHome, envConfig);
+        StoreConfig storeConfig = new StoreConfig();
+        storeConfig.setAllowCreate(true);
+        storeConfig.setTransactional(true);
+        store = new EntityStore(env, "foo", storeConfig);
+        index = store.getPrimaryIndex(Long.class, Employee.class);
+        for (long i = 0; i < 10; i++) {
+            index.put(new Employee(i));
+        }
+    }
+
+    @After
+    public void tearDown()
+        throws Exception {
+
+        if (store != null) {
+            store.close();
+        }
+        if (env != null) {
+            close(env);
+        }
+        super.tearDown();
+        envHome = null;
+        env = null;
+        store = null;
+        index = null;
+    }
+
+    @Test
+    public void testGet()
+        throws Exception {
+
+        Employee e = index.get(3L, new Projection("name", "dept"));
+        assertEquals(3, e.id);
+        assertEquals("name3", e.name);
+        assertEquals(3, e.dept);
+        assertNull(e.home);
+        assertNull(e.work);
+        assertNull(e.skills);
+        assertNull(e.company);
+
+        /* A superclass field, and the primary key field itself. */
+        e = index.get(null, 4L, null, new Projection("company", "id"));
+        assertEquals(4, e.id);
+        assertEquals("company4", e.company);
+        assertNull(e.name);
+        assertEquals(0, e.dept);
+
+        /* A null projection reads the whole entity. */
+        e = index.get(5L, null);
+        assertEquals("name5", e.name);
+        assertEquals("company5", e.company);
+        assertEquals(2, e.skills.size());
+        assertSame(e.home, e.work);
+
+        assertNull(index.get(100L, new Projection("name")));
+    }
+
+    @Test
+    public void testSkippedReference()
+        throws Exception {
+
+        /*
+         * The work field refers to the object stored for the home field,
+         * which is skipped.
+         */
+        Employee e = index.get(6L, new Projection("work"));
+        assertNull(e.home);
+        assertEquals("street6", e.work.street);
+
+        e = index.get(6L, new Projection("home", "work", "skills"));
+        assertSame(e.home, e.work);
+        assertEquals("skill6", e.skills.get(0));
+    }
+
+    @Test
+    public void testCursor()
+        throws Exception {
+
+        EntityCursor<Employee> cursor =
+            index.entities(null, null, new Projection("name"));
+        try {
+            long id = 0;
+            for (Employee e : cursor) {
+                assertEquals(id, e.id);
+                assertEquals("name" + id, e.name);
+                assertNull(e.home);
+                id += 1;
+            }
+            assertEquals(10, id);
+
+            /* Projected entities cannot be stored by the cursor. */
+            Employee e = cursor.first();
+            try {
+                cursor.update(e);
+                fail();
+            } catch (UnsupportedOperationException expected) {
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = index.entities
+            (null, 2L, true, 4L, false, null, new Projection("skills"));
+        try {
+            List<Long> ids = new ArrayList<Long>();
+            for (Employee e : cursor) {
+                ids.add(e.id);
+                assertEquals(2, e.skills.size());
+                assertNull(e.name);
+            }
+            assertEquals(2, ids.size());
+            assertEquals(Long.valueOf(2), ids.get(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testSecondary()
+        throws Exception {
+
+        SecondaryIndex<Integer, Long, Employee> byDept =
+            store.getSecondaryIndex(index, Integer.class, "dept");
+        Employee e = byDept.get(7, new Projection("name"));
+        assertEquals(7, e.id);
+        assertEquals("name7", e.name);
+        assertEquals(0, e.dept);
+
+        EntityCursor<Employee> cursor =
+            byDept.entities(null, 8, true, null, false, null,
+                            new Projection("company"));
+        try {
+            int count = 0;
+            for (Employee found : cursor) {
+                assertEquals("company" + found.id, found.company);
+                assertNull(found.name);
+                count += 1;
+            }
+            assertEquals(2, count);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testPrimaryKeyReference()
+        throws Exception {
+
+        PrimaryIndex<Code, Part> parts =
+            store.getPrimaryIndex(Code.class, Part.class);
+        for (int i = 0; i < 3; i++) {
+            parts.put(new Part(i));
+        }
+
+        /* The alias field refers to the primary key object. */
+        Part p = parts.get(null, new Code(1), null, new Projection("alias"));
+        assertEquals(1, p.code.value);
+        assertSame(p.code, p.alias);
+        assertNull(p.name);
+
+        /* The cursor reads the primary key from the key entry. */
+        EntityCursor<Part> cursor =
+            parts.entities(null, null, new Projection("alias"));
+        try {
+            int count = 0;
+            for (Part found : cursor) {
+                assertNotNull(found.alias);
+                assertEquals(count, found.alias.value);
+                assertNull(found.name);
+                count += 1;
+            }
+            assertEquals(3, count);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testUnknownField()
+        throws Exception {
+
+        try {
+            index.get(1L, new Projection("name", "salary"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            index.entities(null, null, new Projection("street"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Persistent
+    static class Person {
+
+        String company;
+
+        Person() {}
+    }
+
+    @Persistent
+    static class Address {
+
+        String street;
+
+        Address(String street) {
+            this.street = street;
+        }
+
+        private Address() {}
+    }
+
+    @Entity
+    static class Employee extends Person {
+
+        @PrimaryKey
+        long id;
+
+        @SecondaryKey(relate=MANY_TO_ONE)
+        int dept;
+
+        String name;
+        Address home;
+        Address work;
+        List<String> skills;
+
+        Employee(long id) {
+            this.id = id;
+            company = "company" + id;
+            dept = (int) id;
+            name = "name" + id;
+            home = new Address("street" + id);
+            work = home;
+            skills = new ArrayList<String>();
+            skills.add("skill" + id);
+            skills.add("other");
+        }
+
+        private Employee() {}
+    }
+
+    @Persistent
+    static class Code {
+
+        @KeyField(1)
+        int value;
+
+        Code(int value) {
+            this.value = value;
+        }
+
+        private Code() {}
+    }
+
+    @Entity
+    static class Part {
+
+        @PrimaryKey
+        Code code;
+
+        String name;
+        Code alias;
+
+        Part(int value) {
+            code = new Code(value);
+            name = "part" + value;
+            alias = code;
+        }
+
+        private Part() {}
+    }
+}
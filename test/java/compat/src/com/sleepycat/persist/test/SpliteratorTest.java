@@ -0,0 +1,253 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+package com.sleepycat.persist.test;
+
+import static com.sleepycat.persist.model.Relationship.MANY_TO_ONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sleepycat.db.CursorConfig;
+import com.sleepycat.db.Environment;
+import com.sleepycat.db.EnvironmentConfig;
+import com.sleepycat.db.util.DualTestCase;
+import com.sleepycat.persist.EntitySpliterator;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.EntityVisitor;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.KeyField;
+import com.sleepycat.persist.model.Persistent;
+import com.sleepycat.persist.model.PrimaryKey;
+import com.sleepycat.persist.model.SecondaryKey;
+import com.sleepycat.util.test.SharedTestUtils;
+import com.sleepycat.util.test.TestEnv;
+
+/**
+ * Tests EntitySpliterator.
+ */
+public class SpliteratorTest extends DualTestCase {
+
+    private static final int COUNT = 10000;
+
+    private File envHome;
+    private Environment env;
+    private EntityStore store;
+
+    @Before
+    public void setUp()
+        throws Exception {
+
+        super.setUp();
+        envHome = SharedTestUtils.getTestDir();
+        EnvironmentConfig envConfig = TestEnv.TXN.getConfig();
+        envConfig.setAllowCreate(true);
+        env = create(envHome, envConfig);
+        StoreConfig storeConfig = new StoreConfig();
+        storeConfig.setAllowCreate(true);
+        storeConfig.setTransactional(true);
+        store = new EntityStore(env, "foo", storeConfig);
+    }
+
+    @After
+    public void tearDown()
+        throws Exception {
+
+        if (store != null) {
+            store.close();
+        }
+        if (env != null) {
+            close(env);
+        }
+        super.tearDown();
+        envHome = null;
+        env = null;
+        store = null;
+    }
+
+    @Test
+    public void testSplit()
+        throws Exception {
+
+        PrimaryIndex<Long, Item> index = load();
+        EntitySpliterator<Item> second =
+            index.spliterator(CursorConfig.READ_COMMITTED);
+        EntitySpliterator<Item> first = second.trySplit();
+        assertNotNull(first);
+        double firstFraction = first.estimateFraction();
+        double secondFraction = second.estimateFraction();
+        assertEquals(1.0, firstFraction + secondFraction, 0.01);
+        assertTrue(firstFraction > 0.25 && secondFraction > 0.25);
+
+        /* The parts hold every entity once, the first part's keys first. */
+        List<Long> firstIds = ids(first);
+        List<Long> secondIds = ids(second);
+        assertTrue(firstIds.get(firstIds.size() - 1) < secondIds.get(0));
+        assertEquals(COUNT, firstIds.size() + secondIds.size());
+        assertEquals(0.0, second.estimateFraction(), 0.0);
+        assertNull(second.trySplit());
+    }
+
+    @Test
+    public void testParallel()
+        throws Exception {
+
+        PrimaryIndex<Long, Item> index = load();
+        final Set<Long> ids = Collections.synchronizedSet(new HashSet<Long>());
+        final Set<String> threads =
+            Collections.synchronizedSet(new HashSet<String>());
+        index.spliterator(CursorConfig.READ_COMMITTED).parallelForEach(
+            4, new EntityVisitor<Item>() {
+                public void visit(Item item) {
+                    assertTrue(ids.add(item.id));
+                    threads.add(Thread.currentThread().getName());
+                }
+            });
+        assertEquals(COUNT, ids.size());
+        assertEquals(4, threads.size());
+
+        /* Entities in secondary key order. */
+        SecondaryIndex<Integer, Long, Item> byGroup =
+            store.getSecondaryIndex(index, Integer.class, "group");
+        final AtomicInteger count = new AtomicInteger();
+        byGroup.spliterator(null).parallelForEach(
+            3, new EntityVisitor<Item>() {
+                public void visit(Item item) {
+                    count.incrementAndGet();
+                }
+            });
+        assertEquals(COUNT, count.get());
+    }
+
+    @Test
+    public void testFailure()
+        throws Exception {
+
+        PrimaryIndex<Long, Item> index = load();
+        try {
+            index.spliterator(null).parallelForEach(
+                4, new EntityVisitor<Item>() {
+                    public void visit(Item item) {
+                        if (item.id == COUNT / 2) {
+                            throw new IllegalStateException("stop");
+                        }
+                    }
+                });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testComparableKey()
+        throws Exception {
+
+        /* A key class with its own order is not split. */
+        PrimaryIndex<OrderedKey, OrderedItem> index =
+            store.getPrimaryIndex(OrderedKey.class, OrderedItem.class);
+        for (long i = 0; i < 1000; i++) {
+            index.putNoReturn(new OrderedItem(i));
+        }
+        EntitySpliterator<OrderedItem> spliterator = index.spliterator(null);
+        assertNull(spliterator.trySplit());
+        final AtomicInteger count = new AtomicInteger();
+        spliterator.parallelForEach(4, new EntityVisitor<OrderedItem>() {
+            public void visit(OrderedItem item) {
+                count.incrementAndGet();
+            }
+        });
+        assertEquals(1000, count.get());
+    }
+
+    private PrimaryIndex<Long, Item> load()
+        throws Exception {
+
+        PrimaryIndex<Long, Item> index =
+            store.getPrimaryIndex(Long.class, Item.class);
+        for (long i = 0; i < COUNT; i++) {
+            index.putNoReturn(new Item(i, (int) (i % 10)));
+        }
+        return index;
+    }
+
+    private static List<Long> ids(EntitySpliterator<Item> spliterator)
+        throws Exception {
+
+        final List<Long> ids = new ArrayList<Long>();
+        spliterator.forEachRemaining(new EntityVisitor<Item>() {
+            public void visit(Item item) {
+                ids.add(item.id);
+            }
+        });
+        return ids;
+    }
+
+    @Entity
+    static class Item {
+
+        @PrimaryKey
+        long id;
+
+        @SecondaryKey(relate=MANY_TO_ONE)
+        int group;
+
+        Item(long id, int group) {
+            this.id = id;
+            this.group = group;
+        }
+
+        private Item() {}
+    }
+
+    @Persistent
+    static class OrderedKey implements Comparable<OrderedKey> {
+
+        @KeyField(1)
+        long value;
+
+        OrderedKey(long value) {
+            this.value = value;
+        }
+
+        private OrderedKey() {}
+
+        public int compareTo(OrderedKey o) {
+            return (value < o.value) ? 1 : ((value > o.value) ? -1 : 0);
+        }
+    }
+
+    @Entity
+    static class OrderedItem {
+
+        @PrimaryKey
+        OrderedKey key;
+
+        OrderedItem(long value) {
+            key = new OrderedKey(value);
+        }
+
+        private OrderedItem() {}
+    }
+}
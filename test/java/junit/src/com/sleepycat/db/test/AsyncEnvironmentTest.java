@@ -0,0 +1,212 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sleepycat.db.*;
+import com.sleepycat.db.async.*;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sleepycat.db.test.TestUtils;
+public class AsyncEnvironmentTest {
+    public static final String ASYNCENVIRONMENTTEST_DBNAME = "asyncenvironmenttest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(ASYNCENVIRONMENTTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(ASYNCENVIRONMENTTEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(ASYNCENVIRONMENTTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(ASYNCENVIRONMENTTEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testCallbacks()
+        throws Exception
+    {
+        AsyncEnvironment asyncEnv = new AsyncEnvironment(null, null);
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        final CountDownLatch done = new CountDownLatch(2);
+
+        AsyncFuture<String> ok = asyncEnv.submit(new Callable<String>() {
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        });
+        ok.addCallback(new AsyncCallback<String>() {
+            public void completed(String name) {
+                result.set(name);
+                done.countDown();
+            }
+            public void failed(Throwable t) {
+                done.countDown();
+            }
+        });
+
+        final DatabaseException failure = new DatabaseException("failed");
+        AsyncFuture<String> bad = asyncEnv.submit(new Callable<String>() {
+            public String call()
+                throws DatabaseException {
+                throw failure;
+            }
+        });
+        final AtomicReference<Throwable> caught =
+            new AtomicReference<Throwable>();
+        bad.addCallback(new AsyncCallback<Object>() {
+            public void completed(Object o) {
+                done.countDown();
+            }
+            public void failed(Throwable t) {
+                caught.set(t);
+                done.countDown();
+            }
+        });
+
+        done.await();
+        assertTrue(((String)result.get()).startsWith("AsyncEnvironment-"));
+        assertSame(failure, caught.get());
+        try {
+            bad.await();
+            fail("expected DatabaseException");
+        } catch (DatabaseException e) {
+            assertSame(failure, e);
+        }
+        asyncEnv.close();
+        assertEquals(0, asyncEnv.getPendingCount());
+    }
+
+    @Test public void testRejectWhenFull()
+        throws Exception
+    {
+        AsyncConfig config = new AsyncConfig();
+        config.setMaxConcurrency(1);
+        config.setMaxPending(1);
+        config.setBlockWhenFull(false);
+        AsyncEnvironment asyncEnv = new AsyncEnvironment(null, config);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        /* Like a native call, the operation ignores interrupts. */
+        Callable<Void> blocked = new Callable<Void>() {
+            public Void call() {
+                started.countDown();
+                while (true) {
+                    try {
+                        release.await();
+                        return null;
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }
+        };
+        AsyncFuture<Void> first = asyncEnv.submit(blocked);
+        started.await();
+        AsyncFuture<Void> second = asyncEnv.submit(blocked);
+        assertEquals(2, asyncEnv.getPendingCount());
+        try {
+            asyncEnv.submit(blocked);
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+        }
+
+        /* A cancelled operation that has not started makes room. */
+        assertTrue(second.cancel(false));
+        AsyncFuture<Void> third = asyncEnv.submit(blocked);
+
+        /* A running operation keeps its place until it returns. */
+        assertTrue(first.cancel(true));
+        assertEquals(2, asyncEnv.getPendingCount());
+        try {
+            asyncEnv.submit(blocked);
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+        }
+
+        release.countDown();
+        third.await();
+        asyncEnv.close();
+        assertEquals(0, asyncEnv.getPendingCount());
+        try {
+            asyncEnv.submit(blocked);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test public void testDatabase()
+        throws DatabaseException, FileNotFoundException
+    {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setInitializeLocking(true);
+        envc.setInitializeLogging(true);
+        envc.setTransactional(true);
+        envc.setThreaded(true);
+        Environment dbEnv = new Environment(TestUtils.BASETEST_DBFILE, envc);
+        AsyncEnvironment asyncEnv = new AsyncEnvironment(dbEnv, null);
+
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        AsyncDatabase db = asyncEnv.openDatabase(
+            null, ASYNCENVIRONMENTTEST_DBNAME, null, dbConfig).await();
+
+        Transaction txn = asyncEnv.beginTransaction(null, null).await();
+        DatabaseEntry key = new DatabaseEntry("key".getBytes());
+        DatabaseEntry data = new DatabaseEntry("data".getBytes());
+        assertEquals(OperationStatus.SUCCESS,
+            db.put(txn, key, data).await());
+        assertEquals(OperationStatus.KEYEXIST,
+            db.putNoOverwrite(txn, key, data).await());
+        asyncEnv.commit(txn).await();
+
+        DatabaseEntry found = new DatabaseEntry();
+        assertEquals(OperationStatus.SUCCESS,
+            db.get(null, key, found, null).await());
+        assertEquals("data", new String(found.getData()));
+        assertEquals(OperationStatus.SUCCESS,
+            db.delete(null, key).await());
+        assertEquals(OperationStatus.NOTFOUND,
+            db.exists(null, key).await());
+
+        db.close().await();
+        asyncEnv.close();
+        dbEnv.close();
+    }
+}
@@ -47,6 +47,10 @@ public class BackupTest {
 
     @After public void PerTestShutdown()
         throws Exception {
+        for (int i = 0; i < PARALLEL_DBS; i++) {
+            TestUtils.check_file_removed(TestUtils.getDBFileName("parallel" + i + ".db"), false, true);
+            TestUtils.check_file_removed(TestUtils.getBackupFileName("parallel" + i + ".db"), false, true);
+        }
         TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(BACKUPTEST_DBNAME));
         TestUtils.removeall(true, true, TestUtils.BASETEST_BACKUPDIR, TestUtils.getBackupFileName(BACKUPTEST_DBNAME));
     }
@@ -207,6 +211,399 @@ public class BackupTest {
         dbEnv.close();
     }
     
+    /* Checksums the data it backs up, in its own threads. */
+    static class ChecksumHandler extends ParallelBackupHandler {
+        final java.util.Set<Thread> threads =
+            java.util.Collections.synchronizedSet(new java.util.HashSet<Thread>());
+        final java.util.concurrent.atomic.AtomicLong checksum =
+            new java.util.concurrent.atomic.AtomicLong();
+
+        ChecksumHandler(BackupHandler target, int nthreads) {
+            super(target, nthreads);
+        }
+
+        protected byte[] process(String dbname, long filePos, byte[] buf, int len) {
+            threads.add(Thread.currentThread());
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(buf, 0, len);
+            checksum.addAndGet(crc.getValue());
+            return buf;
+        }
+    }
+
+    static class FailingHandler extends ParallelBackupHandler {
+        FailingHandler(BackupHandler target) {
+            super(target, 2);
+        }
+
+        protected byte[] process(String dbname, long filePos, byte[] buf, int len)
+            throws IOException {
+            throw new IOException("process failed");
+        }
+    }
+
+    private void putRecords(Database db, int first, int nrecs)
+        throws DatabaseException {
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry(new byte[1024]);
+        for (int i = first; i < first + nrecs; i++) {
+            IntegerBinding.intToEntry(i, key);
+            db.put(null, key, data);
+        }
+    }
+
+    @Test public void testIncrementalBackup()
+        throws DatabaseException, IOException
+    {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setTransactional(true);
+        envc.setInitializeLocking(true);
+        envc.setCacheSize(1024 * 1024);
+        Environment dbEnv = new Environment(TestUtils.BASETEST_DBFILE, envc);
+
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        Database db = dbEnv.openDatabase(null, BACKUPTEST_DBNAME, null, dbConfig);
+        putRecords(db, 0, 500);
+
+        ChecksumHandler handler = new ChecksumHandler(new BackupWriter(), 4);
+        handler.setMaxBytesPerSecond(4 * 1024 * 1024);
+        IncrementalBackup backup = new IncrementalBackup(dbEnv, handler);
+        backup.setChunkSize(16 * 1024);
+        BackupOptions opt = new BackupOptions();
+        opt.setAllowCreate(true);
+        backup.setBackupOptions(opt);
+
+        /* A full backup, then two incremental backups of the new log. */
+        LogSequenceNumber lsn = backup.backup(TestUtils.BASETEST_BACKUPDIR, null);
+        long fullBytes = handler.getBytesWritten();
+        assertTrue(fullBytes > 0);
+        assertTrue(handler.getThrottleTime() > 0);
+
+        putRecords(db, 500, 200);
+        LogSequenceNumber lsn2 = backup.backup(TestUtils.BASETEST_BACKUPDIR, lsn);
+        assertTrue(lsn2.getFile() > lsn.getFile() ||
+            lsn2.getOffset() > lsn.getOffset());
+        long incrementalBytes = handler.getBytesWritten() - fullBytes;
+        assertTrue(incrementalBytes > 200 * 1024);
+        assertTrue(incrementalBytes < fullBytes);
+        assertTrue(handler.threads.size() > 1);
+
+        putRecords(db, 700, 100);
+        LogSequenceNumber lsn3 = backup.backup(TestUtils.BASETEST_BACKUPDIR, lsn2);
+        db.close();
+
+        /* The backed up log files match the environment's log files. */
+        File[] logs = dbEnv.getArchiveLogFiles(true);
+        assertTrue(logs.length > 0);
+        for (File log : logs) {
+            File orig = new File(TestUtils.BASETEST_DBFILE, log.getName());
+            File copy = new File(TestUtils.BASETEST_BACKUPDIR, log.getName());
+            assertTrue(orig.length() > 0);
+            assertEquals(orig.length(), copy.length());
+        }
+        dbEnv.close();
+        handler.shutdown();
+
+        /* Catastrophic recovery of the backup restores every record. */
+        EnvironmentConfig recoverc = new EnvironmentConfig();
+        recoverc.setAllowCreate(true);
+        recoverc.setInitializeCache(true);
+        recoverc.setTransactional(true);
+        recoverc.setInitializeLocking(true);
+        recoverc.setRunFatalRecovery(true);
+        Environment restored = new Environment(TestUtils.BASETEST_BACKUPFILE, recoverc);
+        dbConfig.setAllowCreate(false);
+        db = restored.openDatabase(null, BACKUPTEST_DBNAME, null, dbConfig);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        for (int i = 0; i < 800; i++) {
+            IntegerBinding.intToEntry(i, key);
+            assertEquals(OperationStatus.SUCCESS, db.get(null, key, data, null));
+        }
+        db.close();
+        restored.close();
+    }
+
+    /* Counts the files opened, optionally waiting in the first open. */
+    static class CountingHandler implements BackupHandler {
+        final java.util.concurrent.CountDownLatch opened =
+            new java.util.concurrent.CountDownLatch(1);
+        final java.util.concurrent.CountDownLatch proceed;
+        final java.util.concurrent.atomic.AtomicInteger opens =
+            new java.util.concurrent.atomic.AtomicInteger();
+
+        CountingHandler(boolean wait) {
+            proceed = new java.util.concurrent.CountDownLatch(wait ? 1 : 0);
+        }
+
+        public int open(String target, String dbname) {
+            opens.incrementAndGet();
+            opened.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                return 1;
+            }
+            return 0;
+        }
+
+        public int write(long pos, byte[] buf, int off, int len) {
+            return 0;
+        }
+
+        public int close(String dbname) {
+            return 0;
+        }
+    }
+
+    @Test public void testIncrementalBackupHandlerSwap()
+        throws Exception
+    {
+        final CountingHandler envHandler = new CountingHandler(false);
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setTransactional(true);
+        envc.setInitializeLocking(true);
+        envc.setCacheSize(1024 * 1024);
+        envc.setThreaded(true);
+        envc.setBackupHandler(envHandler);
+        final Environment dbEnv = new Environment(TestUtils.BASETEST_DBFILE, envc);
+
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        Database db = dbEnv.openDatabase(null, BACKUPTEST_DBNAME, null, dbConfig);
+        putRecords(db, 0, 100);
+        db.close();
+
+        final CountingHandler handler = new CountingHandler(true);
+        final IncrementalBackup backup = new IncrementalBackup(dbEnv, handler);
+        final Exception[] failure = new Exception[2];
+        Thread full = new Thread() {
+            public void run() {
+                try {
+                    backup.backup(TestUtils.BASETEST_BACKUPDIR, null);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        full.start();
+        handler.opened.await();
+
+        /* A backup started meanwhile waits, and uses its own handler. */
+        Thread other = new Thread() {
+            public void run() {
+                try {
+                    dbEnv.backup(TestUtils.BASETEST_BACKUPDIR,
+                        new BackupOptions());
+                } catch (Exception e) {
+                    failure[1] = e;
+                }
+            }
+        };
+        other.start();
+        other.join(200);
+        assertTrue(other.isAlive());
+        handler.proceed.countDown();
+        full.join();
+        other.join();
+        assertEquals(null, failure[0]);
+        assertEquals(null, failure[1]);
+        assertTrue(handler.opens.get() > 0);
+        assertEquals(handler.opens.get(), envHandler.opens.get());
+        assertTrue(dbEnv.getConfig().getBackupHandler() == envHandler);
+        dbEnv.close();
+    }
+
+    @Test public void testParallelBackupHandlerFailure()
+        throws DatabaseException
+    {
+        String name = "failing.bak";
+        FailingHandler handler = new FailingHandler(new BackupWriter());
+        assertEquals(0, handler.open(TestUtils.BASETEST_BACKUPDIR, name));
+        handler.write(0, new byte[10], 0, 10);
+        assertTrue(handler.close(name) != 0);
+        assertTrue(handler.getFailure() instanceof IOException);
+        assertTrue(handler.write(0, new byte[10], 0, 10) != 0);
+        handler.shutdown();
+        new File(TestUtils.BASETEST_BACKUPDIR, name).delete();
+    }
+
+    /* Records the throughput reported for each file. */
+    static class BackupProgress implements BackupFeedbackHandler {
+        final java.util.Map<String, Long> files =
+            new java.util.concurrent.ConcurrentHashMap<String, Long>();
+
+        public void backupFeedback(Environment environment, String file,
+            long bytes, long millis) {
+            assertTrue(millis >= 0);
+            files.put(new File(file).getName(), Long.valueOf(bytes));
+        }
+    }
+
+    private static final int PARALLEL_DBS = 6;
+
+    private Environment openParallelEnv(File home, boolean recover)
+        throws DatabaseException, FileNotFoundException {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setTransactional(true);
+        envc.setInitializeLocking(true);
+        envc.setCacheSize(1024 * 1024);
+        envc.setMaxLogFileSize(256 * 1024);
+        envc.setRunFatalRecovery(recover);
+        return new Environment(home, envc);
+    }
+
+    /* Fill databases of different sizes, and return their record counts. */
+    private int[] populateParallelDbs(Environment dbEnv)
+        throws DatabaseException, FileNotFoundException {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        int[] counts = new int[PARALLEL_DBS];
+        for (int i = 0; i < PARALLEL_DBS; i++) {
+            Database db = dbEnv.openDatabase(
+                null, "parallel" + i + ".db", null, dbConfig);
+            counts[i] = 50 + i * 100;
+            putRecords(db, 0, counts[i]);
+            db.close();
+        }
+        return counts;
+    }
+
+    /* Recover the backup and check every database in it. */
+    private void verifyParallelBackup(int[] counts)
+        throws DatabaseException, FileNotFoundException {
+        Environment restored =
+            openParallelEnv(TestUtils.BASETEST_BACKUPFILE, true);
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setTransactional(true);
+        for (int i = 0; i < PARALLEL_DBS; i++) {
+            Database db = restored.openDatabase(
+                null, "parallel" + i + ".db", null, dbConfig);
+            assertEquals(counts[i],
+                ((BtreeStats)db.getStats(null, null)).getNumKeys());
+            db.close();
+        }
+        restored.close();
+    }
+
+    @Test public void testParallelBackup()
+        throws DatabaseException, IOException
+    {
+        Environment dbEnv = openParallelEnv(TestUtils.BASETEST_DBFILE, false);
+        int[] counts = populateParallelDbs(dbEnv);
+        File[] logs = dbEnv.getArchiveLogFiles(true);
+        assertTrue(logs.length > 1);
+
+        BackupProgress progress = new BackupProgress();
+        ParallelBackup backup = new ParallelBackup(dbEnv);
+        backup.setThreads(3);
+        backup.setBackupFeedbackHandler(progress);
+        BackupOptions opt = new BackupOptions();
+        opt.setAllowCreate(true);
+        backup.setBackupOptions(opt);
+        backup.backup(TestUtils.BASETEST_BACKUPDIR);
+
+        /* Every database and log file is reported, and no region file. */
+        for (int i = 0; i < PARALLEL_DBS; i++) {
+            String name = "parallel" + i + ".db";
+            assertEquals(new File(TestUtils.BASETEST_DBFILE, name).length(),
+                progress.files.get(name).longValue());
+        }
+        for (File log : dbEnv.getArchiveLogFiles(true))
+            assertEquals(log.length(),
+                progress.files.get(log.getName()).longValue());
+        assertEquals(PARALLEL_DBS + dbEnv.getArchiveLogFiles(true).length,
+            progress.files.size());
+        assertTrue(!dbEnv.getConfig().getHotbackupInProgress());
+        dbEnv.close();
+
+        verifyParallelBackup(counts);
+    }
+
+    @Test public void testParallelBackupHandlers()
+        throws DatabaseException, IOException
+    {
+        final Environment dbEnv =
+            openParallelEnv(TestUtils.BASETEST_DBFILE, false);
+        final int[] counts = populateParallelDbs(dbEnv);
+
+        /* A handler per thread, each of which must only see its own thread. */
+        final java.util.Set<Thread> threads =
+            java.util.Collections.synchronizedSet(new java.util.HashSet<Thread>());
+        ParallelBackup backup = new ParallelBackup(dbEnv) {
+            protected BackupHandler createBackupHandler() {
+                return new BackupWriter() {
+                    private Thread owner;
+
+                    public int open(String target, String dbname) {
+                        if (owner == null)
+                            owner = Thread.currentThread();
+                        assertTrue(owner == Thread.currentThread());
+                        threads.add(owner);
+                        return super.open(target, dbname);
+                    }
+                };
+            }
+        };
+        backup.setThreads(4);
+        BackupOptions opt = new BackupOptions();
+        opt.setAllowCreate(true);
+        backup.setBackupOptions(opt);
+
+        /* Keep writing to the environment while it is backed up. */
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setTransactional(true);
+        final Database db =
+            dbEnv.openDatabase(null, "parallel0.db", null, dbConfig);
+        Thread writer = new Thread() {
+            public void run() {
+                try {
+                    putRecords(db, counts[0], 200);
+                } catch (DatabaseException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        writer.start();
+        backup.backup(TestUtils.BASETEST_BACKUPDIR);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            fail();
+        }
+        assertTrue(threads.size() > 1);
+        assertTrue(dbEnv.getConfig().getBackupHandler() == null);
+        db.close();
+        dbEnv.close();
+
+        /*
+         * Records written during the backup may or may not be in it, but
+         * recovery leaves the database consistent.
+         */
+        Environment restored =
+            openParallelEnv(TestUtils.BASETEST_BACKUPFILE, true);
+        Database rdb = restored.openDatabase(null, "parallel0.db", null, dbConfig);
+        int n = ((BtreeStats)rdb.getStats(null, null)).getNumKeys();
+        assertTrue(n >= counts[0] && n <= counts[0] + 200);
+        rdb.close();
+        restored.close();
+        counts[0] = n;
+        verifyParallelBackup(counts);
+    }
+
     public void populateDb(Database db, int nrecs) 
         throws DatabaseException {
         byte[] arr = new byte[1024];
@@ -0,0 +1,139 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.bind.tuple.StringBinding;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.db.*;
+
+import java.io.FileNotFoundException;
+
+import com.sleepycat.db.test.TestUtils;
+public class BtreeCompressDefaultTest {
+    public static final String BTREECOMPRESSDEFAULTTEST_DBNAME = "btreecompressdefaulttest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), true, true);
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), true, true);
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), true, true);
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), true, true);
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testCompression()
+        throws DatabaseException, FileNotFoundException
+    {
+        int plain = leafPages(false);
+        int compressed = leafPages(true);
+        assertTrue(compressed * 2 < plain);
+    }
+
+    @Test public void testWithCompressor()
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setBtreeCompressDefault(true);
+        dbConfig.setBtreeCompressor(new BtreeCompressor() {
+            public boolean compress(Database db, DatabaseEntry prevKey,
+                DatabaseEntry prevData, DatabaseEntry key,
+                DatabaseEntry data, DatabaseEntry dest)
+            {
+                return false;
+            }
+
+            public boolean decompress(Database db, DatabaseEntry prevKey,
+                DatabaseEntry prevData, DatabaseEntry compressed,
+                DatabaseEntry key, DatabaseEntry data)
+            {
+                return false;
+            }
+        });
+        try {
+            new Database(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME),
+                null, dbConfig);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /*
+     * Load string keys with long common prefixes and sorted duplicates, and
+     * return the number of leaf pages used.
+     */
+    private int leafPages(boolean compress)
+        throws DatabaseException, FileNotFoundException
+    {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), true, true);
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setSortedDuplicates(true);
+        dbConfig.setBtreeCompressDefault(compress);
+        Database db = new Database(
+            TestUtils.getDBFileName(BTREECOMPRESSDEFAULTTEST_DBNAME), null, dbConfig);
+        assertEquals(compress, db.getConfig().getBtreeCompressDefault());
+
+        int count = 2000;
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        for (int i = 0; i < count; i++) {
+            StringBinding.stringToEntry(
+                "customers/region-" + (i / 500) + "/account-" + (i / 2), key);
+            TupleOutput out = new TupleOutput();
+            out.writeString("order-history-entry");
+            out.writeSortedPackedInt(i);
+            data.setData(out.toByteArray());
+            db.put(null, key, data);
+        }
+
+        /* Every record reads back, in order. */
+        Cursor cursor = db.openCursor(null, null);
+        int found = 0;
+        String prev = "";
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+            String s = StringBinding.entryToString(key);
+            assertTrue(s.compareTo(prev) >= 0);
+            prev = s;
+            found++;
+        }
+        cursor.close();
+        assertEquals(count, found);
+
+        BtreeStats stats = (BtreeStats)db.getStats(null, null);
+        db.close();
+        return stats.getLeafPages();
+    }
+}
@@ -0,0 +1,218 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+
+import com.sleepycat.db.test.TestUtils;
+public class BulkLoaderTest {
+    public static final String BULKLOADERTEST_DBNAME = "bulkloadertest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(BULKLOADERTEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(BULKLOADERTEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(BULKLOADERTEST_DBNAME));
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testFillPercent()
+        throws DatabaseException, FileNotFoundException
+    {
+        /* Puts in key order leave the pages full. */
+        Database db = openDatabase(false);
+        for (int i = 0; i < 20000; i++)
+            db.put(null, new DatabaseEntry(key(i)), data(i));
+        assertTrue(leafFill(db) > 95);
+        db.close();
+
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), true, true);
+        db = openDatabase(false);
+        BulkLoaderConfig config = new BulkLoaderConfig();
+        config.setFillPercent(70);
+        config.setMaxBatchBytes(8 * 1024);
+        BulkLoader loader = db.openBulkLoader(config);
+        for (int i = 0; i < 20000; i++)
+            loader.put(new DatabaseEntry(key(i)), data(i));
+        loader.close();
+        int fill = leafFill(db);
+        assertTrue("fill " + fill, fill >= 65 && fill <= 75);
+        assertEquals(20000, count(db));
+
+        /* Once the loader is closed, appends fill the pages again. */
+        BtreeStats stats = (BtreeStats)db.getStats(null, null);
+        for (int i = 20000; i < 40000; i++)
+            db.put(null, new DatabaseEntry(key(i)), data(i));
+        BtreeStats after = (BtreeStats)db.getStats(null, null);
+        assertTrue(after.getLeafPages() - stats.getLeafPages() <
+            stats.getLeafPages() * 3 / 4);
+        db.close();
+    }
+
+    @Test public void testTransactional()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment();
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        dbConfig.setSortedDuplicates(true);
+        Database db = dbEnv.openDatabase(
+            null, BULKLOADERTEST_DBNAME, null, dbConfig);
+
+        BulkLoaderConfig config = new BulkLoaderConfig();
+        config.setMaxBatchBytes(4 * 1024);
+        config.setMaxTransactionBytes(64 * 1024);
+        BulkLoader loader = db.openBulkLoader(config);
+        for (int i = 0; i < 5000; i++)
+            for (int j = 0; j < 3; j++)
+                loader.put(new DatabaseEntry(key(i)), data(j));
+        loader.flush();
+        assertEquals(15000, count(db));
+        loader.close();
+
+        db.close();
+        dbEnv.close();
+    }
+
+    @Test public void testOrder()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db = openDatabase(false);
+        BulkLoader loader = db.openBulkLoader(null);
+        loader.put(new DatabaseEntry(key(1)), data(1));
+        loader.put(new DatabaseEntry(key(2)), data(1));
+        try {
+            loader.put(new DatabaseEntry(key(0)), data(1));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            loader.put(new DatabaseEntry(key(2)), data(2));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        loader.put(new DatabaseEntry(key(3)), data(1));
+        loader.close();
+        assertEquals(3, count(db));
+
+        /* The database is no longer empty. */
+        try {
+            db.openBulkLoader(null);
+            assertTrue(false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        db.close();
+
+        TestUtils.check_file_removed(TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), true, true);
+        db = openDatabase(true);
+        loader = db.openBulkLoader(null);
+        loader.put(new DatabaseEntry(key(1)), data(1));
+        loader.put(new DatabaseEntry(key(1)), data(2));
+        try {
+            loader.put(new DatabaseEntry(key(1)), data(2));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        loader.close();
+        assertEquals(2, count(db));
+        db.close();
+    }
+
+    private Database openDatabase(boolean dups)
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setPageSize(4096);
+        dbConfig.setSortedDuplicates(dups);
+        return new Database(
+            TestUtils.getDBFileName(BULKLOADERTEST_DBNAME), null, dbConfig);
+    }
+
+    private Environment openEnvironment()
+        throws DatabaseException, FileNotFoundException
+    {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setInitializeLocking(true);
+        envc.setInitializeLogging(true);
+        envc.setTransactional(true);
+        return new Environment(TestUtils.BASETEST_DBFILE, envc);
+    }
+
+    private static int leafFill(Database db)
+        throws DatabaseException
+    {
+        BtreeStats stats = (BtreeStats)db.getStats(null, null);
+        long bytes = (long)stats.getLeafPages() * stats.getPageSize();
+        return (int)(100 * (bytes - stats.getLeafPagesFree()) / bytes);
+    }
+
+    private static int count(Database db)
+        throws DatabaseException
+    {
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        int n = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS)
+            n++;
+        cursor.close();
+        return n;
+    }
+
+    private static byte[] key(int value)
+    {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static DatabaseEntry data(int value)
+    {
+        byte[] bytes = new byte[40];
+        ByteBuffer.wrap(bytes).putInt(value);
+        return new DatabaseEntry(bytes);
+    }
+}
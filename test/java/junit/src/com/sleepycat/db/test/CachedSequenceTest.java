@@ -0,0 +1,206 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sleepycat.db.*;
+
+import java.util.Arrays;
+
+import com.sleepycat.db.test.TestUtils;
+public class CachedSequenceTest {
+    public static final String CACHEDSEQUENCETEST_DBNAME = "cachedsequencetest.db";
+
+    private Environment env;
+    private Database db;
+    private Sequence seq;
+
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME));
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setErrorStream(TestUtils.getErrorStream());
+        envc.setInitializeCache(true);
+        envc.setInitializeLocking(true);
+        envc.setTransactional(true);
+        env = new Environment(TestUtils.BASETEST_DBFILE, envc);
+
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        dbConfig.setType(DatabaseType.BTREE);
+        db = env.openDatabase(null, CACHEDSEQUENCETEST_DBNAME, null, dbConfig);
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        if (seq != null)
+            seq.close();
+        if (db != null)
+            db.close();
+        if (env != null)
+            env.close();
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(CACHEDSEQUENCETEST_DBNAME));
+        seq = null;
+        db = null;
+        env = null;
+    }
+
+    private Sequence openSequence(SequenceConfig config)
+        throws Exception {
+        config.setAllowCreate(true);
+        config.setAutoCommitNoSync(true);
+        seq = db.openSequence(null,
+            new DatabaseEntry("seq".getBytes()), config);
+        return seq;
+    }
+
+    @Test public void testSingleStripe()
+        throws Exception
+    {
+        SequenceConfig config = new SequenceConfig();
+        config.setInitialValue(1);
+        CachedSequence cached = new CachedSequence(openSequence(config), 100, 1);
+        assertEquals(1, cached.getStripes());
+
+        /* One stripe hands out the blocks in order. */
+        for (int i = 1; i <= 1000; i++)
+            assertEquals(i, cached.get());
+        /* Wait for the background refill before checking the counts. */
+        cached.close();
+        CachedSequenceStats stats = cached.getStats(null);
+        assertEquals(1000, stats.getValuesReturned());
+        assertEquals(100, stats.getBlockSize());
+        assertTrue(stats.getBlocksReserved() >= 10);
+        assertEquals(stats.getBlocksReserved() * 100,
+            stats.getValuesReturned() + stats.getValuesCached());
+        assertTrue(stats.getAsyncRefills() > 0);
+        assertEquals(0, stats.getRefillFailures());
+        assertEquals(1 + stats.getBlocksReserved() * 100, stats.getCurrent());
+
+        /* The sequence itself continues after the reserved blocks. */
+        assertEquals(stats.getCurrent(), seq.get(null, 1));
+        try {
+            for (int i = 0; i < 200; i++)
+                cached.get();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test public void testDecrement()
+        throws Exception
+    {
+        SequenceConfig config = new SequenceConfig();
+        config.setDecrement(true);
+        config.setRange(-1000000, 1000000);
+        config.setInitialValue(0);
+        CachedSequence cached = new CachedSequence(openSequence(config), 64, 1);
+        for (int i = 0; i < 500; i++)
+            assertEquals(-i, cached.get());
+        cached.close();
+    }
+
+    @Test public void testThreads()
+        throws Exception
+    {
+        final int nThreads = 8;
+        final int perThread = 20000;
+        SequenceConfig config = new SequenceConfig();
+        config.setInitialValue(0);
+        config.setCacheSize(1000);
+        final CachedSequence cached =
+            new CachedSequence(openSequence(config), 500, 4);
+        assertEquals(4, cached.getStripes());
+
+        final long[][] values = new long[nThreads][perThread];
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final long[] mine = values[t];
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++)
+                            mine[i] = cached.get();
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < nThreads; t++)
+            threads[t].join();
+        assertEquals(null, failure[0]);
+
+        /* Every value is distinct. */
+        long[] all = new long[nThreads * perThread];
+        for (int t = 0; t < nThreads; t++)
+            System.arraycopy(values[t], 0, all, t * perThread, perThread);
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++)
+            assertTrue(all[i] != all[i - 1]);
+
+        cached.close();
+        CachedSequenceStats stats = cached.getStats(null);
+        assertEquals(all.length, stats.getValuesReturned());
+        assertEquals(stats.getBlocksReserved() * 500,
+            stats.getValuesReturned() + stats.getValuesCached());
+        assertTrue(all[all.length - 1] <
+            stats.getBlocksReserved() * 500);
+
+        /* Clearing resets the counters of the cached sequence. */
+        cached.getStats(StatsConfig.DEFAULT);
+        StatsConfig clear = new StatsConfig();
+        clear.setClear(true);
+        cached.getStats(clear);
+        stats = cached.getStats(null);
+        assertEquals(0, stats.getValuesReturned());
+        assertEquals(0, stats.getBlocksReserved());
+    }
+
+    @Test public void testExhausted()
+        throws Exception
+    {
+        SequenceConfig config = new SequenceConfig();
+        config.setRange(1, 100);
+        config.setInitialValue(1);
+        CachedSequence cached = new CachedSequence(openSequence(config), 30, 1);
+        for (int i = 1; i <= 90; i++)
+            assertEquals(i, cached.get());
+        try {
+            cached.get();
+            fail();
+        } catch (DatabaseException expected) {
+        } catch (IllegalArgumentException expected) {
+        }
+        cached.close();
+    }
+}
@@ -0,0 +1,236 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sleepycat.db.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+
+import com.sleepycat.db.test.TestUtils;
+public class DatabaseStreamTest {
+    public static final String DATABASESTREAMTEST_DBNAME = "databasestreamtest.db";
+
+    private Environment env;
+    private Database db;
+    private Cursor cursor;
+
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME));
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setErrorStream(TestUtils.getErrorStream());
+        envc.setInitializeCache(true);
+        envc.setBlobThreshold(1);
+        env = new Environment(TestUtils.BASETEST_DBFILE, envc);
+
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setType(DatabaseType.BTREE);
+        db = env.openDatabase(null, DATABASESTREAMTEST_DBNAME, null, dbConfig);
+
+        DatabaseEntry key = new DatabaseEntry("blob".getBytes());
+        DatabaseEntry data = new DatabaseEntry("x".getBytes());
+        data.setBlob(true);
+        db.put(null, key, data);
+        cursor = db.openCursor(null, null);
+        assertEquals(OperationStatus.SUCCESS,
+            cursor.getSearchKey(key, new DatabaseEntry(), null));
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        if (cursor != null)
+            cursor.close();
+        if (db != null)
+            db.close();
+        if (env != null)
+            env.close();
+        /* Leave no blob directory behind for other tests that use blobs. */
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DATABASESTREAMTEST_DBNAME));
+        TestUtils.removeDir(TestUtils.BASETEST_DBDIR + File.separator + "__db_bl");
+        cursor = null;
+        db = null;
+        env = null;
+    }
+
+    /* The expected blob content, with a byte pattern that shows offsets. */
+    private static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++)
+            bytes[i] = (byte)(i * 31 + (i >> 8));
+        return bytes;
+    }
+
+    /* Write the content with a mix of single byte, array and buffer writes. */
+    private void writeContent(DatabaseStream dbs, byte[] bytes, int chunkSize)
+        throws IOException {
+        DatabaseStreamOutput out = dbs.openOutputStream(0, chunkSize);
+        int pos = 0;
+        out.write(bytes[pos++]);
+        out.write(bytes, pos, 1000);
+        pos += 1000;
+        assertEquals(1000, out.write(ByteBuffer.wrap(bytes, pos, 1000)));
+        pos += 1000;
+        ByteBuffer direct = ByteBuffer.allocateDirect(3 * chunkSize);
+        direct.put(bytes, pos, direct.capacity());
+        direct.flip();
+        out.flush();
+        assertEquals(pos, out.getPosition());
+        /* A large direct buffer is written without being copied. */
+        out.write(direct);
+        assertFalse(direct.hasRemaining());
+        pos += direct.capacity();
+        out.write(bytes, pos, bytes.length - pos);
+        assertEquals(bytes.length, out.getPosition());
+        out.close();
+        assertFalse(out.isOpen());
+        try {
+            out.write(1);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test public void testStreams()
+        throws Exception
+    {
+        final int chunkSize = 4096;
+        byte[] bytes = content(10 * chunkSize + 123);
+        DatabaseStream dbs = cursor.openDatabaseStream(null);
+        writeContent(dbs, bytes, chunkSize);
+        assertEquals(bytes.length, dbs.size());
+
+        /* Read with single bytes, arrays and skips. */
+        DatabaseStreamInput in = dbs.openInputStream(0, chunkSize);
+        assertEquals(bytes[0] & 0xff, in.read());
+        byte[] b = new byte[100];
+        assertEquals(100, in.read(b, 0, 100));
+        for (int i = 0; i < 100; i++)
+            assertEquals(bytes[1 + i], b[i]);
+        assertEquals(3 * chunkSize, in.skip(3 * chunkSize));
+        long pos = 101 + 3 * chunkSize;
+        assertEquals(pos, in.getPosition());
+        assertEquals(bytes[(int)pos] & 0xff, in.read());
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read(b, 0, b.length)) > 0)
+            rest.write(b, 0, n);
+        assertEquals(-1, in.read());
+        assertEquals(bytes.length - pos - 1, rest.size());
+        in.close();
+
+        /* Read through the channel into heap and direct buffers. */
+        in = dbs.openInputStream(chunkSize / 2, chunkSize);
+        ByteBuffer heap = ByteBuffer.allocate(chunkSize);
+        assertEquals(chunkSize, in.read(heap));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        in.read(direct);
+        while (in.read(direct) > 0) {
+        }
+        assertEquals(bytes.length - chunkSize / 2 - chunkSize,
+            direct.position());
+        byte[] all = new byte[bytes.length - chunkSize / 2];
+        heap.flip();
+        heap.get(all, 0, chunkSize);
+        direct.flip();
+        direct.get(all, chunkSize, direct.remaining());
+        byte[] expected = new byte[all.length];
+        System.arraycopy(bytes, chunkSize / 2, expected, 0, expected.length);
+        assertArrayEquals(expected, all);
+        in.close();
+        try {
+            in.read(heap);
+            fail();
+        } catch (ClosedChannelException expected2) {
+        }
+        dbs.close();
+    }
+
+    @Test public void testTransferTo()
+        throws Exception
+    {
+        byte[] bytes = content(DatabaseStream.DEFAULT_CHUNK_SIZE * 2 + 777);
+        DatabaseStream dbs = cursor.openDatabaseStream(null);
+        writeContent(dbs, bytes, 8192);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DatabaseStreamInput in = dbs.openInputStream(0, 8192);
+        in.read(new byte[10]);
+        assertEquals(bytes.length - 10, in.transferTo(Channels.newChannel(out)));
+        in.close();
+        byte[] expected = new byte[bytes.length - 10];
+        System.arraycopy(bytes, 10, expected, 0, expected.length);
+        assertArrayEquals(expected, out.toByteArray());
+
+        /* A range of the blob, and a range past its end. */
+        out.reset();
+        assertEquals(5000,
+            dbs.transferTo(1000, 5000, Channels.newChannel(out)));
+        expected = new byte[5000];
+        System.arraycopy(bytes, 1000, expected, 0, expected.length);
+        assertArrayEquals(expected, out.toByteArray());
+
+        out.reset();
+        assertEquals(100, dbs.transferTo(bytes.length - 100, Long.MAX_VALUE,
+            Channels.newChannel(out)));
+        assertEquals(0, dbs.transferTo(bytes.length, 10,
+            Channels.newChannel(out)));
+        dbs.close();
+    }
+
+    @Test public void testArguments()
+        throws Exception
+    {
+        DatabaseStream dbs = cursor.openDatabaseStream(null);
+        try {
+            dbs.openInputStream(-1, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            dbs.openOutputStream(0, -1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        DatabaseStreamInput in = dbs.openInputStream(0, 0);
+        assertTrue(in.isOpen());
+        assertEquals('x', in.read());
+        assertEquals(-1, in.read());
+        in.close();
+        dbs.close();
+    }
+}
@@ -0,0 +1,160 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ * 
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sleepycat.db.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sleepycat.db.test.TestUtils;
+public class DirectBufferPoolTest {
+    public static final String DIRECTBUFFERPOOLTEST_DBNAME = "directbufferpooltest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(DIRECTBUFFERPOOLTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DIRECTBUFFERPOOLTEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(DIRECTBUFFERPOOLTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(DIRECTBUFFERPOOLTEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testSizeClasses()
+    {
+        DirectBufferPool pool = new DirectBufferPool(64 * 1024, 1024 * 1024);
+        assertEquals(64 * 1024, pool.getMaxBufferSize());
+
+        ByteBuffer buf = pool.acquire(1500);
+        assertTrue(buf.isDirect());
+        assertEquals(2048, buf.capacity());
+        assertEquals(0, buf.position());
+        assertEquals(1500, buf.limit());
+
+        /* A released buffer is handed out again to the same thread. */
+        pool.release(buf);
+        assertSame(buf, pool.acquire(2000));
+
+        /* Requests beyond the largest class are not pooled. */
+        ByteBuffer big = pool.acquire(100 * 1024);
+        assertEquals(100 * 1024, big.capacity());
+        pool.release(big);
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test public void testSharedLimit()
+        throws InterruptedException
+    {
+        final DirectBufferPool pool = new DirectBufferPool(1024, 4 * 1024);
+        ByteBuffer[] bufs = new ByteBuffer[16];
+        for (int i = 0; i < bufs.length; i++)
+            bufs[i] = pool.acquire(1024);
+        for (int i = 0; i < bufs.length; i++)
+            pool.release(bufs[i]);
+        /* The four kept by the thread reach the limit. */
+        assertEquals(4 * 1024, pool.getPooledBytes());
+        pool.clear();
+        assertEquals(0, pool.getPooledBytes());
+
+        /* Clearing drops the buffers kept by the thread. */
+        ByteBuffer fresh = pool.acquire(1024);
+        for (int i = 0; i < bufs.length; i++)
+            assertTrue(fresh != bufs[i]);
+        assertEquals(0, pool.getPooledBytes());
+
+        /* Buffers kept by another thread count towards the limit. */
+        Thread other = new Thread() {
+            public void run() {
+                ByteBuffer[] mine = new ByteBuffer[3];
+                for (int i = 0; i < mine.length; i++)
+                    mine[i] = pool.acquire(1024);
+                for (int i = 0; i < mine.length; i++)
+                    pool.release(mine[i]);
+            }
+        };
+        other.start();
+        other.join();
+        assertEquals(3 * 1024, pool.getPooledBytes());
+        pool.release(fresh);
+        pool.release(pool.acquire(1024));
+        assertEquals(4 * 1024, pool.getPooledBytes());
+
+        /*
+         * At the limit, the buffers kept by the thread that has exited are
+         * dropped to make room.
+         */
+        pool.release(ByteBuffer.allocateDirect(1024));
+        assertEquals(2 * 1024, pool.getPooledBytes());
+    }
+
+    @Test public void testBorrowedEntry()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db;
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setType(DatabaseType.BTREE);
+        db = new Database(
+            TestUtils.getDBFileName(DIRECTBUFFERPOOLTEST_DBNAME), null, dbConfig);
+        DirectBufferPool pool = new DirectBufferPool();
+
+        DatabaseEntry key = new DatabaseEntry("key".getBytes());
+        DatabaseEntry data = new DatabaseEntry();
+        data.borrowDataNIO(pool, 100);
+        data.getDataNIO().put("value".getBytes());
+        data.setSize(5);
+        db.put(null, key, data);
+        data.releaseDataNIO();
+        assertNull(data.getDataNIO());
+
+        data.borrowDataNIO(pool, 100);
+        assertEquals(OperationStatus.SUCCESS, db.get(null, key, data, null));
+        assertEquals(5, data.getSize());
+        byte[] value = new byte[5];
+        ByteBuffer view = data.getDataNIO().duplicate();
+        view.position(data.getOffset());
+        view.get(value);
+        assertEquals("value", new String(value));
+
+        /* Giving the entry other data hands the buffer back. */
+        ByteBuffer borrowed = data.getDataNIO();
+        data.setData(value);
+        assertSame(borrowed, pool.acquire(100));
+
+        db.close();
+    }
+}
@@ -0,0 +1,212 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+
+import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sleepycat.db.test.TestUtils;
+public class EnvironmentMetricsTest {
+    public static final String ENVIRONMENTMETRICSTEST_DBNAME = "environmentmetricstest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(ENVIRONMENTMETRICSTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(ENVIRONMENTMETRICSTEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(ENVIRONMENTMETRICSTEST_DBNAME), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(ENVIRONMENTMETRICSTEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testSample()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment(true);
+        Database db = openDatabase(dbEnv);
+        EnvironmentMetricsConfig config = new EnvironmentMetricsConfig();
+        config.setSampleInterval(0);
+        EnvironmentMetrics metrics = dbEnv.openMetrics(config);
+
+        writeRecords(dbEnv, db, 100);
+        MetricsSnapshot snapshot = metrics.sample();
+        assertSame(snapshot, metrics.getSnapshot());
+        assertTrue(snapshot.hasCache());
+        assertTrue(snapshot.hasLocking());
+        assertTrue(snapshot.hasLogging());
+        assertTrue(snapshot.hasTransactions());
+        assertFalse(snapshot.hasReplication());
+
+        /* The counters agree with the statistics objects. */
+        TransactionStats txnStats = dbEnv.getTransactionStats(null);
+        assertEquals(txnStats.getNumCommits(),
+            snapshot.getTransactionsCommitted());
+        assertEquals(txnStats.getNumBegins(),
+            snapshot.getTransactionsBegun());
+        assertEquals(0, snapshot.getActiveTransactions());
+        LogStats logStats = dbEnv.getLogStats(null);
+        assertEquals(logStats.getRecord(), snapshot.getLogRecords());
+        assertEquals((long)logStats.getWMbytes() * 1024 * 1024 +
+            logStats.getWBytes(), snapshot.getLogBytes());
+        assertTrue(snapshot.getLogBytes() > 0);
+        assertTrue(snapshot.getCacheHits() > 0);
+        assertTrue(snapshot.getLockRequests() > 0);
+
+        /* The rates cover the writes made since the baseline. */
+        assertTrue(snapshot.getCommitsPerSecond() > 0);
+        assertTrue(snapshot.getLogBytesPerSecond() > 0);
+        double ratio = snapshot.getCacheHitRatio();
+        assertTrue(ratio > 0 && ratio <= 1);
+
+        /* Nothing happened between these two samples. */
+        MetricsSnapshot idle = metrics.sample();
+        assertNotSame(snapshot, idle);
+        assertEquals(snapshot.getTransactionsCommitted(),
+            idle.getTransactionsCommitted());
+        assertTrue(idle.getCommitsPerSecond() == 0);
+        assertTrue(idle.getTime() >= snapshot.getTime());
+
+        metrics.close();
+        try {
+            metrics.sample();
+            assertTrue(false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertSame(idle, metrics.getSnapshot());
+
+        db.close();
+        dbEnv.close();
+    }
+
+    @Test public void testUnconfigured()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment(false);
+        EnvironmentMetrics metrics = dbEnv.openMetrics(null);
+        MetricsSnapshot snapshot = metrics.getSnapshot();
+        assertTrue(snapshot.hasCache());
+        assertFalse(snapshot.hasLocking());
+        assertFalse(snapshot.hasLogging());
+        assertFalse(snapshot.hasTransactions());
+        assertEquals(0, snapshot.getLockRequests());
+        assertEquals(0, snapshot.getTransactionsCommitted());
+        metrics.close();
+        dbEnv.close();
+    }
+
+    @Test public void testSampler()
+        throws Exception
+    {
+        Environment dbEnv = openEnvironment(true);
+        Database db = openDatabase(dbEnv);
+        EnvironmentMetricsConfig config = new EnvironmentMetricsConfig();
+        config.setSampleInterval(20);
+        EnvironmentMetrics metrics = dbEnv.openMetrics(config);
+
+        writeRecords(dbEnv, db, 10);
+        long commits = dbEnv.getTransactionStats(null).getNumCommits();
+        long deadline = System.currentTimeMillis() + 10000;
+        MetricsSnapshot snapshot = null;
+        while (System.currentTimeMillis() < deadline) {
+            snapshot = metrics.getSnapshot();
+            if (snapshot.getTransactionsCommitted() == commits)
+                break;
+            Thread.sleep(10);
+        }
+        assertEquals(commits, snapshot.getTransactionsCommitted());
+
+        /* The snapshot is published as a JMX MBean. */
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+            "com.sleepycat.db:type=EnvironmentMetrics,name=test");
+        server.registerMBean(metrics, name);
+        try {
+            Object active = server.getAttribute(name, "ActiveTransactions");
+            assertEquals(Long.valueOf(0), active);
+            Object ratio = server.getAttribute(name, "CacheHitRatio");
+            assertTrue(ratio instanceof Double);
+        } finally {
+            server.unregisterMBean(name);
+        }
+
+        metrics.close();
+        db.close();
+        dbEnv.close();
+    }
+
+    private Environment openEnvironment(boolean transactional)
+        throws DatabaseException, FileNotFoundException
+    {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        if (transactional) {
+            envc.setInitializeLocking(true);
+            envc.setInitializeLogging(true);
+            envc.setTransactional(true);
+        } else
+            envc.setPrivate(true);
+        envc.setThreaded(true);
+        return new Environment(TestUtils.BASETEST_DBFILE, envc);
+    }
+
+    private Database openDatabase(Environment dbEnv)
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        return dbEnv.openDatabase(
+            null, ENVIRONMENTMETRICSTEST_DBNAME, null, dbConfig);
+    }
+
+    private void writeRecords(Environment dbEnv, Database db, int count)
+        throws DatabaseException
+    {
+        DatabaseEntry data = new DatabaseEntry(new byte[100]);
+        for (int i = 0; i < count; i++) {
+            Transaction txn = dbEnv.beginTransaction(null, null);
+            DatabaseEntry key = new DatabaseEntry(("key" + i).getBytes());
+            db.put(txn, key, data);
+            db.get(txn, key, new DatabaseEntry(), null);
+            txn.commit();
+        }
+    }
+}
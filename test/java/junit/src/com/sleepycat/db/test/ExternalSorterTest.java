@@ -0,0 +1,217 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.sleepycat.db.test.TestUtils;
+public class ExternalSorterTest {
+    public static final String EXTERNALSORTERTEST_DBNAME = "externalsortertest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(EXTERNALSORTERTEST_DBNAME), true, true);
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(EXTERNALSORTERTEST_DBNAME), true, true);
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(EXTERNALSORTERTEST_DBNAME), true, true);
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(EXTERNALSORTERTEST_DBNAME), true, true);
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testPutMultipleKey()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db = openDatabase(false, false);
+        ExternalSorterConfig config = new ExternalSorterConfig();
+        config.setMaxMemory(64 * 1024);
+        config.setMaxMergeRuns(3);
+        config.setMaxBatchBytes(16 * 1024);
+        config.setTempDirectory(TestUtils.BASETEST_DBFILE);
+        ExternalSorter sorter = db.openExternalSorter(config);
+        for (int value : shuffled(20000))
+            sorter.put(new DatabaseEntry(key(value)), data(value));
+
+        /*
+         * The pairs were spilled to several runs, each no larger than the
+         * memory that held its pairs.
+         */
+        assertTrue(runFiles().length > 3);
+        for (File run : runFiles())
+            assertTrue(run.length() > 0 && run.length() <= 64 * 1024);
+        assertEquals(OperationStatus.SUCCESS,
+            sorter.putMultipleKey(null, false));
+        sorter.close();
+        assertEquals(0, runFiles().length);
+
+        /* Every record is found, in order. */
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        int found = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+            assertEquals(found, ByteBuffer.wrap(key.getData()).getInt());
+            assertEquals(found, ByteBuffer.wrap(data.getData()).getInt());
+            found++;
+        }
+        cursor.close();
+        assertEquals(20000, found);
+
+        /* The pairs are written only once. */
+        sorter = db.openExternalSorter(null);
+        sorter.put(new DatabaseEntry(key(5)), data(5));
+        assertEquals(OperationStatus.SUCCESS,
+            sorter.putMultipleKey(null, true));
+        try {
+            sorter.put(new DatabaseEntry(key(5)), data(5));
+            assertTrue(false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        sorter.close();
+        db.close();
+    }
+
+    @Test public void testBulkLoad()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db = openDatabase(true, false);
+        ExternalSorterConfig config = new ExternalSorterConfig();
+        config.setMaxMemory(32 * 1024);
+        config.setTempDirectory(TestUtils.BASETEST_DBFILE);
+        ExternalSorter sorter = db.openExternalSorter(config);
+        for (int value : shuffled(6000))
+            sorter.put(new DatabaseEntry(key(value / 3)), data(value));
+        BulkLoader loader = db.openBulkLoader(null);
+        sorter.load(loader);
+        loader.close();
+        sorter.close();
+
+        /* The duplicates of each key are in data order. */
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        int found = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+            assertEquals(found / 3, ByteBuffer.wrap(key.getData()).getInt());
+            assertEquals(found, ByteBuffer.wrap(data.getData()).getInt());
+            found++;
+        }
+        cursor.close();
+        assertEquals(6000, found);
+        db.close();
+    }
+
+    @Test public void testStable()
+        throws DatabaseException, FileNotFoundException
+    {
+        /* Equal keys keep the order they were supplied in. */
+        Database db = openDatabase(false, true);
+        ExternalSorterConfig config = new ExternalSorterConfig();
+        config.setMaxMemory(16 * 1024);
+        config.setMaxMergeRuns(2);
+        config.setTempDirectory(TestUtils.BASETEST_DBFILE);
+        ExternalSorter sorter = db.openExternalSorter(config);
+        List<Integer> values = shuffled(4000);
+        for (int value : values)
+            sorter.put(new DatabaseEntry(key(value % 10)), data(value));
+        assertEquals(OperationStatus.SUCCESS,
+            sorter.putMultipleKey(null, false));
+        sorter.close();
+
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        for (int k = 0; k < 10; k++) {
+            for (int value : values) {
+                if (value % 10 != k)
+                    continue;
+                assertEquals(OperationStatus.SUCCESS,
+                    cursor.getNext(key, data, null));
+                assertEquals(k, ByteBuffer.wrap(key.getData()).getInt());
+                assertEquals(value, ByteBuffer.wrap(data.getData()).getInt());
+            }
+        }
+        assertEquals(OperationStatus.NOTFOUND, cursor.getNext(key, data, null));
+        cursor.close();
+        db.close();
+    }
+
+    private Database openDatabase(boolean sortedDups, boolean unsortedDups)
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setSortedDuplicates(sortedDups);
+        dbConfig.setUnsortedDuplicates(unsortedDups);
+        return new Database(
+            TestUtils.getDBFileName(EXTERNALSORTERTEST_DBNAME), null, dbConfig);
+    }
+
+    private static File[] runFiles()
+    {
+        File[] files = TestUtils.BASETEST_DBFILE.listFiles();
+        List<File> runs = new ArrayList<File>();
+        for (File f : files)
+            if (f.getName().startsWith("dbsort"))
+                runs.add(f);
+        return runs.toArray(new File[runs.size()]);
+    }
+
+    private static List<Integer> shuffled(int count)
+    {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            values.add(i);
+        Collections.shuffle(values, new Random(7));
+        return values;
+    }
+
+    private static byte[] key(int value)
+    {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static DatabaseEntry data(int value)
+    {
+        byte[] bytes = new byte[20];
+        ByteBuffer.wrap(bytes).putInt(value);
+        return new DatabaseEntry(bytes);
+    }
+}
@@ -14,6 +14,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.sleepycat.db.*;
@@ -21,6 +22,8 @@ import com.sleepycat.db.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import com.sleepycat.db.test.TestUtils;
 
@@ -186,13 +189,271 @@ public class MultipleCursorTest {
     }
     */
 
+    @Test public void testMultipleGetNIO()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db = createPrivateDatabase("multiplecursortest_nio.db");
+	populateDatabase(db, 0);
+
+	/*
+	 * Walk the database with a bulk NIO cursor.  Use a buffer whose byte
+	 * order is the opposite of the platform's to check that the offsets
+	 * are still decoded correctly.
+	 */
+	ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+	if (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN)
+	    buffer.order(ByteOrder.LITTLE_ENDIAN);
+	else
+	    buffer.order(ByteOrder.BIG_ENDIAN);
+	MultipleKeyNIODataEntry kd = new MultipleKeyNIODataEntry(buffer);
+	DatabaseEntry cursorKey = new DatabaseEntry();
+	DatabaseEntry key = new DatabaseEntry();
+	DatabaseEntry data = new DatabaseEntry();
+	Cursor dbc = db.openCursor(null, CursorConfig.DEFAULT);
+	int count = 0;
+	while (dbc.getNext(cursorKey, kd, LockMode.DEFAULT) ==
+	    OperationStatus.SUCCESS) {
+	    while (kd.next(key, data)) {
+	        byte[] keyBytes = new byte[key.getSize()];
+		ByteBuffer view = key.getDataNIO().duplicate();
+		view.position(key.getOffset());
+		view.get(keyBytes);
+		String keyStr = new String(keyBytes);
+		assertTrue(keyStr, java.util.Arrays.asList(
+		    Key_Strings).contains(keyStr));
+		assertTrue(data.getSize() > 0);
+		count++;
+	    }
+	}
+	dbc.close();
+	assertEquals(Key_Strings.length, count);
+	assertEquals(0, buffer.position());
+
+	db.close();
+	removeDatabase("multiplecursortest_nio.db");
+    }
+
+    @Test public void testScan()
+        throws DatabaseException, FileNotFoundException
+    {
+        Database db = createPrivateDatabase("multiplecursortest_scan.db");
+	populateDatabase(db, 0);
+
+	/* A record larger than a page does not fit in the first buffer. */
+	int pageSize = db.getConfig().getPageSize();
+	byte[] big = new byte[pageSize * 3];
+	java.util.Arrays.fill(big, (byte)'x');
+	db.put(null, new DatabaseEntry("zzz".getBytes()),
+	    new DatabaseEntry(big));
+
+	/*
+	 * Ask for a buffer smaller than a page, which is rounded up to a page,
+	 * so that the scan has to grow it for the large record, and read
+	 * ahead on a background thread.
+	 */
+	BatchConfig config = new BatchConfig();
+	config.setInitialBufferSize(1);
+	config.setPrefetch(true);
+	DatabaseEntry key = new DatabaseEntry();
+	DatabaseEntry data = new DatabaseEntry();
+	Cursor dbc = db.openCursor(null, CursorConfig.DEFAULT);
+	ScanBatch scan = dbc.scan(null, null, config);
+	int initialSize = scan.getBufferSize();
+	assertTrue(initialSize >= pageSize);
+	assertTrue(initialSize < big.length);
+	int count = 0;
+	boolean foundBig = false;
+	try {
+	    while (scan.next(key, data)) {
+	        count++;
+		if (data.getSize() == big.length)
+		    foundBig = true;
+	    }
+	    assertTrue(scan.getBatchCount() > 0);
+	    assertTrue(scan.getBufferSize() > initialSize);
+	    assertTrue(scan.getBufferSize() >= big.length);
+	} finally {
+	    scan.close();
+	}
+	assertTrue(foundBig);
+	assertEquals(Key_Strings.length + 1, count);
+
+	/* Scan a bounded range: keys in ["def", "mno"). */
+	DatabaseEntry fromKey = new DatabaseEntry("def".getBytes());
+	DatabaseEntry toKey = new DatabaseEntry("mno".getBytes());
+	scan = dbc.scan(fromKey, toKey, null);
+	count = 0;
+	try {
+	    while (scan.next(key, data)) {
+	        String keyStr = new String(key.getData(), key.getOffset(),
+		    key.getSize());
+		assertTrue(keyStr, keyStr.compareTo("def") >= 0);
+		assertTrue(keyStr, keyStr.compareTo("mno") < 0);
+		count++;
+	    }
+	} finally {
+	    scan.close();
+	}
+	/* def, efg, ghi, hij, jkl and klm. */
+	assertEquals(6, count);
+	dbc.close();
+
+	db.close();
+	removeDatabase("multiplecursortest_scan.db");
+    }
+
+    @Test public void testBatchWriter()
+        throws Exception
+    {
+        Database db = createPrivateDatabase("multiplecursortest_batch.db");
+	BatchWriterConfig config = new BatchWriterConfig();
+	config.setMaxBatchBytes(64);
+	final BatchWriter writer = db.openBatchWriter(config);
+
+	/* Several threads submit puts concurrently. */
+	Thread[] threads = new Thread[4];
+	final java.util.List<java.util.concurrent.Future<OperationStatus>>
+	    futures = java.util.Collections.synchronizedList(new
+	    java.util.ArrayList<java.util.concurrent.Future<OperationStatus>>());
+	for (int t = 0; t < threads.length; t++) {
+	    final int id = t;
+	    threads[t] = new Thread() {
+	        public void run() {
+		    for (int i = 0; i < 100; i++) {
+		        String str = "batch" + id + "-" + i;
+			futures.add(writer.put(
+			    new DatabaseEntry(str.getBytes()),
+			    new DatabaseEntry(str.getBytes())));
+		    }
+		}
+	    };
+	    threads[t].start();
+	}
+	for (int t = 0; t < threads.length; t++)
+	    threads[t].join();
+	writer.flush();
+	for (java.util.concurrent.Future<OperationStatus> f : futures) {
+	    assertTrue(f.isDone());
+	    assertEquals(OperationStatus.SUCCESS, f.get());
+	}
+
+	/* A delete submitted after a put of the same key wins. */
+	DatabaseEntry key = new DatabaseEntry("batch0-0".getBytes());
+	writer.put(key, new DatabaseEntry("again".getBytes()));
+	writer.delete(key);
+	writer.close();
+	assertEquals(OperationStatus.NOTFOUND,
+	    db.get(null, key, new DatabaseEntry(), null));
+	key.setData("batch3-99".getBytes());
+	assertEquals(OperationStatus.SUCCESS,
+	    db.get(null, key, new DatabaseEntry(), null));
+
+	db.close();
+	removeDatabase("multiplecursortest_batch.db");
+    }
+
+    @Test public void testBatchWriterFailedItem()
+        throws Exception
+    {
+        Database db = createPrivateDatabase("multiplecursortest_batchfail.db");
+	DatabaseEntry key = new DatabaseEntry();
+	DatabaseEntry data = new DatabaseEntry("data".getBytes());
+	for (int i = 1; i <= 5; i++) {
+	    key.setData(("key" + i).getBytes());
+	    db.put(null, key, data);
+	}
+
+	/* A missing key does not stop the deletes after it. */
+	BatchWriter writer = db.openBatchWriter(new BatchWriterConfig());
+	java.util.List<java.util.concurrent.Future<OperationStatus>> futures =
+	    new java.util.ArrayList<java.util.concurrent.Future<OperationStatus>>();
+	for (int i = 0; i <= 5; i++)
+	    futures.add(writer.delete(
+	        new DatabaseEntry(("key" + i).getBytes())));
+	writer.flush();
+	assertEquals(OperationStatus.NOTFOUND, futures.get(0).get());
+	for (int i = 1; i <= 5; i++) {
+	    assertEquals(OperationStatus.SUCCESS, futures.get(i).get());
+	    key.setData(("key" + i).getBytes());
+	    assertEquals(OperationStatus.NOTFOUND,
+	        db.get(null, key, new DatabaseEntry(), null));
+	}
+
+	/* A duplicate pair fails alone in a bulk put. */
+	key.setData("key1".getBytes());
+	db.put(null, key, data);
+	futures.clear();
+	futures.add(writer.put(new DatabaseEntry("key0".getBytes()), data));
+	futures.add(writer.put(key, data));
+	futures.add(writer.put(new DatabaseEntry("key2".getBytes()), data));
+	writer.close();
+	assertEquals(OperationStatus.SUCCESS, futures.get(0).get());
+	assertEquals(OperationStatus.KEYEXIST, futures.get(1).get());
+	assertEquals(OperationStatus.SUCCESS, futures.get(2).get());
+	key.setData("key2".getBytes());
+	assertEquals(OperationStatus.SUCCESS,
+	    db.get(null, key, new DatabaseEntry(), null));
+
+	/* Without overwrite, an existing key is kept and the rest written. */
+	BatchWriterConfig config = new BatchWriterConfig();
+	config.setOverwrite(false);
+	writer = db.openBatchWriter(config);
+	futures.clear();
+	futures.add(writer.put(new DatabaseEntry("key3".getBytes()), data));
+	futures.add(writer.put(new DatabaseEntry("key1".getBytes()),
+	    new DatabaseEntry("other".getBytes())));
+	futures.add(writer.put(new DatabaseEntry("key4".getBytes()), data));
+	writer.close();
+	assertEquals(OperationStatus.SUCCESS, futures.get(0).get());
+	assertEquals(OperationStatus.KEYEXIST, futures.get(1).get());
+	assertEquals(OperationStatus.SUCCESS, futures.get(2).get());
+	key.setData("key1".getBytes());
+	DatabaseEntry found = new DatabaseEntry();
+	assertEquals(OperationStatus.SUCCESS, db.get(null, key, found, null));
+	assertEquals("data", new String(found.getData()));
+	Cursor dbc = db.openCursor(null, CursorConfig.DEFAULT);
+	assertEquals(OperationStatus.SUCCESS,
+	    dbc.getSearchKey(key, found, null));
+	assertEquals(1, dbc.count());
+	dbc.close();
+	key.setData("key4".getBytes());
+	assertEquals(OperationStatus.SUCCESS,
+	    db.get(null, key, new DatabaseEntry(), null));
+
+	db.close();
+	removeDatabase("multiplecursortest_batchfail.db");
+    }
+
     private Database createDatabase()
         throws DatabaseException, FileNotFoundException
+    {
+        return createDatabase(MULTIPLECURSORTEST_DBNAME);
+    }
+
+    /*
+     * Open a database in its own file, removing any file left behind by an
+     * earlier run, for test cases that check the exact contents.
+     */
+    private Database createPrivateDatabase(String fileName)
+        throws DatabaseException, FileNotFoundException
+    {
+        removeDatabase(fileName);
+        return createDatabase(fileName);
+    }
+
+    private void removeDatabase(String fileName)
+    {
+        TestUtils.removeall(true, false, TestUtils.BASETEST_DBDIR,
+            TestUtils.getDBFileName(fileName));
+    }
+
+    private Database createDatabase(String fileName)
+        throws DatabaseException, FileNotFoundException
     {
         /* Create database. */
         Database db;
 	DatabaseConfig db_config = new DatabaseConfig();
-        String name = TestUtils.getDBFileName(MULTIPLECURSORTEST_DBNAME);
+        String name = TestUtils.getDBFileName(fileName);
 
         db_config.setAllowCreate(true);
 	db_config.setType(DatabaseType.BTREE);
@@ -0,0 +1,188 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+import com.sleepycat.db.NativeComparator.Field;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+
+import com.sleepycat.db.test.TestUtils;
+public class NativeComparatorTest {
+    public static final String NATIVECOMPARATORTEST_DBNAME = "nativecomparatortest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), true, true);
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), true, true);
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), true, true);
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), true, true);
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testCompare()
+    {
+        NativeComparator cmp = new NativeComparator(
+            Field.signedInt(4).descending(), Field.rest());
+        assertTrue(cmp.compare(key(5, "a"), key(-5, "a")) < 0);
+        assertTrue(cmp.compare(key(-1, "a"), key(0, "a")) > 0);
+        assertTrue(cmp.compare(key(7, "a"), key(7, "b")) < 0);
+        assertTrue(cmp.compare(key(7, "b"), key(7, "b")) == 0);
+        assertTrue(cmp.compare(key(7, ""), key(7, "b")) < 0);
+
+        /* A key that ends within a descending field sorts last. */
+        assertTrue(cmp.compare(new byte[] { 0, 0 }, key(0, "")) > 0);
+
+        NativeComparator unsigned = new NativeComparator(Field.unsignedInt(4));
+        assertTrue(unsigned.compare(key(-1, ""), key(1, "")) > 0);
+        assertTrue(NativeComparator.REVERSE_LEXICOGRAPHIC.compare(
+            "ab".getBytes(), "abc".getBytes()) > 0);
+
+        assertEquals(cmp, new NativeComparator(
+            Field.signedInt(4).descending(), Field.rest()));
+        assertTrue(!cmp.equals(unsigned));
+
+        try {
+            new NativeComparator(Field.rest(), Field.bytes(1));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test public void testBtreeOrder()
+        throws DatabaseException, FileNotFoundException
+    {
+        NativeComparator cmp = new NativeComparator(
+            Field.signedInt(4).descending(), Field.rest());
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setBtreeComparator(cmp);
+        Database db = new Database(
+            TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), null, dbConfig);
+        assertEquals(cmp, db.getConfig().getBtreeComparator());
+
+        int[] values = { 3, -7, 1000, 0, -1, 42, Integer.MIN_VALUE,
+            Integer.MAX_VALUE };
+        DatabaseEntry data = new DatabaseEntry(new byte[1]);
+        for (int i = 0; i < values.length; i++) {
+            db.put(null, new DatabaseEntry(key(values[i], "x")), data);
+            db.put(null, new DatabaseEntry(key(values[i], "")), data);
+        }
+
+        checkOrder(db, cmp, values.length * 2);
+        db.close();
+    }
+
+    @Test public void testDuplicateOrder()
+        throws DatabaseException, FileNotFoundException
+    {
+        NativeComparator cmp = new NativeComparator(Field.signedInt(4));
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.HASH);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setSortedDuplicates(true);
+        dbConfig.setDuplicateComparator(cmp);
+        Database db = new Database(
+            TestUtils.getDBFileName(NATIVECOMPARATORTEST_DBNAME), null, dbConfig);
+
+        DatabaseEntry key = new DatabaseEntry("key".getBytes());
+        int[] values = { 9, -9, 0, 5, -100, 100 };
+        for (int i = 0; i < values.length; i++)
+            db.put(null, key, new DatabaseEntry(key(values[i], "")));
+
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry found = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        byte[] prev = null;
+        int count = 0;
+        while (cursor.getNext(found, data, null) == OperationStatus.SUCCESS) {
+            if (prev != null)
+                assertTrue(cmp.compare(prev, data.getData()) < 0);
+            prev = data.getData();
+            data = new DatabaseEntry();
+            count++;
+        }
+        assertEquals(values.length, count);
+        assertEquals(-100, ByteBuffer.wrap(
+            getFirst(db, key).getData()).getInt());
+        cursor.close();
+        db.close();
+    }
+
+    private void checkOrder(Database db, NativeComparator cmp, int expected)
+        throws DatabaseException
+    {
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        byte[] prev = null;
+        int count = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+            if (prev != null)
+                assertTrue(cmp.compare(prev, key.getData()) < 0);
+            prev = key.getData();
+            key = new DatabaseEntry();
+            count++;
+        }
+        assertEquals(expected, count);
+
+        /* The largest integer sorts first. */
+        assertEquals(OperationStatus.SUCCESS,
+            cursor.getFirst(key, data, null));
+        assertEquals(Integer.MAX_VALUE,
+            ByteBuffer.wrap(key.getData()).getInt());
+
+        /* Searches use the same order. */
+        key.setData(key(41, ""));
+        assertEquals(OperationStatus.SUCCESS,
+            cursor.getSearchKeyRange(key, data, null));
+        assertEquals(0, cmp.compare(key(3, ""), key.getData()));
+        cursor.close();
+    }
+
+    private DatabaseEntry getFirst(Database db, DatabaseEntry key)
+        throws DatabaseException
+    {
+        DatabaseEntry data = new DatabaseEntry();
+        assertEquals(OperationStatus.SUCCESS, db.get(null, key, data, null));
+        return data;
+    }
+
+    private static byte[] key(int value, String suffix)
+    {
+        byte[] s = suffix.getBytes();
+        return ByteBuffer.allocate(4 + s.length).putInt(value).put(s).array();
+    }
+}
@@ -0,0 +1,219 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.db.*;
+import com.sleepycat.db.NativeKeyCreator.Field;
+import com.sleepycat.db.NativeKeyCreator.Format;
+
+import java.io.FileNotFoundException;
+
+import com.sleepycat.db.test.TestUtils;
+public class NativeKeyCreatorTest {
+    public static final String NATIVEKEYCREATORTEST_DBNAME = "nativekeycreatortest.db";
+    public static final String NATIVEKEYCREATORTEST_SECNAME = "nativekeycreatortest2.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        removeFiles();
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        removeFiles();
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        removeFiles();
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        removeFiles();
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testCreateSecondaryKey()
+        throws DatabaseException
+    {
+        NativeKeyCreator creator = new NativeKeyCreator(Field.dataTuple(2,
+            Format.INT, Format.STRING, Format.SORTED_PACKED_LONG));
+        DatabaseEntry key = new DatabaseEntry(new byte[] { 1, 2, 3, 4 });
+        DatabaseEntry data = record(7, "seven", 1234567890123L, 5);
+        DatabaseEntry result = new DatabaseEntry();
+        assertTrue(creator.createSecondaryKey(null, key, data, result));
+        assertEquals(1234567890123L,
+            new TupleInput(result.getData()).readSortedPackedLong());
+        assertEquals(result.getSize(), result.getData().length);
+
+        /* Byte ranges of the key and the rest of the data. */
+        creator = new NativeKeyCreator(Field.keyBytes(1, 2),
+            Field.dataTuple(3, Format.INT, Format.STRING,
+            Format.SORTED_PACKED_LONG, Format.PACKED_INT));
+        assertTrue(creator.createSecondaryKey(null, key, data, result));
+        assertEquals(2, result.getData()[0]);
+        assertEquals(3, result.getData()[1]);
+        TupleInput input =
+            new TupleInput(result.getData(), 2, result.getSize() - 2);
+        assertEquals(5, input.readPackedInt());
+        assertEquals(0, input.available());
+
+        /* An entry with an offset. */
+        byte[] padded = new byte[key.getSize() + 3];
+        System.arraycopy(key.getData(), 0, padded, 3, key.getSize());
+        DatabaseEntry offsetKey = new DatabaseEntry(padded, 3, key.getSize());
+        creator = new NativeKeyCreator(Field.keyBytes(2));
+        assertTrue(creator.createSecondaryKey(null, offsetKey, data, result));
+        assertArrayEquals(new byte[] { 3, 4 }, result.getData());
+
+        /* Records too short to hold a field are not indexed. */
+        creator = new NativeKeyCreator(Field.keyBytes(2, 3));
+        assertFalse(creator.createSecondaryKey(null, key, data, result));
+        creator = new NativeKeyCreator(
+            Field.dataTuple(1, Format.INT, Format.STRING));
+        assertFalse(creator.createSecondaryKey(null,
+            key, new DatabaseEntry(new byte[] { 0, 0, 0, 1, 'a' }), result));
+
+        assertEquals(new NativeKeyCreator(Field.dataBytes(0, 4)),
+            new NativeKeyCreator(Field.dataTuple(0, Format.INT)));
+        try {
+            Field.dataTuple(2, Format.INT, Format.STRING);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test public void testSecondaryIndex()
+        throws DatabaseException, FileNotFoundException
+    {
+        checkIndex(new NativeKeyCreator(Field.dataTuple(1,
+            Format.INT, Format.STRING, Format.SORTED_PACKED_LONG)));
+    }
+
+    @Test public void testCompositeIndex()
+        throws DatabaseException, FileNotFoundException
+    {
+        checkIndex(new NativeKeyCreator(
+            Field.dataTuple(2, Format.INT, Format.STRING,
+                Format.SORTED_PACKED_LONG, Format.PACKED_INT),
+            Field.keyBytes(0)));
+    }
+
+    private void checkIndex(NativeKeyCreator creator)
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        Database db = new Database(
+            TestUtils.getDBFileName(NATIVEKEYCREATORTEST_DBNAME), null, dbConfig);
+
+        SecondaryConfig secConfig = new SecondaryConfig();
+        secConfig.setType(DatabaseType.BTREE);
+        secConfig.setAllowCreate(true);
+        secConfig.setSortedDuplicates(true);
+        secConfig.setKeyCreator(creator);
+        SecondaryDatabase secDb = new SecondaryDatabase(
+            TestUtils.getDBFileName(NATIVEKEYCREATORTEST_SECNAME), null, db,
+            secConfig);
+        assertEquals(creator, secDb.getSecondaryConfig().getKeyCreator());
+
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            TupleOutput key = new TupleOutput();
+            key.writeInt(i);
+            db.put(null, new DatabaseEntry(key.toByteArray()),
+                record(i, "name" + (i % 10), i * 1000000007L, -i));
+        }
+        /* A record too short to hold the fields is not indexed. */
+        db.put(null, new DatabaseEntry(new byte[] { 'x' }),
+            new DatabaseEntry(new byte[] { 0, 0, 0, 1 }));
+        assertEquals(count, countRecords(secDb));
+
+        /* Every secondary key matches the one created in Java. */
+        SecondaryCursor cursor = secDb.openSecondaryCursor(null, null);
+        DatabaseEntry secKey = new DatabaseEntry();
+        DatabaseEntry priKey = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        DatabaseEntry expected = new DatabaseEntry();
+        while (cursor.getNext(secKey, priKey, data, null) ==
+            OperationStatus.SUCCESS) {
+            assertTrue(creator.createSecondaryKey(
+                secDb, priKey, data, expected));
+            assertArrayEquals(expected.getData(), secKey.getData());
+            secKey = new DatabaseEntry();
+            priKey = new DatabaseEntry();
+            data = new DatabaseEntry();
+        }
+
+        /* Lookups, and deletes and updates through the primary. */
+        DatabaseEntry record = record(3, "name3", 3 * 1000000007L, -3);
+        TupleOutput key = new TupleOutput();
+        key.writeInt(3);
+        DatabaseEntry priKey3 = new DatabaseEntry(key.toByteArray());
+        assertTrue(creator.createSecondaryKey(
+            secDb, priKey3, record, secKey));
+        assertEquals(OperationStatus.SUCCESS,
+            cursor.getSearchKey(secKey, priKey, data, null));
+        db.put(null, priKey3, record(3, "other", 0L, 0));
+        assertEquals(OperationStatus.SUCCESS,
+            db.delete(null, new DatabaseEntry(priKey.getData())));
+        assertEquals(count - 1, countRecords(secDb));
+        cursor.close();
+
+        secDb.close();
+        db.close();
+    }
+
+    private int countRecords(SecondaryDatabase secDb)
+        throws DatabaseException
+    {
+        Cursor cursor = secDb.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        int count = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS)
+            count++;
+        cursor.close();
+        return count;
+    }
+
+    private static DatabaseEntry record(int i, String name, long l, int p)
+    {
+        TupleOutput out = new TupleOutput();
+        out.writeInt(i);
+        out.writeString(name);
+        out.writeSortedPackedLong(l);
+        out.writePackedInt(p);
+        return new DatabaseEntry(out.toByteArray());
+    }
+
+    private static void removeFiles()
+    {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEKEYCREATORTEST_DBNAME), true, true);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEKEYCREATORTEST_SECNAME), true, true);
+    }
+}
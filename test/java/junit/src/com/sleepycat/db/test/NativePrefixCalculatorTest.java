@@ -0,0 +1,187 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+import com.sleepycat.db.NativeComparator.Field;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.sleepycat.db.test.TestUtils;
+public class NativePrefixCalculatorTest {
+    public static final String NATIVEPREFIXCALCULATORTEST_DBNAME = "nativeprefixcalculatortest.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), true, true);
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), true, true);
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), true, true);
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), true, true);
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testPrefix()
+    {
+        NativePrefixCalculator ascending = new NativePrefixCalculator(
+            new NativeComparator(Field.signedInt(4), Field.rest()));
+        assertEquals(1, prefix(ascending, key(1, "abc"), key(0x7000000, "")));
+        assertEquals(4, prefix(ascending, key(1, "abc"), key(2, "abc")));
+        assertEquals(7, prefix(ascending, key(1, "abc"), key(1, "abd")));
+        assertEquals(6, prefix(ascending, key(1, "a"), key(1, "ab")));
+        assertEquals(5, prefix(ascending, key(1, ""), key(1, "zz")));
+
+        /* A descending field is kept whole, with any that follow it. */
+        NativePrefixCalculator descending = new NativePrefixCalculator(
+            new NativeComparator(Field.signedInt(4).descending(),
+            Field.bytes(2).descending(), Field.rest()));
+        assertEquals(6, prefix(descending, key(2, "abc"), key(1, "abc")));
+        assertEquals(6, prefix(descending, key(1, "abc"), key(1, "aac")));
+        assertEquals(7, prefix(descending, key(1, "abb"), key(1, "abcde")));
+
+        /* Every prefix sorts after the first key and not after the second. */
+        NativeComparator[] orders = {
+            new NativeComparator(Field.signedInt(4), Field.rest()),
+            new NativeComparator(Field.signedInt(4).descending(),
+                Field.rest()),
+            new NativeComparator(Field.bytes(2), Field.bytes(1).descending(),
+                Field.rest().descending()),
+            NativeComparator.LEXICOGRAPHIC
+        };
+        for (int o = 0; o < orders.length; o++) {
+            NativeComparator cmp = orders[o];
+            NativePrefixCalculator calc = new NativePrefixCalculator(cmp);
+            byte[][] keys = new byte[200][];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = key(i * 7919 % 37 - 18, "k" + (i * 31 % 53));
+            Arrays.sort(keys, cmp);
+            for (int i = 1; i < keys.length; i++) {
+                if (cmp.compare(keys[i - 1], keys[i]) == 0)
+                    continue;
+                int n = prefix(calc, keys[i - 1], keys[i]);
+                byte[] p = Arrays.copyOf(keys[i], n);
+                assertTrue(cmp.compare(keys[i - 1], p) < 0);
+                assertTrue(cmp.compare(p, keys[i]) <= 0);
+            }
+        }
+    }
+
+    @Test public void testDatabase()
+        throws DatabaseException, FileNotFoundException
+    {
+        NativeComparator cmp = NativeComparator.LEXICOGRAPHIC;
+        long withoutPrefix = internalBytes(cmp, null);
+        long withPrefix = internalBytes(cmp, new NativePrefixCalculator(cmp));
+        assertTrue(withPrefix * 2 < withoutPrefix);
+    }
+
+    @Test public void testWrongComparator()
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setBtreeComparator(NativeComparator.LEXICOGRAPHIC);
+        dbConfig.setBtreePrefixCalculator(new NativePrefixCalculator(
+            NativeComparator.REVERSE_LEXICOGRAPHIC));
+        try {
+            new Database(TestUtils.getDBFileName(
+                NATIVEPREFIXCALCULATORTEST_DBNAME), null, dbConfig);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /*
+     * Load keys that differ in their first bytes but share a long tail, so
+     * that whole keys fill internal pages, and return the bytes used on
+     * internal pages.
+     */
+    private long internalBytes(NativeComparator cmp,
+        NativePrefixCalculator calc)
+        throws DatabaseException, FileNotFoundException
+    {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), true, true);
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setPageSize(512);
+        dbConfig.setBtreeComparator(cmp);
+        dbConfig.setBtreePrefixCalculator(calc);
+        Database db = new Database(
+            TestUtils.getDBFileName(NATIVEPREFIXCALCULATORTEST_DBNAME), null, dbConfig);
+
+        char[] tail = new char[60];
+        Arrays.fill(tail, 't');
+        int count = 5000;
+        DatabaseEntry data = new DatabaseEntry(new byte[4]);
+        for (int i = 0; i < count; i++) {
+            byte[] key = (String.format("%08d", i) + new String(tail)).
+                getBytes();
+            db.put(null, new DatabaseEntry(key), data);
+        }
+
+        /* Every record is found, in order. */
+        Cursor cursor = db.openCursor(null, null);
+        DatabaseEntry key = new DatabaseEntry();
+        int found = 0;
+        while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+            assertArrayEquals((String.format("%08d", found) +
+                new String(tail)).getBytes(), key.getData());
+            found++;
+        }
+        cursor.close();
+        assertEquals(count, found);
+
+        BtreeStats stats = (BtreeStats)db.getStats(null, null);
+        long used = (long)stats.getIntPages() * stats.getPageSize() -
+            stats.getIntPagesFree();
+        db.close();
+        return used;
+    }
+
+    private static int prefix(NativePrefixCalculator calc,
+        byte[] key1, byte[] key2)
+    {
+        return calc.prefix(null,
+            new DatabaseEntry(key1), new DatabaseEntry(key2));
+    }
+
+    private static byte[] key(int value, String suffix)
+    {
+        byte[] s = suffix.getBytes();
+        return ByteBuffer.allocate(4 + s.length).putInt(value).put(s).array();
+    }
+}
@@ -0,0 +1,342 @@
+/*-
+ * See the file LICENSE for redistribution information.
+ *
+ * Copyright (c) 2002, 2013 Oracle and/or its affiliates.  All rights reserved.
+ *
+ */
+
+
+package com.sleepycat.db.test;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sleepycat.db.*;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.sleepycat.db.test.TestUtils;
+public class SecondaryPopulateTest {
+    public static final String SECONDARYPOPULATETEST_DBNAME = "secondarypopulatetest.db";
+    public static final String SECONDARYPOPULATETEST_SECNAME = "secondarypopulatetest2.db";
+    @BeforeClass public static void ClassInit() {
+        TestUtils.loadConfig(null);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME), true, true);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME + ".populate"), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(SECONDARYPOPULATETEST_DBNAME));
+    }
+
+    @AfterClass public static void ClassShutdown() {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME), true, true);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME + ".populate"), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(SECONDARYPOPULATETEST_DBNAME));
+    }
+
+    @Before public void PerTestInit()
+        throws Exception {
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME), true, true);
+        TestUtils.check_file_removed(TestUtils.getDBFileName(SECONDARYPOPULATETEST_SECNAME + ".populate"), true, true);
+        TestUtils.removeall(true, true, TestUtils.BASETEST_DBDIR, TestUtils.getDBFileName(SECONDARYPOPULATETEST_DBNAME));
+    }
+
+    @After public void PerTestShutdown()
+        throws Exception {
+    }
+    /*
+     * Test case implementations.
+     * To disable a test mark it with @Ignore
+     * To set a timeout(ms) notate like: @Test(timeout=1000)
+     * To indicate an expected exception notate like: (expected=Exception)
+     */
+
+    @Test public void testParallel()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment();
+        Database priDb = openPrimary(dbEnv, 20000);
+
+        /* Populate in the library, to have something to compare with. */
+        SecondaryConfig secConfig = secondaryConfig(new GroupKeyCreator());
+        SecondaryDatabase secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "library", priDb, secConfig);
+        List<String> expected = contents(secDb);
+        secDb.close();
+        assertEquals(20000, expected.size());
+
+        GroupKeyCreator keyCreator = new GroupKeyCreator();
+        Progress progress = new Progress();
+        secConfig = secondaryConfig(keyCreator);
+        secConfig.setPopulateThreads(4);
+        secConfig.setPopulateBatchBytes(16 * 1024);
+        secConfig.setPopulateFeedbackHandler(progress);
+        secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "parallel", priDb, secConfig);
+        assertEquals(expected, contents(secDb));
+        assertTrue(keyCreator.threads.size() > 1);
+
+        /* Progress only goes up, and ends at 100. */
+        assertTrue(progress.percents.size() > 1);
+        for (int i = 1; i < progress.percents.size(); i++)
+            assertTrue(progress.percents.get(i - 1) <
+                progress.percents.get(i));
+        assertEquals(100, (int)progress.percents.get(
+            progress.percents.size() - 1));
+
+        /* The secondary is associated once it is populated. */
+        priDb.put(null, new DatabaseEntry(key(20000)),
+            new DatabaseEntry("group-new".getBytes()));
+        DatabaseEntry pkey = new DatabaseEntry();
+        assertEquals(OperationStatus.SUCCESS, secDb.get(null,
+            new DatabaseEntry("group-new".getBytes()), pkey,
+            new DatabaseEntry(), null));
+        assertEquals(20000, ByteBuffer.wrap(pkey.getData()).getInt());
+
+        /* A populated secondary is not populated again. */
+        secDb.close();
+        keyCreator = new GroupKeyCreator();
+        secConfig = secondaryConfig(keyCreator);
+        secConfig.setPopulateThreads(4);
+        secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "parallel", priDb, secConfig);
+        assertEquals(0, keyCreator.threads.size());
+
+        secDb.close();
+        priDb.close();
+        dbEnv.close();
+    }
+
+    @Test public void testResume()
+        throws Exception
+    {
+        Environment dbEnv = openEnvironment();
+        Database priDb = openPrimary(dbEnv, 5000);
+
+        SecondaryConfig secConfig = secondaryConfig(new GroupKeyCreator());
+        SecondaryDatabase secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "library", priDb, secConfig);
+        List<String> expected = contents(secDb);
+        secDb.close();
+
+        /*
+         * Leave a secondary as a failure part way through population would:
+         * some of its records written, and the marker still present.
+         */
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        dbConfig.setSortedDuplicates(true);
+        Database db = dbEnv.openDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "parallel", dbConfig);
+        db.put(null, new DatabaseEntry("group-0".getBytes()),
+            new DatabaseEntry(key(0)));
+        db.put(null, new DatabaseEntry("stale".getBytes()),
+            new DatabaseEntry(key(1)));
+        db.close();
+        dbEnv.openDatabase(null, SECONDARYPOPULATETEST_SECNAME + ".populate",
+            "parallel", dbConfig).close();
+
+        /* The next open finishes the population. */
+        GroupKeyCreator keyCreator = new GroupKeyCreator();
+        secConfig = secondaryConfig(keyCreator);
+        secConfig.setPopulateThreads(4);
+        secConfig.setPopulateBatchBytes(16 * 1024);
+        secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, "parallel", priDb, secConfig);
+        assertEquals(expected, contents(secDb));
+        assertTrue(keyCreator.threads.size() > 0);
+        secDb.close();
+
+        /* The marker is removed once the secondary is complete. */
+        dbConfig.setAllowCreate(false);
+        try {
+            dbEnv.openDatabase(null,
+                SECONDARYPOPULATETEST_SECNAME + ".populate", "parallel",
+                dbConfig);
+            assertTrue(false);
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+
+        priDb.close();
+        dbEnv.close();
+    }
+
+    @Test public void testMultiKey()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment();
+        Database priDb = openPrimary(dbEnv, 5000);
+
+        SecondaryConfig secConfig = secondaryConfig(null);
+        secConfig.setMultiKeyCreator(new SecondaryMultiKeyCreator() {
+            public void createSecondaryKeys(SecondaryDatabase secondary,
+                DatabaseEntry key, DatabaseEntry data,
+                Set results)
+            {
+                int value = ByteBuffer.wrap(key.getData()).getInt();
+                if (value % 2 == 0)
+                    results.add(new DatabaseEntry("even".getBytes()));
+                if (value % 3 == 0)
+                    results.add(new DatabaseEntry("three".getBytes()));
+            }
+        });
+        secConfig.setPopulateThreads(3);
+        secConfig.setPopulateBatchBytes(4 * 1024);
+        SecondaryDatabase secDb = dbEnv.openSecondaryDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, null, priDb, secConfig);
+
+        int even = 0;
+        int three = 0;
+        for (String s : contents(secDb)) {
+            if (s.startsWith("even/"))
+                even++;
+            else if (s.startsWith("three/"))
+                three++;
+        }
+        assertEquals(2500, even);
+        assertEquals(1667, three);
+
+        secDb.close();
+        priDb.close();
+        dbEnv.close();
+    }
+
+    @Test public void testNotUnique()
+        throws DatabaseException, FileNotFoundException
+    {
+        Environment dbEnv = openEnvironment();
+        Database priDb = openPrimary(dbEnv, 5000);
+
+        SecondaryConfig secConfig = secondaryConfig(new GroupKeyCreator());
+        secConfig.setSortedDuplicates(false);
+        secConfig.setPopulateThreads(2);
+        try {
+            dbEnv.openSecondaryDatabase(null,
+                SECONDARYPOPULATETEST_SECNAME, null, priDb, secConfig);
+            assertTrue(false);
+        } catch (DatabaseException e) {
+            // expected
+        }
+
+        /* The secondary was emptied, so it is populated by the next open. */
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setTransactional(true);
+        Database db = dbEnv.openDatabase(null,
+            SECONDARYPOPULATETEST_SECNAME, null, dbConfig);
+        assertEquals(0, contents(db).size());
+        db.close();
+
+        priDb.close();
+        dbEnv.close();
+    }
+
+    /*
+     * Record the secondary pairs as "secondary key/primary key" strings,
+     * sorted.
+     */
+    private List<String> contents(Database db)
+        throws DatabaseException
+    {
+        List<String> list = new ArrayList<String>();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        Cursor cursor = (db instanceof SecondaryDatabase) ?
+            ((SecondaryDatabase)db).openSecondaryCursor(null, null) :
+            db.openCursor(null, null);
+        if (cursor instanceof SecondaryCursor) {
+            DatabaseEntry pkey = new DatabaseEntry();
+            while (((SecondaryCursor)cursor).getNext(key, pkey, data, null) ==
+                OperationStatus.SUCCESS)
+                list.add(new String(key.getData()) + "/" +
+                    ByteBuffer.wrap(pkey.getData()).getInt());
+        } else {
+            while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS)
+                list.add(new String(key.getData()));
+        }
+        cursor.close();
+        Collections.sort(list);
+        return list;
+    }
+
+    private Environment openEnvironment()
+        throws DatabaseException, FileNotFoundException
+    {
+        EnvironmentConfig envc = new EnvironmentConfig();
+        envc.setAllowCreate(true);
+        envc.setInitializeCache(true);
+        envc.setInitializeLocking(true);
+        envc.setInitializeLogging(true);
+        envc.setTransactional(true);
+        envc.setThreaded(true);
+        envc.setLockDetectMode(LockDetectMode.DEFAULT);
+        return new Environment(TestUtils.BASETEST_DBFILE, envc);
+    }
+
+    private Database openPrimary(Environment dbEnv, int count)
+        throws DatabaseException, FileNotFoundException
+    {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setType(DatabaseType.BTREE);
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        Database db = dbEnv.openDatabase(
+            null, SECONDARYPOPULATETEST_DBNAME, null, dbConfig);
+        for (int i = 0; i < count; i++)
+            db.put(null, new DatabaseEntry(key(i)),
+                new DatabaseEntry(("group-" + (i % 37)).getBytes()));
+        return db;
+    }
+
+    private SecondaryConfig secondaryConfig(SecondaryKeyCreator keyCreator)
+    {
+        SecondaryConfig secConfig = new SecondaryConfig();
+        secConfig.setType(DatabaseType.BTREE);
+        secConfig.setAllowCreate(true);
+        secConfig.setAllowPopulate(true);
+        secConfig.setTransactional(true);
+        secConfig.setSortedDuplicates(true);
+        secConfig.setKeyCreator(keyCreator);
+        return secConfig;
+    }
+
+    private static byte[] key(int value)
+    {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    /* Index the record data, and note which threads called it. */
+    static class GroupKeyCreator implements SecondaryKeyCreator {
+        final Set<String> threads =
+            Collections.synchronizedSet(new HashSet<String>());
+
+        public boolean createSecondaryKey(SecondaryDatabase secondary,
+            DatabaseEntry key, DatabaseEntry data, DatabaseEntry result)
+        {
+            threads.add(Thread.currentThread().getName());
+            result.setData(data.getData());
+            return true;
+        }
+    }
+
+    static class Progress implements PopulateFeedbackHandler {
+        final List<Integer> percents =
+            Collections.synchronizedList(new ArrayList<Integer>());
+
+        public void populateFeedback(SecondaryDatabase secondary, int percent)
+        {
+            percents.add(percent);
+        }
+    }
+}